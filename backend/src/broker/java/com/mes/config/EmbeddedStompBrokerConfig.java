@@ -0,0 +1,42 @@
+package com.mes.config;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * In-process Artemis broker with a STOMP acceptor, used when mes.websocket.broker.mode=embedded.
+ *
+ * One node runs with mode=embedded and the others with mode=relay pointing at its port, which
+ * gives a real shared broker for multi-node tests without external infrastructure. Messages are
+ * not persisted. Only built with the broker-harness Maven profile, which also adds the Artemis
+ * dependencies.
+ */
+@org.springframework.context.annotation.Configuration
+@ConditionalOnProperty(name = "mes.websocket.broker.mode", havingValue = "embedded")
+public class EmbeddedStompBrokerConfig {
+
+    @Value("${mes.websocket.broker.relay-host:localhost}")
+    private String host;
+
+    @Value("${mes.websocket.broker.relay-port:61613}")
+    private int port;
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedStompBroker() throws Exception {
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false)
+                // STOMP /topic/* maps to multicast addresses and /queue/* to anycast queues
+                .addAcceptorConfiguration("stomp", "tcp://" + host + ":" + port
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        return broker;
+    }
+}
@@ -0,0 +1,29 @@
+package com.mes.controller;
+
+import com.mes.service.BrokerProbeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/dashboard/realtime")
+@CrossOrigin(origins = "*")
+public class BrokerProbeController {
+
+    @Autowired
+    private BrokerProbeService brokerProbeService;
+
+    // Probes the nodes configured in mes.websocket.probe.nodes; 409 while another probe runs
+    @PostMapping("/broker-probe")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> runBrokerProbe() {
+        try {
+            return ResponseEntity.ok(brokerProbeService.probe());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
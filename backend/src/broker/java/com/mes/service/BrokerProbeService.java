@@ -0,0 +1,199 @@
+package com.mes.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-node harness for the realtime message path.
+ *
+ * Opens a STOMP client session to each node's /ws endpoint, subscribes them all to a probe
+ * topic, then publishes timestamped messages from this node. With a shared broker every node
+ * should receive every message; the result reports delivery, latency percentiles and
+ * throughput per node. Sender and receivers run in this JVM, so latencies use one clock.
+ *
+ * Only built with the broker-harness Maven profile. Nodes, message count and timeout come
+ * from mes.websocket.probe.*, and only one probe runs at a time.
+ */
+@Service
+public class BrokerProbeService {
+
+    public static final String PROBE_TOPIC_PREFIX = "/topic/broker-probe/";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${mes.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${mes.websocket.probe.nodes:}")
+    private List<String> nodeUrls;
+
+    @Value("${mes.websocket.probe.messages:500}")
+    private int messages;
+
+    @Value("${mes.websocket.probe.timeout-seconds:30}")
+    private int timeoutSeconds;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public Map<String, Object> probe() {
+        if (nodeUrls.isEmpty()) {
+            throw new IllegalStateException("No probe nodes configured (mes.websocket.probe.nodes)");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A broker probe is already running");
+        }
+        try {
+            return run();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> run() {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        String destination = PROBE_TOPIC_PREFIX + runId;
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+        List<NodeProbe> nodes = new ArrayList<>();
+
+        try {
+            for (String url : nodeUrls) {
+                NodeProbe node = new NodeProbe(url);
+                String wsUrl = url.replaceFirst("^http", "ws").replaceAll("/+$", "") + "/ws/websocket";
+                node.session = client.connectAsync(wsUrl, new StompSessionHandlerAdapter() {})
+                        .get(timeoutSeconds, TimeUnit.SECONDS);
+                node.session.subscribe(destination, node);
+                nodes.add(node);
+            }
+
+            // Subscriptions are asynchronous; publish warm-up messages until every node sees one
+            long deadline = System.currentTimeMillis() + timeoutSeconds * 1000L;
+            while (nodes.stream().anyMatch(n -> n.warmups.get() == 0)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException("Probe subscriptions not ready on: " + nodes.stream()
+                            .filter(n -> n.warmups.get() == 0).map(n -> n.url).toList());
+                }
+                messagingTemplate.convertAndSend(destination, payload(-1, true));
+                Thread.sleep(100);
+            }
+
+            long sendStart = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                messagingTemplate.convertAndSend(destination, payload(i, false));
+            }
+            long sendEnd = System.nanoTime();
+
+            while (System.currentTimeMillis() < deadline
+                    && nodes.stream().anyMatch(n -> n.latenciesNanos.size() < messages)) {
+                Thread.sleep(20);
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("runId", runId);
+            result.put("brokerMode", brokerMode);
+            result.put("messages", messages);
+            result.put("sendMillis", (sendEnd - sendStart) / 1_000_000.0);
+            result.put("sendRatePerSecond", messages / Math.max((sendEnd - sendStart) / 1e9, 1e-9));
+            List<Map<String, Object>> perNode = new ArrayList<>();
+            for (NodeProbe node : nodes) {
+                perNode.add(node.summarize(messages, sendStart));
+            }
+            result.put("nodes", perNode);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Broker probe interrupted");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Broker probe failed: " + e.getMessage(), e);
+        } finally {
+            for (NodeProbe node : nodes) {
+                if (node.session != null && node.session.isConnected()) {
+                    node.session.disconnect();
+                }
+            }
+            client.stop();
+        }
+    }
+
+    private Map<String, Object> payload(int index, boolean warmup) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("index", index);
+        payload.put("warmup", warmup);
+        payload.put("sentNanos", System.nanoTime());
+        return payload;
+    }
+
+    private static class NodeProbe implements StompFrameHandler {
+        private final String url;
+        private final AtomicInteger warmups = new AtomicInteger();
+        private final Queue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+        private volatile long lastReceivedNanos;
+        private StompSession session;
+
+        private NodeProbe(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long now = System.nanoTime();
+            Map<?, ?> message = (Map<?, ?>) payload;
+            if (Boolean.TRUE.equals(message.get("warmup"))) {
+                warmups.incrementAndGet();
+                return;
+            }
+            latenciesNanos.add(now - ((Number) message.get("sentNanos")).longValue());
+            lastReceivedNanos = now;
+        }
+
+        private Map<String, Object> summarize(int expected, long sendStart) {
+            List<Long> sorted = new ArrayList<>(latenciesNanos);
+            Collections.sort(sorted);
+            int received = sorted.size();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("url", url);
+            summary.put("received", received);
+            summary.put("lost", expected - received);
+            summary.put("latencyP50Ms", percentileMillis(sorted, 0.50));
+            summary.put("latencyP95Ms", percentileMillis(sorted, 0.95));
+            summary.put("latencyP99Ms", percentileMillis(sorted, 0.99));
+            summary.put("latencyMaxMs", received > 0 ? sorted.get(received - 1) / 1_000_000.0 : null);
+            summary.put("deliveredPerSecond", received > 0
+                    ? received / Math.max((lastReceivedNanos - sendStart) / 1e9, 1e-9) : 0.0);
+            return summary;
+        }
+
+        private static Double percentileMillis(List<Long> sorted, double percentile) {
+            if (sorted.isEmpty()) {
+                return null;
+            }
+            int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+        }
+    }
+}
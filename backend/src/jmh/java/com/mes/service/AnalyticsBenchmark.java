@@ -0,0 +1,115 @@
+package com.mes.service;
+
+import com.mes.dto.*;
+import com.mes.model.*;
+import com.mes.repository.*;
+import org.openjdk.jmh.annotations.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AnalyticsService report building. Grouping happens in SQL, so these measure the
+ * per-row mapping, rounding and sorting over the summaries the repositories return.
+ * size is the number of rows each repository returns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private AnalyticsService analyticsService;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDateTime start = BenchmarkFixtures.WINDOW_START;
+
+        List<ProductionOrderSummary> orders = new ArrayList<>(size);
+        ProductionOrderStatus[] statuses = ProductionOrderStatus.values();
+        for (int i = 0; i < size; i++) {
+            LocalDateTime orderStart = start.plusMinutes(i);
+            orders.add(new ProductionOrderSummary((long) i + 1, "PO-" + i, "Product " + (i % 50),
+                    100 + random.nextInt(900), random.nextInt(1000), orderStart,
+                    i % 5 == 0 ? null : orderStart.plusMinutes(30 + random.nextInt(600)),
+                    statuses[i % statuses.length]));
+        }
+
+        List<Equipment> equipment = new ArrayList<>(size);
+        Map<Long, StatusDurationSummary> durations = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            long id = i + 1;
+            equipment.add(BenchmarkFixtures.equipment(id));
+            durations.put(id, new StatusDurationSummary(id, random.nextDouble() * 1_500_000,
+                    random.nextDouble() * 500_000, random.nextDouble() * 200_000, random.nextDouble() * 100_000));
+        }
+
+        List<DowntimeReasonSummary> reasons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            reasons.add(new DowntimeReasonSummary("REASON_" + i, 1L + random.nextInt(100), random.nextDouble() * 5000));
+        }
+
+        List<QualityDailySummary> days = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long passed = random.nextInt(10_000);
+            days.add(new QualityDailySummary(start.toLocalDate().minusDays(i), 1L + random.nextInt(200), passed,
+                    (long) random.nextInt(500)));
+        }
+
+        List<EquipmentLog> logs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            EquipmentLog log = new EquipmentLog();
+            log.setTimestamp(start.plusSeconds(i * 10L));
+            log.setTemperature(60 + random.nextDouble() * 20);
+            log.setVibration(random.nextDouble() * 5);
+            log.setOutputCount(i % 3 == 0 ? null : random.nextInt(100));
+            logs.add(log);
+        }
+
+        analyticsService = new AnalyticsService();
+        BenchmarkFixtures.inject(analyticsService, "productionOrderRepository", BenchmarkFixtures.stub(
+                ProductionOrderRepository.class, Map.of("findOrderSummariesCreatedBetween", orders)));
+        BenchmarkFixtures.inject(analyticsService, "equipmentRepository", BenchmarkFixtures.stub(
+                EquipmentRepository.class, Map.of("findAll", equipment)));
+        BenchmarkFixtures.inject(analyticsService, "downtimeEventRepository", BenchmarkFixtures.stub(
+                DowntimeEventRepository.class, Map.of("summarizeByReasonCode", reasons)));
+        BenchmarkFixtures.inject(analyticsService, "qualityCheckRepository", BenchmarkFixtures.stub(
+                QualityCheckRepository.class, Map.of("summarizeByDay", days)));
+        BenchmarkFixtures.inject(analyticsService, "equipmentLogRepository", BenchmarkFixtures.stub(
+                EquipmentLogRepository.class, Map.of("findByEquipmentIdInRange", logs)));
+        BenchmarkFixtures.inject(analyticsService, "telemetryRollupService", new TelemetryRollupService() {
+            @Override
+            public Map<Long, StatusDurationSummary> getStatusDurations(LocalDateTime from, LocalDateTime to) {
+                return durations;
+            }
+        });
+    }
+
+    @Benchmark
+    public List<ProductionEfficiencyReport> productionEfficiency() {
+        return analyticsService.getProductionEfficiencyReport(BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+
+    @Benchmark
+    public List<EquipmentUtilizationReport> equipmentUtilization() {
+        return analyticsService.getEquipmentUtilizationReport(BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+
+    @Benchmark
+    public List<DowntimeAnalysisReport> downtimeAnalysis() {
+        return analyticsService.getDowntimeAnalysisReport(BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+
+    @Benchmark
+    public List<QualityTrendReport> qualityTrend() {
+        return analyticsService.getQualityTrendReport(BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+
+    @Benchmark
+    public List<HistoricalDataPoint> historicalData() {
+        return analyticsService.getHistoricalData(1L, BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+}
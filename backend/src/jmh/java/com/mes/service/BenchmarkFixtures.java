@@ -0,0 +1,119 @@
+package com.mes.service;
+
+import com.mes.model.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Synthetic in-memory datasets and repository stubs for the JMH suite. Services are built
+ * without Spring; repositories are JDK proxies that return the prepared data, so the
+ * benchmarks measure the Java post-processing only.
+ */
+final class BenchmarkFixtures {
+
+    static final LocalDateTime WINDOW_END = LocalDateTime.of(2024, 1, 31, 0, 0);
+    static final LocalDateTime WINDOW_START = WINDOW_END.minusDays(30);
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Repository proxy answering each method by name from the given map; anything else throws.
+     */
+    static <T> T stub(Class<T> type, Map<String, Object> results) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (results.containsKey(method.getName())) {
+                        return results.get(method.getName());
+                    }
+                    switch (method.getName()) {
+                        case "toString":
+                            return type.getSimpleName() + "Stub";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName()
+                                    + " is not stubbed");
+                    }
+                }));
+    }
+
+    static void inject(Object target, String field, Object value) {
+        ReflectionTestUtils.setField(target, field, value);
+    }
+
+    static Equipment equipment(long id) {
+        Equipment equipment = new Equipment();
+        equipment.setId(id);
+        equipment.setName("Equipment " + id);
+        equipment.setCode("EQ-" + id);
+        equipment.setIdealCycleTime(BigDecimal.valueOf(30));
+        return equipment;
+    }
+
+    static List<DowntimeEvent> downtimeEvents(int count, Random random) {
+        long windowMinutes = java.time.Duration.between(WINDOW_START, WINDOW_END).toMinutes();
+        List<DowntimeEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DowntimeEvent event = new DowntimeEvent();
+            LocalDateTime start = WINDOW_START.plusMinutes((long) (random.nextDouble() * (windowMinutes - 60)));
+            event.setStartTime(start);
+            // Every tenth event is still open
+            event.setEndTime(i % 10 == 0 ? null : start.plusMinutes(1 + random.nextInt(20)));
+            events.add(event);
+        }
+        return events;
+    }
+
+    static List<ProductionOrder> productionOrders(int count, Random random) {
+        List<ProductionOrder> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProductionOrder order = new ProductionOrder();
+            order.setId((long) i + 1);
+            order.setProducedQuantity(random.nextInt(500));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    static List<QualityCheck> qualityChecks(int count, Random random) {
+        List<QualityCheck> checks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            QualityCheck check = new QualityCheck();
+            boolean failed = random.nextInt(10) == 0;
+            check.setPassedCount(failed ? 0 : 1 + random.nextInt(20));
+            check.setRejectedCount(failed ? 1 + random.nextInt(5) : 0);
+            check.setCheckTime(WINDOW_START.plusMinutes(i));
+            checks.add(check);
+        }
+        return checks;
+    }
+
+    /**
+     * Hourly OEE calculations with a slow upward drift plus noise.
+     */
+    static List<OeeCalculation> oeeCalculations(int count, Random random) {
+        List<OeeCalculation> calculations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            OeeCalculation calculation = new OeeCalculation();
+            calculation.setCalculationPeriodStart(WINDOW_START.plusHours(i));
+            calculation.setCalculationPeriodEnd(WINDOW_START.plusHours(i + 1));
+            calculation.setAvailabilityPercentage(percentage(80 + random.nextDouble() * 20));
+            calculation.setPerformancePercentage(percentage(70 + random.nextDouble() * 30));
+            calculation.setQualityPercentage(percentage(90 + random.nextDouble() * 10));
+            calculation.setOeePercentage(percentage(55 + 10.0 * i / count + random.nextDouble() * 10));
+            calculations.add(calculation);
+        }
+        return calculations;
+    }
+
+    private static BigDecimal percentage(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,50 @@
+package com.mes.service;
+
+import com.mes.dto.EquipmentUtilizationReport;
+import org.openjdk.jmh.annotations.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExportService reflection-based export of report rows to CSV, Excel and PDF.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private ExportService exportService;
+    private List<EquipmentUtilizationReport> data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long running = random.nextInt(30_000);
+            long down = random.nextInt(5_000);
+            data.add(new EquipmentUtilizationReport((long) i + 1, "Equipment " + i, "EQ-" + i, 43_200L,
+                    running, 43_200L - running - down, down, 0L,
+                    Math.round(running * 10000.0 / 43_200) / 100.0, Math.round((43_200 - down) * 10000.0 / 43_200) / 100.0));
+        }
+        exportService = new ExportService();
+    }
+
+    @Benchmark
+    public byte[] csv() throws Exception {
+        return exportService.exportToCSV(data);
+    }
+
+    @Benchmark
+    public byte[] excel() throws Exception {
+        return exportService.exportToExcel(data, "Utilization");
+    }
+
+    @Benchmark
+    public byte[] pdf() throws Exception {
+        return exportService.exportToPDF(data, "Equipment Utilization");
+    }
+}
@@ -0,0 +1,73 @@
+package com.mes.service;
+
+import com.mes.model.OeeCalculation;
+import com.mes.repository.*;
+import org.openjdk.jmh.annotations.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OeeService availability/performance/quality math over a 30-day window, and the trend
+ * helpers over a list of hourly calculations. size is the number of downtime events,
+ * orders and quality checks in the window, and the number of calculations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OeeBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private OeeService oeeService;
+    private List<OeeCalculation> calculations;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        calculations = BenchmarkFixtures.oeeCalculations(size, random);
+
+        oeeService = new OeeService();
+        BenchmarkFixtures.inject(oeeService, "equipmentRepository", BenchmarkFixtures.stub(EquipmentRepository.class,
+                Map.of("findById", Optional.of(BenchmarkFixtures.equipment(1)))));
+        BenchmarkFixtures.inject(oeeService, "downtimeEventRepository", BenchmarkFixtures.stub(DowntimeEventRepository.class,
+                Map.of("findByEquipmentIdAndStartTimeBetween", BenchmarkFixtures.downtimeEvents(size, random))));
+        BenchmarkFixtures.inject(oeeService, "productionOrderRepository", BenchmarkFixtures.stub(ProductionOrderRepository.class,
+                Map.of("findByEquipmentIdAndStatusInPeriod", BenchmarkFixtures.productionOrders(size, random))));
+        BenchmarkFixtures.inject(oeeService, "qualityCheckRepository", BenchmarkFixtures.stub(QualityCheckRepository.class,
+                Map.of("findByEquipmentIdAndCheckTimeBetween", BenchmarkFixtures.qualityChecks(size, random))));
+        BenchmarkFixtures.inject(oeeService, "oeeTargetRepository", BenchmarkFixtures.stub(OeeTargetRepository.class,
+                Map.of("findActiveTargetForEquipment", Optional.empty())));
+        BenchmarkFixtures.inject(oeeService, "oeeCalculationRepository", BenchmarkFixtures.stub(OeeCalculationRepository.class,
+                Map.of("findByEquipmentAndPeriod", calculations)));
+        // Force the history path; the streaming engine has its own in-memory state
+        BenchmarkFixtures.inject(oeeService, "streamingOeeService", new StreamingOeeService() {
+            @Override
+            public boolean covers(LocalDateTime start, LocalDateTime end) {
+                return false;
+            }
+        });
+    }
+
+    @Benchmark
+    public OeeCalculation recomputeFromHistory() {
+        return oeeService.buildCalculation(1L, BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+
+    @Benchmark
+    public Map<String, Object> breakdownAverages() {
+        return oeeService.getOeeBreakdown(1L, BenchmarkFixtures.WINDOW_START, BenchmarkFixtures.WINDOW_END);
+    }
+
+    @Benchmark
+    public String determineTrendDirection() {
+        return oeeService.determineTrendDirection(calculations);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTrendPercentage() {
+        return oeeService.calculateTrendPercentage(calculations);
+    }
+}
@@ -0,0 +1,42 @@
+package com.mes.service;
+
+import com.mes.repository.DefectRecordRepository;
+import org.openjdk.jmh.annotations.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QualityManagementService.getDefectPareto post-processing (percentages and cumulative
+ * share) over categories rows as returned by the grouped repository query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class QualityParetoBenchmark {
+
+    @Param({"10", "1000"})
+    public int categories;
+
+    private QualityManagementService qualityService;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(categories);
+        for (int i = 0; i < categories; i++) {
+            long count = 1 + random.nextInt(200);
+            rows.add(new Object[]{"Category " + i, count, count * (1 + random.nextInt(10))});
+        }
+        // The query orders by quantity descending
+        rows.sort((a, b) -> Long.compare((Long) b[2], (Long) a[2]));
+
+        qualityService = new QualityManagementService();
+        BenchmarkFixtures.inject(qualityService, "defectRecordRepository", BenchmarkFixtures.stub(
+                DefectRecordRepository.class, Map.of("getDefectPareto", rows)));
+    }
+
+    @Benchmark
+    public Map<String, Object> defectPareto() {
+        return qualityService.getDefectPareto(30);
+    }
+}
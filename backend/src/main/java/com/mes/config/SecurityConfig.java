@@ -1,7 +1,9 @@
 package com.mes.config;
 
+import com.mes.security.ApiKeyAuthFilter;
 import com.mes.security.AuthEntryPointJwt;
 import com.mes.security.AuthTokenFilter;
+import com.mes.security.RateLimitFilter;
 import com.mes.security.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -34,6 +36,16 @@ public class SecurityConfig {
         return new AuthTokenFilter();
     }
 
+    @Bean
+    public ApiKeyAuthFilter apiKeyAuthFilter() {
+        return new ApiKeyAuthFilter();
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter();
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -68,6 +80,8 @@ public class SecurityConfig {
 
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(apiKeyAuthFilter(), AuthTokenFilter.class);
+        http.addFilterBefore(rateLimitFilter(), AuthTokenFilter.class);
 
         return http.build();
     }
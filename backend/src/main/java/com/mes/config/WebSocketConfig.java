@@ -1,18 +1,78 @@
 package com.mes.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP endpoint and broker setup.
+ *
+ * mes.websocket.broker.mode selects the broker:
+ * - simple: in-memory broker, subscriptions are local to this JVM (single node)
+ * - relay: external STOMP broker (RabbitMQ, ActiveMQ, Artemis) shared by all nodes
+ * - embedded: relay to an Artemis broker started inside this JVM (see EmbeddedStompBrokerConfig),
+ *   for tests and local multi-node runs; only available in builds with the broker-harness profile
+ *
+ * In relay and embedded modes user destinations and the user registry are broadcast through
+ * the broker, so convertAndSendToUser reaches a user connected to any node.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    public static final String USER_DESTINATION_BROADCAST = "/topic/unresolved-user-destination";
+    public static final String USER_REGISTRY_BROADCAST = "/topic/simp-user-registry";
+
+    @Value("${mes.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${mes.websocket.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${mes.websocket.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Value("${mes.websocket.broker.client-login:guest}")
+    private String clientLogin;
+
+    @Value("${mes.websocket.broker.client-passcode:guest}")
+    private String clientPasscode;
+
+    @Value("${mes.websocket.broker.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${mes.websocket.broker.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${mes.websocket.broker.virtual-host:}")
+    private String virtualHost;
+
+    @Value("${mes.websocket.broker.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        if (isRelayMode(brokerMode)) {
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(clientLogin)
+                    .setClientPasscode(clientPasscode)
+                    .setSystemLogin(systemLogin)
+                    .setSystemPasscode(systemPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs)
+                    .setUserDestinationBroadcast(USER_DESTINATION_BROADCAST)
+                    .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST);
+            if (!virtualHost.isBlank()) {
+                relay.setVirtualHost(virtualHost);
+            }
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
     }
 
@@ -22,4 +82,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
+
+    public static boolean isRelayMode(String brokerMode) {
+        return "relay".equalsIgnoreCase(brokerMode) || "embedded".equalsIgnoreCase(brokerMode);
+    }
 }
@@ -1,11 +1,19 @@
 package com.mes.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.KeysetPage;
 import com.mes.model.AlertHistory;
 import com.mes.model.AlertRule;
 import com.mes.service.AlertService;
+import com.mes.service.TelemetryAlertEvaluator;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,11 +26,47 @@ public class AlertController {
     @Autowired
     private AlertService alertService;
 
+    @Autowired
+    private TelemetryAlertEvaluator telemetryAlertEvaluator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping
     public List<AlertHistory> getAllAlerts() {
         return alertService.getAllAlerts();
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<AlertHistory>> getAlertPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) String severity,
+            @RequestParam(required = false) String alertType,
+            @RequestParam(required = false) Boolean acknowledged,
+            @RequestParam(required = false) Boolean resolved,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(alertService.getAlertPage(from, to, equipmentId, severity, alertType,
+                acknowledged, resolved, cursor, limit));
+    }
+
+    @GetMapping("/export")
+    public void exportAlerts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) String severity,
+            @RequestParam(required = false) String alertType,
+            @RequestParam(required = false) Boolean acknowledged,
+            @RequestParam(required = false) Boolean resolved,
+            HttpServletResponse response) throws IOException {
+        NdjsonExport.write(response, objectMapper, "alerts.ndjson",
+                cursor -> alertService.getAlertPage(from, to, equipmentId, severity, alertType,
+                        acknowledged, resolved, cursor, KeysetPage.MAX_LIMIT));
+    }
+
     @GetMapping("/unacknowledged")
     public List<AlertHistory> getUnacknowledgedAlerts() {
         return alertService.getUnacknowledgedAlerts();
@@ -70,6 +114,28 @@ public class AlertController {
         return alertService.getActiveAlertRules();
     }
 
+    @GetMapping("/rules/engine/stats")
+    public Map<String, Object> getRuleEngineStats() {
+        return alertService.getRuleEngineStats();
+    }
+
+    @GetMapping("/open-index/stats")
+    public Map<String, Object> getOpenAlertStats() {
+        return alertService.getOpenAlertStats();
+    }
+
+    @GetMapping("/rules/evaluation/stats")
+    public Map<String, Object> getRuleEvaluationStats() {
+        return telemetryAlertEvaluator.getStats();
+    }
+
+    @PostMapping("/rules/reload")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> reloadAlertRules() {
+        alertService.reloadAlertRules();
+        return alertService.getRuleEngineStats();
+    }
+
     @PostMapping("/rules")
     public AlertRule createAlertRule(@RequestBody AlertRule rule) {
         return alertService.createAlertRule(rule);
@@ -1,8 +1,10 @@
 package com.mes.controller;
 
 import com.mes.dto.*;
+import com.mes.model.TelemetryRollup;
 import com.mes.service.AnalyticsService;
 import com.mes.service.ExportService;
+import com.mes.service.TelemetryRollupService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -11,9 +13,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/analytics")
@@ -26,16 +31,72 @@ public class AnalyticsController {
     @Autowired
     private ExportService exportService;
 
+    @Autowired
+    private TelemetryRollupService telemetryRollupService;
+
     @GetMapping("/historical-data/{equipmentId}")
     public ResponseEntity<List<HistoricalDataPoint>> getHistoricalData(
             @PathVariable Long equipmentId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String resolution) {
         
-        List<HistoricalDataPoint> data = analyticsService.getHistoricalData(equipmentId, startDate, endDate);
+        if (resolution == null) {
+            try {
+                return ResponseEntity.ok(analyticsService.getHistoricalData(equipmentId, startDate, endDate));
+            } catch (IllegalStateException e) {
+                // Part of the range is archived on another node; a partial history would look complete
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        }
+        Duration step = parseResolution(resolution);
+        if (step == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<HistoricalDataPoint> data = analyticsService.getHistoricalData(equipmentId, startDate, endDate, step);
         return ResponseEntity.ok(data);
     }
 
+    @GetMapping("/rollups/{equipmentId}")
+    public ResponseEntity<List<TelemetryRollup>> getRollups(
+            @PathVariable Long equipmentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "PT1H") String resolution) {
+        
+        Duration step = parseResolution(resolution);
+        if (step == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(telemetryRollupService.getRollups(equipmentId, startDate, endDate, step));
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        
+        if (!startDate.isBefore(endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        telemetryRollupService.rollupRange(startDate, endDate);
+        return ResponseEntity.ok(telemetryRollupService.getStatus());
+    }
+
+    @GetMapping("/rollups/status")
+    public ResponseEntity<Map<String, Object>> getRollupStatus() {
+        return ResponseEntity.ok(telemetryRollupService.getStatus());
+    }
+
+    private Duration parseResolution(String resolution) {
+        try {
+            Duration step = Duration.parse(resolution);
+            return step.isNegative() || step.isZero() ? null : step;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
     @GetMapping("/production-efficiency")
     public ResponseEntity<List<ProductionEfficiencyReport>> getProductionEfficiencyReport(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
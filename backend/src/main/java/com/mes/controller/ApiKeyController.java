@@ -34,6 +34,11 @@ public class ApiKeyController {
         return ResponseEntity.ok(apiKeyService.getActiveApiKeys());
     }
 
+    @GetMapping("/index/stats")
+    public ResponseEntity<Map<String, Object>> getIndexStats() {
+        return ResponseEntity.ok(apiKeyService.getIndexStats());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ApiKey> getApiKeyById(@PathVariable Long id) {
         return ResponseEntity.ok(apiKeyService.getApiKeyById(id));
@@ -1,13 +1,18 @@
 package com.mes.controller;
 
+import com.mes.dto.KeysetPage;
 import com.mes.model.AuditTrail;
+import com.mes.model.UserActivityLog;
 import com.mes.service.AuditService;
+import com.mes.service.PartitionMaintenanceService;
+import com.mes.service.UserActivityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/audit")
@@ -17,6 +22,12 @@ public class AuditController {
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private PartitionMaintenanceService partitionMaintenanceService;
+
     @GetMapping("/entity/{entityType}/{entityId}")
     public ResponseEntity<List<AuditTrail>> getEntityHistory(
             @PathVariable String entityType,
@@ -51,4 +62,37 @@ public class AuditController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
         return ResponseEntity.ok(auditService.getRecentAuditCount(since));
     }
+
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<AuditTrail>> getAuditPage(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(auditService.getAuditPage(start, end, entityType, action, username, cursor, limit));
+    }
+
+    @GetMapping("/activities/page")
+    public ResponseEntity<KeysetPage<UserActivityLog>> getActivityPage(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String activityType,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userActivityService.getActivityPage(start, end, activityType, username, cursor, limit));
+    }
+
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> getPartitions() {
+        return ResponseEntity.ok(partitionMaintenanceService.getPartitions());
+    }
+
+    @GetMapping("/writer/stats")
+    public ResponseEntity<Map<String, Object>> getWriterStats() {
+        return ResponseEntity.ok(auditService.getWriterStats());
+    }
 }
@@ -6,10 +6,15 @@ import com.mes.security.UserDetailsImpl;
 import com.mes.service.ComplianceService;
 import com.mes.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -73,6 +78,15 @@ public class ComplianceController {
         return ResponseEntity.ok(complianceService.getReportById(id));
     }
 
+    @GetMapping("/reports/{id}/file")
+    public ResponseEntity<Resource> downloadReportFile(@PathVariable Long id) {
+        Path file = complianceService.getReportFile(id);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .body(new FileSystemResource(file));
+    }
+
     private User getCurrentUser(Authentication authentication) {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
         return userService.findByUsername(userDetails.getUsername());
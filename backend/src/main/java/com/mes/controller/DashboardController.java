@@ -1,8 +1,14 @@
 package com.mes.controller;
 
-import com.mes.service.DashboardService;
+import com.mes.service.DashboardSnapshotService;
+import com.mes.service.EquipmentStateCache;
+import com.mes.service.EquipmentStatusBroadcaster;
+import com.mes.service.WebSocketService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -11,15 +17,52 @@ import java.util.Map;
 public class DashboardController {
 
     @Autowired
-    private DashboardService dashboardService;
+    private DashboardSnapshotService dashboardSnapshotService;
 
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
+    @Autowired
+    private EquipmentStatusBroadcaster equipmentStatusBroadcaster;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    // Both are answered with 304 Not Modified when If-None-Match carries the current ETag
     @GetMapping("/stats")
-    public Map<String, Object> getDashboardStats() {
-        return dashboardService.getDashboardStats();
+    public ResponseEntity<Map<String, Object>> getDashboardStats() {
+        DashboardSnapshotService.Snapshot snapshot = dashboardSnapshotService.getSnapshot();
+        return revalidated(snapshot.getStatsEtag(), snapshot.getStats());
     }
 
     @GetMapping("/equipment-status-distribution")
-    public Map<String, Long> getEquipmentStatusDistribution() {
-        return dashboardService.getEquipmentStatusDistribution();
+    public ResponseEntity<Map<String, Long>> getEquipmentStatusDistribution() {
+        DashboardSnapshotService.Snapshot snapshot = dashboardSnapshotService.getSnapshot();
+        return revalidated(snapshot.getDistributionEtag(), snapshot.getStatusDistribution());
+    }
+
+    @GetMapping("/snapshot/stats")
+    public Map<String, Object> getSnapshotStats() {
+        return dashboardSnapshotService.getStats();
+    }
+
+    @GetMapping("/state-cache/stats")
+    public Map<String, Object> getStateCacheStats() {
+        return equipmentStateCache.getStats();
+    }
+
+    @GetMapping("/realtime/stats")
+    public Map<String, Object> getRealtimeStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(equipmentStatusBroadcaster.getStats());
+        stats.put("brokerAvailable", webSocketService.isBrokerAvailable());
+        stats.put("droppedWhileUnavailable", webSocketService.getDroppedWhileUnavailable());
+        return stats;
+    }
+
+    private static <T> ResponseEntity<T> revalidated(String etag, T body) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(etag)
+                .body(body);
     }
 }
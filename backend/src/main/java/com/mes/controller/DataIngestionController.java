@@ -1,11 +1,19 @@
 package com.mes.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.KeysetPage;
 import com.mes.model.DataIngestionQueue;
-import com.mes.service.ApiKeyService;
 import com.mes.service.DataIngestionService;
+import com.mes.service.RateLimiter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -18,23 +26,32 @@ public class DataIngestionController {
     private DataIngestionService dataIngestionService;
 
     @Autowired
-    private ApiKeyService apiKeyService;
+    private RateLimiter rateLimiter;
 
-    // Public endpoint for external systems to push data
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Public endpoint for external systems to push data; the key is checked by ApiKeyAuthFilter
     @PostMapping("/ingest")
     public ResponseEntity<Map<String, Object>> ingestData(
             @RequestHeader("X-API-Key") String apiKey,
             @RequestBody Map<String, Object> request) {
         
         try {
-            // Validate API key
-            apiKeyService.validateApiKey(apiKey);
-            apiKeyService.recordApiKeyUsage(apiKey);
-            
             String sourceSystem = (String) request.get("sourceSystem");
             String dataType = (String) request.get("dataType");
             Map<String, Object> payload = (Map<String, Object>) request.get("payload");
             Integer priority = (Integer) request.getOrDefault("priority", 5);
+
+            long retryAfter = rateLimiter.tryAcquireSource(sourceSystem);
+            if (retryAfter > 0) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                        .body(Map.of(
+                            "success", false,
+                            "error", "Rate limit exceeded for source system " + sourceSystem
+                        ));
+            }
             
             DataIngestionQueue item = dataIngestionService.queueData(sourceSystem, dataType, payload, priority);
             
@@ -59,6 +76,31 @@ public class DataIngestionController {
         return ResponseEntity.ok(dataIngestionService.getPendingItems());
     }
 
+    @GetMapping("/queue/page")
+    public ResponseEntity<KeysetPage<DataIngestionQueue>> getQueueItemPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String sourceSystem,
+            @RequestParam(required = false) String dataType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(dataIngestionService.getQueuePage(from, to, status, sourceSystem, dataType, cursor, limit));
+    }
+
+    @GetMapping("/queue/export")
+    public void exportQueueItems(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String sourceSystem,
+            @RequestParam(required = false) String dataType,
+            HttpServletResponse response) throws IOException {
+        NdjsonExport.write(response, objectMapper, "ingestion-queue.ndjson",
+                cursor -> dataIngestionService.getQueuePage(from, to, status, sourceSystem, dataType,
+                        cursor, KeysetPage.MAX_LIMIT));
+    }
+
     @GetMapping("/queue/status/{status}")
     public ResponseEntity<List<DataIngestionQueue>> getItemsByStatus(@PathVariable String status) {
         return ResponseEntity.ok(dataIngestionService.getItemsByStatus(status));
@@ -73,4 +115,14 @@ public class DataIngestionController {
     public ResponseEntity<DataIngestionQueue> processItem(@PathVariable Long id) {
         return ResponseEntity.ok(dataIngestionService.processItem(id));
     }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(dataIngestionService.getStats());
+    }
+
+    @GetMapping("/rate-limits/stats")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
 }
@@ -3,13 +3,17 @@ package com.mes.controller;
 import com.mes.model.DataRetentionPolicy;
 import com.mes.model.User;
 import com.mes.security.UserDetailsImpl;
+import com.mes.service.ColdArchiveService;
 import com.mes.service.DataRetentionService;
 import com.mes.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/data-retention")
@@ -22,6 +26,9 @@ public class DataRetentionController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ColdArchiveService coldArchiveService;
+
     @GetMapping("/policies")
     public ResponseEntity<List<DataRetentionPolicy>> getAllPolicies() {
         return ResponseEntity.ok(dataRetentionService.getAllPolicies());
@@ -62,6 +69,27 @@ public class DataRetentionController {
         return ResponseEntity.ok(dataRetentionService.updatePolicy(id, policy));
     }
 
+    @PostMapping("/policies/{id}/execute")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> executePolicy(@PathVariable Long id) {
+        Map<String, Object> run = dataRetentionService.startPolicy(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/data-retention/runs/" + run.get("runId")))
+                .body(run);
+    }
+
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<Map<String, Object>> getRun(@PathVariable String runId) {
+        return dataRetentionService.getRun(runId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/archive/stats")
+    public ResponseEntity<Map<String, Object>> getArchiveStats() {
+        return ResponseEntity.ok(coldArchiveService.getStats());
+    }
+
     @DeleteMapping("/policies/{id}")
     public ResponseEntity<Void> deletePolicy(@PathVariable Long id) {
         dataRetentionService.deletePolicy(id);
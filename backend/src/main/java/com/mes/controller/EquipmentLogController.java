@@ -1,20 +1,38 @@
 package com.mes.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.IngestResult;
+import com.mes.dto.TelemetrySample;
 import com.mes.model.EquipmentLog;
 import com.mes.service.EquipmentLogService;
+import com.mes.service.TelemetryIngestService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/equipment-logs")
 @CrossOrigin(origins = "*")
 public class EquipmentLogController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     @Autowired
     private EquipmentLogService equipmentLogService;
 
+    @Autowired
+    private TelemetryIngestService telemetryIngestService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("/equipment/{equipmentId}")
     public List<EquipmentLog> getLogsByEquipment(@PathVariable Long equipmentId) {
         return equipmentLogService.getLogsByEquipmentId(equipmentId);
@@ -27,8 +45,63 @@ public class EquipmentLogController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Recent readings served from the last-value cache, newest first
+    @GetMapping("/equipment/{equipmentId}/recent")
+    public List<EquipmentLog> getRecentLogs(@PathVariable Long equipmentId,
+                                            @RequestParam(defaultValue = "20") int limit) {
+        return equipmentLogService.getRecentLogs(equipmentId, limit);
+    }
+
+    @GetMapping("/latest")
+    public List<EquipmentLog> getLatestLogs() {
+        return equipmentLogService.getLatestLogs();
+    }
+
+    @GetMapping("/latest/stats")
+    public Map<String, Object> getLastValueStats() {
+        return equipmentLogService.getLastValueStats();
+    }
+
     @PostMapping
     public EquipmentLog createLog(@RequestBody EquipmentLog log) {
         return equipmentLogService.createLog(log);
     }
+
+    // Bulk telemetry ingest - JSON array body
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IngestResult> ingestBulk(@RequestBody List<TelemetrySample> samples) {
+        return ingest(samples);
+    }
+
+    // Bulk telemetry ingest - newline-delimited JSON body, one sample per line
+    @PostMapping(value = "/bulk", consumes = APPLICATION_NDJSON)
+    public ResponseEntity<IngestResult> ingestBulkNdjson(@RequestBody String body) {
+        try (MappingIterator<TelemetrySample> iterator = objectMapper
+                .readerFor(TelemetrySample.class)
+                .readValues(body)) {
+            return ingest(iterator.readAll());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/ingest/stats")
+    public Map<String, Object> getIngestStats() {
+        return telemetryIngestService.getStats();
+    }
+
+    private ResponseEntity<IngestResult> ingest(List<TelemetrySample> samples) {
+        if (samples.size() > telemetryIngestService.getMaxBatchSize()) {
+            // Could never be buffered as a whole; the sender has to split it
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        IngestResult result = telemetryIngestService.ingest(samples);
+        if (result.getDropped() > 0) {
+            // Buffer is full and nothing was buffered - ask the sender to back off and resend the batch
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(result);
+        }
+        return ResponseEntity.accepted().body(result);
+    }
 }
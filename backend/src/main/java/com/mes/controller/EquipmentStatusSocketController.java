@@ -0,0 +1,34 @@
+package com.mes.controller;
+
+import com.mes.dto.EquipmentStatusBatch;
+import com.mes.service.EquipmentStatusBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Snapshot requests for the batched equipment status topics.
+ *
+ * Clients subscribe to /topic/equipment-status/batch (or
+ * /topic/equipment-status/location/{location}) first, then subscribe once to the matching
+ * /app/equipment-status/snapshot destination below to receive a KEYFRAME directly. From
+ * then on, a DELTA frame is applied only if its baseSequence equals the sequence of the
+ * last frame applied; otherwise the client requests a new snapshot.
+ */
+@Controller
+public class EquipmentStatusSocketController {
+
+    @Autowired
+    private EquipmentStatusBroadcaster equipmentStatusBroadcaster;
+
+    @SubscribeMapping("/equipment-status/snapshot")
+    public EquipmentStatusBatch plantSnapshot() {
+        return equipmentStatusBroadcaster.snapshot(null);
+    }
+
+    @SubscribeMapping("/equipment-status/snapshot/location/{location}")
+    public EquipmentStatusBatch locationSnapshot(@DestinationVariable String location) {
+        return equipmentStatusBroadcaster.snapshot(location);
+    }
+}
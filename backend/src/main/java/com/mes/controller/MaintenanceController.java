@@ -1,12 +1,17 @@
 package com.mes.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mes.dto.*;
 import com.mes.model.*;
 import com.mes.service.MaintenanceService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +24,9 @@ public class MaintenanceController {
     @Autowired
     private MaintenanceService maintenanceService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     // Maintenance Schedules
     @GetMapping("/schedules")
     public ResponseEntity<List<MaintenanceScheduleDto>> getAllSchedules() {
@@ -64,6 +72,32 @@ public class MaintenanceController {
         return ResponseEntity.ok(maintenanceService.getAllTasks());
     }
 
+    @GetMapping("/tasks/page")
+    public ResponseEntity<KeysetPage<MaintenanceTaskDto>> getTaskPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String priority,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) Long assignedToId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(maintenanceService.getTaskPage(from, to, status, priority, equipmentId, assignedToId, cursor, limit));
+    }
+
+    @GetMapping("/tasks/export")
+    public void exportTasks(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String priority,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) Long assignedToId,
+            HttpServletResponse response) throws IOException {
+        NdjsonExport.write(response, objectMapper, "maintenance-tasks.ndjson",
+                cursor -> maintenanceService.getTaskPage(from, to, status, priority, equipmentId, assignedToId, cursor, KeysetPage.MAX_LIMIT));
+    }
+
     @GetMapping("/tasks/{id}")
     public ResponseEntity<MaintenanceTaskDto> getTaskById(@PathVariable Long id) {
         return ResponseEntity.ok(maintenanceService.getTaskById(id));
@@ -0,0 +1,48 @@
+package com.mes.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mes.dto.KeysetPage;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Function;
+
+/**
+ * Streams every row of a keyset-paged listing as newline-delimited JSON, one object per
+ * line. Pages are fetched one after another through their cursors, so an export holds only
+ * one page in memory and no transaction stays open between pages.
+ */
+public final class NdjsonExport {
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private NdjsonExport() {
+    }
+
+    /**
+     * @param pages fetches the page after the given cursor (null for the first page)
+     */
+    public static void write(HttpServletResponse response, ObjectMapper objectMapper, String filename,
+                             Function<String, ? extends KeysetPage<?>> pages) throws IOException {
+        response.setContentType(APPLICATION_NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        OutputStream out = response.getOutputStream();
+        String cursor = null;
+        do {
+            KeysetPage<?> page = pages.apply(cursor);
+            for (Object item : page.getItems()) {
+                out.write(writer.writeValueAsBytes(item));
+                out.write('\n');
+            }
+            // Hand each page to the client as it is produced
+            out.flush();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+}
@@ -1,5 +1,6 @@
 package com.mes.controller;
 
+import com.mes.model.NotificationDeliveryLog;
 import com.mes.model.NotificationPreference;
 import com.mes.model.UserNotification;
 import com.mes.service.NotificationService;
@@ -101,27 +102,47 @@ public class NotificationController {
 
     // Broadcast Notifications
     @PostMapping("/broadcast")
-    public ResponseEntity<Void> broadcastToAllUsers(@RequestBody Map<String, String> request) {
-        notificationService.broadcastToAllUsers(
+    public ResponseEntity<Map<String, Object>> broadcastToAllUsers(@RequestBody Map<String, String> request) {
+        int created = notificationService.broadcastToAllUsers(
             request.get("title"),
             request.get("message"),
             request.get("type"),
             request.get("severity")
         );
-        return ResponseEntity.ok().build();
+        Map<String, Object> response = new HashMap<>();
+        response.put("created", created);
+        return ResponseEntity.ok(response);
     }
 
     @PostMapping("/broadcast/role/{role}")
-    public ResponseEntity<Void> notifyUsersByRole(
+    public ResponseEntity<Map<String, Object>> notifyUsersByRole(
             @PathVariable String role,
             @RequestBody Map<String, String> request) {
-        notificationService.notifyUsersByRole(
+        int created = notificationService.notifyUsersByRole(
             role,
             request.get("title"),
             request.get("message"),
             request.get("type"),
             request.get("severity")
         );
-        return ResponseEntity.ok().build();
+        Map<String, Object> response = new HashMap<>();
+        response.put("created", created);
+        return ResponseEntity.ok(response);
+    }
+
+    // Delivery Pipeline
+    @GetMapping("/dispatch/stats")
+    public ResponseEntity<Map<String, Object>> getDispatchStats() {
+        return ResponseEntity.ok(notificationService.getDispatchStats());
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(notificationService.getCacheStats());
+    }
+
+    @GetMapping("/deliveries")
+    public ResponseEntity<List<NotificationDeliveryLog>> getRecentDeliveries() {
+        return ResponseEntity.ok(notificationService.getRecentDeliveries());
     }
 }
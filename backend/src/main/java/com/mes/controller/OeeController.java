@@ -3,13 +3,18 @@ package com.mes.controller;
 import com.mes.model.OeeCalculation;
 import com.mes.model.OeeTarget;
 import com.mes.model.OeeTrend;
+import com.mes.model.Shift;
 import com.mes.repository.OeeTargetRepository;
+import com.mes.repository.ShiftRepository;
 import com.mes.service.OeeService;
+import com.mes.service.StreamingOeeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +29,12 @@ public class OeeController {
     @Autowired
     private OeeTargetRepository oeeTargetRepository;
 
+    @Autowired
+    private StreamingOeeService streamingOeeService;
+
+    @Autowired
+    private ShiftRepository shiftRepository;
+
     // Real-time OEE calculation
     @PostMapping("/calculate/{equipmentId}")
     public ResponseEntity<OeeCalculation> calculateOee(
@@ -44,6 +55,36 @@ public class OeeController {
         return ResponseEntity.ok(breakdown);
     }
 
+    // Live OEE over a sliding window ending now (ISO-8601 duration, e.g. PT1H, PT8H, P1D)
+    @GetMapping("/live/{equipmentId}")
+    public ResponseEntity<OeeCalculation> getLiveOee(
+            @PathVariable Long equipmentId,
+            @RequestParam(defaultValue = "PT1H") String window) {
+        Duration duration;
+        try {
+            duration = Duration.parse(window);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(oeeService.getSlidingOee(equipmentId, duration));
+    }
+
+    // Live OEE for the current occurrence of a shift
+    @GetMapping("/live/{equipmentId}/shift/{shiftId}")
+    public ResponseEntity<OeeCalculation> getLiveShiftOee(@PathVariable Long equipmentId, @PathVariable Long shiftId) {
+        Shift shift = shiftRepository.findById(shiftId)
+                .orElseThrow(() -> new RuntimeException("Shift not found"));
+        return ResponseEntity.ok(oeeService.getCurrentShiftOee(equipmentId, shift));
+    }
+
+    @GetMapping("/live/stats")
+    public ResponseEntity<Map<String, Object>> getLiveStats() {
+        return ResponseEntity.ok(streamingOeeService.getStats());
+    }
+
     // Get OEE trends
     @GetMapping("/trends/{equipmentId}")
     public ResponseEntity<List<OeeTrend>> getOeeTrends(
@@ -1,10 +1,17 @@
 package com.mes.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.KeysetPage;
 import com.mes.model.ProductionOrder;
+import com.mes.model.ProductionOrderStatus;
 import com.mes.service.ProductionOrderService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -15,11 +22,36 @@ public class ProductionOrderController {
     @Autowired
     private ProductionOrderService productionOrderService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping
     public List<ProductionOrder> getAllOrders() {
         return productionOrderService.getAllOrders();
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<ProductionOrder>> getOrderPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) ProductionOrderStatus status,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(productionOrderService.getOrderPage(from, to, status, equipmentId, cursor, limit));
+    }
+
+    @GetMapping("/export")
+    public void exportOrders(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) ProductionOrderStatus status,
+            @RequestParam(required = false) Long equipmentId,
+            HttpServletResponse response) throws IOException {
+        NdjsonExport.write(response, objectMapper, "orders.ndjson",
+                cursor -> productionOrderService.getOrderPage(from, to, status, equipmentId, cursor, KeysetPage.MAX_LIMIT));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductionOrder> getOrderById(@PathVariable Long id) {
         return productionOrderService.getOrderById(id)
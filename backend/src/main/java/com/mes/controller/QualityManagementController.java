@@ -1,10 +1,16 @@
 package com.mes.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.KeysetPage;
 import com.mes.model.*;
 import com.mes.service.QualityManagementService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -16,6 +22,9 @@ public class QualityManagementController {
     @Autowired
     private QualityManagementService qualityService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     // Quality Control Plans
     @GetMapping("/plans")
     public ResponseEntity<List<QualityControlPlan>> getAllPlans() {
@@ -118,6 +127,32 @@ public class QualityManagementController {
         return ResponseEntity.ok(qualityService.getAllDefects());
     }
 
+    @GetMapping("/defects/page")
+    public ResponseEntity<KeysetPage<DefectRecord>> getDefectPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) Long orderId,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(qualityService.getDefectPage(from, to, status, equipmentId, orderId, categoryId, cursor, limit));
+    }
+
+    @GetMapping("/defects/export")
+    public void exportDefects(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long equipmentId,
+            @RequestParam(required = false) Long orderId,
+            @RequestParam(required = false) Long categoryId,
+            HttpServletResponse response) throws IOException {
+        NdjsonExport.write(response, objectMapper, "defects.ndjson",
+                cursor -> qualityService.getDefectPage(from, to, status, equipmentId, orderId, categoryId, cursor, KeysetPage.MAX_LIMIT));
+    }
+
     @GetMapping("/defects/{id}")
     public ResponseEntity<DefectRecord> getDefectById(@PathVariable Long id) {
         return ResponseEntity.ok(qualityService.getDefectById(id));
@@ -2,6 +2,7 @@ package com.mes.controller;
 
 import com.mes.model.User;
 import com.mes.model.WebhookConfig;
+import com.mes.model.WebhookDeliveryLog;
 import com.mes.security.UserDetailsImpl;
 import com.mes.service.UserService;
 import com.mes.service.WebhookService;
@@ -9,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -64,13 +66,27 @@ public class WebhookController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/{id}/deliveries")
+    public ResponseEntity<List<WebhookDeliveryLog>> getRecentDeliveries(@PathVariable Long id) {
+        return ResponseEntity.ok(webhookService.getRecentDeliveries(id));
+    }
+
+    @GetMapping("/delivery/stats")
+    public ResponseEntity<Map<String, Object>> getDeliveryStats() {
+        return ResponseEntity.ok(webhookService.getDeliveryStats());
+    }
+
     @PostMapping("/{id}/test")
     public ResponseEntity<Map<String, Object>> testWebhook(@PathVariable Long id) {
-        boolean success = webhookService.testWebhook(id);
-        return ResponseEntity.ok(Map.of(
-            "success", success,
-            "message", success ? "Webhook test successful" : "Webhook test failed"
-        ));
+        WebhookDeliveryLog delivery = webhookService.testWebhook(id);
+        boolean success = "SUCCESS".equals(delivery.getDeliveryStatus());
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", success);
+        response.put("message", success ? "Webhook test successful" : "Webhook test failed");
+        response.put("httpStatusCode", delivery.getHttpStatusCode());
+        response.put("durationMs", delivery.getDurationMs());
+        response.put("error", delivery.getErrorMessage());
+        return ResponseEntity.ok(response);
     }
 
     @PostMapping("/trigger")
@@ -78,10 +94,11 @@ public class WebhookController {
         String eventType = (String) request.get("eventType");
         Map<String, Object> payload = (Map<String, Object>) request.get("payload");
         
-        boolean success = webhookService.triggerWebhook(eventType, payload);
+        List<WebhookDeliveryLog> deliveries = webhookService.triggerWebhook(eventType, payload);
         return ResponseEntity.ok(Map.of(
-            "success", success,
-            "message", success ? "Webhooks triggered successfully" : "Some webhooks failed"
+            "success", true,
+            "message", deliveries.size() + " webhook deliveries queued",
+            "deliveryIds", deliveries.stream().map(WebhookDeliveryLog::getId).toList()
         ));
     }
 
@@ -0,0 +1,15 @@
+package com.mes.dto;
+
+import com.mes.model.AlertRule;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AlertRuleMatch {
+    private AlertRule rule;
+    private String field; // temperature, vibration, outputCount, status
+    private Double value;
+}
@@ -0,0 +1,56 @@
+package com.mes.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * One row for audit_trail, user_activity_log or change_history, as queued for AuditWriter.
+ * Flat so that it can be spilled to disk as a JSON line.
+ */
+@Data
+@NoArgsConstructor
+public class AuditRecord {
+
+    public enum Kind { AUDIT, ACTIVITY, CHANGE }
+
+    private Kind kind;
+    private LocalDateTime timestamp;
+    private Long userId;
+    private String username;
+    private String ipAddress;
+    private String userAgent;
+    private String sessionId;
+
+    // audit_trail / change_history entity, user_activity_log resource
+    private String entityType;
+    private Long entityId;
+
+    // audit_trail
+    private String action;
+    private Map<String, Object> oldValues;
+    private Map<String, Object> newValues;
+    private String changesSummary;
+
+    // user_activity_log
+    private String activityType;
+    private String description;
+    private Integer durationSeconds;
+    private String status;
+    private String errorMessage;
+
+    // change_history
+    private String entityName;
+    private String fieldName;
+    private String oldValue;
+    private String newValue;
+    private String changeReason;
+    private Boolean approvalRequired;
+    private String approvalStatus;
+
+    public AuditRecord(Kind kind) {
+        this.kind = kind;
+        this.timestamp = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,14 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DowntimeReasonSummary {
+    private String reasonCode;
+    private Long occurrences;
+    private Double totalMinutes;
+}
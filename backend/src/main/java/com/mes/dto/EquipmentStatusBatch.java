@@ -0,0 +1,21 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EquipmentStatusBatch {
+    private String type; // KEYFRAME, DELTA
+    private Long sequence;
+    private Long baseSequence;
+    private String scope;
+    private LocalDateTime timestamp;
+    private List<Map<String, Object>> equipment;
+    private List<Long> removed;
+}
@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 public class EquipmentStatusUpdate {
     private Long equipmentId;
     private String equipmentName;
+    private String location;
     private String status;
     private Double temperature;
     private Double vibration;
@@ -0,0 +1,19 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestResult {
+    private int received;
+    private int accepted;
+    private int rejected;
+    // Either 0 or every valid sample: a request is buffered completely or not at all
+    private int dropped;
+    // Positions in the request of samples that were invalid and will never be written
+    private List<Integer> rejectedIndexes;
+}
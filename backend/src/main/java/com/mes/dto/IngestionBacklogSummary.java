@@ -0,0 +1,16 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionBacklogSummary {
+    private String dataType;
+    private String status;
+    private Long items;
+    private LocalDateTime oldestCreatedAt;
+}
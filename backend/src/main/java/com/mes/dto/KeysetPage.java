@@ -0,0 +1,92 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of rows ordered by an indexed timestamp column and id, both descending. nextCursor
+ * is passed back as {@code cursor} to get the following page and is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetPage<T> {
+
+    public static final int MAX_LIMIT = 500;
+
+    // Bounds standing in for an open from/to, so range parameters are never bound as null
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private List<T> items;
+    private String nextCursor;
+    private int limit;
+
+    /**
+     * Requested page size bounded to 1..MAX_LIMIT.
+     */
+    public static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Page of rows fetched with {@code limit} as the query's max results; a full page gets a
+     * cursor pointing after its last row.
+     */
+    public static <E, T> KeysetPage<T> of(List<E> rows, int limit, Function<E, LocalDateTime> timestamp,
+                                          Function<E, Long> id, Function<E, T> mapper) {
+        String next = null;
+        if (rows.size() == limit) {
+            E last = rows.get(rows.size() - 1);
+            next = encodeCursor(timestamp.apply(last), id.apply(last));
+        }
+        return new KeysetPage<>(rows.stream().map(mapper).toList(), next, limit);
+    }
+
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, LocalDateTime> timestamp,
+                                       Function<T, Long> id) {
+        return of(rows, limit, timestamp, id, Function.identity());
+    }
+
+    /**
+     * Timestamp and id a page is read strictly before: the cursor's row, or for the first page
+     * {@code to} (exclusive, open when null).
+     */
+    public static Object[] startAfter(String cursor, LocalDateTime to) {
+        if (cursor != null && !cursor.isEmpty()) {
+            return decodeCursor(cursor);
+        }
+        return new Object[] {to != null ? to : LATEST, Long.MIN_VALUE};
+    }
+
+    /**
+     * Inclusive lower time bound, open when null.
+     */
+    public static LocalDateTime since(LocalDateTime from) {
+        return from != null ? from : EARLIEST;
+    }
+
+    public static String encodeCursor(LocalDateTime timestamp, Long id) {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into its timestamp and id.
+     */
+    public static Object[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf('|');
+            return new Object[] {LocalDateTime.parse(raw.substring(0, split)), Long.parseLong(raw.substring(split + 1))};
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+}
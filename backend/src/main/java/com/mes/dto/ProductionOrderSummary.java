@@ -0,0 +1,21 @@
+package com.mes.dto;
+
+import com.mes.model.ProductionOrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductionOrderSummary {
+    private Long orderId;
+    private String orderNumber;
+    private String productName;
+    private Integer targetQuantity;
+    private Integer producedQuantity;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private ProductionOrderStatus status;
+}
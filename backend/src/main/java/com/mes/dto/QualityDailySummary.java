@@ -0,0 +1,16 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QualityDailySummary {
+    private LocalDate date;
+    private Long totalChecks;
+    private Long totalPassed;
+    private Long totalRejected;
+}
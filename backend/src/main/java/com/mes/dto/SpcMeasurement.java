@@ -0,0 +1,25 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SpcMeasurement {
+    private Long equipmentId;
+    private Long productionOrderId;
+    private String parameterName;
+    private BigDecimal measuredValue;
+    private String unitOfMeasure;
+    private BigDecimal upperControlLimit;
+    private BigDecimal lowerControlLimit;
+    private BigDecimal upperSpecLimit;
+    private BigDecimal lowerSpecLimit;
+    private BigDecimal targetValue;
+    private Integer sampleSize;
+    private LocalDateTime measuredAt;
+}
@@ -0,0 +1,27 @@
+package com.mes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatusDurationSummary {
+    private Long equipmentId;
+    private Double runningSeconds;
+    private Double idleSeconds;
+    private Double downSeconds;
+    private Double maintenanceSeconds;
+
+    public void add(StatusDurationSummary other) {
+        runningSeconds = sum(runningSeconds, other.runningSeconds);
+        idleSeconds = sum(idleSeconds, other.idleSeconds);
+        downSeconds = sum(downSeconds, other.downSeconds);
+        maintenanceSeconds = sum(maintenanceSeconds, other.maintenanceSeconds);
+    }
+
+    private static Double sum(Double a, Double b) {
+        return (a != null ? a : 0.0) + (b != null ? b : 0.0);
+    }
+}
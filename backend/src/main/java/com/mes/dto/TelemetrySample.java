@@ -0,0 +1,19 @@
+package com.mes.dto;
+
+import com.mes.model.EquipmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TelemetrySample {
+    private Long equipmentId;
+    private EquipmentStatus status;
+    private Integer outputCount;
+    private Double temperature;
+    private Double vibration;
+    private LocalDateTime timestamp;
+}
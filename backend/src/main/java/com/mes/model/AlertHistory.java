@@ -59,10 +59,22 @@ public class AlertHistory {
     @Column(columnDefinition = "TEXT")
     private String notes;
 
+    @Column(name = "occurrence_count", nullable = false)
+    private Integer occurrenceCount = 1;
+
+    @Column(name = "last_seen_at")
+    private LocalDateTime lastSeenAt;
+
+    @Column(nullable = false)
+    private Boolean flapping = false;
+
     @PrePersist
     protected void onCreate() {
         if (triggeredAt == null) {
             triggeredAt = LocalDateTime.now();
         }
+        if (lastSeenAt == null) {
+            lastSeenAt = triggeredAt;
+        }
     }
 }
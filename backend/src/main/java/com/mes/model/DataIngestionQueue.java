@@ -43,6 +43,16 @@ public class DataIngestionQueue {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
 
+    // Earliest time a FAILED item may be claimed again (exponential backoff)
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "claimed_by", length = 100)
+    private String claimedBy;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -46,6 +46,31 @@ public class DataRetentionPolicy {
     @Column(name = "next_execution")
     private LocalDateTime nextExecution;
 
+    // Written by DataRetentionService at the end of each run, never through the entity
+    @Column(name = "last_run_status", length = 20, insertable = false, updatable = false)
+    private String lastRunStatus; // RUNNING, COMPLETED, PARTIAL, FAILED
+
+    @Column(name = "last_run_started_at", insertable = false, updatable = false)
+    private LocalDateTime lastRunStartedAt;
+
+    @Column(name = "last_run_duration_ms", insertable = false, updatable = false)
+    private Long lastRunDurationMs;
+
+    @Column(name = "last_run_rows", insertable = false, updatable = false)
+    private Long lastRunRows;
+
+    @Column(name = "last_run_rows_archived", insertable = false, updatable = false)
+    private Long lastRunRowsArchived;
+
+    @Column(name = "last_run_partitions_dropped", insertable = false, updatable = false)
+    private Integer lastRunPartitionsDropped;
+
+    @Column(name = "last_run_rows_per_second", insertable = false, updatable = false)
+    private Double lastRunRowsPerSecond;
+
+    @Column(name = "last_run_error", columnDefinition = "TEXT", insertable = false, updatable = false)
+    private String lastRunError;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
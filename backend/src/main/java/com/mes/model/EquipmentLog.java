@@ -9,7 +9,8 @@ import java.time.LocalDateTime;
 @Table(name = "equipment_log")
 public class EquipmentLog {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "equipment_log_seq")
+    @SequenceGenerator(name = "equipment_log_seq", sequenceName = "equipment_log_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -0,0 +1,44 @@
+package com.mes.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "notification_delivery_log")
+public class NotificationDeliveryLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Inbox notification delivered, if any; alert emails are not backed by one
+    @Column(name = "notification_id")
+    private Long notificationId;
+
+    @Column(name = "delivery_method", nullable = false, length = 20)
+    private String deliveryMethod; // EMAIL, SMS, WEB, PUSH
+
+    @Column(name = "delivery_status", nullable = false, length = 20)
+    private String deliveryStatus; // PENDING, SENT, DELIVERED, FAILED
+
+    @Column(length = 255)
+    private String recipient;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,32 @@
+package com.mes.model;
+
+import java.time.Duration;
+
+public enum RollupResolution {
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1)),
+    DAY(Duration.ofDays(1));
+
+    private final Duration bucketSize;
+
+    RollupResolution(Duration bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+
+    public Duration getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * Coarsest resolution whose buckets are no wider than the requested step
+     */
+    public static RollupResolution coarsestFor(Duration step) {
+        RollupResolution selected = MINUTE;
+        for (RollupResolution resolution : values()) {
+            if (resolution.bucketSize.compareTo(step) <= 0) {
+                selected = resolution;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mes.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "equipment_telemetry_rollup")
+public class TelemetryRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "equipment_id", nullable = false)
+    private Long equipmentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private RollupResolution resolution;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    // Temperature
+    @Column(name = "temperature_min")
+    private Double temperatureMin;
+
+    @Column(name = "temperature_max")
+    private Double temperatureMax;
+
+    @Column(name = "temperature_sum")
+    private Double temperatureSum;
+
+    @Column(name = "temperature_count")
+    private Long temperatureCount;
+
+    // Vibration
+    @Column(name = "vibration_min")
+    private Double vibrationMin;
+
+    @Column(name = "vibration_max")
+    private Double vibrationMax;
+
+    @Column(name = "vibration_sum")
+    private Double vibrationSum;
+
+    @Column(name = "vibration_count")
+    private Long vibrationCount;
+
+    // Output
+    @Column(name = "output_min")
+    private Integer outputMin;
+
+    @Column(name = "output_max")
+    private Integer outputMax;
+
+    @Column(name = "output_sum")
+    private Long outputSum;
+
+    @Column(name = "output_count")
+    private Long outputCount;
+
+    // Last reading in the bucket
+    @Column(name = "last_status", length = 20)
+    private String lastStatus;
+
+    @Column(name = "last_temperature")
+    private Double lastTemperature;
+
+    @Column(name = "last_vibration")
+    private Double lastVibration;
+
+    @Column(name = "last_output_count")
+    private Integer lastOutputCount;
+
+    @Column(name = "last_timestamp")
+    private LocalDateTime lastTimestamp;
+
+    // Status durations (seconds)
+    @Column(name = "running_seconds")
+    private Double runningSeconds;
+
+    @Column(name = "idle_seconds")
+    private Double idleSeconds;
+
+    @Column(name = "down_seconds")
+    private Double downSeconds;
+
+    @Column(name = "maintenance_seconds")
+    private Double maintenanceSeconds;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public Double getTemperatureAvg() {
+        return average(temperatureSum, temperatureCount);
+    }
+
+    public Double getVibrationAvg() {
+        return average(vibrationSum, vibrationCount);
+    }
+
+    public Double getOutputAvg() {
+        return outputSum != null ? average(outputSum.doubleValue(), outputCount) : null;
+    }
+
+    private static Double average(Double sum, Long count) {
+        return sum != null && count != null && count > 0 ? sum / count : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mes.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "webhook_delivery_log")
+public class WebhookDeliveryLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "webhook_config_id", nullable = false)
+    private WebhookConfig webhookConfig;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "http_status_code")
+    private Integer httpStatusCode;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "delivery_status", nullable = false, length = 20)
+    private String deliveryStatus = "PENDING"; // PENDING, SENDING, RETRYING, SUCCESS, FAILED
+
+    // Attempt that is due next, or the last attempt made once the delivery is final
+    @Column(name = "attempt_number")
+    private Integer attemptNumber = 1;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
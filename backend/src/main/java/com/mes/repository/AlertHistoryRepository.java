@@ -1,8 +1,14 @@
 package com.mes.repository;
 
 import com.mes.model.AlertHistory;
+import com.mes.model.AlertRule;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -14,4 +20,47 @@ public interface AlertHistoryRepository extends JpaRepository<AlertHistory, Long
     List<AlertHistory> findByTriggeredAtBetween(LocalDateTime start, LocalDateTime end);
     List<AlertHistory> findBySeverity(String severity);
     List<AlertHistory> findAllByOrderByTriggeredAtDesc();
+
+    @Query("SELECT a FROM AlertHistory a WHERE a.resolved = false AND a.equipment IS NOT NULL " +
+           "AND a.alertRule IS NOT NULL ORDER BY a.triggeredAt")
+    List<AlertHistory> findOpenRuleAlerts();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE AlertHistory a SET a.occurrenceCount = :count, a.lastSeenAt = :lastSeen, " +
+           "a.flapping = :flapping WHERE a.id = :id")
+    int updateOccurrences(@Param("id") Long id, @Param("count") int count,
+                          @Param("lastSeen") LocalDateTime lastSeen, @Param("flapping") boolean flapping);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE AlertHistory a SET a.resolved = true, a.resolvedBy = :resolvedBy, a.resolvedAt = :resolvedAt, " +
+           "a.occurrenceCount = :count, a.lastSeenAt = :lastSeen, a.flapping = false, " +
+           "a.notes = CASE WHEN a.notes IS NULL THEN :notes ELSE CONCAT(a.notes, '\n', :notes) END " +
+           "WHERE a.id = :id AND a.resolved = false")
+    int autoResolve(@Param("id") Long id, @Param("resolvedBy") String resolvedBy,
+                    @Param("resolvedAt") LocalDateTime resolvedAt, @Param("count") int count,
+                    @Param("lastSeen") LocalDateTime lastSeen, @Param("notes") String notes);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE AlertHistory a SET a.alertRule = :rule, a.severity = :severity, a.title = :title, " +
+           "a.message = :message WHERE a.id = :id")
+    int escalate(@Param("id") Long id, @Param("rule") AlertRule rule, @Param("severity") String severity,
+                 @Param("title") String title, @Param("message") String message);
+
+    // Keyset page: rows from :from up to strictly before (beforeTs, beforeId), newest first
+    @Query("SELECT a FROM AlertHistory a WHERE " +
+           "(a.triggeredAt < :beforeTs OR (a.triggeredAt = :beforeTs AND a.id < :beforeId)) AND a.triggeredAt >= :from " +
+           "AND (:equipmentId IS NULL OR a.equipment.id = :equipmentId) " +
+           "AND (:severity IS NULL OR a.severity = :severity) " +
+           "AND (:alertType IS NULL OR a.alertType = :alertType) " +
+           "AND (:acknowledged IS NULL OR a.acknowledged = :acknowledged) " +
+           "AND (:resolved IS NULL OR a.resolved = :resolved) " +
+           "ORDER BY a.triggeredAt DESC, a.id DESC")
+    List<AlertHistory> findPage(@Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                                @Param("from") LocalDateTime from,
+                                @Param("equipmentId") Long equipmentId, @Param("severity") String severity,
+                                @Param("alertType") String alertType, @Param("acknowledged") Boolean acknowledged,
+                                @Param("resolved") Boolean resolved, Pageable pageable);
 }
@@ -1,6 +1,7 @@
 package com.mes.repository;
 
 import com.mes.model.AuditTrail;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,4 +27,19 @@ public interface AuditTrailRepository extends JpaRepository<AuditTrail, Long> {
     
     @Query("SELECT COUNT(a) FROM AuditTrail a WHERE a.timestamp >= :since")
     Long countRecentAudits(@Param("since") LocalDateTime since);
+
+    @Query("SELECT COUNT(a) FROM AuditTrail a WHERE a.timestamp BETWEEN :start AND :end")
+    long countByDateRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Keyset page: rows strictly before (beforeTs, beforeId), newest first
+    @Query("SELECT a FROM AuditTrail a LEFT JOIN FETCH a.user WHERE a.timestamp BETWEEN :start AND :end " +
+           "AND (a.timestamp < :beforeTs OR (a.timestamp = :beforeTs AND a.id < :beforeId)) " +
+           "AND (:entityType IS NULL OR a.entityType = :entityType) " +
+           "AND (:action IS NULL OR a.action = :action) " +
+           "AND (:username IS NULL OR a.username = :username) " +
+           "ORDER BY a.timestamp DESC, a.id DESC")
+    List<AuditTrail> findPage(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                              @Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                              @Param("entityType") String entityType, @Param("action") String action,
+                              @Param("username") String username, Pageable pageable);
 }
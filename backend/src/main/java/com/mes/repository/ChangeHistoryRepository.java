@@ -25,4 +25,7 @@ public interface ChangeHistoryRepository extends JpaRepository<ChangeHistory, Lo
     
     @Query("SELECT COUNT(c) FROM ChangeHistory c WHERE c.approvalRequired = true AND c.approvalStatus = 'PENDING'")
     Long countPendingApprovals();
+
+    @Query("SELECT COUNT(c) FROM ChangeHistory c WHERE c.changedAt BETWEEN :start AND :end")
+    long countByDateRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
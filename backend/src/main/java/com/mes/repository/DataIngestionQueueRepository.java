@@ -1,9 +1,14 @@
 package com.mes.repository;
 
+import com.mes.dto.IngestionBacklogSummary;
 import com.mes.model.DataIngestionQueue;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -17,4 +22,32 @@ public interface DataIngestionQueueRepository extends JpaRepository<DataIngestio
     
     @Query("SELECT d FROM DataIngestionQueue d WHERE d.status = 'FAILED' AND d.retryCount < d.maxRetries")
     List<DataIngestionQueue> findFailedItemsForRetry();
+
+    // Return PROCESSING rows whose worker died or hung to FAILED, consuming one attempt
+    @Modifying
+    @Query(value = "UPDATE data_ingestion_queue SET status = 'FAILED', retry_count = retry_count + 1, " +
+                   "error_message = 'Processing timed out; claimed by ' || COALESCE(claimed_by, 'unknown'), " +
+                   "next_attempt_at = :now, claimed_at = NULL, claimed_by = NULL " +
+                   "WHERE status = 'PROCESSING' AND COALESCE(claimed_at, created_at) < :cutoff",
+           nativeQuery = true)
+    int reapStuckItems(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
+    // Items still waiting for a worker (pending, in flight, or failed with retries left)
+    @Query("SELECT new com.mes.dto.IngestionBacklogSummary(d.dataType, d.status, COUNT(d), MIN(d.createdAt)) " +
+           "FROM DataIngestionQueue d " +
+           "WHERE d.status IN ('PENDING', 'PROCESSING') OR (d.status = 'FAILED' AND d.retryCount < d.maxRetries) " +
+           "GROUP BY d.dataType, d.status")
+    List<IngestionBacklogSummary> summarizeBacklog();
+
+    // Keyset page: rows from :from up to strictly before (beforeTs, beforeId), newest first
+    @Query("SELECT d FROM DataIngestionQueue d WHERE " +
+           "(d.createdAt < :beforeTs OR (d.createdAt = :beforeTs AND d.id < :beforeId)) AND d.createdAt >= :from " +
+           "AND (:status IS NULL OR d.status = :status) " +
+           "AND (:sourceSystem IS NULL OR d.sourceSystem = :sourceSystem) " +
+           "AND (:dataType IS NULL OR d.dataType = :dataType) " +
+           "ORDER BY d.createdAt DESC, d.id DESC")
+    List<DataIngestionQueue> findPage(@Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                                      @Param("from") LocalDateTime from,
+                                      @Param("status") String status, @Param("sourceSystem") String sourceSystem,
+                                      @Param("dataType") String dataType, Pageable pageable);
 }
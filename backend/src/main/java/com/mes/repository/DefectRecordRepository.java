@@ -1,6 +1,7 @@
 package com.mes.repository;
 
 import com.mes.model.DefectRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -24,4 +25,18 @@ public interface DefectRecordRepository extends JpaRepository<DefectRecord, Long
            "GROUP BY dr.defectCategory.categoryName " +
            "ORDER BY SUM(dr.quantity) DESC")
     List<Object[]> getDefectPareto(@Param("startDate") LocalDateTime startDate);
+
+    // Keyset page: rows from :from up to strictly before (beforeTs, beforeId), newest first
+    @Query("SELECT d FROM DefectRecord d WHERE " +
+           "(d.detectedAt < :beforeTs OR (d.detectedAt = :beforeTs AND d.id < :beforeId)) AND d.detectedAt >= :from " +
+           "AND (:status IS NULL OR d.status = :status) " +
+           "AND (:equipmentId IS NULL OR d.equipment.id = :equipmentId) " +
+           "AND (:orderId IS NULL OR d.productionOrder.id = :orderId) " +
+           "AND (:categoryId IS NULL OR d.defectCategory.id = :categoryId) " +
+           "ORDER BY d.detectedAt DESC, d.id DESC")
+    List<DefectRecord> findPage(@Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                                @Param("from") LocalDateTime from,
+                                @Param("status") String status, @Param("equipmentId") Long equipmentId,
+                                @Param("orderId") Long orderId, @Param("categoryId") Long categoryId,
+                                Pageable pageable);
 }
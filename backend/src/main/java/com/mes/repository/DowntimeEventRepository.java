@@ -1,7 +1,10 @@
 package com.mes.repository;
 
+import com.mes.dto.DowntimeReasonSummary;
 import com.mes.model.DowntimeEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -10,4 +13,18 @@ import java.util.List;
 public interface DowntimeEventRepository extends JpaRepository<DowntimeEvent, Long> {
     List<DowntimeEvent> findByEquipmentIdOrderByStartTimeDesc(Long equipmentId);
     List<DowntimeEvent> findByEquipmentIdAndStartTimeBetween(Long equipmentId, LocalDateTime start, LocalDateTime end);
+
+    List<DowntimeEvent> findByEndTimeIsNull();
+
+    @Query("SELECT d FROM DowntimeEvent d WHERE d.endTime > :start AND d.endTime <= :end")
+    List<DowntimeEvent> findEndedBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Open events (no end time) count as occurrences but contribute no minutes
+    @Query("SELECT new com.mes.dto.DowntimeReasonSummary(COALESCE(d.reasonCode, 'UNKNOWN'), COUNT(d), " +
+           "SUM(CASE WHEN d.endTime IS NOT NULL " +
+           "THEN FLOOR((EXTRACT(EPOCH FROM d.endTime) - EXTRACT(EPOCH FROM d.startTime)) / 60.0) ELSE 0.0 END)) " +
+           "FROM DowntimeEvent d WHERE d.startTime > :start AND d.startTime < :end " +
+           "GROUP BY COALESCE(d.reasonCode, 'UNKNOWN')")
+    List<DowntimeReasonSummary> summarizeByReasonCode(@Param("start") LocalDateTime start,
+                                                      @Param("end") LocalDateTime end);
 }
@@ -1,11 +1,30 @@
 package com.mes.repository;
 
 import com.mes.model.EquipmentLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface EquipmentLogRepository extends JpaRepository<EquipmentLog, Long> {
     List<EquipmentLog> findByEquipmentIdOrderByTimestampDesc(Long equipmentId);
+
+    List<EquipmentLog> findByEquipmentIdOrderByTimestampDesc(Long equipmentId, Pageable pageable);
+
+    @Query("SELECT l FROM EquipmentLog l WHERE l.equipment.id = :equipmentId " +
+           "AND l.timestamp > :start AND l.timestamp < :end ORDER BY l.timestamp DESC")
+    List<EquipmentLog> findByEquipmentIdInRange(@Param("equipmentId") Long equipmentId,
+                                                @Param("start") LocalDateTime start,
+                                                @Param("end") LocalDateTime end);
+
+    // [equipment id, newest timestamp] for equipment with readings after since
+    @Query("SELECT l.equipment.id, MAX(l.timestamp) FROM EquipmentLog l WHERE l.timestamp > :since GROUP BY l.equipment.id")
+    List<Object[]> findLatestTimestampsSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT MIN(l.timestamp) FROM EquipmentLog l")
+    LocalDateTime findEarliestTimestamp();
 }
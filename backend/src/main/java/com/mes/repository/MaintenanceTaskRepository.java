@@ -1,7 +1,10 @@
 package com.mes.repository;
 
 import com.mes.model.MaintenanceTask;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -12,4 +15,18 @@ public interface MaintenanceTaskRepository extends JpaRepository<MaintenanceTask
     List<MaintenanceTask> findByAssignedToId(Long userId);
     List<MaintenanceTask> findByStatus(String status);
     List<MaintenanceTask> findByScheduledDateBetween(LocalDateTime start, LocalDateTime end);
+
+    // Keyset page: rows from :from up to strictly before (beforeTs, beforeId), latest scheduled first
+    @Query("SELECT t FROM MaintenanceTask t WHERE " +
+           "(t.scheduledDate < :beforeTs OR (t.scheduledDate = :beforeTs AND t.id < :beforeId)) AND t.scheduledDate >= :from " +
+           "AND (:status IS NULL OR t.status = :status) " +
+           "AND (:priority IS NULL OR t.priority = :priority) " +
+           "AND (:equipmentId IS NULL OR t.equipment.id = :equipmentId) " +
+           "AND (:assignedToId IS NULL OR t.assignedTo.id = :assignedToId) " +
+           "ORDER BY t.scheduledDate DESC, t.id DESC")
+    List<MaintenanceTask> findPage(@Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                                   @Param("from") LocalDateTime from,
+                                   @Param("status") String status, @Param("priority") String priority,
+                                   @Param("equipmentId") Long equipmentId, @Param("assignedToId") Long assignedToId,
+                                   Pageable pageable);
 }
@@ -0,0 +1,17 @@
+package com.mes.repository;
+
+import com.mes.model.NotificationDeliveryLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface NotificationDeliveryLogRepository extends JpaRepository<NotificationDeliveryLog, Long> {
+    List<NotificationDeliveryLog> findTop100ByOrderByCreatedAtDesc();
+    List<NotificationDeliveryLog> findByNotificationIdOrderByCreatedAtDesc(Long notificationId);
+
+    @Query("SELECT d.deliveryMethod, d.deliveryStatus, COUNT(d) FROM NotificationDeliveryLog d " +
+           "GROUP BY d.deliveryMethod, d.deliveryStatus")
+    List<Object[]> countByMethodAndStatus();
+}
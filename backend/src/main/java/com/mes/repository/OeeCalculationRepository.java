@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,22 +16,43 @@ public interface OeeCalculationRepository extends JpaRepository<OeeCalculation,
     List<OeeCalculation> findByShiftId(Long shiftId);
     List<OeeCalculation> findByCalculationType(String calculationType);
     
+    // Readers skip the streaming engine's 15-minute checkpoint rows (see StreamingOeeService)
     @Query("SELECT o FROM OeeCalculation o WHERE o.equipment.id = :equipmentId " +
            "AND o.calculationPeriodStart >= :start AND o.calculationPeriodEnd <= :end " +
+           "AND (o.calculationType IS NULL OR o.calculationType NOT IN ('STREAMING', 'STREAMING_OPEN')) " +
            "ORDER BY o.calculationPeriodStart DESC")
     List<OeeCalculation> findByEquipmentAndPeriod(@Param("equipmentId") Long equipmentId,
                                                    @Param("start") LocalDateTime start,
                                                    @Param("end") LocalDateTime end);
     
     @Query("SELECT o FROM OeeCalculation o WHERE o.calculationPeriodStart >= :start " +
-           "AND o.calculationPeriodEnd <= :end ORDER BY o.calculationPeriodStart DESC")
+           "AND o.calculationPeriodEnd <= :end " +
+           "AND (o.calculationType IS NULL OR o.calculationType NOT IN ('STREAMING', 'STREAMING_OPEN')) " +
+           "ORDER BY o.calculationPeriodStart DESC")
     List<OeeCalculation> findByPeriod(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     @Query("SELECT o FROM OeeCalculation o WHERE o.equipment.id = :equipmentId " +
+           "AND (o.calculationType IS NULL OR o.calculationType NOT IN ('STREAMING', 'STREAMING_OPEN')) " +
            "ORDER BY o.calculationPeriodStart DESC LIMIT 1")
     OeeCalculation findLatestByEquipment(@Param("equipmentId") Long equipmentId);
     
+    OeeCalculation findFirstByEquipmentIdAndCalculationTypeAndCalculationPeriodStart(Long equipmentId,
+                                                                                    String calculationType,
+                                                                                    LocalDateTime calculationPeriodStart);
+
+    @Query("SELECT o FROM OeeCalculation o WHERE o.calculationType = :calculationType " +
+           "AND o.calculationPeriodStart >= :since ORDER BY o.calculationPeriodStart ASC")
+    List<OeeCalculation> findByTypeSince(@Param("calculationType") String calculationType,
+                                         @Param("since") LocalDateTime since);
+
+    @Query("SELECT o FROM OeeCalculation o WHERE o.calculationType IN :calculationTypes " +
+           "AND o.calculatedAt >= :changedSince AND o.calculationPeriodStart >= :since")
+    List<OeeCalculation> findByTypesChangedSince(@Param("calculationTypes") Collection<String> calculationTypes,
+                                                 @Param("changedSince") LocalDateTime changedSince,
+                                                 @Param("since") LocalDateTime since);
+    
     @Query("SELECT AVG(o.oeePercentage) FROM OeeCalculation o WHERE o.equipment.id = :equipmentId " +
-           "AND o.calculationPeriodStart >= :start")
+           "AND o.calculationPeriodStart >= :start " +
+           "AND (o.calculationType IS NULL OR o.calculationType NOT IN ('STREAMING', 'STREAMING_OPEN'))")
     Double getAverageOeeByEquipment(@Param("equipmentId") Long equipmentId, @Param("start") LocalDateTime start);
 }
@@ -1,8 +1,12 @@
 package com.mes.repository;
 
+import com.mes.dto.ProductionOrderSummary;
 import com.mes.model.ProductionOrder;
 import com.mes.model.ProductionOrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,6 +18,14 @@ import java.util.Optional;
 public interface ProductionOrderRepository extends JpaRepository<ProductionOrder, Long> {
     Optional<ProductionOrder> findByOrderNumber(String orderNumber);
 
+    @Query("SELECT p.id FROM ProductionOrder p WHERE p.orderNumber = :orderNumber")
+    Optional<Long> findIdByOrderNumber(@Param("orderNumber") String orderNumber);
+
+    // Row lock for read-modify-write updates of produced quantity from concurrent writers
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ProductionOrder p WHERE p.id = :id")
+    Optional<ProductionOrder> findByIdForUpdate(@Param("id") Long id);
+
     List<ProductionOrder> findByStatus(ProductionOrderStatus status);
 
     List<ProductionOrder> findByEquipmentId(Long equipmentId);
@@ -24,4 +36,22 @@ public interface ProductionOrderRepository extends JpaRepository<ProductionOrder
     List<ProductionOrder> findByEquipmentIdAndStatusInPeriod(@Param("equipmentId") Long equipmentId,
                                                               @Param("start") LocalDateTime start,
                                                               @Param("end") LocalDateTime end);
+
+    @Query("SELECT new com.mes.dto.ProductionOrderSummary(p.id, p.orderNumber, p.productName, p.targetQuantity, " +
+           "COALESCE(p.producedQuantity, 0), p.startTime, p.endTime, p.status) " +
+           "FROM ProductionOrder p WHERE p.createdAt > :start AND p.createdAt < :end " +
+           "ORDER BY p.createdAt ASC")
+    List<ProductionOrderSummary> findOrderSummariesCreatedBetween(@Param("start") LocalDateTime start,
+                                                                 @Param("end") LocalDateTime end);
+
+    // Keyset page: rows from :from up to strictly before (beforeTs, beforeId), newest first
+    @Query("SELECT o FROM ProductionOrder o WHERE " +
+           "(o.createdAt < :beforeTs OR (o.createdAt = :beforeTs AND o.id < :beforeId)) AND o.createdAt >= :from " +
+           "AND (:status IS NULL OR o.status = :status) " +
+           "AND (:equipmentId IS NULL OR o.equipment.id = :equipmentId) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<ProductionOrder> findPage(@Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                                   @Param("from") LocalDateTime from,
+                                   @Param("status") ProductionOrderStatus status,
+                                   @Param("equipmentId") Long equipmentId, Pageable pageable);
 }
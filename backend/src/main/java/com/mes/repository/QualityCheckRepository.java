@@ -1,5 +1,6 @@
 package com.mes.repository;
 
+import com.mes.dto.QualityDailySummary;
 import com.mes.model.QualityCheck;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -17,4 +18,16 @@ public interface QualityCheckRepository extends JpaRepository<QualityCheck, Long
     List<QualityCheck> findByEquipmentIdAndCheckTimeBetween(@Param("equipmentId") Long equipmentId,
                                                              @Param("start") LocalDateTime start,
                                                              @Param("end") LocalDateTime end);
+
+    @Query("SELECT q FROM QualityCheck q WHERE q.checkTime > :start AND q.checkTime <= :end")
+    List<QualityCheck> findByCheckTimeRange(@Param("start") LocalDateTime start,
+                                            @Param("end") LocalDateTime end);
+
+    @Query("SELECT new com.mes.dto.QualityDailySummary(CAST(q.checkTime AS LocalDate), COUNT(q), " +
+           "SUM(q.passedCount), SUM(q.rejectedCount)) " +
+           "FROM QualityCheck q WHERE q.checkTime > :start AND q.checkTime < :end " +
+           "GROUP BY CAST(q.checkTime AS LocalDate) " +
+           "ORDER BY CAST(q.checkTime AS LocalDate) ASC")
+    List<QualityDailySummary> summarizeByDay(@Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end);
 }
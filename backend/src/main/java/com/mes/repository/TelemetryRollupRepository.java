@@ -0,0 +1,159 @@
+package com.mes.repository;
+
+import com.mes.dto.StatusDurationSummary;
+import com.mes.model.RollupResolution;
+import com.mes.model.TelemetryRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TelemetryRollupRepository extends JpaRepository<TelemetryRollup, Long> {
+
+    String INSERT_COLUMNS =
+            "INSERT INTO equipment_telemetry_rollup (equipment_id, resolution, bucket_start, sample_count, " +
+            "temperature_min, temperature_max, temperature_sum, temperature_count, " +
+            "vibration_min, vibration_max, vibration_sum, vibration_count, " +
+            "output_min, output_max, output_sum, output_count, " +
+            "last_status, last_temperature, last_vibration, last_output_count, last_timestamp, " +
+            "running_seconds, idle_seconds, down_seconds, maintenance_seconds, updated_at) ";
+
+    // Rollups are recomputed rather than merged, so re-running a range is idempotent
+    String ON_CONFLICT_REPLACE =
+            "ON CONFLICT (equipment_id, resolution, bucket_start) DO UPDATE SET " +
+            "sample_count = EXCLUDED.sample_count, " +
+            "temperature_min = EXCLUDED.temperature_min, temperature_max = EXCLUDED.temperature_max, " +
+            "temperature_sum = EXCLUDED.temperature_sum, temperature_count = EXCLUDED.temperature_count, " +
+            "vibration_min = EXCLUDED.vibration_min, vibration_max = EXCLUDED.vibration_max, " +
+            "vibration_sum = EXCLUDED.vibration_sum, vibration_count = EXCLUDED.vibration_count, " +
+            "output_min = EXCLUDED.output_min, output_max = EXCLUDED.output_max, " +
+            "output_sum = EXCLUDED.output_sum, output_count = EXCLUDED.output_count, " +
+            "last_status = EXCLUDED.last_status, last_temperature = EXCLUDED.last_temperature, " +
+            "last_vibration = EXCLUDED.last_vibration, last_output_count = EXCLUDED.last_output_count, " +
+            "last_timestamp = EXCLUDED.last_timestamp, " +
+            "running_seconds = EXCLUDED.running_seconds, idle_seconds = EXCLUDED.idle_seconds, " +
+            "down_seconds = EXCLUDED.down_seconds, maintenance_seconds = EXCLUDED.maintenance_seconds, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    /**
+     * Aggregate raw equipment_log samples into MINUTE buckets. Each sample's status holds
+     * until the next sample of the same equipment, capped at maxGapSeconds, and that time is
+     * split over the minutes it overlaps, so no bucket gets more than 60 seconds. Samples up
+     * to maxGapSeconds outside [start, end) are read so intervals crossing the range edges
+     * are credited, but only buckets inside the range are written. A minute covered only by
+     * an earlier sample gets a bucket with no samples and that sample's status as last status.
+     */
+    @Modifying
+    @Query(value =
+           "WITH samples AS (" +
+           "  SELECT l.equipment_id, l.status, l.output_count, l.temperature, l.vibration, l.timestamp, " +
+           "         l.timestamp + make_interval(secs => COALESCE(LEAST(" +
+           "             EXTRACT(EPOCH FROM (LEAD(l.timestamp) OVER w - l.timestamp)), :maxGapSeconds), 0)) AS status_until " +
+           "  FROM equipment_log l " +
+           "  WHERE l.equipment_id IS NOT NULL " +
+           "    AND l.timestamp >= CAST(:start AS timestamp) - make_interval(secs => :maxGapSeconds) " +
+           "    AND l.timestamp < CAST(:end AS timestamp) + make_interval(secs => :maxGapSeconds) " +
+           "  WINDOW w AS (PARTITION BY l.equipment_id ORDER BY l.timestamp)" +
+           "), stats AS (" +
+           "  SELECT s.equipment_id, date_trunc('minute', s.timestamp) AS bucket, COUNT(*) AS sample_count, " +
+           "         MIN(s.temperature) AS temperature_min, MAX(s.temperature) AS temperature_max, " +
+           "         SUM(s.temperature) AS temperature_sum, COUNT(s.temperature) AS temperature_count, " +
+           "         MIN(s.vibration) AS vibration_min, MAX(s.vibration) AS vibration_max, " +
+           "         SUM(s.vibration) AS vibration_sum, COUNT(s.vibration) AS vibration_count, " +
+           "         MIN(s.output_count) AS output_min, MAX(s.output_count) AS output_max, " +
+           "         SUM(s.output_count) AS output_sum, COUNT(s.output_count) AS output_count, " +
+           "         (ARRAY_AGG(s.status ORDER BY s.timestamp DESC))[1] AS last_status, " +
+           "         (ARRAY_AGG(s.temperature ORDER BY s.timestamp DESC) FILTER (WHERE s.temperature IS NOT NULL))[1] AS last_temperature, " +
+           "         (ARRAY_AGG(s.vibration ORDER BY s.timestamp DESC) FILTER (WHERE s.vibration IS NOT NULL))[1] AS last_vibration, " +
+           "         (ARRAY_AGG(s.output_count ORDER BY s.timestamp DESC) FILTER (WHERE s.output_count IS NOT NULL))[1] AS last_output_count, " +
+           "         MAX(s.timestamp) AS last_timestamp " +
+           "  FROM samples s WHERE s.timestamp >= :start AND s.timestamp < :end " +
+           "  GROUP BY 1, 2" +
+           "), pieces AS (" +
+           "  SELECT s.equipment_id, s.status, s.timestamp, m.minute_start, " +
+           "         EXTRACT(EPOCH FROM (LEAST(s.status_until, m.minute_start + INTERVAL '1 minute', CAST(:end AS timestamp)) " +
+           "             - GREATEST(s.timestamp, m.minute_start))) AS seconds " +
+           "  FROM samples s " +
+           "  CROSS JOIN LATERAL generate_series(date_trunc('minute', GREATEST(s.timestamp, CAST(:start AS timestamp))), " +
+           "      LEAST(s.status_until, CAST(:end AS timestamp)) - INTERVAL '1 microsecond', INTERVAL '1 minute') AS m(minute_start) " +
+           "  WHERE s.status_until > s.timestamp AND s.status_until > :start AND s.timestamp < :end" +
+           "), durations AS (" +
+           "  SELECT p.equipment_id, p.minute_start AS bucket, " +
+           "         SUM(CASE WHEN p.status = 'RUNNING' THEN p.seconds ELSE 0 END) AS running_seconds, " +
+           "         SUM(CASE WHEN p.status = 'IDLE' THEN p.seconds ELSE 0 END) AS idle_seconds, " +
+           "         SUM(CASE WHEN p.status = 'DOWN' THEN p.seconds ELSE 0 END) AS down_seconds, " +
+           "         SUM(CASE WHEN p.status = 'MAINTENANCE' THEN p.seconds ELSE 0 END) AS maintenance_seconds, " +
+           "         (ARRAY_AGG(p.status ORDER BY p.timestamp DESC))[1] AS carried_status, " +
+           "         MAX(p.timestamp) AS carried_timestamp " +
+           "  FROM pieces p GROUP BY 1, 2" +
+           ") " +
+           INSERT_COLUMNS +
+           "SELECT COALESCE(st.equipment_id, d.equipment_id), 'MINUTE', COALESCE(st.bucket, d.bucket), " +
+           "COALESCE(st.sample_count, 0), " +
+           "st.temperature_min, st.temperature_max, st.temperature_sum, COALESCE(st.temperature_count, 0), " +
+           "st.vibration_min, st.vibration_max, st.vibration_sum, COALESCE(st.vibration_count, 0), " +
+           "st.output_min, st.output_max, st.output_sum, COALESCE(st.output_count, 0), " +
+           "COALESCE(st.last_status, d.carried_status), st.last_temperature, st.last_vibration, st.last_output_count, " +
+           "COALESCE(st.last_timestamp, d.carried_timestamp), " +
+           "COALESCE(d.running_seconds, 0), COALESCE(d.idle_seconds, 0), " +
+           "COALESCE(d.down_seconds, 0), COALESCE(d.maintenance_seconds, 0), " +
+           "CURRENT_TIMESTAMP " +
+           "FROM stats st FULL OUTER JOIN durations d ON d.equipment_id = st.equipment_id AND d.bucket = st.bucket " +
+           ON_CONFLICT_REPLACE,
+           nativeQuery = true)
+    int rollupMinutes(@Param("start") LocalDateTime start,
+                      @Param("end") LocalDateTime end,
+                      @Param("maxGapSeconds") double maxGapSeconds);
+
+    /**
+     * Re-aggregate finer rollup buckets into coarser ones (MINUTE to HOUR, HOUR to DAY)
+     */
+    @Modifying
+    @Query(value = INSERT_COLUMNS +
+           "SELECT r.equipment_id, :targetResolution, date_trunc(:truncUnit, r.bucket_start), SUM(r.sample_count), " +
+           "MIN(r.temperature_min), MAX(r.temperature_max), SUM(r.temperature_sum), SUM(r.temperature_count), " +
+           "MIN(r.vibration_min), MAX(r.vibration_max), SUM(r.vibration_sum), SUM(r.vibration_count), " +
+           "MIN(r.output_min), MAX(r.output_max), SUM(r.output_sum), SUM(r.output_count), " +
+           "(ARRAY_AGG(r.last_status ORDER BY r.last_timestamp DESC))[1], " +
+           "(ARRAY_AGG(r.last_temperature ORDER BY r.last_timestamp DESC) FILTER (WHERE r.last_temperature IS NOT NULL))[1], " +
+           "(ARRAY_AGG(r.last_vibration ORDER BY r.last_timestamp DESC) FILTER (WHERE r.last_vibration IS NOT NULL))[1], " +
+           "(ARRAY_AGG(r.last_output_count ORDER BY r.last_timestamp DESC) FILTER (WHERE r.last_output_count IS NOT NULL))[1], " +
+           "MAX(r.last_timestamp), " +
+           "SUM(r.running_seconds), SUM(r.idle_seconds), SUM(r.down_seconds), SUM(r.maintenance_seconds), " +
+           "CURRENT_TIMESTAMP " +
+           "FROM equipment_telemetry_rollup r " +
+           "WHERE r.resolution = :sourceResolution AND r.bucket_start >= :start AND r.bucket_start < :end " +
+           // Ordinal GROUP BY: each occurrence of :truncUnit is bound as a separate parameter
+           "GROUP BY 1, 3 " +
+           ON_CONFLICT_REPLACE,
+           nativeQuery = true)
+    int rollupBuckets(@Param("sourceResolution") String sourceResolution,
+                      @Param("targetResolution") String targetResolution,
+                      @Param("truncUnit") String truncUnit,
+                      @Param("start") LocalDateTime start,
+                      @Param("end") LocalDateTime end);
+
+    @Query("SELECT r FROM TelemetryRollup r WHERE r.equipmentId = :equipmentId " +
+           "AND r.resolution = :resolution AND r.bucketStart >= :start AND r.bucketStart < :end " +
+           "ORDER BY r.bucketStart ASC")
+    List<TelemetryRollup> findRollups(@Param("equipmentId") Long equipmentId,
+                                      @Param("resolution") RollupResolution resolution,
+                                      @Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end);
+
+    @Query("SELECT new com.mes.dto.StatusDurationSummary(r.equipmentId, SUM(r.runningSeconds), " +
+           "SUM(r.idleSeconds), SUM(r.downSeconds), SUM(r.maintenanceSeconds)) " +
+           "FROM TelemetryRollup r WHERE r.resolution = :resolution " +
+           "AND r.bucketStart >= :start AND r.bucketStart < :end " +
+           "GROUP BY r.equipmentId")
+    List<StatusDurationSummary> sumStatusDurations(@Param("resolution") RollupResolution resolution,
+                                                   @Param("start") LocalDateTime start,
+                                                   @Param("end") LocalDateTime end);
+
+    @Query("SELECT MAX(r.bucketStart) FROM TelemetryRollup r WHERE r.resolution = :resolution")
+    LocalDateTime findLatestBucketStart(@Param("resolution") RollupResolution resolution);
+}
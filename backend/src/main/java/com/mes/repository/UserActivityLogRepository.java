@@ -1,6 +1,7 @@
 package com.mes.repository;
 
 import com.mes.model.UserActivityLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,4 +27,18 @@ public interface UserActivityLogRepository extends JpaRepository<UserActivityLog
     
     @Query("SELECT a FROM UserActivityLog a WHERE a.status = 'FAILED' AND a.timestamp >= :since ORDER BY a.timestamp DESC")
     List<UserActivityLog> findRecentFailures(@Param("since") LocalDateTime since);
+
+    @Query("SELECT COUNT(a) FROM UserActivityLog a WHERE a.timestamp BETWEEN :start AND :end")
+    long countByDateRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Keyset page: rows strictly before (beforeTs, beforeId), newest first
+    @Query("SELECT a FROM UserActivityLog a LEFT JOIN FETCH a.user WHERE a.timestamp BETWEEN :start AND :end " +
+           "AND (a.timestamp < :beforeTs OR (a.timestamp = :beforeTs AND a.id < :beforeId)) " +
+           "AND (:activityType IS NULL OR a.activityType = :activityType) " +
+           "AND (:username IS NULL OR a.username = :username) " +
+           "ORDER BY a.timestamp DESC, a.id DESC")
+    List<UserActivityLog> findPage(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                   @Param("beforeTs") LocalDateTime beforeTs, @Param("beforeId") Long beforeId,
+                                   @Param("activityType") String activityType, @Param("username") String username,
+                                   Pageable pageable);
 }
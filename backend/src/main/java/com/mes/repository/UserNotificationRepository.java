@@ -2,9 +2,11 @@ package com.mes.repository;
 
 import com.mes.model.UserNotification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -19,6 +21,12 @@ public interface UserNotificationRepository extends JpaRepository<UserNotificati
     
     @Query("SELECT COUNT(n) FROM UserNotification n WHERE n.user.id = :userId AND n.isRead = false AND n.isArchived = false")
     Long countUnreadByUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserNotification n SET n.isRead = true, n.readAt = :now " +
+           "WHERE n.user.id = :userId AND n.isRead = false AND n.isArchived = false")
+    int markAllReadByUser(@Param("userId") Long userId, @Param("now") LocalDateTime now);
     
     @Query("SELECT n FROM UserNotification n WHERE n.expiresAt < :now")
     List<UserNotification> findExpiredNotifications(@Param("now") LocalDateTime now);
@@ -2,7 +2,12 @@ package com.mes.repository;
 
 import com.mes.model.WebhookConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +17,17 @@ public interface WebhookConfigRepository extends JpaRepository<WebhookConfig, Lo
     List<WebhookConfig> findByEventType(String eventType);
     List<WebhookConfig> findByIsActive(Boolean isActive);
     List<WebhookConfig> findByEventTypeAndIsActive(String eventType, Boolean isActive);
+
+    // Counters are incremented in place; concurrent deliveries would lose read-modify-write updates
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookConfig w SET w.successCount = COALESCE(w.successCount, 0) + 1, " +
+           "w.lastTriggered = :now WHERE w.id = :id")
+    int recordSuccess(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookConfig w SET w.failureCount = COALESCE(w.failureCount, 0) + 1, " +
+           "w.lastTriggered = :now WHERE w.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("now") LocalDateTime now);
 }
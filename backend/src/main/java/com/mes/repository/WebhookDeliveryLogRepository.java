@@ -0,0 +1,47 @@
+package com.mes.repository;
+
+import com.mes.model.WebhookDeliveryLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WebhookDeliveryLogRepository extends JpaRepository<WebhookDeliveryLog, Long> {
+    List<WebhookDeliveryLog> findTop50ByWebhookConfigIdOrderByCreatedAtDesc(Long webhookConfigId);
+
+    // Put a claimed delivery back without spending an attempt (endpoint busy, rate limited or circuit open)
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookDeliveryLog d SET d.deliveryStatus = :status, d.nextAttemptAt = :nextAttemptAt, " +
+           "d.claimedAt = NULL WHERE d.id = :id")
+    int defer(@Param("id") Long id, @Param("status") String status,
+              @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookDeliveryLog d SET d.deliveryStatus = :status, d.httpStatusCode = :httpStatusCode, " +
+           "d.responseBody = :responseBody, d.errorMessage = :errorMessage, d.durationMs = :durationMs, " +
+           "d.attemptNumber = :attemptNumber, d.nextAttemptAt = :nextAttemptAt, d.deliveredAt = :deliveredAt, " +
+           "d.claimedAt = NULL WHERE d.id = :id")
+    int complete(@Param("id") Long id, @Param("status") String status,
+                 @Param("httpStatusCode") Integer httpStatusCode, @Param("responseBody") String responseBody,
+                 @Param("errorMessage") String errorMessage, @Param("durationMs") Long durationMs,
+                 @Param("attemptNumber") Integer attemptNumber, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                 @Param("deliveredAt") LocalDateTime deliveredAt);
+
+    // Deliveries whose sender died mid-flight go back to the queue
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookDeliveryLog d SET d.deliveryStatus = 'RETRYING', d.nextAttemptAt = :now, " +
+           "d.claimedAt = NULL WHERE d.deliveryStatus = 'SENDING' AND d.claimedAt < :cutoff")
+    int releaseStuck(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
+    @Query("SELECT d.deliveryStatus, COUNT(d) FROM WebhookDeliveryLog d " +
+           "WHERE d.deliveryStatus IN ('PENDING', 'SENDING', 'RETRYING') GROUP BY d.deliveryStatus")
+    List<Object[]> countQueuedByStatus();
+}
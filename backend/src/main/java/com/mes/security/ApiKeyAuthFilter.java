@@ -0,0 +1,96 @@
+package com.mes.security;
+
+import com.mes.service.ApiKeyIndex;
+import com.mes.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Authenticates X-API-Key requests on the configured paths from the in-memory key index and
+ * applies the key's rate limits. Requests already authenticated with a JWT still have their
+ * key checked but keep the user as principal.
+ */
+public class ApiKeyAuthFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Autowired
+    private ApiKeyIndex apiKeyIndex;
+
+    @Autowired
+    private AuthEntryPointJwt unauthorizedHandler;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Value("${mes.security.api-key.paths:/api/data-ingestion/ingest}")
+    private String[] paths;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!StringUtils.hasText(request.getHeader(API_KEY_HEADER))) {
+            return true;
+        }
+        String path = request.getServletPath();
+        for (String pattern : paths) {
+            if (PATH_MATCHER.match(pattern.trim(), path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ApiKeyIndex.Entry key;
+        try {
+            key = apiKeyIndex.authenticate(request.getHeader(API_KEY_HEADER), request.getRemoteAddr(),
+                    request.getServletPath());
+        } catch (RuntimeException e) {
+            SecurityContextHolder.clearContext();
+            unauthorizedHandler.commence(request, response, new BadCredentialsException(e.getMessage()));
+            return;
+        }
+
+        long retryAfter = rateLimiter.tryAcquireKey(key.getId(), key.getRateLimitPerMinute(), key.getRateLimitPerHour());
+        if (retryAfter > 0) {
+            RateLimitFilter.reject(request, response, 429, "Too Many Requests",
+                    "Rate limit exceeded for API key " + key.getKeyName(), retryAfter);
+            return;
+        }
+
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            authorities.add(new SimpleGrantedAuthority("ROLE_API_CLIENT"));
+            for (String permission : key.getPermissions()) {
+                if (!permission.startsWith("/")) {
+                    authorities.add(new SimpleGrantedAuthority("API_" + permission));
+                }
+            }
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    "api-key:" + key.getKeyName(), null, authorities);
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
+        apiKeyIndex.recordUsage(key.getId());
+
+        filterChain.doFilter(request, response);
+    }
+}
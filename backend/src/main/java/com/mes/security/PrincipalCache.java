@@ -0,0 +1,122 @@
+package com.mes.security;
+
+import com.mes.service.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded TTL cache of authenticated principals, so AuthTokenFilter does not load the user
+ * from the database on every request. UserService drops a user's entry when it changes
+ * the user; other nodes pick up the change once the entry expires. Also records how long
+ * the filter takes per request.
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Value("${mes.security.principal-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${mes.security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, Entry> principals = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder authenticated = new LongAdder();
+    private final LongAdder anonymous = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram filterLatency =
+            new LatencyHistogram("Us", 10, 25, 50, 100, 250, 500, 1_000, 5_000, 10_000, 50_000);
+
+    public UserDetails get(String username) {
+        long now = System.nanoTime();
+        Entry entry = principals.get(username);
+        if (entry != null && now - entry.expiresAtNanos < 0) {
+            hits.increment();
+            return entry.principal;
+        }
+        misses.increment();
+        UserDetails principal = userDetailsService.loadUserByUsername(username);
+        if (principals.size() >= maxSize) {
+            evict(now);
+        }
+        principals.put(username, new Entry(principal, now + ttlSeconds * 1_000_000_000L));
+        return principal;
+    }
+
+    public void invalidate(String username) {
+        if (username != null && principals.remove(username) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public void recordFilter(long nanos, boolean tokenPresent, boolean accepted) {
+        filterLatency.record(nanos / 1_000);
+        if (!tokenPresent) {
+            anonymous.increment();
+        } else if (accepted) {
+            authenticated.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", principals.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 1.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("authenticatedRequests", authenticated.sum());
+        stats.put("anonymousRequests", anonymous.sum());
+        stats.put("rejectedTokens", rejected.sum());
+        stats.put("filterLatency", filterLatency.toMap());
+        return stats;
+    }
+
+    // Drop expired entries; if that frees nothing, drop arbitrary ones down to 90% of the bound
+    private void evict(long now) {
+        for (Iterator<Entry> it = principals.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().expiresAtNanos >= 0) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+        int target = maxSize - Math.max(1, maxSize / 10);
+        for (Iterator<Entry> it = principals.values().iterator(); it.hasNext() && principals.size() > target; ) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static class Entry {
+        private final UserDetails principal;
+        private final long expiresAtNanos;
+
+        private Entry(UserDetails principal, long expiresAtNanos) {
+            this.principal = principal;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mes.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sheds API requests by priority class when the node has too many in flight. Runs ahead of
+ * authentication so rejected requests cost as little as possible.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getServletPath().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RateLimiter.Priority priority = rateLimiter.classify(request.getServletPath());
+        if (!rateLimiter.tryAdmit(priority)) {
+            reject(request, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Service Unavailable",
+                    "Server is busy, " + priority.name().toLowerCase() + " priority requests are being shed",
+                    rateLimiter.getShedRetryAfterSeconds());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            rateLimiter.release();
+        }
+    }
+
+    /**
+     * Write a JSON error in the same shape as AuthEntryPointJwt, with a Retry-After header.
+     */
+    static void reject(HttpServletRequest request, HttpServletResponse response, int status, String error,
+                       String message, long retryAfterSeconds) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+
+        final Map<String, Object> body = new HashMap<>();
+        body.put("status", status);
+        body.put("error", error);
+        body.put("message", message);
+        body.put("path", request.getServletPath());
+        MAPPER.writeValue(response.getOutputStream(), body);
+    }
+}
@@ -17,6 +17,7 @@ public class UserDetailsImpl implements UserDetails {
     private String email;
     private String password;
     private Collection<? extends GrantedAuthority> authorities;
+    private boolean enabled;
 
     public static UserDetailsImpl build(User user) {
         List<GrantedAuthority> authorities = List.of(
@@ -28,7 +29,8 @@ public class UserDetailsImpl implements UserDetails {
             user.getUsername(),
             user.getEmail(),
             user.getPassword(),
-            authorities
+            authorities,
+            !Boolean.FALSE.equals(user.getEnabled())
         );
     }
 
@@ -49,6 +51,6 @@ public class UserDetailsImpl implements UserDetails {
 
     @Override
     public boolean isEnabled() {
-        return true;
+        return enabled;
     }
 }
@@ -0,0 +1,470 @@
+package com.mes.service;
+
+import com.mes.dto.AlertRuleMatch;
+import com.mes.model.AlertRule;
+import com.mes.model.EquipmentStatus;
+import com.mes.repository.AlertRuleRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates active alert_rules against telemetry samples.
+ *
+ * Active rules are compiled into an immutable rule set per equipment (its own rules plus
+ * the global ones), and within it into per-field threshold arrays. Upper-bound rules
+ * (GT/GTE) are sorted by ascending threshold and lower-bound rules (LT/LTE) by descending
+ * threshold, so a scan stops at the first rule that does not fire; a sample that triggers
+ * nothing costs at most one comparison per field and group. The compiled set is swapped
+ * atomically when rules change through AlertService, and reloaded periodically for
+ * changes made elsewhere.
+ */
+@Service
+public class AlertRuleEngine {
+
+    static final String TEMPERATURE = "temperature";
+    static final String VIBRATION = "vibration";
+    static final String OUTPUT_COUNT = "outputCount";
+    static final String STATUS = "status";
+
+    private static final int FIELD_TEMPERATURE = 0;
+    private static final int FIELD_VIBRATION = 1;
+    private static final int FIELD_OUTPUT = 2;
+    private static final String[] FIELD_NAMES = {TEMPERATURE, VIBRATION, OUTPUT_COUNT};
+
+    @Autowired
+    private AlertRuleRepository alertRuleRepository;
+
+    private volatile CompiledRules compiled = CompiledRules.EMPTY;
+
+    private final LongAdder samples = new LongAdder();
+    // Rules bound to the fields present in each sample
+    private final LongAdder rulesApplied = new LongAdder();
+    private final LongAccumulator maxRulesPerSample = new LongAccumulator(Math::max, 0);
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LatencyHistogram evaluationLatency =
+            new LatencyHistogram("Ns", 250, 500, 1_000, 2_500, 5_000, 10_000, 50_000, 100_000, 1_000_000);
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            System.err.println("Failed to compile alert rules: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mes.alerts.rules.reload-interval-ms:60000}",
+               initialDelayString = "${mes.alerts.rules.reload-interval-ms:60000}")
+    public void reload() {
+        long start = System.nanoTime();
+        List<AlertRule> active = alertRuleRepository.findByIsActive(true);
+
+        List<CompiledRule> global = new ArrayList<>();
+        Map<Long, List<CompiledRule>> byEquipment = new HashMap<>();
+        int skipped = 0;
+        for (AlertRule rule : active) {
+            CompiledRule compiledRule = compile(rule);
+            if (compiledRule == null) {
+                skipped++;
+                continue;
+            }
+            if (rule.getEquipment() == null) {
+                global.add(compiledRule);
+            } else {
+                byEquipment.computeIfAbsent(rule.getEquipment().getId(), id -> new ArrayList<>()).add(compiledRule);
+            }
+        }
+
+        Map<Long, RuleSet> perEquipment = new HashMap<>();
+        for (Map.Entry<Long, List<CompiledRule>> entry : byEquipment.entrySet()) {
+            List<CompiledRule> rules = new ArrayList<>(global);
+            rules.addAll(entry.getValue());
+            perEquipment.put(entry.getKey(), new RuleSet(rules));
+        }
+
+        compiled = new CompiledRules(new RuleSet(global), perEquipment, active.size() - skipped, skipped,
+                LocalDateTime.now(), System.nanoTime() - start);
+        reloads.increment();
+    }
+
+    /**
+     * Rules fired by one sample. Returns an empty immutable list (no allocation) when nothing fires.
+     */
+    public List<AlertRuleMatch> evaluate(Long equipmentId, EquipmentStatus status, Double temperature,
+                                         Double vibration, Integer outputCount) {
+        long start = System.nanoTime();
+        CompiledRules current = compiled;
+        RuleSet rules = equipmentId != null ? current.perEquipment.getOrDefault(equipmentId, current.global) : current.global;
+
+        List<AlertRuleMatch> fired = null;
+        int applied = 0;
+        if (temperature != null) {
+            applied += rules.fields[FIELD_TEMPERATURE].size;
+            fired = rules.fields[FIELD_TEMPERATURE].collect(TEMPERATURE, temperature, fired);
+        }
+        if (vibration != null) {
+            applied += rules.fields[FIELD_VIBRATION].size;
+            fired = rules.fields[FIELD_VIBRATION].collect(VIBRATION, vibration, fired);
+        }
+        if (outputCount != null) {
+            applied += rules.fields[FIELD_OUTPUT].size;
+            fired = rules.fields[FIELD_OUTPUT].collect(OUTPUT_COUNT, outputCount.doubleValue(), fired);
+        }
+        if (status != null) {
+            applied += rules.downRules.length;
+        }
+        if (status == EquipmentStatus.DOWN && rules.downRules.length > 0) {
+            if (fired == null) {
+                fired = new ArrayList<>(rules.downRules.length);
+            }
+            for (AlertRule rule : rules.downRules) {
+                fired.add(new AlertRuleMatch(rule, STATUS, null));
+            }
+        }
+
+        samples.increment();
+        rulesApplied.add(applied);
+        maxRulesPerSample.accumulate(applied);
+        if (fired != null) {
+            matches.add(fired.size());
+        }
+        evaluationLatency.record(System.nanoTime() - start);
+        return fired != null ? fired : List.of();
+    }
+
+    public Map<String, Object> getStats() {
+        CompiledRules current = compiled;
+        long sampleCount = samples.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("compiledRules", current.compiledRules);
+        stats.put("skippedRules", current.skippedRules);
+        stats.put("globalRules", current.global.size());
+        stats.put("equipmentWithOwnRules", current.perEquipment.size());
+        stats.put("compiledAt", current.compiledAt);
+        stats.put("compileMicros", current.compileNanos / 1000);
+        stats.put("reloads", reloads.sum());
+        stats.put("samples", sampleCount);
+        stats.put("matches", matches.sum());
+        stats.put("avgRulesPerSample", sampleCount > 0 ? (double) rulesApplied.sum() / sampleCount : 0.0);
+        stats.put("maxRulesPerSample", maxRulesPerSample.get());
+        stats.put("evaluationLatency", evaluationLatency.toMap());
+        return stats;
+    }
+
+    /**
+     * Supported conditions: temperature, vibration and outputCount with GT, GTE, LT, LTE,
+     * EQ or NEQ against conditionValue, and status (or rule type EQUIPMENT_DOWN), which
+     * fires while the equipment is DOWN. Anything else is skipped and counted.
+     */
+    private CompiledRule compile(AlertRule rule) {
+        CompiledRule compiledRule = parse(rule);
+        if (compiledRule == null) {
+            System.err.println("Skipping alert rule " + rule.getId() + " (" + rule.getRuleName()
+                    + "): unsupported condition " + rule.getConditionField() + " " + rule.getConditionOperator());
+        }
+        return compiledRule;
+    }
+
+    private static CompiledRule parse(AlertRule rule) {
+        String field = rule.getConditionField() != null ? rule.getConditionField().trim() : "";
+        if (STATUS.equalsIgnoreCase(field) || (field.isEmpty() && "EQUIPMENT_DOWN".equals(rule.getRuleType()))) {
+            return new CompiledRule(rule, -1, Operator.EQ, 0);
+        }
+
+        int fieldIndex = fieldIndex(field);
+        Operator operator = Operator.parse(rule.getConditionOperator());
+        if (fieldIndex < 0 || operator == null || rule.getConditionValue() == null) {
+            return null;
+        }
+        return new CompiledRule(rule, fieldIndex, operator, rule.getConditionValue().doubleValue());
+    }
+
+    /**
+     * Whether a sample clears a rule that fired earlier. Threshold rules only clear once the
+     * value is past the threshold by a deadband of hysteresis (a fraction of the threshold),
+     * so readings hovering around it keep the alert open. Null when the sample does not carry
+     * the rule's field.
+     */
+    public Boolean isCleared(AlertRule rule, EquipmentStatus status, Double temperature, Double vibration,
+                             Integer outputCount, double hysteresis) {
+        CompiledRule compiledRule = parse(rule);
+        if (compiledRule == null) {
+            return true;
+        }
+        if (compiledRule.field < 0) {
+            return status != null ? status != EquipmentStatus.DOWN : null;
+        }
+
+        Double value;
+        switch (compiledRule.field) {
+            case FIELD_TEMPERATURE:
+                value = temperature;
+                break;
+            case FIELD_VIBRATION:
+                value = vibration;
+                break;
+            default:
+                value = outputCount != null ? outputCount.doubleValue() : null;
+        }
+        if (value == null) {
+            return null;
+        }
+
+        double threshold = compiledRule.threshold;
+        double band = Math.abs(threshold) * hysteresis;
+        // The condition must also fail against the threshold moved by the deadband
+        switch (compiledRule.operator) {
+            case GT:
+            case GTE:
+                return !compiledRule.operator.test(value, threshold - band);
+            case LT:
+            case LTE:
+                return !compiledRule.operator.test(value, threshold + band);
+            default:
+                return !compiledRule.operator.test(value, threshold);
+        }
+    }
+
+    private static int fieldIndex(String field) {
+        switch (field.toLowerCase()) {
+            case "temperature":
+                return FIELD_TEMPERATURE;
+            case "vibration":
+                return FIELD_VIBRATION;
+            case "output":
+            case "outputcount":
+            case "output_count":
+                return FIELD_OUTPUT;
+            default:
+                return -1;
+        }
+    }
+
+    private enum Operator {
+        GT(">"), GTE(">="), LT("<"), LTE("<="), EQ("="), NEQ("!=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Operator parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            switch (value.trim().toUpperCase()) {
+                case "GT": case ">": return GT;
+                case "GTE": case ">=": return GTE;
+                case "LT": case "<": return LT;
+                case "LTE": case "<=": return LTE;
+                case "EQ": case "=": case "==": return EQ;
+                case "NEQ": case "NE": case "!=": return NEQ;
+                default: return null;
+            }
+        }
+
+        boolean test(double value, double threshold) {
+            switch (this) {
+                case GT: return value > threshold;
+                case GTE: return value >= threshold;
+                case LT: return value < threshold;
+                case LTE: return value <= threshold;
+                case EQ: return value == threshold;
+                default: return value != threshold;
+            }
+        }
+    }
+
+    /**
+     * Operator of a rule as a symbol for alert messages, e.g. "GTE" becomes ">=".
+     */
+    static String operatorSymbol(String operator) {
+        Operator parsed = Operator.parse(operator);
+        return parsed != null ? parsed.symbol : operator;
+    }
+
+    private static class CompiledRule {
+        private final AlertRule rule;
+        private final int field;
+        private final Operator operator;
+        private final double threshold;
+
+        private CompiledRule(AlertRule rule, int field, Operator operator, double threshold) {
+            this.rule = rule;
+            this.field = field;
+            this.operator = operator;
+            this.threshold = threshold;
+        }
+    }
+
+    /**
+     * Rules of one field as parallel arrays. Within each group the rules that fire for a
+     * value form a prefix, so scans stop at the first miss.
+     */
+    private static class FieldRules {
+        // GT/GTE by ascending threshold, GTE first on ties
+        private final double[] upperThresholds;
+        private final boolean[] upperInclusive;
+        private final AlertRule[] upperRules;
+        // LT/LTE by descending threshold, LTE first on ties
+        private final double[] lowerThresholds;
+        private final boolean[] lowerInclusive;
+        private final AlertRule[] lowerRules;
+        // EQ/NEQ, scanned in full
+        private final Operator[] otherOperators;
+        private final double[] otherThresholds;
+        private final AlertRule[] otherRules;
+        private final int size;
+
+        private FieldRules(List<CompiledRule> rules) {
+            size = rules.size();
+            List<CompiledRule> upper = new ArrayList<>();
+            List<CompiledRule> lower = new ArrayList<>();
+            List<CompiledRule> other = new ArrayList<>();
+            for (CompiledRule rule : rules) {
+                if (rule.operator == Operator.GT || rule.operator == Operator.GTE) {
+                    upper.add(rule);
+                } else if (rule.operator == Operator.LT || rule.operator == Operator.LTE) {
+                    lower.add(rule);
+                } else {
+                    other.add(rule);
+                }
+            }
+            upper.sort(Comparator.<CompiledRule>comparingDouble(r -> r.threshold)
+                    .thenComparing(r -> r.operator == Operator.GT));
+            lower.sort(Comparator.<CompiledRule>comparingDouble(r -> -r.threshold)
+                    .thenComparing(r -> r.operator == Operator.LT));
+
+            upperThresholds = new double[upper.size()];
+            upperInclusive = new boolean[upper.size()];
+            upperRules = new AlertRule[upper.size()];
+            for (int i = 0; i < upper.size(); i++) {
+                upperThresholds[i] = upper.get(i).threshold;
+                upperInclusive[i] = upper.get(i).operator == Operator.GTE;
+                upperRules[i] = upper.get(i).rule;
+            }
+            lowerThresholds = new double[lower.size()];
+            lowerInclusive = new boolean[lower.size()];
+            lowerRules = new AlertRule[lower.size()];
+            for (int i = 0; i < lower.size(); i++) {
+                lowerThresholds[i] = lower.get(i).threshold;
+                lowerInclusive[i] = lower.get(i).operator == Operator.LTE;
+                lowerRules[i] = lower.get(i).rule;
+            }
+            otherOperators = new Operator[other.size()];
+            otherThresholds = new double[other.size()];
+            otherRules = new AlertRule[other.size()];
+            for (int i = 0; i < other.size(); i++) {
+                otherOperators[i] = other.get(i).operator;
+                otherThresholds[i] = other.get(i).threshold;
+                otherRules[i] = other.get(i).rule;
+            }
+        }
+
+        private int upperMatches(double value) {
+            int i = 0;
+            while (i < upperThresholds.length
+                    && (value > upperThresholds[i] || (upperInclusive[i] && value == upperThresholds[i]))) {
+                i++;
+            }
+            return i;
+        }
+
+        private int lowerMatches(double value) {
+            int i = 0;
+            while (i < lowerThresholds.length
+                    && (value < lowerThresholds[i] || (lowerInclusive[i] && value == lowerThresholds[i]))) {
+                i++;
+            }
+            return i;
+        }
+
+        private List<AlertRuleMatch> collect(String field, double value, List<AlertRuleMatch> fired) {
+            int upperHits = upperMatches(value);
+            for (int i = 0; i < upperHits; i++) {
+                fired = add(fired, new AlertRuleMatch(upperRules[i], field, value));
+            }
+            int lowerHits = lowerMatches(value);
+            for (int i = 0; i < lowerHits; i++) {
+                fired = add(fired, new AlertRuleMatch(lowerRules[i], field, value));
+            }
+            for (int i = 0; i < otherRules.length; i++) {
+                if (otherOperators[i].test(value, otherThresholds[i])) {
+                    fired = add(fired, new AlertRuleMatch(otherRules[i], field, value));
+                }
+            }
+            return fired;
+        }
+
+        private static List<AlertRuleMatch> add(List<AlertRuleMatch> fired, AlertRuleMatch match) {
+            if (fired == null) {
+                fired = new ArrayList<>(2);
+            }
+            fired.add(match);
+            return fired;
+        }
+    }
+
+    private static class RuleSet {
+        private final FieldRules[] fields = new FieldRules[FIELD_NAMES.length];
+        private final AlertRule[] downRules;
+
+        private RuleSet(List<CompiledRule> rules) {
+            List<AlertRule> down = new ArrayList<>();
+            List<List<CompiledRule>> byField = new ArrayList<>();
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                byField.add(new ArrayList<>());
+            }
+            for (CompiledRule rule : rules) {
+                if (rule.field < 0) {
+                    down.add(rule.rule);
+                } else {
+                    byField.get(rule.field).add(rule);
+                }
+            }
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                fields[i] = new FieldRules(byField.get(i));
+            }
+            downRules = down.toArray(new AlertRule[0]);
+        }
+
+        private int size() {
+            int size = downRules.length;
+            for (FieldRules field : fields) {
+                size += field.size;
+            }
+            return size;
+        }
+    }
+
+    private static class CompiledRules {
+        private static final CompiledRules EMPTY =
+                new CompiledRules(new RuleSet(List.of()), Map.of(), 0, 0, null, 0);
+
+        private final RuleSet global;
+        private final Map<Long, RuleSet> perEquipment;
+        private final int compiledRules;
+        private final int skippedRules;
+        private final LocalDateTime compiledAt;
+        private final long compileNanos;
+
+        private CompiledRules(RuleSet global, Map<Long, RuleSet> perEquipment, int compiledRules, int skippedRules,
+                              LocalDateTime compiledAt, long compileNanos) {
+            this.global = global;
+            this.perEquipment = perEquipment;
+            this.compiledRules = compiledRules;
+            this.skippedRules = skippedRules;
+            this.compiledAt = compiledAt;
+            this.compileNanos = compileNanos;
+        }
+    }
+}
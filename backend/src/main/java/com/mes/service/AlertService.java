@@ -1,15 +1,27 @@
 package com.mes.service;
 
 import com.mes.dto.AlertNotification;
+import com.mes.dto.AlertRuleMatch;
+import com.mes.dto.KeysetPage;
 import com.mes.model.AlertHistory;
 import com.mes.model.AlertRule;
+import com.mes.model.Equipment;
+import com.mes.model.EquipmentStatus;
 import com.mes.repository.AlertHistoryRepository;
 import com.mes.repository.AlertRuleRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class AlertService {
@@ -21,15 +33,57 @@ public class AlertService {
     private AlertRuleRepository alertRuleRepository;
 
     @Autowired
-    private EmailNotificationService emailService;
+    private NotificationDispatcher notificationDispatcher;
 
     @Autowired
     private WebSocketService webSocketService;
 
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    @Autowired
+    private OpenAlertIndex openAlertIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Repeats of an open alert within this window only update its counter
+    @Value("${mes.alerts.dedup.window-seconds:900}")
+    private long dedupWindowSeconds;
+
+    // Deadband past the threshold, as a percentage of it, before an alert counts as clear
+    @Value("${mes.alerts.hysteresis-percent:2}")
+    private double hysteresisPercent;
+
+    @Value("${mes.alerts.clear-samples:3}")
+    private int clearSamples;
+
+    // Alert writes from rule evaluation always commit on their own, whatever the caller's transaction
+    private TransactionTemplate alertWrites;
+
+    @PostConstruct
+    public void init() {
+        alertWrites = new TransactionTemplate(transactionManager);
+        alertWrites.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
     public List<AlertHistory> getAllAlerts() {
         return alertHistoryRepository.findAllByOrderByTriggeredAtDesc();
     }
 
+    /**
+     * Keyset-paginated alerts, newest first, triggered in [from, to). Filters are optional.
+     */
+    public KeysetPage<AlertHistory> getAlertPage(LocalDateTime from, LocalDateTime to, Long equipmentId, String severity,
+                                                 String alertType, Boolean acknowledged, Boolean resolved,
+                                                 String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        Object[] position = KeysetPage.startAfter(cursor, to);
+        List<AlertHistory> items = alertHistoryRepository.findPage((LocalDateTime) position[0], (Long) position[1],
+                KeysetPage.since(from), equipmentId, severity, alertType, acknowledged, resolved, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, AlertHistory::getTriggeredAt, AlertHistory::getId);
+    }
+
     public List<AlertHistory> getUnacknowledgedAlerts() {
         return alertHistoryRepository.findByAcknowledged(false);
     }
@@ -51,7 +105,7 @@ public class AlertService {
         
         // Send notifications based on severity
         if ("CRITICAL".equals(notification.getType()) || "ERROR".equals(notification.getType())) {
-            emailService.sendCriticalAlert("admin@mes.com", notification.getEquipmentName(), notification.getMessage());
+            notificationDispatcher.queueCriticalAlert("admin@mes.com", notification.getEquipmentName(), notification.getMessage());
         }
         
         // Send WebSocket notification
@@ -60,6 +114,202 @@ public class AlertService {
         return savedAlert;
     }
 
+    /**
+     * Evaluate one telemetry sample against the compiled alert rules. A rule that fires opens
+     * an alert for its (equipment, rule type) unless one is already open, in which case only
+     * its occurrence counter moves; open alerts whose condition has cleared are resolved.
+     * Each write commits in its own transaction before the open-alert index is updated, so
+     * the index never tracks an alert that was not stored. Failures are logged and leave
+     * the index as it was, so the next sample tries again.
+     */
+    public void evaluateTelemetry(Long equipmentId, String equipmentName, EquipmentStatus status,
+                                  Double temperature, Double vibration, Integer outputCount,
+                                  LocalDateTime timestamp) {
+        if (equipmentId == null) {
+            return;
+        }
+        List<AlertRuleMatch> matches = alertRuleEngine.evaluate(equipmentId, status, temperature, vibration, outputCount);
+        LocalDateTime seenAt = timestamp != null ? timestamp : LocalDateTime.now();
+        String name = equipmentName != null ? equipmentName : "#" + equipmentId;
+
+        // Several rules of one type may fire together; the most severe one speaks for the type
+        Map<String, AlertRuleMatch> firedByType = matches.isEmpty() ? Map.of() : new HashMap<>();
+        for (AlertRuleMatch match : matches) {
+            firedByType.merge(match.getRule().getRuleType(), match, (a, b) ->
+                severityRank(b.getRule().getSeverity()) > severityRank(a.getRule().getSeverity()) ? b : a);
+        }
+        for (AlertRuleMatch match : firedByType.values()) {
+            try {
+                raiseRuleAlert(match, equipmentId, name, seenAt);
+            } catch (Exception e) {
+                System.err.println("Failed to raise alert for rule " + match.getRule().getId() + ": " + e.getMessage());
+            }
+        }
+
+        for (OpenAlertIndex.Track track : openAlertIndex.openTracks(equipmentId)) {
+            if (firedByType.containsKey(track.getAlertType())) {
+                continue;
+            }
+            try {
+                checkCleared(track, status, temperature, vibration, outputCount);
+            } catch (Exception e) {
+                System.err.println("Failed to resolve alert " + track.getAlertId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getOpenAlertStats() {
+        return openAlertIndex.getStats();
+    }
+
+    private void raiseRuleAlert(AlertRuleMatch match, Long equipmentId, String equipmentName,
+                                LocalDateTime seenAt) {
+        AlertRule rule = match.getRule();
+        OpenAlertIndex.Track track = openAlertIndex.track(equipmentId, rule.getRuleType());
+        synchronized (track) {
+            track.conditionFired();
+            if (track.isOpen() && !track.isStale(seenAt, dedupWindowSeconds)) {
+                if (severityRank(rule.getSeverity()) > severityRank(track.getSeverity())) {
+                    AlertNotification notification = toNotification(match, equipmentId, equipmentName, seenAt);
+                    Long alertId = track.getAlertId();
+                    alertWrites.executeWithoutResult(status -> alertHistoryRepository.escalate(alertId, rule,
+                        rule.getSeverity(), notification.getTitle(), notification.getMessage()));
+                    track.escalated(rule, seenAt);
+                    sendRuleNotifications(rule, notification, track);
+                } else {
+                    track.repeated(rule, seenAt);
+                }
+                return;
+            }
+
+            AlertNotification notification = toNotification(match, equipmentId, equipmentName, seenAt);
+            AlertHistory alert = new AlertHistory();
+            alert.setAlertRule(rule);
+            alert.setAlertType(rule.getRuleType());
+            alert.setSeverity(rule.getSeverity());
+            alert.setTitle(notification.getTitle());
+            alert.setMessage(notification.getMessage());
+            alert.setEquipmentName(equipmentName);
+            Equipment equipment = new Equipment();
+            equipment.setId(equipmentId);
+            alert.setEquipment(equipment);
+            alert.setTriggeredAt(seenAt);
+            alert.setLastSeenAt(seenAt);
+
+            // A stale open alert is closed and its successor opened in one transaction
+            boolean supersedes = track.isOpen();
+            AlertHistory savedAlert = alertWrites.execute(status -> {
+                if (supersedes) {
+                    autoResolve(track, "Not seen for over " + dedupWindowSeconds
+                        + " seconds, superseded by a new occurrence");
+                }
+                return alertHistoryRepository.save(alert);
+            });
+            if (supersedes) {
+                track.resolved();
+            }
+            track.opened(savedAlert.getId(), rule, seenAt);
+            sendRuleNotifications(rule, notification, track);
+        }
+    }
+
+    private void checkCleared(OpenAlertIndex.Track track, EquipmentStatus status, Double temperature,
+                              Double vibration, Integer outputCount) {
+        synchronized (track) {
+            if (!track.isOpen()) {
+                return;
+            }
+            Boolean cleared = alertRuleEngine.isCleared(track.getRule(), status, temperature, vibration,
+                outputCount, hysteresisPercent / 100.0);
+            if (cleared == null) {
+                return;
+            }
+            if (!cleared) {
+                track.conditionHeld();
+                return;
+            }
+            // A flapping alert stays open until the condition settles
+            if (track.conditionCleared() >= clearSamples && !track.isFlapping()) {
+                resolveTrack(track, "Condition cleared");
+            }
+        }
+    }
+
+    private void resolveTrack(OpenAlertIndex.Track track, String notes) {
+        alertWrites.executeWithoutResult(status -> autoResolve(track, notes));
+        track.resolved();
+    }
+
+    private void autoResolve(OpenAlertIndex.Track track, String notes) {
+        alertHistoryRepository.autoResolve(track.getAlertId(), "system", LocalDateTime.now(),
+            track.getOccurrences(), track.getLastSeenAt(), notes);
+    }
+
+    private AlertNotification toNotification(AlertRuleMatch match, Long equipmentId, String equipmentName,
+                                             LocalDateTime seenAt) {
+        AlertRule rule = match.getRule();
+        return new AlertNotification(
+            notificationType(rule.getSeverity()),
+            rule.getRuleName(),
+            describeMatch(match, equipmentName),
+            equipmentId,
+            equipmentName,
+            seenAt
+        );
+    }
+
+    private void sendRuleNotifications(AlertRule rule, AlertNotification notification, OpenAlertIndex.Track track) {
+        if (track.isFlapping()) {
+            openAlertIndex.notificationMuted();
+            return;
+        }
+        if (Boolean.TRUE.equals(rule.getNotificationEmail())
+                && ("CRITICAL".equals(rule.getSeverity()) || "HIGH".equals(rule.getSeverity()))) {
+            notificationDispatcher.queueCriticalAlert("admin@mes.com", notification.getEquipmentName(), notification.getMessage());
+        }
+        if (!Boolean.FALSE.equals(rule.getNotificationWebsocket())) {
+            webSocketService.sendAlert(notification);
+        }
+    }
+
+    private static int severityRank(String severity) {
+        if (severity == null) {
+            return 0;
+        }
+        switch (severity) {
+            case "CRITICAL":
+                return 4;
+            case "HIGH":
+                return 3;
+            case "MEDIUM":
+                return 2;
+            case "LOW":
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    // Rule severities (CRITICAL/HIGH/MEDIUM/LOW) onto the notification types clients already handle
+    private String notificationType(String severity) {
+        if ("CRITICAL".equals(severity) || "HIGH".equals(severity)) {
+            return "ERROR";
+        }
+        return "LOW".equals(severity) ? "INFO" : "WARNING";
+    }
+
+    private String describeMatch(AlertRuleMatch match, String equipmentName) {
+        AlertRule rule = match.getRule();
+        if (match.getValue() == null) {
+            return String.format("Equipment %s is currently down", equipmentName);
+        }
+        String unit = AlertRuleEngine.TEMPERATURE.equals(match.getField()) ? "°C"
+                : AlertRuleEngine.VIBRATION.equals(match.getField()) ? " mm/s" : "";
+        return String.format("Equipment %s %s is %.1f%s (threshold: %s %s%s)",
+            equipmentName, match.getField(), match.getValue(), unit,
+            AlertRuleEngine.operatorSymbol(rule.getConditionOperator()), rule.getConditionValue().stripTrailingZeros().toPlainString(), unit);
+    }
+
     @Transactional
     public AlertHistory acknowledgeAlert(Long id, String acknowledgedBy, String notes) {
         AlertHistory alert = alertHistoryRepository.findById(id)
@@ -87,7 +337,9 @@ public class AlertService {
             alert.setNotes(alert.getNotes() != null ? alert.getNotes() + "\n" + notes : notes);
         }
         
-        return alertHistoryRepository.save(alert);
+        AlertHistory saved = alertHistoryRepository.save(alert);
+        openAlertIndex.forget(id);
+        return saved;
     }
 
     // Alert Rules Management
@@ -100,7 +352,9 @@ public class AlertService {
     }
 
     public AlertRule createAlertRule(AlertRule rule) {
-        return alertRuleRepository.save(rule);
+        AlertRule saved = alertRuleRepository.save(rule);
+        alertRuleEngine.reload();
+        return saved;
     }
 
     public AlertRule updateAlertRule(Long id, AlertRule ruleDetails) {
@@ -118,10 +372,21 @@ public class AlertService {
         rule.setNotificationSms(ruleDetails.getNotificationSms());
         rule.setNotificationWebsocket(ruleDetails.getNotificationWebsocket());
         
-        return alertRuleRepository.save(rule);
+        AlertRule saved = alertRuleRepository.save(rule);
+        alertRuleEngine.reload();
+        return saved;
     }
 
     public void deleteAlertRule(Long id) {
         alertRuleRepository.deleteById(id);
+        alertRuleEngine.reload();
+    }
+
+    public Map<String, Object> getRuleEngineStats() {
+        return alertRuleEngine.getStats();
+    }
+
+    public void reloadAlertRules() {
+        alertRuleEngine.reload();
     }
 }
@@ -5,7 +5,7 @@ import com.mes.model.*;
 import com.mes.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.time.LocalDate;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -29,11 +29,36 @@ public class AnalyticsService {
     @Autowired
     private QualityCheckRepository qualityCheckRepository;
 
+    @Autowired
+    private TelemetryRollupService telemetryRollupService;
+
+    @Autowired
+    private ColdArchiveService coldArchiveService;
+
     public List<HistoricalDataPoint> getHistoricalData(Long equipmentId, LocalDateTime startDate, LocalDateTime endDate) {
-        List<EquipmentLog> logs = equipmentLogRepository.findByEquipmentIdOrderByTimestampDesc(equipmentId);
-        
+        List<EquipmentLog> logs = new ArrayList<>(equipmentLogRepository.findByEquipmentIdInRange(equipmentId, startDate, endDate));
+
+        // Older days may have been moved to the cold archive; rows still in the table win
+        Set<Long> liveIds = logs.stream().map(EquipmentLog::getId).collect(Collectors.toSet());
+        List<Map<String, Object>> archived = coldArchiveService.read("equipment_log", equipmentId, startDate, endDate,
+                "temperature", "vibration", "output_count");
+        for (Map<String, Object> row : archived) {
+            if (liveIds.contains(row.get("id"))) {
+                continue;
+            }
+            EquipmentLog log = new EquipmentLog();
+            log.setId((Long) row.get("id"));
+            log.setTimestamp((LocalDateTime) row.get("timestamp"));
+            log.setTemperature((Double) row.get("temperature"));
+            log.setVibration((Double) row.get("vibration"));
+            log.setOutputCount(row.get("output_count") != null ? ((Long) row.get("output_count")).intValue() : null);
+            logs.add(log);
+        }
+        if (!archived.isEmpty()) {
+            logs.sort(Comparator.comparing(EquipmentLog::getTimestamp).reversed());
+        }
+
         return logs.stream()
-                .filter(log -> log.getTimestamp().isAfter(startDate) && log.getTimestamp().isBefore(endDate))
                 .flatMap(log -> {
                     List<HistoricalDataPoint> points = new ArrayList<>();
                     if (log.getTemperature() != null) {
@@ -50,18 +75,41 @@ public class AnalyticsService {
                 .collect(Collectors.toList());
     }
 
-    public List<ProductionEfficiencyReport> getProductionEfficiencyReport(LocalDateTime startDate, LocalDateTime endDate) {
-        List<ProductionOrder> orders = productionOrderRepository.findAll().stream()
-                .filter(order -> order.getCreatedAt().isAfter(startDate) && order.getCreatedAt().isBefore(endDate))
+    /**
+     * Historical data at the requested resolution, read from the coarsest rollup whose
+     * buckets are no wider than the step. Each point is the bucket average.
+     */
+    public List<HistoricalDataPoint> getHistoricalData(Long equipmentId, LocalDateTime startDate, LocalDateTime endDate,
+                                                       Duration resolution) {
+        List<TelemetryRollup> rollups = telemetryRollupService.getRollups(equipmentId, startDate, endDate, resolution);
+
+        return rollups.stream()
+                .flatMap(rollup -> {
+                    List<HistoricalDataPoint> points = new ArrayList<>();
+                    if (rollup.getTemperatureAvg() != null) {
+                        points.add(new HistoricalDataPoint(rollup.getBucketStart(), "temperature", rollup.getTemperatureAvg(), "°C"));
+                    }
+                    if (rollup.getVibrationAvg() != null) {
+                        points.add(new HistoricalDataPoint(rollup.getBucketStart(), "vibration", rollup.getVibrationAvg(), "mm/s"));
+                    }
+                    if (rollup.getOutputAvg() != null) {
+                        points.add(new HistoricalDataPoint(rollup.getBucketStart(), "output", rollup.getOutputAvg(), "units"));
+                    }
+                    return points.stream();
+                })
                 .collect(Collectors.toList());
+    }
+
+    public List<ProductionEfficiencyReport> getProductionEfficiencyReport(LocalDateTime startDate, LocalDateTime endDate) {
+        List<ProductionOrderSummary> orders = productionOrderRepository.findOrderSummariesCreatedBetween(startDate, endDate);
 
         return orders.stream().map(order -> {
             ProductionEfficiencyReport report = new ProductionEfficiencyReport();
-            report.setOrderId(order.getId());
+            report.setOrderId(order.getOrderId());
             report.setOrderNumber(order.getOrderNumber());
             report.setProductName(order.getProductName());
             report.setTargetQuantity(order.getTargetQuantity());
-            report.setProducedQuantity(order.getProducedQuantity() != null ? order.getProducedQuantity() : 0);
+            report.setProducedQuantity(order.getProducedQuantity());
             
             double completionRate = order.getTargetQuantity() > 0 
                 ? (report.getProducedQuantity().doubleValue() / order.getTargetQuantity()) * 100 
@@ -92,6 +140,9 @@ public class AnalyticsService {
         List<Equipment> equipmentList = equipmentRepository.findAll();
         long totalMinutes = ChronoUnit.MINUTES.between(startDate, endDate);
 
+        // Status durations come from the telemetry rollups instead of scanning equipment_log
+        Map<Long, StatusDurationSummary> durations = telemetryRollupService.getStatusDurations(startDate, endDate);
+
         return equipmentList.stream().map(equipment -> {
             EquipmentUtilizationReport report = new EquipmentUtilizationReport();
             report.setEquipmentId(equipment.getId());
@@ -99,20 +150,12 @@ public class AnalyticsService {
             report.setEquipmentCode(equipment.getCode());
             report.setTotalMinutes(totalMinutes);
 
-            // Get equipment logs in date range
-            List<EquipmentLog> logs = equipmentLogRepository.findByEquipmentIdOrderByTimestampDesc(equipment.getId())
-                    .stream()
-                    .filter(log -> log.getTimestamp().isAfter(startDate) && log.getTimestamp().isBefore(endDate))
-                    .collect(Collectors.toList());
-
-            // Calculate status durations (simplified - in production, use more accurate tracking)
-            long runningMinutes = logs.stream()
-                    .filter(log -> "RUNNING".equals(log.getStatus()))
-                    .count() * 5; // Assuming 5-minute intervals
-            
-            long idleMinutes = totalMinutes - runningMinutes;
-            long downMinutes = 0L;
-            long maintenanceMinutes = 0L;
+            StatusDurationSummary summary = durations.get(equipment.getId());
+            long runningMinutes = summary != null ? toMinutes(summary.getRunningSeconds()) : 0L;
+            long downMinutes = summary != null ? toMinutes(summary.getDownSeconds()) : 0L;
+            long maintenanceMinutes = summary != null ? toMinutes(summary.getMaintenanceSeconds()) : 0L;
+            // Time without telemetry counts as idle
+            long idleMinutes = Math.max(0L, totalMinutes - runningMinutes - downMinutes - maintenanceMinutes);
 
             report.setRunningMinutes(runningMinutes);
             report.setIdleMinutes(idleMinutes);
@@ -129,44 +172,26 @@ public class AnalyticsService {
         }).collect(Collectors.toList());
     }
 
-    public List<DowntimeAnalysisReport> getDowntimeAnalysisReport(LocalDateTime startDate, LocalDateTime endDate) {
-        List<DowntimeEvent> events = downtimeEventRepository.findAll().stream()
-                .filter(event -> event.getStartTime().isAfter(startDate) && event.getStartTime().isBefore(endDate))
-                .collect(Collectors.toList());
+    private long toMinutes(Double seconds) {
+        return seconds != null ? Math.round(seconds / 60.0) : 0L;
+    }
 
-        Map<String, List<DowntimeEvent>> groupedByReason = events.stream()
-                .collect(Collectors.groupingBy(
-                    event -> event.getReasonCode() != null ? event.getReasonCode() : "UNKNOWN"
-                ));
+    public List<DowntimeAnalysisReport> getDowntimeAnalysisReport(LocalDateTime startDate, LocalDateTime endDate) {
+        List<DowntimeReasonSummary> summaries = downtimeEventRepository.summarizeByReasonCode(startDate, endDate);
 
-        long totalDowntimeMinutes = events.stream()
-                .mapToLong(event -> {
-                    if (event.getEndTime() != null) {
-                        return ChronoUnit.MINUTES.between(event.getStartTime(), event.getEndTime());
-                    }
-                    return 0;
-                })
+        long totalDowntimeMinutes = summaries.stream()
+                .mapToLong(summary -> summary.getTotalMinutes().longValue())
                 .sum();
 
-        return groupedByReason.entrySet().stream().map(entry -> {
-            String reasonCode = entry.getKey();
-            List<DowntimeEvent> reasonEvents = entry.getValue();
-
-            long occurrences = reasonEvents.size();
-            long totalMinutes = reasonEvents.stream()
-                    .mapToLong(event -> {
-                        if (event.getEndTime() != null) {
-                            return ChronoUnit.MINUTES.between(event.getStartTime(), event.getEndTime());
-                        }
-                        return 0;
-                    })
-                    .sum();
+        return summaries.stream().map(summary -> {
+            long occurrences = summary.getOccurrences();
+            long totalMinutes = summary.getTotalMinutes().longValue();
 
             double averageMinutes = occurrences > 0 ? (double) totalMinutes / occurrences : 0;
             double percentage = totalDowntimeMinutes > 0 ? ((double) totalMinutes / totalDowntimeMinutes) * 100 : 0;
 
             return new DowntimeAnalysisReport(
-                reasonCode,
+                summary.getReasonCode(),
                 occurrences,
                 totalMinutes,
                 Math.round(averageMinutes * 100.0) / 100.0,
@@ -178,27 +203,19 @@ public class AnalyticsService {
     }
 
     public List<QualityTrendReport> getQualityTrendReport(LocalDateTime startDate, LocalDateTime endDate) {
-        List<QualityCheck> checks = qualityCheckRepository.findAll().stream()
-                .filter(check -> check.getCheckTime().isAfter(startDate) && check.getCheckTime().isBefore(endDate))
-                .collect(Collectors.toList());
-
-        Map<LocalDate, List<QualityCheck>> groupedByDate = checks.stream()
-                .collect(Collectors.groupingBy(check -> check.getCheckTime().toLocalDate()));
-
-        return groupedByDate.entrySet().stream().map(entry -> {
-            LocalDate date = entry.getKey();
-            List<QualityCheck> dayChecks = entry.getValue();
+        List<QualityDailySummary> summaries = qualityCheckRepository.summarizeByDay(startDate, endDate);
 
-            int totalChecks = dayChecks.size();
-            int totalPassed = dayChecks.stream().mapToInt(QualityCheck::getPassedCount).sum();
-            int totalRejected = dayChecks.stream().mapToInt(QualityCheck::getRejectedCount).sum();
+        return summaries.stream().map(summary -> {
+            int totalChecks = summary.getTotalChecks().intValue();
+            int totalPassed = summary.getTotalPassed() != null ? summary.getTotalPassed().intValue() : 0;
+            int totalRejected = summary.getTotalRejected() != null ? summary.getTotalRejected().intValue() : 0;
             int totalUnits = totalPassed + totalRejected;
 
             double passRate = totalUnits > 0 ? ((double) totalPassed / totalUnits) * 100 : 0;
             double rejectRate = totalUnits > 0 ? ((double) totalRejected / totalUnits) * 100 : 0;
 
             return new QualityTrendReport(
-                date,
+                summary.getDate(),
                 totalChecks,
                 totalPassed,
                 totalRejected,
@@ -206,7 +223,6 @@ public class AnalyticsService {
                 Math.round(rejectRate * 100.0) / 100.0
             );
         })
-        .sorted(Comparator.comparing(QualityTrendReport::getDate))
         .collect(Collectors.toList());
     }
 }
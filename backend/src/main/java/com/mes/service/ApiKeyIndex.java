@@ -0,0 +1,333 @@
+package com.mes.service;
+
+import com.mes.model.ApiKey;
+import com.mes.repository.ApiKeyRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of API keys, keyed by the SHA-256 of the key so raw keys are not held
+ * in memory. Permissions and IP allow-lists are parsed once per reload instead of on every
+ * request. Keys changed through ApiKeyService are reloaded after commit; other nodes pick
+ * changes up on the periodic refresh.
+ *
+ * Usage is counted in memory and written back for all keys in one UPDATE per flush.
+ */
+@Service
+public class ApiKeyIndex {
+
+    private static final String FLUSH_USAGE_SQL =
+            "UPDATE api_key k SET usage_count = COALESCE(k.usage_count, 0) + u.cnt, " +
+            "last_used = GREATEST(k.last_used, u.ts) " +
+            "FROM unnest(?::bigint[], ?::bigint[], ?::timestamp[]) AS u(id, cnt, ts) WHERE k.id = u.id";
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Autowired
+    private ApiKeyRepository apiKeyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Map<String, Entry> byHash = Collections.emptyMap();
+
+    private final Map<Long, Usage> usage = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder unknownKeys = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder usageFlushes = new LongAdder();
+    private final LongAdder usageFlushed = new LongAdder();
+    private final LongAdder usageFlushFailures = new LongAdder();
+    private volatile long lastFlushMs;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${mes.security.api-key.refresh-interval-ms:60000}",
+               initialDelayString = "${mes.security.api-key.refresh-interval-ms:60000}")
+    public void reload() {
+        try {
+            Map<String, Entry> index = new HashMap<>();
+            for (ApiKey key : apiKeyRepository.findAll()) {
+                index.put(hash(key.getApiKey()), new Entry(key));
+            }
+            byHash = index;
+            reloads.increment();
+        } catch (Exception e) {
+            // Keep serving the previous index
+            System.err.println("Failed to reload API key index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Entry for a raw key, or null when the key is unknown.
+     */
+    public Entry lookup(String rawKey) {
+        lookups.increment();
+        Entry entry = rawKey != null ? byHash.get(hash(rawKey)) : null;
+        if (entry == null) {
+            unknownKeys.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Resolve a key for a request, throwing with the reason when it may not be used.
+     * Null ipAddress or path skips the corresponding check.
+     */
+    public Entry authenticate(String rawKey, String ipAddress, String path) {
+        Entry entry = lookup(rawKey);
+        String reason = null;
+        if (entry == null) {
+            reason = "Invalid API key";
+        } else if (!entry.active) {
+            reason = "API key is inactive";
+        } else if (entry.isExpired()) {
+            reason = "API key has expired";
+        } else if (ipAddress != null && !entry.allowsIp(ipAddress)) {
+            reason = "API key is not allowed from " + ipAddress;
+        } else if (path != null && !entry.allowsPath(path)) {
+            reason = "API key is not allowed to access " + path;
+        }
+        if (reason != null) {
+            if (entry != null) {
+                rejected.increment();
+            }
+            throw new RuntimeException(reason);
+        }
+        return entry;
+    }
+
+    public void recordUsage(Long keyId) {
+        Usage counter = usage.computeIfAbsent(keyId, id -> new Usage());
+        counter.count.increment();
+        counter.lastUsedMs = System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${mes.security.api-key.usage-flush-interval-ms:10000}")
+    public void flushUsage() {
+        List<Long> ids = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        List<Timestamp> lastUsed = new ArrayList<>();
+        for (Map.Entry<Long, Usage> e : usage.entrySet()) {
+            long count = e.getValue().count.sum();
+            if (count > 0) {
+                ids.add(e.getKey());
+                counts.add(count);
+                lastUsed.add(new Timestamp(e.getValue().lastUsedMs));
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            jdbcTemplate.update(FLUSH_USAGE_SQL, ps -> {
+                Array idArray = ps.getConnection().createArrayOf("bigint", ids.toArray());
+                Array countArray = ps.getConnection().createArrayOf("bigint", counts.toArray());
+                Array tsArray = ps.getConnection().createArrayOf("timestamp", lastUsed.toArray());
+                ps.setArray(1, idArray);
+                ps.setArray(2, countArray);
+                ps.setArray(3, tsArray);
+            });
+        } catch (Exception e) {
+            // Counts stay in memory and go out with the next flush
+            usageFlushFailures.increment();
+            System.err.println("Failed to flush API key usage for " + ids.size() + " keys: " + e.getMessage());
+            return;
+        }
+        // Subtract what was written rather than resetting, so concurrent increments are kept
+        for (int i = 0; i < ids.size(); i++) {
+            Usage counter = usage.get(ids.get(i));
+            if (counter != null) {
+                counter.count.add(-counts.get(i));
+            }
+            usageFlushed.add(counts.get(i));
+        }
+        usageFlushes.increment();
+        lastFlushMs = System.currentTimeMillis() - start;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushUsage();
+    }
+
+    public Map<String, Object> getStats() {
+        long pending = 0;
+        for (Usage counter : usage.values()) {
+            pending += counter.count.sum();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keys", byHash.size());
+        stats.put("reloads", reloads.sum());
+        stats.put("lookups", lookups.sum());
+        stats.put("unknownKeys", unknownKeys.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("pendingUsage", pending);
+        stats.put("usageFlushes", usageFlushes.sum());
+        stats.put("usageFlushed", usageFlushed.sum());
+        stats.put("usageFlushFailures", usageFlushFailures.sum());
+        stats.put("lastFlushMs", lastFlushMs);
+        return stats;
+    }
+
+    private static String hash(String rawKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A key as parsed at load time. Permissions starting with "/" are path patterns the key
+     * is limited to; any other permission is an operation name. No path patterns (or "*")
+     * means the key is not limited by path.
+     */
+    public static class Entry {
+        private final Long id;
+        private final String keyName;
+        private final boolean active;
+        private final LocalDateTime expiresAt;
+        private final Integer rateLimitPerMinute;
+        private final Integer rateLimitPerHour;
+        private final Set<String> permissions;
+        private final List<String> pathPatterns;
+        private final List<IpAddressMatcher> allowedIps;
+
+        private Entry(ApiKey key) {
+            this.id = key.getId();
+            this.keyName = key.getKeyName();
+            this.active = Boolean.TRUE.equals(key.getIsActive());
+            this.expiresAt = key.getExpiresAt();
+            this.rateLimitPerMinute = key.getRateLimitPerMinute();
+            this.rateLimitPerHour = key.getRateLimitPerHour();
+
+            Set<String> perms = new LinkedHashSet<>();
+            List<String> patterns = new ArrayList<>();
+            if (key.getPermissions() != null) {
+                for (String permission : key.getPermissions()) {
+                    if (permission == null || permission.isBlank()) {
+                        continue;
+                    }
+                    String p = permission.trim();
+                    perms.add(p);
+                    if (p.startsWith("/")) {
+                        patterns.add(p);
+                    }
+                }
+            }
+            this.permissions = Collections.unmodifiableSet(perms);
+            this.pathPatterns = perms.contains("*") ? Collections.emptyList() : patterns;
+
+            List<IpAddressMatcher> ips = new ArrayList<>();
+            boolean restricted = false;
+            if (key.getAllowedIpAddresses() != null) {
+                for (String allowed : key.getAllowedIpAddresses()) {
+                    if (allowed == null || allowed.isBlank()) {
+                        continue;
+                    }
+                    restricted = true;
+                    try {
+                        // Accepts single addresses and CIDR ranges, IPv4 or IPv6
+                        ips.add(new IpAddressMatcher(allowed.trim()));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Ignoring invalid allowed IP '" + allowed + "' on API key " + keyName);
+                    }
+                }
+                if (restricted && ips.isEmpty()) {
+                    // Entries were configured but none could be parsed: allow nothing rather than everything
+                    ips = null;
+                }
+            }
+            this.allowedIps = ips;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getKeyName() {
+            return keyName;
+        }
+
+        public Integer getRateLimitPerMinute() {
+            return rateLimitPerMinute;
+        }
+
+        public Integer getRateLimitPerHour() {
+            return rateLimitPerHour;
+        }
+
+        public Set<String> getPermissions() {
+            return permissions;
+        }
+
+        public boolean isExpired() {
+            return expiresAt != null && expiresAt.isBefore(LocalDateTime.now());
+        }
+
+        public boolean hasPermission(String permission) {
+            return permissions.contains(permission) || permissions.contains("*");
+        }
+
+        public boolean allowsIp(String ipAddress) {
+            if (allowedIps == null) {
+                return false;
+            }
+            if (allowedIps.isEmpty()) {
+                return true; // No IP restriction
+            }
+            for (IpAddressMatcher matcher : allowedIps) {
+                try {
+                    if (matcher.matches(ipAddress)) {
+                        return true;
+                    }
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        public boolean allowsPath(String path) {
+            if (pathPatterns.isEmpty()) {
+                return true;
+            }
+            for (String pattern : pathPatterns) {
+                if (PATH_MATCHER.match(pattern, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Usage {
+        private final LongAdder count = new LongAdder();
+        private volatile long lastUsedMs;
+    }
+}
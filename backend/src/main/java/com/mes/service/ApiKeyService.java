@@ -6,10 +6,13 @@ import com.mes.repository.ApiKeyRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ApiKeyService {
@@ -17,6 +20,9 @@ public class ApiKeyService {
     @Autowired
     private ApiKeyRepository apiKeyRepository;
 
+    @Autowired
+    private ApiKeyIndex apiKeyIndex;
+
     private static final SecureRandom secureRandom = new SecureRandom();
     private static final Base64.Encoder base64Encoder = Base64.getUrlEncoder();
 
@@ -33,7 +39,9 @@ public class ApiKeyService {
         apiKey.setCreatedBy(createdBy);
         apiKey.setIsActive(true);
         
-        return apiKeyRepository.save(apiKey);
+        ApiKey saved = apiKeyRepository.save(apiKey);
+        reloadIndexAfterCommit();
+        return saved;
     }
 
     @Transactional
@@ -50,7 +58,9 @@ public class ApiKeyService {
         apiKey.setAllowedIpAddresses(apiKeyDetails.getAllowedIpAddresses());
         apiKey.setExpiresAt(apiKeyDetails.getExpiresAt());
         
-        return apiKeyRepository.save(apiKey);
+        ApiKey saved = apiKeyRepository.save(apiKey);
+        reloadIndexAfterCommit();
+        return saved;
     }
 
     public List<ApiKey> getAllApiKeys() {
@@ -67,40 +77,33 @@ public class ApiKeyService {
     }
 
     public ApiKey validateApiKey(String apiKey) {
-        ApiKey key = apiKeyRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new RuntimeException("Invalid API key"));
-        
-        if (!key.getIsActive()) {
-            throw new RuntimeException("API key is inactive");
-        }
-        
-        if (key.getExpiresAt() != null && key.getExpiresAt().isBefore(LocalDateTime.now())) {
-            throw new RuntimeException("API key has expired");
-        }
-        
-        return key;
+        ApiKeyIndex.Entry entry = apiKeyIndex.authenticate(apiKey, null, null);
+        return getApiKeyById(entry.getId());
     }
 
-    @Transactional
     public void recordApiKeyUsage(String apiKey) {
-        ApiKey key = apiKeyRepository.findByApiKey(apiKey).orElse(null);
-        if (key != null) {
-            key.setLastUsed(LocalDateTime.now());
-            key.setUsageCount(key.getUsageCount() + 1);
-            apiKeyRepository.save(key);
+        ApiKeyIndex.Entry entry = apiKeyIndex.lookup(apiKey);
+        if (entry != null) {
+            apiKeyIndex.recordUsage(entry.getId());
         }
     }
 
+    public Map<String, Object> getIndexStats() {
+        return apiKeyIndex.getStats();
+    }
+
     @Transactional
     public void revokeApiKey(Long id) {
         ApiKey apiKey = getApiKeyById(id);
         apiKey.setIsActive(false);
         apiKeyRepository.save(apiKey);
+        reloadIndexAfterCommit();
     }
 
     @Transactional
     public void deleteApiKey(Long id) {
         apiKeyRepository.deleteById(id);
+        reloadIndexAfterCommit();
     }
 
     private String generateApiKey() {
@@ -119,17 +122,24 @@ public class ApiKeyService {
         return apiKey.getPermissions() != null && apiKey.getPermissions().contains(permission);
     }
 
+    /**
+     * Allowed addresses may be single addresses or CIDR ranges (e.g. 10.0.0.0/8).
+     */
     public boolean isIpAllowed(ApiKey apiKey, String ipAddress) {
-        if (apiKey.getAllowedIpAddresses() == null || apiKey.getAllowedIpAddresses().length == 0) {
-            return true; // No IP restriction
-        }
-        
-        for (String allowedIp : apiKey.getAllowedIpAddresses()) {
-            if (allowedIp.equals(ipAddress)) {
-                return true;
-            }
+        ApiKeyIndex.Entry entry = apiKeyIndex.lookup(apiKey.getApiKey());
+        return entry != null && entry.allowsIp(ipAddress);
+    }
+
+    private void reloadIndexAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apiKeyIndex.reload();
+                }
+            });
+        } else {
+            apiKeyIndex.reload();
         }
-        
-        return false;
     }
 }
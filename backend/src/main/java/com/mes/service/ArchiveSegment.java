@@ -0,0 +1,380 @@
+package com.mes.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable columnar segment file holding archived rows, sorted by their timestamp column.
+ * Each column is encoded on its own (deltas for integers and timestamps, XOR of the previous
+ * value for doubles, a dictionary for strings) and deflated, so a reader inflates only the
+ * columns it asks for. The header keeps every column's min and max.
+ *
+ * <pre>
+ * int magic, short version, int rowCount, short columnCount
+ * per column: short nameLength, UTF-8 name, byte kind, long min, long max, long offset, int compressedLength, int rawLength
+ * column blocks: null bitmap followed by the non-null values
+ * </pre>
+ */
+public class ArchiveSegment {
+
+    public enum Kind { LONG, DOUBLE, TIMESTAMP, BOOLEAN, STRING }
+
+    private static final int MAGIC = 0x4D455347; // "MESG"
+    private static final short VERSION = 1;
+
+    private final int rowCount;
+    private final Map<String, Column> columns;
+    private final ByteBuffer data;
+
+    private ArchiveSegment(int rowCount, Map<String, Column> columns, ByteBuffer data) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.data = data;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Set<String> getColumnNames() {
+        return columns.keySet();
+    }
+
+    /**
+     * Min and max of a numeric or timestamp column, or null when the column has no values.
+     */
+    public Object[] getRange(String name) {
+        Column column = columns.get(name);
+        if (column == null || column.kind == Kind.BOOLEAN || column.kind == Kind.STRING) {
+            return null;
+        }
+        if (column.kind == Kind.DOUBLE) {
+            double min = Double.longBitsToDouble(column.min);
+            double max = Double.longBitsToDouble(column.max);
+            return min > max ? null : new Object[] {min, max};
+        }
+        return column.min > column.max ? null
+                : new Object[] {decodeScalar(column.kind, column.min), decodeScalar(column.kind, column.max)};
+    }
+
+    /**
+     * Decode one column; values are Long, Double, LocalDateTime, Boolean or String, null where
+     * the row had none. A column the segment does not have comes back as all nulls.
+     */
+    public Object[] read(String name) {
+        Column column = columns.get(name);
+        Object[] values = new Object[rowCount];
+        if (column == null) {
+            return values;
+        }
+
+        byte[] raw = new byte[column.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer block = data.duplicate();
+            block.position((int) column.offset).limit((int) column.offset + column.compressedLength);
+            inflater.setInput(block);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Corrupt archive segment column " + name, e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        byte[] nulls = new byte[(rowCount + 7) / 8];
+        in.get(nulls);
+        List<String> dictionary = null;
+        if (column.kind == Kind.STRING) {
+            int size = (int) readVarLong(in);
+            dictionary = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.get(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if ((nulls[i >> 3] & (1 << (i & 7))) != 0) {
+                continue;
+            }
+            switch (column.kind) {
+                case LONG:
+                case TIMESTAMP:
+                    previous += zigZagDecode(readVarLong(in));
+                    values[i] = decodeScalar(column.kind, previous);
+                    break;
+                case DOUBLE:
+                    previous ^= in.getLong();
+                    values[i] = Double.longBitsToDouble(previous);
+                    break;
+                case BOOLEAN:
+                    values[i] = in.get() != 0;
+                    break;
+                default:
+                    values[i] = dictionary.get((int) readVarLong(in));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Map a segment file read-only. The mapping stays valid after the file is replaced or deleted.
+     */
+    public static ArchiveSegment open(Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = data.duplicate();
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not an archive segment: " + file);
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive segment version " + version + ": " + file);
+        }
+        int rowCount = in.getInt();
+        int columnCount = in.getShort();
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (int i = 0; i < columnCount; i++) {
+            byte[] nameBytes = new byte[in.getShort() & 0xFFFF];
+            in.get(nameBytes);
+            Column column = new Column(Kind.values()[in.get()]);
+            column.min = in.getLong();
+            column.max = in.getLong();
+            column.offset = in.getLong();
+            column.compressedLength = in.getInt();
+            column.rawLength = in.getInt();
+            columns.put(new String(nameBytes, StandardCharsets.UTF_8), column);
+        }
+        return new ArchiveSegment(rowCount, columns, data);
+    }
+
+    /**
+     * Write rows to a new segment file, replacing any existing one only once the new file is
+     * complete and synced. Values must already be sorted by the caller.
+     *
+     * @param kinds column names and kinds, in file order
+     * @param values one array per column, each {@code rowCount} long
+     * @return size of the file in bytes
+     */
+    public static long write(Path file, LinkedHashMap<String, Kind> kinds, Map<String, Object[]> values,
+                             int rowCount) throws IOException {
+        List<byte[]> blocks = new ArrayList<>();
+        List<Column> columns = new ArrayList<>();
+        for (Map.Entry<String, Kind> entry : kinds.entrySet()) {
+            Column column = new Column(entry.getValue());
+            byte[] raw = encode(column, values.get(entry.getKey()), rowCount);
+            byte[] compressed = deflate(raw);
+            column.rawLength = raw.length;
+            column.compressedLength = compressed.length;
+            columns.add(column);
+            blocks.add(compressed);
+        }
+
+        // Header has a fixed size once names are known, so offsets can be laid out up front
+        long offset = header(kinds.keySet(), columns, rowCount).length;
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).offset = offset;
+            offset += blocks.get(i).length;
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(header(kinds.keySet(), columns, rowCount)));
+            for (byte[] block : blocks) {
+                channel.write(ByteBuffer.wrap(block));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return offset;
+    }
+
+    private static byte[] header(Collection<String> names, List<Column> columns, int rowCount) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(rowCount);
+        out.writeShort(columns.size());
+        Iterator<String> name = names.iterator();
+        for (Column column : columns) {
+            byte[] nameBytes = name.next().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(nameBytes.length);
+            out.write(nameBytes);
+            out.writeByte(column.kind.ordinal());
+            out.writeLong(column.min);
+            out.writeLong(column.max);
+            out.writeLong(column.offset);
+            out.writeInt(column.compressedLength);
+            out.writeInt(column.rawLength);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // Null bitmap and values of one column; also fills in the column's min and max
+    private static byte[] encode(Column column, Object[] values, int rowCount) {
+        byte[] nulls = new byte[(rowCount + 7) / 8];
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ByteArrayOutputStream indexes = new ByteArrayOutputStream();
+        long previous = 0;
+        double minDouble = Double.POSITIVE_INFINITY;
+        double maxDouble = Double.NEGATIVE_INFINITY;
+        column.min = Long.MAX_VALUE;
+        column.max = Long.MIN_VALUE;
+
+        for (int i = 0; i < rowCount; i++) {
+            Object value = values != null ? values[i] : null;
+            if (value == null) {
+                nulls[i >> 3] |= (byte) (1 << (i & 7));
+                continue;
+            }
+            switch (column.kind) {
+                case LONG:
+                case TIMESTAMP:
+                    long current = column.kind == Kind.TIMESTAMP ? toMicros((LocalDateTime) value) : ((Number) value).longValue();
+                    writeVarLong(body, zigZagEncode(current - previous));
+                    previous = current;
+                    column.min = Math.min(column.min, current);
+                    column.max = Math.max(column.max, current);
+                    break;
+                case DOUBLE:
+                    double number = ((Number) value).doubleValue();
+                    long bits = Double.doubleToLongBits(number);
+                    writeLong(body, bits ^ previous);
+                    previous = bits;
+                    minDouble = Math.min(minDouble, number);
+                    maxDouble = Math.max(maxDouble, number);
+                    break;
+                case BOOLEAN:
+                    body.write((Boolean) value ? 1 : 0);
+                    break;
+                default:
+                    Integer index = dictionary.computeIfAbsent(value.toString(), key -> dictionary.size());
+                    writeVarLong(indexes, index);
+            }
+        }
+        if (column.kind == Kind.DOUBLE) {
+            column.min = Double.doubleToLongBits(minDouble);
+            column.max = Double.doubleToLongBits(maxDouble);
+        }
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        raw.writeBytes(nulls);
+        if (column.kind == Kind.STRING) {
+            writeVarLong(raw, dictionary.size());
+            for (String entry : dictionary.keySet()) {
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(raw, bytes.length);
+                raw.writeBytes(bytes);
+            }
+            raw.writeBytes(indexes.toByteArray());
+        } else {
+            raw.writeBytes(body.toByteArray());
+        }
+        return raw.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Object decodeScalar(Kind kind, long value) {
+        return kind == Kind.TIMESTAMP ? fromMicros(value) : (Object) value;
+    }
+
+    private static long toMicros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), timestamp);
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class Column {
+        final Kind kind;
+        long min;
+        long max;
+        long offset;
+        int compressedLength;
+        int rawLength;
+
+        Column(Kind kind) {
+            this.kind = kind;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.mes.service;
 
+import com.mes.dto.AuditRecord;
+import com.mes.dto.KeysetPage;
 import com.mes.model.AuditTrail;
 import com.mes.model.User;
 import com.mes.repository.AuditTrailRepository;
-import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -17,38 +18,23 @@ public class AuditService {
     @Autowired
     private AuditTrailRepository auditTrailRepository;
 
-    @Autowired(required = false)
-    private HttpServletRequest request;
-
-    @Transactional
-    public AuditTrail logAudit(String entityType, Long entityId, String action, String username, 
-                               Map<String, Object> oldValues, Map<String, Object> newValues) {
-        AuditTrail audit = new AuditTrail();
-        audit.setEntityType(entityType);
-        audit.setEntityId(entityId);
-        audit.setAction(action);
-        audit.setUsername(username);
-        audit.setOldValues(oldValues);
-        audit.setNewValues(newValues);
-        audit.setTimestamp(LocalDateTime.now());
-        
-        if (request != null) {
-            audit.setIpAddress(getClientIpAddress());
-            audit.setUserAgent(request.getHeader("User-Agent"));
-            audit.setSessionId(request.getSession(false) != null ? request.getSession().getId() : null);
-        }
-        
-        audit.setChangesSummary(generateChangesSummary(oldValues, newValues));
-        
-        return auditTrailRepository.save(audit);
+    @Autowired
+    private AuditWriter auditWriter;
+
+    /**
+     * Queue an audit entry; it is written asynchronously by AuditWriter. Entity inserts,
+     * updates and deletes are captured by EntityAuditListener without calling this.
+     */
+    public void logAudit(String entityType, Long entityId, String action, String username,
+                         Map<String, Object> oldValues, Map<String, Object> newValues) {
+        auditWriter.submit(auditRecord(entityType, entityId, action, username, oldValues, newValues));
     }
 
-    @Transactional
-    public AuditTrail logAudit(String entityType, Long entityId, String action, User user, 
-                               Map<String, Object> oldValues, Map<String, Object> newValues) {
-        AuditTrail audit = logAudit(entityType, entityId, action, user.getUsername(), oldValues, newValues);
-        audit.setUser(user);
-        return auditTrailRepository.save(audit);
+    public void logAudit(String entityType, Long entityId, String action, User user,
+                         Map<String, Object> oldValues, Map<String, Object> newValues) {
+        AuditRecord record = auditRecord(entityType, entityId, action, user.getUsername(), oldValues, newValues);
+        record.setUserId(user.getId());
+        auditWriter.submit(record);
     }
 
     public List<AuditTrail> getEntityHistory(String entityType, Long entityId) {
@@ -71,43 +57,46 @@ public class AuditService {
         return auditTrailRepository.findByEntityType(entityType);
     }
 
+    /**
+     * Keyset-paginated audit entries in [start, end], newest first. Filters are optional.
+     */
+    public KeysetPage<AuditTrail> getAuditPage(LocalDateTime start, LocalDateTime end, String entityType,
+                                               String action, String username, String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        LocalDateTime beforeTs = end;
+        Long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            Object[] position = KeysetPage.decodeCursor(cursor);
+            beforeTs = (LocalDateTime) position[0];
+            beforeId = (Long) position[1];
+        }
+        List<AuditTrail> items = auditTrailRepository.findPage(start, end, beforeTs, beforeId,
+                entityType, action, username, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, AuditTrail::getTimestamp, AuditTrail::getId);
+    }
+
+    public long countAuditsByDateRange(LocalDateTime start, LocalDateTime end) {
+        return auditTrailRepository.countByDateRange(start, end);
+    }
+
     public Long getRecentAuditCount(LocalDateTime since) {
         return auditTrailRepository.countRecentAudits(since);
     }
 
-    private String getClientIpAddress() {
-        if (request == null) return null;
-        
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-        
-        return request.getRemoteAddr();
+    public Map<String, Object> getWriterStats() {
+        return auditWriter.getStats();
     }
 
-    private String generateChangesSummary(Map<String, Object> oldValues, Map<String, Object> newValues) {
-        if (newValues == null || newValues.isEmpty()) {
-            return "No changes";
-        }
-        
-        StringBuilder summary = new StringBuilder();
-        newValues.forEach((key, newValue) -> {
-            Object oldValue = oldValues != null ? oldValues.get(key) : null;
-            if (oldValue == null || !oldValue.equals(newValue)) {
-                summary.append(key).append(": ");
-                if (oldValue != null) {
-                    summary.append(oldValue).append(" → ");
-                }
-                summary.append(newValue).append("; ");
-            }
-        });
-        
-        return summary.length() > 0 ? summary.toString() : "No changes";
+    private static AuditRecord auditRecord(String entityType, Long entityId, String action, String username,
+                                           Map<String, Object> oldValues, Map<String, Object> newValues) {
+        AuditRecord record = new AuditRecord(AuditRecord.Kind.AUDIT);
+        record.setEntityType(entityType);
+        record.setEntityId(entityId);
+        record.setAction(action);
+        record.setUsername(username);
+        record.setOldValues(oldValues);
+        record.setNewValues(newValues);
+        record.setChangesSummary(AuditWriter.summarizeChanges(oldValues, newValues));
+        return record;
     }
 }
@@ -0,0 +1,514 @@
+package com.mes.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.AuditRecord;
+import com.mes.security.UserDetailsImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only writer for audit_trail, user_activity_log and change_history.
+ *
+ * Callers hand records to a bounded queue and return at once; a single writer thread
+ * batch-inserts them, one transaction per batch. When the queue is full or a batch fails,
+ * the records are appended to a spill file (fsynced) and replayed once the writer has caught
+ * up. Delivery is at least once: a crash during replay can write a record twice.
+ *
+ * A failed batch is retried record by record so one bad record cannot hold back the rest;
+ * records the database rejects on their own go to a quarantine file and are not replayed.
+ */
+@Service
+public class AuditWriter {
+
+    private static final String INSERT_AUDIT_SQL =
+            "INSERT INTO audit_trail (entity_type, entity_id, action, user_id, username, timestamp, ip_address, " +
+            "user_agent, old_values, new_values, changes_summary, session_id) " +
+            "VALUES (?, ?, ?, (SELECT id FROM users WHERE id = ?), ?, ?, ?, ?, CAST(? AS jsonb), CAST(? AS jsonb), ?, ?)";
+
+    private static final String INSERT_ACTIVITY_SQL =
+            "INSERT INTO user_activity_log (user_id, username, activity_type, activity_description, resource_type, " +
+            "resource_id, timestamp, ip_address, user_agent, session_id, duration_seconds, status, error_message) " +
+            "VALUES ((SELECT id FROM users WHERE id = ?), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_CHANGE_SQL =
+            "INSERT INTO change_history (entity_type, entity_id, entity_name, field_name, old_value, new_value, " +
+            "changed_by, changed_by_username, changed_at, change_reason, approval_required, approval_status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, (SELECT id FROM users WHERE id = ?), ?, ?, ?, ?, ?)";
+
+    private static final String SPILL_FILE = "audit-spill.ndjson";
+    private static final String REPLAY_SUFFIX = ".replay";
+    private static final String QUARANTINE_FILE = "audit-quarantine.ndjson";
+    private static final int IP_ADDRESS_MAX = 45;
+    private static final int SESSION_ID_MAX = 255;
+    private static final String SYSTEM_USER = "system";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${mes.audit.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${mes.audit.writer.batch-size:500}")
+    private int batchSize;
+
+    @Value("${mes.audit.writer.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${mes.audit.writer.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    @Value("${mes.audit.writer.spill-dir:audit-spill}")
+    private String spillDir;
+
+    private BlockingQueue<AuditRecord> queue;
+    private TransactionTemplate transactionTemplate;
+    private Path spillPath;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile long lastFailureMs;
+    private final Object spillLock = new Object();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        spillPath = Paths.get(spillDir).toAbsolutePath();
+        try {
+            Files.createDirectories(spillPath);
+        } catch (IOException e) {
+            System.err.println("Cannot create audit spill directory " + spillPath + ": " + e.getMessage());
+        }
+        running = true;
+        writer = new Thread(this::writerLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever the writer did not get to survives the restart on disk
+        List<AuditRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+    }
+
+    /**
+     * Queue a record, filling in the current user and request details it does not already have.
+     */
+    public void submit(AuditRecord record) {
+        captureContext(record);
+        submitted.increment();
+        if (!queue.offer(record)) {
+            // The database is not keeping up; keep the record on disk instead of blocking the caller
+            spill(Collections.singletonList(record));
+        }
+    }
+
+    private void writerLoop() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                List<AuditRecord> unwritten = writeIsolating(batch);
+                if (!unwritten.isEmpty()) {
+                    spill(unwritten);
+                    if (running) {
+                        Thread.sleep(retryBackoffMs);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Audit writer failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean write(List<AuditRecord> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+        } catch (Exception e) {
+            writeFailures.increment();
+            lastFailureMs = System.currentTimeMillis();
+            System.err.println("Failed to write " + batch.size() + " audit records: " + e.getMessage());
+            return false;
+        }
+        batchLatency.record(System.currentTimeMillis() - start);
+        batches.increment();
+        written.add(batch.size());
+        return true;
+    }
+
+    /**
+     * Write the batch, falling back to one record per transaction when it fails. Records the
+     * database rejects are quarantined; returns the records to retry later because the failure
+     * was not theirs (e.g. the database is unreachable).
+     */
+    private List<AuditRecord> writeIsolating(List<AuditRecord> batch) {
+        if (write(batch)) {
+            return Collections.emptyList();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            AuditRecord record = batch.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(Collections.singletonList(record)));
+                written.increment();
+            } catch (DataIntegrityViolationException | IllegalArgumentException e) {
+                quarantine(record, e);
+            } catch (Exception e) {
+                // No point trying the rest one by one
+                lastFailureMs = System.currentTimeMillis();
+                return new ArrayList<>(batch.subList(i, batch.size()));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private void insert(List<AuditRecord> batch) {
+        List<Object[]> audits = new ArrayList<>();
+        List<Object[]> activities = new ArrayList<>();
+        List<Object[]> changes = new ArrayList<>();
+        for (AuditRecord r : batch) {
+            switch (r.getKind()) {
+                case AUDIT:
+                    audits.add(new Object[] {r.getEntityType(), r.getEntityId(), r.getAction(), r.getUserId(),
+                            r.getUsername(), timestamp(r.getTimestamp()), r.getIpAddress(), r.getUserAgent(),
+                            json(r.getOldValues()), json(r.getNewValues()), r.getChangesSummary(), r.getSessionId()});
+                    break;
+                case ACTIVITY:
+                    activities.add(new Object[] {r.getUserId(), r.getUsername(), r.getActivityType(),
+                            r.getDescription(), r.getEntityType(), r.getEntityId(), timestamp(r.getTimestamp()),
+                            r.getIpAddress(), r.getUserAgent(), r.getSessionId(), r.getDurationSeconds(),
+                            r.getStatus() != null ? r.getStatus() : "SUCCESS", r.getErrorMessage()});
+                    break;
+                case CHANGE:
+                    changes.add(new Object[] {r.getEntityType(), r.getEntityId(), r.getEntityName(), r.getFieldName(),
+                            r.getOldValue(), r.getNewValue(), r.getUserId(), r.getUsername(),
+                            timestamp(r.getTimestamp()), r.getChangeReason(),
+                            Boolean.TRUE.equals(r.getApprovalRequired()), r.getApprovalStatus()});
+                    break;
+            }
+        }
+        if (!audits.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_AUDIT_SQL, audits);
+        }
+        if (!activities.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ACTIVITY_SQL, activities);
+        }
+        if (!changes.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CHANGE_SQL, changes);
+        }
+    }
+
+    // ===== Spill file =====
+
+    private void spill(List<AuditRecord> records) {
+        synchronized (spillLock) {
+            try (FileOutputStream out = new FileOutputStream(spillPath.resolve(SPILL_FILE).toFile(), true)) {
+                Writer lines = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                for (AuditRecord record : records) {
+                    lines.write(objectMapper.writeValueAsString(record));
+                    lines.write('\n');
+                }
+                lines.flush();
+                out.getFD().sync();
+                spilled.add(records.size());
+            } catch (IOException e) {
+                dropped.add(records.size());
+                System.err.println("Failed to spill " + records.size() + " audit records, they are lost: " + e.getMessage());
+            }
+        }
+    }
+
+    private void quarantine(AuditRecord record, Exception cause) {
+        System.err.println("Quarantining audit record " + record.getKind() + " " + record.getEntityType() + "/"
+                + record.getEntityId() + ": " + cause.getMessage());
+        synchronized (spillLock) {
+            try (FileOutputStream out = new FileOutputStream(spillPath.resolve(QUARANTINE_FILE).toFile(), true)) {
+                Writer lines = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                lines.write(objectMapper.writeValueAsString(record));
+                lines.write('\n');
+                lines.flush();
+                out.getFD().sync();
+                quarantined.increment();
+            } catch (IOException e) {
+                dropped.increment();
+                System.err.println("Failed to quarantine audit record, it is lost: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write spilled records back once the queue has drained and the last failure is a backoff ago.
+     */
+    @Scheduled(fixedDelayString = "${mes.audit.writer.replay-interval-ms:30000}")
+    public void replaySpill() {
+        if (queue.size() > queueCapacity / 2 || System.currentTimeMillis() - lastFailureMs < retryBackoffMs) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        synchronized (spillLock) {
+            Path current = spillPath.resolve(SPILL_FILE);
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(spillPath, "*" + REPLAY_SUFFIX)) {
+                // From a replay interrupted by a restart
+                leftovers.forEach(files::add);
+                if (Files.exists(current)) {
+                    Path replay = spillPath.resolve(SPILL_FILE + "." + System.currentTimeMillis() + REPLAY_SUFFIX);
+                    Files.move(current, replay, StandardCopyOption.ATOMIC_MOVE);
+                    files.add(replay);
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot read audit spill directory " + spillPath + ": " + e.getMessage());
+                return;
+            }
+        }
+        for (Path file : files) {
+            replay(file);
+        }
+    }
+
+    private void replay(Path file) {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        List<AuditRecord> unwritten = new ArrayList<>();
+        boolean failed = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                AuditRecord record;
+                try {
+                    record = objectMapper.readValue(line, AuditRecord.class);
+                } catch (JsonProcessingException e) {
+                    // A torn last line from a crash mid-append
+                    dropped.increment();
+                    continue;
+                }
+                if (failed) {
+                    unwritten.add(record);
+                    continue;
+                }
+                batch.add(record);
+                if (batch.size() >= batchSize) {
+                    failed = !replayBatch(batch, unwritten);
+                }
+            }
+            if (!failed && !batch.isEmpty()) {
+                replayBatch(batch, unwritten);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to replay audit spill file " + file + ": " + e.getMessage());
+            return;
+        }
+        if (!unwritten.isEmpty()) {
+            spill(unwritten);
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete replayed audit spill file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private boolean replayBatch(List<AuditRecord> batch, List<AuditRecord> unwritten) {
+        List<AuditRecord> retry = writeIsolating(batch);
+        // Quarantined records count as replayed: they have left the spill file
+        replayed.add(batch.size() - retry.size());
+        unwritten.addAll(retry);
+        batch.clear();
+        return retry.isEmpty();
+    }
+
+    // ===== Helpers =====
+
+    private void captureContext(AuditRecord record) {
+        if (record.getUsername() == null) {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.getPrincipal() instanceof UserDetailsImpl) {
+                UserDetailsImpl user = (UserDetailsImpl) auth.getPrincipal();
+                record.setUsername(user.getUsername());
+                if (record.getUserId() == null) {
+                    record.setUserId(user.getId());
+                }
+            } else if (auth != null && auth.isAuthenticated() && auth.getName() != null
+                    && !"anonymousUser".equals(auth.getName())) {
+                record.setUsername(auth.getName());
+            } else {
+                record.setUsername(SYSTEM_USER);
+            }
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (record.getIpAddress() == null && attributes instanceof ServletRequestAttributes) {
+            HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+            record.setIpAddress(clientIpAddress(request));
+            record.setUserAgent(request.getHeader("User-Agent"));
+            HttpSession session = request.getSession(false);
+            record.setSessionId(session != null ? session.getId() : null);
+        }
+        // Callers may pass these in from request data too; keep them within their columns
+        record.setIpAddress(truncate(record.getIpAddress(), IP_ADDRESS_MAX));
+        record.setSessionId(truncate(record.getSessionId(), SESSION_ID_MAX));
+    }
+
+    // Forwarding headers are client-supplied: only an address-shaped first hop is trusted
+    private static String clientIpAddress(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null) {
+            String firstHop = xForwardedFor.split(",", 2)[0].trim();
+            if (isAddress(firstHop)) {
+                return firstHop;
+            }
+        }
+
+        String xRealIp = request.getHeader("X-Real-IP");
+        if (xRealIp != null && isAddress(xRealIp.trim())) {
+            return xRealIp.trim();
+        }
+
+        return request.getRemoteAddr();
+    }
+
+    // IPv4, IPv6 or IPv4-mapped IPv6 characters only, within the column width
+    private static boolean isAddress(String value) {
+        if (value.isEmpty() || value.length() > IP_ADDRESS_MAX) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ("0123456789abcdefABCDEF.:".indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+
+    /**
+     * "field: old → new; " for every field whose value changed.
+     */
+    public static String summarizeChanges(Map<String, Object> oldValues, Map<String, Object> newValues) {
+        if (newValues == null || newValues.isEmpty()) {
+            return "No changes";
+        }
+
+        StringBuilder summary = new StringBuilder();
+        newValues.forEach((key, newValue) -> {
+            Object oldValue = oldValues != null ? oldValues.get(key) : null;
+            if (oldValue == null || !oldValue.equals(newValue)) {
+                summary.append(key).append(": ");
+                if (oldValue != null) {
+                    summary.append(oldValue).append(" → ");
+                }
+                summary.append(newValue).append("; ");
+            }
+        });
+
+        return summary.length() > 0 ? summary.toString() : "No changes";
+    }
+
+    private String json(Map<String, Object> values) {
+        if (values == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize audit values: " + e.getMessage(), e);
+        }
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return Timestamp.valueOf(time != null ? time : LocalDateTime.now());
+    }
+
+    public Map<String, Object> getStats() {
+        long pendingSpill = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillPath, SPILL_FILE + "*")) {
+            for (Path file : files) {
+                pendingSpill += Files.size(file);
+            }
+        } catch (IOException e) {
+            pendingSpill = -1;
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("submitted", submitted.sum());
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("spilled", spilled.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("quarantined", quarantined.sum());
+        stats.put("spillBytes", pendingSpill);
+        stats.put("spillDir", spillPath.toString());
+        stats.put("batchLatency", batchLatency.toMap());
+        return stats;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mes.service;
 
+import com.mes.dto.AuditRecord;
 import com.mes.model.ChangeHistory;
 import com.mes.model.User;
 import com.mes.repository.ChangeHistoryRepository;
@@ -15,37 +16,31 @@ public class ChangeHistoryService {
     @Autowired
     private ChangeHistoryRepository changeHistoryRepository;
 
-    @Transactional
-    public ChangeHistory recordChange(String entityType, Long entityId, String entityName,
-                                      String fieldName, String oldValue, String newValue,
-                                      String username, String changeReason) {
-        ChangeHistory change = new ChangeHistory();
-        change.setEntityType(entityType);
-        change.setEntityId(entityId);
-        change.setEntityName(entityName);
-        change.setFieldName(fieldName);
-        change.setOldValue(oldValue);
-        change.setNewValue(newValue);
-        change.setChangedByUsername(username);
-        change.setChangedAt(LocalDateTime.now());
-        change.setChangeReason(changeReason);
-        
-        return changeHistoryRepository.save(change);
+    @Autowired
+    private AuditWriter auditWriter;
+
+    /**
+     * Queue a field change; it is written asynchronously by AuditWriter. Field changes made
+     * through JPA entities are captured by EntityAuditListener without calling this.
+     */
+    public void recordChange(String entityType, Long entityId, String entityName,
+                             String fieldName, String oldValue, String newValue,
+                             String username, String changeReason) {
+        auditWriter.submit(changeRecord(entityType, entityId, entityName, fieldName, oldValue, newValue,
+                username, changeReason));
     }
 
-    @Transactional
-    public ChangeHistory recordChange(String entityType, Long entityId, String entityName,
-                                      String fieldName, String oldValue, String newValue,
-                                      User user, String changeReason, boolean requiresApproval) {
-        ChangeHistory change = recordChange(entityType, entityId, entityName, fieldName, 
-                                           oldValue, newValue, user.getUsername(), changeReason);
-        change.setChangedBy(user);
-        change.setApprovalRequired(requiresApproval);
+    public void recordChange(String entityType, Long entityId, String entityName,
+                             String fieldName, String oldValue, String newValue,
+                             User user, String changeReason, boolean requiresApproval) {
+        AuditRecord record = changeRecord(entityType, entityId, entityName, fieldName, oldValue, newValue,
+                user.getUsername(), changeReason);
+        record.setUserId(user.getId());
+        record.setApprovalRequired(requiresApproval);
         if (requiresApproval) {
-            change.setApprovalStatus("PENDING");
+            record.setApprovalStatus("PENDING");
         }
-        
-        return changeHistoryRepository.save(change);
+        auditWriter.submit(record);
     }
 
     @Transactional
@@ -92,7 +87,26 @@ public class ChangeHistoryService {
         return changeHistoryRepository.countPendingApprovals();
     }
 
+    public long countChangesByDateRange(LocalDateTime start, LocalDateTime end) {
+        return changeHistoryRepository.countByDateRange(start, end);
+    }
+
     public List<ChangeHistory> getChangesByDateRange(LocalDateTime start, LocalDateTime end) {
         return changeHistoryRepository.findByChangedAtBetween(start, end);
     }
+
+    private static AuditRecord changeRecord(String entityType, Long entityId, String entityName,
+                                            String fieldName, String oldValue, String newValue,
+                                            String username, String changeReason) {
+        AuditRecord record = new AuditRecord(AuditRecord.Kind.CHANGE);
+        record.setEntityType(entityType);
+        record.setEntityId(entityId);
+        record.setEntityName(entityName);
+        record.setFieldName(fieldName);
+        record.setOldValue(oldValue);
+        record.setNewValue(newValue);
+        record.setUsername(username);
+        record.setChangeReason(changeReason);
+        return record;
+    }
 }
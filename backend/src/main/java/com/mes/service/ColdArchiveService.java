@@ -0,0 +1,397 @@
+package com.mes.service;
+
+import com.mes.model.DataRetentionPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cold archive of retired rows as compressed columnar segment files on local disk, one per
+ * table, equipment and day, listed in the archive_segment catalog with each segment's time
+ * span. Reads map only the segments overlapping the requested range and decode only the
+ * columns asked for. The newest archived time per table and equipment is cached, so reads of
+ * recent ranges skip the catalog altogether.
+ */
+@Service
+public class ColdArchiveService {
+
+    private static final String UPSERT_SEGMENT_SQL =
+            "INSERT INTO archive_segment (table_name, equipment_id, segment_day, time_column, file_path, row_count, " +
+            "min_timestamp, max_timestamp, size_bytes, retention_policy_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (table_name, equipment_id, segment_day) DO UPDATE SET time_column = EXCLUDED.time_column, " +
+            "file_path = EXCLUDED.file_path, row_count = EXCLUDED.row_count, min_timestamp = EXCLUDED.min_timestamp, " +
+            "max_timestamp = EXCLUDED.max_timestamp, size_bytes = EXCLUDED.size_bytes, " +
+            "retention_policy_id = EXCLUDED.retention_policy_id, updated_at = CURRENT_TIMESTAMP";
+
+    private static final String FIND_SEGMENT_SQL =
+            "SELECT file_path FROM archive_segment WHERE table_name = ? AND equipment_id = ? AND segment_day = ?";
+
+    private static final String FIND_SEGMENTS_SQL =
+            "SELECT file_path, time_column FROM archive_segment WHERE table_name = ? AND equipment_id = ? " +
+            "AND max_timestamp > ? AND min_timestamp < ? ORDER BY segment_day";
+
+    private static final String BOUNDARY_SQL =
+            "SELECT MAX(max_timestamp) FROM archive_segment WHERE table_name = ? AND equipment_id = ?";
+
+    private static final String CATALOG_STATS_SQL =
+            "SELECT table_name, COUNT(*) AS segments, SUM(row_count) AS row_count, SUM(size_bytes) AS size_bytes, " +
+            "MIN(segment_day) AS first_day, MAX(segment_day) AS last_day FROM archive_segment GROUP BY table_name ORDER BY table_name";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${mes.archive.dir:cold-archive}")
+    private String archiveDir;
+
+    // How long a cached archive boundary is trusted; other nodes may archive in the meantime
+    @Value("${mes.archive.boundary-cache-ttl-ms:60000}")
+    private long boundaryCacheTtlMs;
+
+    // Newest archived time per "table:equipmentId"
+    private final Map<String, Boundary> boundaries = new ConcurrentHashMap<>();
+
+    private final LongAdder segmentsWritten = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder segmentsRead = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder readFailures = new LongAdder();
+    private final LongAdder catalogSkips = new LongAdder();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+
+    /**
+     * Write one equipment's rows of one day into its segment, merged with whatever was archived
+     * for that day before. Returns the ids taken from the table; the rows are left in place for
+     * the caller to delete once the segment is safely on disk.
+     *
+     * @param equipmentId equipment the rows belong to, 0 for rows without one
+     */
+    public List<Long> archiveDay(String table, String timeColumn, long equipmentId, LocalDate day,
+                                 DataRetentionPolicy policy) throws IOException {
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM " + table + " WHERE " + equipmentPredicate(equipmentId) +
+                " AND " + timeColumn + " >= ? AND " + timeColumn + " < ? ORDER BY " + timeColumn + ", id";
+        Object[] params = equipmentId == 0
+                ? new Object[] {Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay())}
+                : new Object[] {equipmentId, Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay())};
+        Rows rows = jdbcTemplate.query(sql, this::readRows, params);
+        if (rows == null || rows.values.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> ids = new ArrayList<>(rows.values.size());
+        int idIndex = rows.names.indexOf("id");
+        for (Object[] row : rows.values) {
+            ids.add((Long) row[idIndex]);
+        }
+
+        // Rows archived for this day before (e.g. late arrivals from an earlier run) are kept
+        List<String> existingPaths = jdbcTemplate.queryForList(FIND_SEGMENT_SQL, String.class,
+                table, equipmentId, Date.valueOf(day));
+        Path previous = existingPaths.isEmpty() ? null : Paths.get(existingPaths.get(0));
+        if (previous != null && Files.exists(previous)) {
+            mergeSegment(rows, ArchiveSegment.open(previous), new HashSet<>(ids));
+        }
+        int timeIndex = rows.names.indexOf(timeColumn);
+        rows.values.sort(Comparator.comparing((Object[] row) -> (LocalDateTime) row[timeIndex],
+                Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(row -> (Long) row[idIndex]));
+
+        Path file = segmentPath(policy, table, equipmentId, day);
+        LinkedHashMap<String, ArchiveSegment.Kind> kinds = new LinkedHashMap<>();
+        Map<String, Object[]> columns = new HashMap<>();
+        for (int c = 0; c < rows.names.size(); c++) {
+            Object[] values = new Object[rows.values.size()];
+            for (int r = 0; r < values.length; r++) {
+                values[r] = rows.values.get(r)[c];
+            }
+            kinds.put(rows.names.get(c), rows.kinds.get(c));
+            columns.put(rows.names.get(c), values);
+        }
+        long size = ArchiveSegment.write(file, kinds, columns, rows.values.size());
+
+        LocalDateTime minTimestamp = (LocalDateTime) rows.values.get(0)[timeIndex];
+        LocalDateTime maxTimestamp = (LocalDateTime) rows.values.get(rows.values.size() - 1)[timeIndex];
+        jdbcTemplate.update(UPSERT_SEGMENT_SQL, table, equipmentId, Date.valueOf(day), timeColumn, file.toString(),
+                rows.values.size(), Timestamp.valueOf(minTimestamp != null ? minTimestamp : day.atStartOfDay()),
+                Timestamp.valueOf(maxTimestamp != null ? maxTimestamp : day.atStartOfDay()), size,
+                policy != null ? policy.getId() : null);
+        if (previous != null && !previous.equals(file)) {
+            Files.deleteIfExists(previous);
+        }
+        if (maxTimestamp != null) {
+            boundaries.computeIfPresent(boundaryKey(table, equipmentId), (key, boundary) ->
+                    boundary.newest == null || boundary.newest.isBefore(maxTimestamp)
+                            ? new Boundary(maxTimestamp, boundary.loadedAt) : boundary);
+        }
+
+        segmentsWritten.increment();
+        rowsWritten.add(ids.size());
+        bytesWritten.add(size);
+        writeLatency.record((System.nanoTime() - start) / 1_000_000);
+        return ids;
+    }
+
+    /**
+     * Archived rows of one equipment with their time strictly between from and to, oldest
+     * first. Each row holds its id, its time column and the requested columns. Fails when a
+     * catalogued segment cannot be opened, rather than return a history with days missing.
+     */
+    public List<Map<String, Object>> read(String table, long equipmentId, LocalDateTime from, LocalDateTime to,
+                                          String... columns) {
+        LocalDateTime newest = getArchivedUntil(table, equipmentId);
+        if (newest == null || !newest.isAfter(from)) {
+            catalogSkips.increment();
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        List<Map<String, Object>> result = new ArrayList<>();
+        List<Map<String, Object>> segments = jdbcTemplate.queryForList(FIND_SEGMENTS_SQL, table, equipmentId,
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        for (Map<String, Object> entry : segments) {
+            String path = (String) entry.get("file_path");
+            String timeColumn = (String) entry.get("time_column");
+            ArchiveSegment segment;
+            try {
+                segment = ArchiveSegment.open(Paths.get(path));
+            } catch (IOException e) {
+                // Segments live on the disk of the node that archived them
+                readFailures.increment();
+                throw new IllegalStateException("Archive segment " + path + " is not readable on this node: "
+                        + e.getMessage(), e);
+            }
+            segmentsRead.increment();
+
+            Object[] times = segment.read(timeColumn);
+            int first = firstAfter(times, from);
+            int last = first;
+            while (last < times.length && times[last] != null && ((LocalDateTime) times[last]).isBefore(to)) {
+                last++;
+            }
+            if (first == last) {
+                continue;
+            }
+
+            Object[] ids = segment.read("id");
+            Map<String, Object[]> values = new LinkedHashMap<>();
+            for (String column : columns) {
+                values.put(column, segment.read(column));
+            }
+            for (int i = first; i < last; i++) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", ids[i]);
+                row.put(timeColumn, times[i]);
+                for (Map.Entry<String, Object[]> column : values.entrySet()) {
+                    row.put(column.getKey(), column.getValue()[i]);
+                }
+                result.add(row);
+            }
+        }
+        rowsRead.add(result.size());
+        readLatency.record((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Newest day archived for a table, or null when nothing is archived yet.
+     */
+    public LocalDate getLastArchivedDay(String table) {
+        Date day = jdbcTemplate.queryForObject("SELECT MAX(segment_day) FROM archive_segment WHERE table_name = ?",
+                Date.class, table);
+        return day != null ? day.toLocalDate() : null;
+    }
+
+    /**
+     * Equipment of a table that already has a segment for the day.
+     */
+    public Set<Long> getArchivedEquipment(String table, LocalDate day) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT equipment_id FROM archive_segment WHERE table_name = ? AND segment_day = ?",
+                Long.class, table, Date.valueOf(day)));
+    }
+
+    /**
+     * Newest time archived for one equipment of a table, or null when none of its rows are.
+     */
+    public LocalDateTime getArchivedUntil(String table, long equipmentId) {
+        long now = System.currentTimeMillis();
+        Boundary boundary = boundaries.compute(boundaryKey(table, equipmentId), (key, cached) -> {
+            if (cached != null && now - cached.loadedAt < boundaryCacheTtlMs) {
+                return cached;
+            }
+            Timestamp newest = jdbcTemplate.queryForObject(BOUNDARY_SQL, Timestamp.class, table, equipmentId);
+            return new Boundary(newest != null ? newest.toLocalDateTime() : null, now);
+        });
+        return boundary.newest;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segmentsWritten", segmentsWritten.sum());
+        stats.put("rowsWritten", rowsWritten.sum());
+        stats.put("bytesWritten", bytesWritten.sum());
+        stats.put("segmentsRead", segmentsRead.sum());
+        stats.put("rowsRead", rowsRead.sum());
+        stats.put("readFailures", readFailures.sum());
+        stats.put("catalogSkips", catalogSkips.sum());
+        stats.put("cachedBoundaries", boundaries.size());
+        stats.put("write", writeLatency.toMap());
+        stats.put("read", readLatency.toMap());
+        stats.put("tables", jdbcTemplate.queryForList(CATALOG_STATS_SQL));
+        return stats;
+    }
+
+    private Path segmentPath(DataRetentionPolicy policy, String table, long equipmentId, LocalDate day) {
+        String base = policy != null && policy.getArchiveLocation() != null && !policy.getArchiveLocation().isBlank()
+                ? policy.getArchiveLocation() : archiveDir;
+        return Paths.get(base, table, String.valueOf(equipmentId), day + ".seg").toAbsolutePath().normalize();
+    }
+
+    private static String boundaryKey(String table, long equipmentId) {
+        return table + ":" + equipmentId;
+    }
+
+    private static String equipmentPredicate(long equipmentId) {
+        return equipmentId == 0 ? "equipment_id IS NULL" : "equipment_id = ?";
+    }
+
+    // Index of the first row whose time is after from; times are sorted with nulls first
+    private static int firstAfter(Object[] times, LocalDateTime from) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] == null || !((LocalDateTime) times[mid]).isAfter(from)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Rows readRows(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        Rows rows = new Rows();
+        for (int c = 1; c <= meta.getColumnCount(); c++) {
+            rows.names.add(meta.getColumnName(c));
+            rows.kinds.add(kindOf(meta.getColumnType(c)));
+        }
+        while (rs.next()) {
+            Object[] row = new Object[rows.names.size()];
+            for (int c = 0; c < row.length; c++) {
+                row[c] = readValue(rs, c + 1, rows.kinds.get(c));
+            }
+            rows.values.add(row);
+        }
+        return rows;
+    }
+
+    private static Object readValue(ResultSet rs, int column, ArchiveSegment.Kind kind) throws SQLException {
+        Object value;
+        switch (kind) {
+            case LONG:
+                value = rs.getLong(column);
+                break;
+            case DOUBLE:
+                value = rs.getDouble(column);
+                break;
+            case BOOLEAN:
+                value = rs.getBoolean(column);
+                break;
+            case TIMESTAMP:
+                Timestamp timestamp = rs.getTimestamp(column);
+                return timestamp != null ? timestamp.toLocalDateTime() : null;
+            default:
+                return rs.getString(column);
+        }
+        return rs.wasNull() ? null : value;
+    }
+
+    private static ArchiveSegment.Kind kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return ArchiveSegment.Kind.LONG;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                return ArchiveSegment.Kind.DOUBLE;
+            case Types.TIMESTAMP:
+            case Types.DATE:
+                return ArchiveSegment.Kind.TIMESTAMP;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return ArchiveSegment.Kind.BOOLEAN;
+            default:
+                return ArchiveSegment.Kind.STRING;
+        }
+    }
+
+    // Adds the rows of an existing segment that are not being archived again
+    private static void mergeSegment(Rows rows, ArchiveSegment segment, Set<Long> ids) {
+        for (String name : segment.getColumnNames()) {
+            if (!rows.names.contains(name)) {
+                // Column dropped from the table since; keep it as text
+                rows.names.add(name);
+                rows.kinds.add(ArchiveSegment.Kind.STRING);
+                for (int r = 0; r < rows.values.size(); r++) {
+                    rows.values.set(r, Arrays.copyOf(rows.values.get(r), rows.names.size()));
+                }
+            }
+        }
+        Object[] existingIds = segment.read("id");
+        Map<String, Object[]> existing = new HashMap<>();
+        for (String name : rows.names) {
+            existing.put(name, segment.read(name));
+        }
+        for (int r = 0; r < segment.getRowCount(); r++) {
+            if (ids.contains(existingIds[r])) {
+                continue;
+            }
+            Object[] row = new Object[rows.names.size()];
+            for (int c = 0; c < row.length; c++) {
+                Object value = existing.get(rows.names.get(c))[r];
+                row[c] = value != null && rows.kinds.get(c) == ArchiveSegment.Kind.STRING ? value.toString() : value;
+            }
+            rows.values.add(row);
+        }
+    }
+
+    private static class Rows {
+        final List<String> names = new ArrayList<>();
+        final List<ArchiveSegment.Kind> kinds = new ArrayList<>();
+        final List<Object[]> values = new ArrayList<>();
+    }
+
+    private static class Boundary {
+        // Null when nothing is archived
+        final LocalDateTime newest;
+        final long loadedAt;
+
+        Boundary(LocalDateTime newest, long loadedAt) {
+            this.newest = newest;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
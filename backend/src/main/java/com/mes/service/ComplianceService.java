@@ -4,11 +4,27 @@ import com.mes.model.ComplianceReport;
 import com.mes.model.User;
 import com.mes.repository.ComplianceReportRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Service
 public class ComplianceService {
@@ -25,6 +41,37 @@ public class ComplianceService {
     @Autowired
     private ChangeHistoryService changeHistoryService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${mes.compliance.report-dir:compliance-reports}")
+    private String reportDir;
+
+    @Value("${mes.compliance.fetch-size:1000}")
+    private int fetchSize;
+
+    private static final String AUDIT_TRAIL_SQL =
+            "SELECT id, timestamp, username, action, entity_type, entity_id, ip_address, changes_summary " +
+            "FROM audit_trail WHERE timestamp BETWEEN ? AND ? ORDER BY timestamp, id";
+    private static final String[] AUDIT_TRAIL_HEADER =
+            {"id", "timestamp", "username", "action", "entity_type", "entity_id", "ip_address", "changes_summary"};
+
+    private static final String USER_ACTIVITY_SQL =
+            "SELECT id, timestamp, username, activity_type, status, resource_type, resource_id, ip_address, " +
+            "activity_description, error_message FROM user_activity_log WHERE timestamp BETWEEN ? AND ? ORDER BY timestamp, id";
+    private static final String[] USER_ACTIVITY_HEADER =
+            {"id", "timestamp", "username", "activity_type", "status", "resource_type", "resource_id", "ip_address",
+             "activity_description", "error_message"};
+
+    private static final String CHANGE_HISTORY_SQL =
+            "SELECT id, changed_at, changed_by_username, entity_type, entity_id, entity_name, field_name, old_value, " +
+            "new_value, approval_status FROM change_history WHERE changed_at BETWEEN ? AND ? ORDER BY changed_at, id";
+    private static final String[] CHANGE_HISTORY_HEADER =
+            {"id", "changed_at", "changed_by_username", "entity_type", "entity_id", "entity_name", "field_name",
+             "old_value", "new_value", "approval_status"};
+
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
     @Transactional
     public ComplianceReport generateAuditTrailReport(User user, LocalDateTime startDate, 
                                                      LocalDateTime endDate, Map<String, Object> filters) {
@@ -36,8 +83,8 @@ public class ComplianceService {
         report.setEndDate(endDate);
         report.setFilters(filters);
         
-        var audits = auditService.getAuditsByDateRange(startDate, endDate);
-        report.setTotalRecords(audits.size());
+        report.setTotalRecords((int) auditService.countAuditsByDateRange(startDate, endDate));
+        writeReportFile(report, AUDIT_TRAIL_SQL, AUDIT_TRAIL_HEADER, startDate, endDate);
         report.setStatus("COMPLETED");
         
         return complianceReportRepository.save(report);
@@ -54,8 +101,8 @@ public class ComplianceService {
         report.setEndDate(endDate);
         report.setFilters(filters);
         
-        var activities = userActivityService.getActivitiesByDateRange(startDate, endDate);
-        report.setTotalRecords(activities.size());
+        report.setTotalRecords((int) userActivityService.countActivitiesByDateRange(startDate, endDate));
+        writeReportFile(report, USER_ACTIVITY_SQL, USER_ACTIVITY_HEADER, startDate, endDate);
         report.setStatus("COMPLETED");
         
         return complianceReportRepository.save(report);
@@ -72,8 +119,8 @@ public class ComplianceService {
         report.setEndDate(endDate);
         report.setFilters(filters);
         
-        var changes = changeHistoryService.getChangesByDateRange(startDate, endDate);
-        report.setTotalRecords(changes.size());
+        report.setTotalRecords((int) changeHistoryService.countChangesByDateRange(startDate, endDate));
+        writeReportFile(report, CHANGE_HISTORY_SQL, CHANGE_HISTORY_HEADER, startDate, endDate);
         report.setStatus("COMPLETED");
         
         return complianceReportRepository.save(report);
@@ -95,4 +142,71 @@ public class ComplianceService {
         return complianceReportRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Report not found"));
     }
+
+    public Path getReportFile(Long id) {
+        ComplianceReport report = getReportById(id);
+        if (report.getFilePath() == null || !Files.isReadable(Paths.get(report.getFilePath()))) {
+            throw new RuntimeException("Report file not available");
+        }
+        return Paths.get(report.getFilePath());
+    }
+
+    /**
+     * Stream the report rows straight from a database cursor into a CSV file, so the size of
+     * the range does not matter for memory. Runs in the caller's transaction, which the
+     * Postgres driver needs to fetch in chunks.
+     */
+    private void writeReportFile(ComplianceReport report, String sql, String[] header,
+                                 LocalDateTime startDate, LocalDateTime endDate) {
+        Path dir = Paths.get(reportDir).toAbsolutePath();
+        Path file = dir.resolve(report.getReportType().toLowerCase() + "-" + LocalDateTime.now().format(FILE_STAMP)
+                + "-" + UUID.randomUUID().toString().substring(0, 8) + ".csv");
+        try {
+            Files.createDirectories(dir);
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeCsvRow(out, header);
+                String[] row = new String[header.length];
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    ps.setTimestamp(1, Timestamp.valueOf(startDate));
+                    ps.setTimestamp(2, Timestamp.valueOf(endDate));
+                    return ps;
+                }, (RowCallbackHandler) rs -> {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getString(i + 1);
+                    }
+                    try {
+                        writeCsvRow(out, row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Failed to write report file: " + e.getMessage(), e);
+        }
+        report.setFilePath(file.toString());
+        report.setFileFormat("CSV");
+    }
+
+    private static void writeCsvRow(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(value);
+            }
+        }
+        out.write('\n');
+    }
 }
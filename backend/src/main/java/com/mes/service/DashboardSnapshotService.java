@@ -0,0 +1,210 @@
+package com.mes.service;
+
+import com.mes.model.Equipment;
+import com.mes.model.EquipmentStatus;
+import com.mes.model.OeeCalculation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dashboard figures served from memory.
+ *
+ * Status counts are kept by EquipmentStateCache as equipment is written. Fleet OEE is the
+ * mean of each machine's OEE over a trailing window, taken from the streaming OEE engine on
+ * a schedule; a refresh replaces one machine's value at a time and moves the running total
+ * by the difference. Requests get a prebuilt snapshot with its ETags, and the snapshot is
+ * only rebuilt after the counts or an OEE value have changed.
+ */
+@Service
+public class DashboardSnapshotService {
+
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
+    @Autowired
+    private StreamingOeeService streamingOeeService;
+
+    @Autowired
+    private OeeService oeeService;
+
+    @Value("${mes.dashboard.oee-window-minutes:60}")
+    private int oeeWindowMinutes;
+
+    // Latest OEE percentage per equipment; oeeTotal is their sum. Both guarded by this.
+    private final Map<Long, Double> equipmentOee = new HashMap<>();
+    private double oeeTotal;
+    // Bumped after every change to equipmentOee
+    private final AtomicLong oeeVersion = new AtomicLong();
+
+    private volatile Snapshot current;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder oeeRefreshes = new LongAdder();
+    private volatile LocalDateTime lastOeeRefreshAt;
+    private volatile long lastOeeRefreshMs;
+
+    /**
+     * The current snapshot, rebuilt first if the counts or OEE moved since it was built.
+     */
+    public Snapshot getSnapshot() {
+        reads.increment();
+        long statusVersion = equipmentStateCache.getStatusVersion();
+        long oee = oeeVersion.get();
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.statusVersion == statusVersion && snapshot.oeeVersion == oee) {
+            return snapshot;
+        }
+        return rebuild(statusVersion, oee);
+    }
+
+    /**
+     * Recompute each machine's OEE over the trailing window, from the streaming accumulators
+     * where they cover it.
+     */
+    @Scheduled(fixedDelayString = "${mes.dashboard.oee-refresh-interval-ms:30000}")
+    public void refreshOee() {
+        long started = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime windowStart = now.minusMinutes(oeeWindowMinutes);
+
+        Set<Long> present = new HashSet<>();
+        for (Equipment equipment : equipmentStateCache.getAllEquipment()) {
+            present.add(equipment.getId());
+            try {
+                // Recomputed from history when other nodes' latest events are not merged here yet
+                OeeCalculation calculation = streamingOeeService.covers(windowStart, now)
+                        ? streamingOeeService.calculate(equipment, windowStart, now)
+                        : oeeService.buildCalculation(equipment.getId(), windowStart, now);
+                recordOee(equipment.getId(), calculation.getOeePercentage().doubleValue());
+            } catch (Exception e) {
+                System.err.println("Failed to refresh dashboard OEE for equipment " + equipment.getId()
+                        + ": " + e.getMessage());
+            }
+        }
+        forgetRemovedEquipment(present);
+
+        oeeRefreshes.increment();
+        lastOeeRefreshAt = now;
+        lastOeeRefreshMs = System.currentTimeMillis() - started;
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot snapshot = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("trackedEquipment", equipmentOee.size());
+        }
+        stats.put("oeeWindowMinutes", oeeWindowMinutes);
+        stats.put("reads", reads.sum());
+        stats.put("builds", builds.sum());
+        stats.put("snapshotBuiltAt", snapshot != null ? snapshot.builtAt : null);
+        stats.put("oeeRefreshes", oeeRefreshes.sum());
+        stats.put("lastOeeRefreshAt", lastOeeRefreshAt);
+        stats.put("lastOeeRefreshMs", lastOeeRefreshMs);
+        return stats;
+    }
+
+    private synchronized void recordOee(Long equipmentId, double oee) {
+        Double previous = equipmentOee.put(equipmentId, oee);
+        if (previous == null || previous != oee) {
+            oeeTotal += oee - (previous != null ? previous : 0.0);
+            oeeVersion.incrementAndGet();
+        }
+    }
+
+    private synchronized void forgetRemovedEquipment(Set<Long> present) {
+        Iterator<Map.Entry<Long, Double>> it = equipmentOee.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Double> entry = it.next();
+            if (!present.contains(entry.getKey())) {
+                oeeTotal -= entry.getValue();
+                it.remove();
+                oeeVersion.incrementAndGet();
+            }
+        }
+    }
+
+    private synchronized Snapshot rebuild(long statusVersion, long oeeVersion) {
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.statusVersion == statusVersion && snapshot.oeeVersion == oeeVersion) {
+            return snapshot;
+        }
+
+        Map<EquipmentStatus, Long> counts = equipmentStateCache.getStatusCounts();
+        long totalEquipment = counts.values().stream().mapToLong(Long::longValue).sum();
+        double avgOee = equipmentOee.isEmpty() ? 0.0 : oeeTotal / equipmentOee.size();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalEquipment", totalEquipment);
+        stats.put("running", counts.get(EquipmentStatus.RUNNING));
+        stats.put("down", counts.get(EquipmentStatus.DOWN));
+        stats.put("avgOee", Math.round(avgOee * 100.0) / 100.0);
+
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        counts.forEach((status, count) -> {
+            if (count > 0) {
+                distribution.put(status.name(), count);
+            }
+        });
+
+        snapshot = new Snapshot(statusVersion, oeeVersion, Collections.unmodifiableMap(stats),
+                Collections.unmodifiableMap(distribution));
+        current = snapshot;
+        builds.increment();
+        return snapshot;
+    }
+
+    /**
+     * Immutable dashboard figures with an ETag per view, derived from the content so that
+     * every node and every restart agrees on it.
+     */
+    public static final class Snapshot {
+        private final long statusVersion;
+        private final long oeeVersion;
+        private final Map<String, Object> stats;
+        private final Map<String, Long> statusDistribution;
+        private final String statsEtag;
+        private final String distributionEtag;
+        private final LocalDateTime builtAt = LocalDateTime.now();
+
+        private Snapshot(long statusVersion, long oeeVersion, Map<String, Object> stats,
+                         Map<String, Long> statusDistribution) {
+            this.statusVersion = statusVersion;
+            this.oeeVersion = oeeVersion;
+            this.stats = stats;
+            this.statusDistribution = statusDistribution;
+            this.statsEtag = etag(stats);
+            this.distributionEtag = etag(statusDistribution);
+        }
+
+        public Map<String, Object> getStats() {
+            return stats;
+        }
+
+        public Map<String, Long> getStatusDistribution() {
+            return statusDistribution;
+        }
+
+        public String getStatsEtag() {
+            return statsEtag;
+        }
+
+        public String getDistributionEtag() {
+            return distributionEtag;
+        }
+
+        private static String etag(Map<String, ?> content) {
+            return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.mes.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.dto.SpcMeasurement;
+import com.mes.dto.TelemetrySample;
+import com.mes.model.*;
+import com.mes.repository.EquipmentLogRepository;
+import com.mes.repository.EquipmentRepository;
+import com.mes.repository.ProductionOrderRepository;
+import com.mes.repository.SpcDataPointRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies queued ingestion payloads to the domain tables. Runs inside the caller's transaction.
+ *
+ * Supported data types and payloads:
+ * - EQUIPMENT_DATA: a telemetry sample (equipmentId, status, temperature, vibration, outputCount,
+ *   timestamp) or {"samples": [...]}; written to equipment_log, and a status change is applied
+ *   to the equipment itself
+ * - SENSOR_DATA: {"samples": [...]} and/or {"measurements": [...]}; samples go to equipment_log,
+ *   measurements (equipmentId, parameterName, measuredValue, limits...) become SPC data points
+ * - SPC_DATA: measurements only
+ * - PRODUCTION_DATA: productionOrderId or orderNumber, plus producedQuantity (absolute) or
+ *   producedDelta
+ *
+ * Every payload is validated and its equipment and order references resolved before the first
+ * write, so payload problems throw IllegalArgumentException with nothing written.
+ */
+@Service
+public class DataIngestionProcessor {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EquipmentRepository equipmentRepository;
+
+    @Autowired
+    private EquipmentLogRepository equipmentLogRepository;
+
+    @Autowired
+    private TelemetryLastValueCache lastValueCache;
+
+    @Autowired
+    private SpcDataPointRepository spcDataPointRepository;
+
+    @Autowired
+    private ProductionOrderRepository productionOrderRepository;
+
+    @Autowired
+    private EquipmentService equipmentService;
+
+    @Autowired
+    private ProductionOrderService productionOrderService;
+
+    public void process(DataIngestionQueue item) {
+        Map<String, Object> payload = item.getPayload();
+        if (payload == null) {
+            throw new IllegalArgumentException("Payload is empty");
+        }
+        switch (item.getDataType()) {
+            case "EQUIPMENT_DATA":
+                processEquipmentData(payload);
+                break;
+            case "SENSOR_DATA":
+                processSensorData(payload);
+                break;
+            case "SPC_DATA":
+                spcDataPointRepository.saveAll(toDataPoints(readList(payload, "measurements", SpcMeasurement.class)));
+                break;
+            case "PRODUCTION_DATA":
+                processProductionData(payload);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + item.getDataType());
+        }
+    }
+
+    private void processEquipmentData(Map<String, Object> payload) {
+        List<TelemetrySample> samples = payload.containsKey("samples")
+                ? readList(payload, "samples", TelemetrySample.class)
+                : List.of(objectMapper.convertValue(payload, TelemetrySample.class));
+        saveLogs(toLogs(samples));
+
+        // The newest sample per equipment carries its current status
+        Map<Long, TelemetrySample> latest = new LinkedHashMap<>();
+        for (TelemetrySample sample : samples) {
+            if (sample.getStatus() == null) {
+                continue;
+            }
+            TelemetrySample current = latest.get(sample.getEquipmentId());
+            if (current == null || !sample.getTimestamp().isBefore(current.getTimestamp())) {
+                latest.put(sample.getEquipmentId(), sample);
+            }
+        }
+        for (TelemetrySample sample : latest.values()) {
+            equipmentService.updateStatus(sample.getEquipmentId(), sample.getStatus());
+        }
+    }
+
+    private void processSensorData(Map<String, Object> payload) {
+        if (!payload.containsKey("samples") && !payload.containsKey("measurements")) {
+            throw new IllegalArgumentException("SENSOR_DATA needs samples or measurements");
+        }
+        List<TelemetrySample> samples = payload.containsKey("samples")
+                ? readList(payload, "samples", TelemetrySample.class) : List.of();
+        List<SpcMeasurement> measurements = payload.containsKey("measurements")
+                ? readList(payload, "measurements", SpcMeasurement.class) : List.of();
+        List<EquipmentLog> logs = toLogs(samples);
+        List<SpcDataPoint> points = toDataPoints(measurements);
+        saveLogs(logs);
+        spcDataPointRepository.saveAll(points);
+    }
+
+    private void processProductionData(Map<String, Object> payload) {
+        Long orderId;
+        if (payload.get("productionOrderId") != null) {
+            orderId = ((Number) payload.get("productionOrderId")).longValue();
+        } else if (payload.get("orderNumber") != null) {
+            String orderNumber = payload.get("orderNumber").toString();
+            orderId = productionOrderRepository.findIdByOrderNumber(orderNumber)
+                    .orElseThrow(() -> new IllegalArgumentException("Production order not found: " + orderNumber));
+        } else {
+            throw new IllegalArgumentException("PRODUCTION_DATA needs productionOrderId or orderNumber");
+        }
+        // Lock the order row so concurrent workers applying deltas to it do not lose updates
+        ProductionOrder order = productionOrderRepository.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("Production order not found: " + orderId));
+
+        int current = order.getProducedQuantity() != null ? order.getProducedQuantity() : 0;
+        int quantity;
+        if (payload.get("producedQuantity") instanceof Number) {
+            quantity = ((Number) payload.get("producedQuantity")).intValue();
+        } else if (payload.get("producedDelta") instanceof Number) {
+            quantity = current + ((Number) payload.get("producedDelta")).intValue();
+        } else {
+            throw new IllegalArgumentException("PRODUCTION_DATA needs producedQuantity or producedDelta");
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Produced quantity cannot be negative");
+        }
+        if (quantity != current) {
+            productionOrderService.updateProducedQuantity(order.getId(), quantity);
+        }
+    }
+
+    private List<EquipmentLog> toLogs(List<TelemetrySample> samples) {
+        List<EquipmentLog> logs = new ArrayList<>(samples.size());
+        Map<Long, Equipment> resolved = new HashMap<>();
+        for (TelemetrySample sample : samples) {
+            if (sample.getEquipmentId() == null) {
+                throw new IllegalArgumentException("Telemetry sample without equipmentId");
+            }
+            if (sample.getTimestamp() == null) {
+                sample.setTimestamp(LocalDateTime.now());
+            }
+            EquipmentLog log = new EquipmentLog();
+            log.setEquipment(findEquipment(sample.getEquipmentId(), resolved));
+            log.setStatus(sample.getStatus());
+            log.setTemperature(sample.getTemperature());
+            log.setVibration(sample.getVibration());
+            log.setOutputCount(sample.getOutputCount());
+            log.setTimestamp(sample.getTimestamp());
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private void saveLogs(List<EquipmentLog> logs) {
+        equipmentLogRepository.saveAll(logs);
+        lastValueCache.recordAfterCommit(logs);
+    }
+
+    private List<SpcDataPoint> toDataPoints(List<SpcMeasurement> measurements) {
+        List<SpcDataPoint> points = new ArrayList<>(measurements.size());
+        Map<Long, Equipment> resolved = new HashMap<>();
+        Map<Long, ProductionOrder> resolvedOrders = new HashMap<>();
+        for (SpcMeasurement measurement : measurements) {
+            if (measurement.getParameterName() == null || measurement.getMeasuredValue() == null) {
+                throw new IllegalArgumentException("SPC measurement needs parameterName and measuredValue");
+            }
+            SpcDataPoint point = new SpcDataPoint();
+            if (measurement.getEquipmentId() != null) {
+                point.setEquipment(findEquipment(measurement.getEquipmentId(), resolved));
+            }
+            if (measurement.getProductionOrderId() != null) {
+                point.setProductionOrder(findOrder(measurement.getProductionOrderId(), resolvedOrders));
+            }
+            point.setParameterName(measurement.getParameterName());
+            point.setMeasuredValue(measurement.getMeasuredValue());
+            point.setUnitOfMeasure(measurement.getUnitOfMeasure());
+            point.setUpperControlLimit(measurement.getUpperControlLimit());
+            point.setLowerControlLimit(measurement.getLowerControlLimit());
+            point.setUpperSpecLimit(measurement.getUpperSpecLimit());
+            point.setLowerSpecLimit(measurement.getLowerSpecLimit());
+            point.setTargetValue(measurement.getTargetValue());
+            point.setSampleSize(measurement.getSampleSize());
+            point.setMeasuredAt(measurement.getMeasuredAt());
+            points.add(point);
+        }
+        return points;
+    }
+
+    private Equipment findEquipment(Long equipmentId, Map<Long, Equipment> resolved) {
+        return resolved.computeIfAbsent(equipmentId, id -> {
+            if (!equipmentRepository.existsById(id)) {
+                throw new IllegalArgumentException("Equipment not found: " + id);
+            }
+            return equipmentRepository.getReferenceById(id);
+        });
+    }
+
+    private ProductionOrder findOrder(Long orderId, Map<Long, ProductionOrder> resolved) {
+        return resolved.computeIfAbsent(orderId, id -> {
+            if (!productionOrderRepository.existsById(id)) {
+                throw new IllegalArgumentException("Production order not found: " + id);
+            }
+            return productionOrderRepository.getReferenceById(id);
+        });
+    }
+
+    private <T> List<T> readList(Map<String, Object> payload, String field, Class<T> type) {
+        Object value = payload.get(field);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Payload field '" + field + "' must be a list");
+        }
+        List<T> result = new ArrayList<>();
+        for (Object element : (List<?>) value) {
+            result.add(objectMapper.convertValue(element, type));
+        }
+        return result;
+    }
+}
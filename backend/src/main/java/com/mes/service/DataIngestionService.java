@@ -1,23 +1,107 @@
 package com.mes.service;
 
+import com.mes.dto.IngestionBacklogSummary;
+import com.mes.dto.KeysetPage;
 import com.mes.model.DataIngestionQueue;
 import com.mes.repository.DataIngestionQueueRepository;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Queue for data pushed by external systems, drained by a pool of worker threads.
+ *
+ * Each worker claims a batch of claimable rows (PENDING, or FAILED with retries left and
+ * past their backoff) with FOR UPDATE SKIP LOCKED, so several workers and several nodes
+ * never claim the same row. The batch is applied in one short transaction by
+ * DataIngestionProcessor; if that transaction fails, the items are retried one per
+ * transaction so a single bad item cannot hold back the rest. Failures are retried with
+ * exponential backoff, invalid payloads fail permanently, and rows left in PROCESSING by a
+ * crashed worker are returned to the queue by the reaper.
+ */
 @Service
 public class DataIngestionService {
 
+    private static final String CLAIMABLE =
+            "(status = 'PENDING' OR (status = 'FAILED' AND retry_count < max_retries)) " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= ?) ";
+
+    private static final String CLAIM_BATCH_SQL =
+            "UPDATE data_ingestion_queue SET status = 'PROCESSING', claimed_at = ?, claimed_by = ? " +
+            "WHERE id IN (SELECT id FROM data_ingestion_queue WHERE " + CLAIMABLE +
+            "ORDER BY priority DESC, created_at ASC LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, data_type";
+
+    // Manual reprocessing ignores retry limits and backoff, but not an in-flight claim
+    private static final String CLAIM_ONE_SQL =
+            "UPDATE data_ingestion_queue SET status = 'PROCESSING', claimed_at = ?, claimed_by = ? " +
+            "WHERE id = ? AND status IN ('PENDING', 'FAILED') RETURNING id, data_type";
+
     @Autowired
     private DataIngestionQueueRepository queueRepository;
 
+    @Autowired
+    private DataIngestionProcessor processor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${mes.ingestion.workers:4}")
+    private int workerCount;
+
+    @Value("${mes.ingestion.batch-size:25}")
+    private int batchSize;
+
+    @Value("${mes.ingestion.idle-poll-ms:1000}")
+    private long idlePollMs;
+
+    @Value("${mes.ingestion.backoff-base-seconds:15}")
+    private long backoffBaseSeconds;
+
+    @Value("${mes.ingestion.backoff-max-seconds:3600}")
+    private long backoffMaxSeconds;
+
+    @Value("${mes.ingestion.processing-timeout-minutes:10}")
+    private long processingTimeoutMinutes;
+
+    private TransactionTemplate transactionTemplate;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Object workSignal = new Object();
+    private volatile boolean running;
+    private String nodeId;
+
+    private final Map<String, TypeMetrics> metrics = new ConcurrentHashMap<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchFallbacks = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+    private final LongAdder workerErrors = new LongAdder();
+
     @Transactional
-    public DataIngestionQueue queueData(String sourceSystem, String dataType, 
+    public DataIngestionQueue queueData(String sourceSystem, String dataType,
                                        Map<String, Object> payload, Integer priority) {
         DataIngestionQueue item = new DataIngestionQueue();
         item.setSourceSystem(sourceSystem);
@@ -25,14 +109,35 @@ public class DataIngestionService {
         item.setPayload(payload);
         item.setPriority(priority != null ? priority : 5);
         item.setStatus("PENDING");
-        
-        return queueRepository.save(item);
+
+        DataIngestionQueue saved = queueRepository.save(item);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeWorkers();
+                }
+            });
+        }
+        return saved;
     }
 
     public List<DataIngestionQueue> getPendingItems() {
         return queueRepository.findPendingItemsByPriority();
     }
 
+    /**
+     * Keyset-paginated queue items, newest first, created in [from, to). Filters are optional.
+     */
+    public KeysetPage<DataIngestionQueue> getQueuePage(LocalDateTime from, LocalDateTime to, String status,
+                                                       String sourceSystem, String dataType, String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        Object[] position = KeysetPage.startAfter(cursor, to);
+        List<DataIngestionQueue> items = queueRepository.findPage((LocalDateTime) position[0], (Long) position[1],
+                KeysetPage.since(from), status, sourceSystem, dataType, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, DataIngestionQueue::getCreatedAt, DataIngestionQueue::getId);
+    }
+
     public List<DataIngestionQueue> getItemsByStatus(String status) {
         return queueRepository.findByStatus(status);
     }
@@ -41,93 +146,296 @@ public class DataIngestionService {
         return queueRepository.findBySourceSystem(sourceSystem);
     }
 
-    @Transactional
+    /**
+     * Process one item now, regardless of its retry count or backoff.
+     */
     public DataIngestionQueue processItem(Long id) {
-        DataIngestionQueue item = queueRepository.findById(id)
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> claimed = claim(CLAIM_ONE_SQL, Timestamp.valueOf(now), nodeId() + "-manual", id);
+        if (claimed.isEmpty()) {
+            DataIngestionQueue item = queueRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Queue item not found"));
+            throw new RuntimeException("Queue item is " + item.getStatus() + " and cannot be processed");
+        }
+        processIndividually(claimed);
+        return queueRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Queue item not found"));
-        
-        item.setStatus("PROCESSING");
-        queueRepository.save(item);
-        
-        try {
-            // Process the data based on data type
-            boolean success = processDataByType(item);
-            
-            if (success) {
-                item.setStatus("COMPLETED");
-                item.setProcessedAt(LocalDateTime.now());
-            } else {
-                item.setStatus("FAILED");
-                item.setRetryCount(item.getRetryCount() + 1);
-                item.setErrorMessage("Processing failed");
+    }
+
+    // ===== Worker pool =====
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workerLoop, "ingestion-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        running = false;
+        wakeWorkers();
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-            
-        } catch (Exception e) {
-            item.setStatus("FAILED");
-            item.setRetryCount(item.getRetryCount() + 1);
-            item.setErrorMessage(e.getMessage());
+            worker.interrupt();
         }
-        
-        return queueRepository.save(item);
     }
 
-    private boolean processDataByType(DataIngestionQueue item) {
-        // Implement actual data processing logic based on data type
-        // This is a placeholder
-        switch (item.getDataType()) {
-            case "EQUIPMENT_DATA":
-                return processEquipmentData(item.getPayload());
-            case "PRODUCTION_DATA":
-                return processProductionData(item.getPayload());
-            case "SENSOR_DATA":
-                return processSensorData(item.getPayload());
-            default:
-                return false;
+    private void workerLoop() {
+        String workerId = nodeId() + "-" + Thread.currentThread().getName();
+        while (running) {
+            try {
+                if (runBatch(workerId) == 0) {
+                    synchronized (workSignal) {
+                        workSignal.wait(idlePollMs);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                workerErrors.increment();
+                System.err.println("Ingestion worker " + workerId + " failed: " + e.getMessage());
+                try {
+                    Thread.sleep(idlePollMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
         }
     }
 
-    private boolean processEquipmentData(Map<String, Object> payload) {
-        // Placeholder for equipment data processing
-        return true;
+    private void wakeWorkers() {
+        synchronized (workSignal) {
+            workSignal.notifyAll();
+        }
     }
 
-    private boolean processProductionData(Map<String, Object> payload) {
-        // Placeholder for production data processing
-        return true;
+    /**
+     * Claim and process one batch. Returns the number of items claimed.
+     */
+    private int runBatch(String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = claim(CLAIM_BATCH_SQL, Timestamp.valueOf(now), workerId, Timestamp.valueOf(now), batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        batches.increment();
+
+        try {
+            List<Outcome> outcomes = transactionTemplate.execute(status -> {
+                List<Outcome> results = new ArrayList<>();
+                for (DataIngestionQueue item : queueRepository.findAllById(ids)) {
+                    results.add(apply(item));
+                }
+                return results;
+            });
+            outcomes.forEach(Outcome::record);
+        } catch (Exception e) {
+            batchFallbacks.increment();
+            processIndividually(ids);
+        }
+        return ids.size();
     }
 
-    private boolean processSensorData(Map<String, Object> payload) {
-        // Placeholder for sensor data processing
-        return true;
+    // Runs a claim statement and counts each claimed item once, whatever happens to it after
+    private List<Long> claim(String sql, Object... args) {
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            metricsFor(rs.getString("data_type")).claimed.increment();
+            return rs.getLong("id");
+        }, args);
     }
 
-    // Scheduled job to process pending items (runs every minute)
-    @Scheduled(fixedRate = 60000)
-    @Transactional
-    public void processQueuedItems() {
-        List<DataIngestionQueue> pendingItems = getPendingItems();
-        
-        for (DataIngestionQueue item : pendingItems) {
+    private void processIndividually(List<Long> ids) {
+        for (Long id : ids) {
             try {
-                processItem(item.getId());
+                Outcome outcome = transactionTemplate.execute(status -> queueRepository.findById(id)
+                        .map(this::apply)
+                        .orElse(null));
+                if (outcome != null) {
+                    outcome.record();
+                }
             } catch (Exception e) {
-                System.err.println("Failed to process queue item " + item.getId() + ": " + e.getMessage());
+                transactionTemplate.executeWithoutResult(status -> queueRepository.findById(id)
+                        .ifPresent(item -> markFailed(item, rootMessage(e), true).record()));
             }
         }
     }
 
-    // Retry failed items
-    @Scheduled(fixedRate = 300000) // Every 5 minutes
+    /**
+     * Apply one claimed item inside the current transaction. Payload errors are recorded on
+     * the item; anything else propagates and aborts the transaction.
+     */
+    private Outcome apply(DataIngestionQueue item) {
+        long started = System.nanoTime();
+        try {
+            processor.process(item);
+        } catch (IllegalArgumentException e) {
+            return markFailed(item, e.getMessage(), false);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        item.setStatus("COMPLETED");
+        item.setProcessedAt(now);
+        item.setErrorMessage(null);
+        item.setNextAttemptAt(null);
+        item.setClaimedAt(null);
+        item.setClaimedBy(null);
+
+        long processingNanos = System.nanoTime() - started;
+        long lagMillis = item.getCreatedAt() != null ? Duration.between(item.getCreatedAt(), now).toMillis() : 0;
+        TypeMetrics typeMetrics = metricsFor(item.getDataType());
+        return () -> typeMetrics.recordCompleted(processingNanos, lagMillis);
+    }
+
+    private Outcome markFailed(DataIngestionQueue item, String error, boolean retryable) {
+        int attempts = item.getRetryCount() != null ? item.getRetryCount() + 1 : 1;
+        int maxRetries = item.getMaxRetries() != null ? item.getMaxRetries() : 3;
+        boolean willRetry = retryable && attempts < maxRetries;
+
+        item.setStatus("FAILED");
+        // Invalid payloads will not succeed on retry, so they use up all attempts at once
+        item.setRetryCount(retryable ? attempts : Math.max(attempts, maxRetries));
+        item.setErrorMessage(error);
+        item.setNextAttemptAt(willRetry ? LocalDateTime.now().plus(backoff(attempts)) : null);
+        item.setClaimedAt(null);
+        item.setClaimedBy(null);
+
+        TypeMetrics typeMetrics = metricsFor(item.getDataType());
+        return () -> {
+            typeMetrics.failed.increment();
+            (willRetry ? typeMetrics.retriesScheduled : typeMetrics.exhausted).increment();
+        };
+    }
+
+    // base * 2^(attempt-1), capped, with +/-20% jitter so failed bursts do not retry in lockstep
+    private Duration backoff(int attempt) {
+        double seconds = Math.min(backoffBaseSeconds * Math.pow(2, attempt - 1), backoffMaxSeconds);
+        seconds *= 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofMillis((long) (seconds * 1000));
+    }
+
+    // ===== Reaper & metrics =====
+
+    @Scheduled(fixedDelayString = "${mes.ingestion.reaper-interval-ms:60000}")
     @Transactional
-    public void retryFailedItems() {
-        List<DataIngestionQueue> failedItems = queueRepository.findFailedItemsForRetry();
-        
-        for (DataIngestionQueue item : failedItems) {
+    public void reapStuckItems() {
+        LocalDateTime now = LocalDateTime.now();
+        int count = queueRepository.reapStuckItems(now.minusMinutes(processingTimeoutMinutes), now);
+        if (count > 0) {
+            reaped.add(count);
+            System.err.println("Returned " + count + " stuck ingestion items to the queue");
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void rollThroughput() {
+        metrics.values().forEach(TypeMetrics::roll);
+    }
+
+    public Map<String, Object> getStats() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Map<String, Object>> byType = new TreeMap<>();
+        for (Map.Entry<String, TypeMetrics> entry : metrics.entrySet()) {
+            byType.put(entry.getKey(), entry.getValue().toMap());
+        }
+        for (IngestionBacklogSummary backlog : queueRepository.summarizeBacklog()) {
+            Map<String, Object> typeStats = byType.computeIfAbsent(backlog.getDataType(), type -> new TypeMetrics().toMap());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> waiting = (Map<String, Object>) typeStats.computeIfAbsent("backlog", key -> new TreeMap<>());
+            waiting.put(backlog.getStatus(), backlog.getItems());
+            long ageSeconds = Duration.between(backlog.getOldestCreatedAt(), now).getSeconds();
+            typeStats.merge("oldestWaitingSeconds", ageSeconds, (a, b) -> Math.max((Long) a, (Long) b));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workerCount);
+        stats.put("running", running);
+        stats.put("batchSize", batchSize);
+        stats.put("batches", batches.sum());
+        stats.put("batchFallbacks", batchFallbacks.sum());
+        stats.put("reaped", reaped.sum());
+        stats.put("workerErrors", workerErrors.sum());
+        stats.put("dataTypes", byType);
+        return stats;
+    }
+
+    private TypeMetrics metricsFor(String dataType) {
+        return metrics.computeIfAbsent(dataType != null ? dataType : "UNKNOWN", type -> new TypeMetrics());
+    }
+
+    private String nodeId() {
+        if (nodeId == null) {
             try {
-                processItem(item.getId());
+                nodeId = InetAddress.getLocalHost().getHostName();
             } catch (Exception e) {
-                System.err.println("Failed to retry queue item " + item.getId() + ": " + e.getMessage());
+                nodeId = "node";
             }
         }
+        return nodeId;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    // Metric updates are deferred until the item's transaction has committed
+    private interface Outcome {
+        void record();
+    }
+
+    private static class TypeMetrics {
+        private final LongAdder claimed = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder retriesScheduled = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder processingNanos = new LongAdder();
+        private final LongAdder lagMillis = new LongAdder();
+        private final AtomicLong maxLagMillis = new AtomicLong();
+        private volatile long completedLastMinute;
+        private long completedAtLastRoll;
+
+        private void recordCompleted(long nanos, long lag) {
+            completed.increment();
+            processingNanos.add(nanos);
+            lagMillis.add(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+        }
+
+        private synchronized void roll() {
+            long total = completed.sum();
+            completedLastMinute = total - completedAtLastRoll;
+            completedAtLastRoll = total;
+        }
+
+        private Map<String, Object> toMap() {
+            long done = completed.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("claimed", claimed.sum());
+            map.put("completed", done);
+            map.put("failed", failed.sum());
+            map.put("retriesScheduled", retriesScheduled.sum());
+            map.put("exhausted", exhausted.sum());
+            map.put("completedLastMinute", completedLastMinute);
+            map.put("avgProcessingMs", done > 0 ? processingNanos.sum() / 1_000_000.0 / done : null);
+            map.put("avgLagSeconds", done > 0 ? lagMillis.sum() / 1000.0 / done : null);
+            map.put("maxLagSeconds", maxLagMillis.get() / 1000.0);
+            return map;
+        }
     }
 }
@@ -3,19 +3,131 @@ package com.mes.service;
 import com.mes.model.DataRetentionPolicy;
 import com.mes.model.User;
 import com.mes.repository.DataRetentionPolicyRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class DataRetentionService {
 
+    private static final String CLAIM_SQL =
+            "UPDATE data_retention_policy SET last_run_status = 'RUNNING', last_run_started_at = ? " +
+            "WHERE id = ? AND (last_run_status IS DISTINCT FROM 'RUNNING' OR last_run_started_at < ?)";
+
+    private static final String FINISH_SQL =
+            "UPDATE data_retention_policy SET last_run_status = ?, last_run_duration_ms = ?, last_run_rows = ?, " +
+            "last_run_rows_archived = ?, last_run_partitions_dropped = ?, last_run_rows_per_second = ?, " +
+            "last_run_error = ?, last_execution = ?, next_execution = ? WHERE id = ?";
+
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ? ORDER BY c.relname";
+
+    // Runs kept for the run status endpoint, newest last
+    private static final int RECENT_RUNS = 100;
+
+    private static final Pattern PARTITION_BOUND = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+
+    // Tables a policy can expire, keyed by entity type (case and underscores are ignored)
+    private static final Map<String, Target> TARGETS = new HashMap<>();
+
+    static {
+        segmented("EquipmentLog", "equipment_log", "timestamp");
+        target("AlertHistory", "alert_history", "triggered_at", "resolved = true");
+        target("AuditTrail", "audit_trail", "timestamp", null);
+        target("UserActivityLog", "user_activity_log", "timestamp", null);
+        target("ChangeHistory", "change_history", "changed_at", "(approval_required = false OR approved_at IS NOT NULL)");
+        target("DataIngestionQueue", "data_ingestion_queue", "created_at", "status IN ('COMPLETED', 'FAILED')");
+        target("IntegrationLog", "integration_log", "timestamp", null);
+        target("NotificationDeliveryLog", "notification_delivery_log", "created_at", "delivery_status IN ('SENT', 'DELIVERED', 'FAILED')");
+        target("WebhookDeliveryLog", "webhook_delivery_log", "created_at", "delivery_status IN ('SUCCESS', 'FAILED')");
+        target("UserNotification", "user_notifications", "created_at", null);
+        segmented("SpcDataPoint", "spc_data_points", "measured_at");
+        segmented("OeeCalculation", "oee_calculation", "calculation_period_start",
+                new Child("OeeLossEvent", "oee_loss_event", "oee_calculation_id", "event_start"));
+    }
+
     @Autowired
     private DataRetentionPolicyRepository policyRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ColdArchiveService coldArchiveService;
+
+    @Value("${mes.retention.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${mes.retention.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${mes.retention.max-run-minutes:60}")
+    private long maxRunMinutes;
+
+    @Value("${mes.retention.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+
+    // Manual runs waiting behind the one in progress
+    @Value("${mes.retention.queue-capacity:20}")
+    private int queueCapacity;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Retention runs for up to max-run-minutes, so it gets its own thread instead of the scheduler's
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, Run> recentRuns = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Run> eldest) {
+            return size() > RECENT_RUNS;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "retention-1");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Interrupting the run ends it after the current chunk, recorded as PARTIAL
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Transactional
     public DataRetentionPolicy createPolicy(String entityType, Integer retentionDays, 
                                            Boolean archiveEnabled, User createdBy) {
@@ -61,45 +173,432 @@ public class DataRetentionService {
         policyRepository.deleteById(id);
     }
 
-    // Scheduled job to execute retention policies (runs daily at 2 AM)
+    // Scheduled job to execute retention policies (runs daily at 2 AM) on the retention thread. Each
+    // chunk commits on its own, so there is no surrounding transaction holding locks for the whole run.
     @Scheduled(cron = "0 0 2 * * *")
-    @Transactional
     public void executeRetentionPolicies() {
-        List<DataRetentionPolicy> policies = policyRepository.findPoliciesDueForExecution(LocalDateTime.now());
-        
-        for (DataRetentionPolicy policy : policies) {
-            try {
-                executePolicy(policy);
-                policy.setLastExecution(LocalDateTime.now());
-                policy.setNextExecution(LocalDateTime.now().plusDays(1));
-                policyRepository.save(policy);
-            } catch (Exception e) {
-                System.err.println("Failed to execute retention policy for " + policy.getEntityType() + ": " + e.getMessage());
+        try {
+            executor.execute(this::runDuePolicies);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Skipped scheduled retention: retention queue is full");
+        }
+    }
+
+    private void runDuePolicies() {
+        for (DataRetentionPolicy policy : policyRepository.findPoliciesDueForExecution(LocalDateTime.now())) {
+            Run run = claim(policy);
+            if (run != null) {
+                execute(run);
             }
         }
     }
 
-    private void executePolicy(DataRetentionPolicy policy) {
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(policy.getRetentionDays());
-        
-        // Implementation would depend on entity type
-        // This is a placeholder for the actual archival/deletion logic
-        System.out.println("Executing retention policy for " + policy.getEntityType() + 
-                          " with cutoff date: " + cutoffDate);
-        
-        if (policy.getArchiveEnabled()) {
-            // Archive old data
-            System.out.println("Archiving data older than " + cutoffDate);
+    /**
+     * Queue a policy to run right away, whether or not it is due, and return the run's id and
+     * status. The outcome is available from getRun and on the policy once the run finishes.
+     */
+    public Map<String, Object> startPolicy(Long id) {
+        DataRetentionPolicy policy = policyRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Policy not found"));
+        Run run = claim(policy);
+        if (run == null) {
+            throw new RuntimeException("Retention policy is already running");
         }
-        
-        if (policy.getDeleteAfterArchive()) {
-            // Delete archived data
-            System.out.println("Deleting archived data");
+        try {
+            executor.execute(() -> execute(run));
+        } catch (RejectedExecutionException e) {
+            finish(run, "FAILED", "Retention queue is full");
+            throw new RuntimeException("Retention queue is full");
+        }
+        return run.toMap();
+    }
+
+    public Optional<Map<String, Object>> getRun(String runId) {
+        synchronized (recentRuns) {
+            Run run = recentRuns.get(runId);
+            return run != null ? Optional.of(run.toMap()) : Optional.empty();
+        }
+    }
+
+    // Claims the policy so no other node runs it at the same time; null when it is already running
+    private Run claim(DataRetentionPolicy policy) {
+        LocalDateTime claimedAt = LocalDateTime.now();
+        int claimed = jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(claimedAt), policy.getId(),
+                Timestamp.valueOf(claimedAt.minusMinutes(maxRunMinutes * 2)));
+        if (claimed == 0) {
+            return null;
+        }
+        Run run = new Run(policy);
+        synchronized (recentRuns) {
+            recentRuns.put(run.id, run);
+        }
+        return run;
+    }
+
+    private void execute(Run run) {
+        DataRetentionPolicy policy = run.policy;
+        run.begin(maxRunMinutes);
+        String status = "COMPLETED";
+        String error = null;
+        try {
+            executePolicy(run);
+            if (run.timedOut()) {
+                status = "PARTIAL";
+            }
+        } catch (Exception e) {
+            status = "FAILED";
+            error = e.getMessage();
+            System.err.println("Failed to execute retention policy for " + policy.getEntityType() + ": " + e.getMessage());
+        }
+        finish(run, status, error);
+        System.out.println("Retention policy for " + policy.getEntityType() + " " + status + ": " + run.rows +
+                " rows (" + run.archived + " archived), " + run.partitionsDropped + " partitions dropped in " +
+                run.durationMs + " ms");
+    }
+
+    private void finish(Run run, String status, String error) {
+        long durationMs = run.startNanos > 0 ? (System.nanoTime() - run.startNanos) / 1_000_000 : 0;
+        double rowsPerSecond = durationMs > 0 ? run.rows * 1000.0 / durationMs : run.rows;
+        jdbcTemplate.update(FINISH_SQL, status, durationMs, run.rows, run.archived, run.partitionsDropped,
+                Math.round(rowsPerSecond * 10) / 10.0, error, Timestamp.valueOf(LocalDateTime.now()),
+                Timestamp.valueOf(LocalDate.now().plusDays(1).atStartOfDay()), run.policy.getId());
+        run.durationMs = durationMs;
+        run.error = error;
+        run.finishedAt = LocalDateTime.now();
+        run.status = status;
+    }
+
+    private void executePolicy(Run run) {
+        DataRetentionPolicy policy = run.policy;
+        Target target = TARGETS.get(normalize(policy.getEntityType()));
+        if (target == null) {
+            throw new RuntimeException("No retention target for entity type " + policy.getEntityType());
+        }
+        LocalDateTime cutoffDate = run.started.minusDays(policy.getRetentionDays());
+        boolean archive = Boolean.TRUE.equals(policy.getArchiveEnabled());
+        boolean delete = !archive || Boolean.TRUE.equals(policy.getDeleteAfterArchive());
+
+        if (archive && target.segmented) {
+            // Whole days go to the cold archive; partitions emptied that way are dropped after
+            archiveSegments(run, target, cutoffDate, delete);
+            if (delete && !run.timedOut()) {
+                dropExpiredPartitions(run, target, cutoffDate, false, true);
+            }
+            return;
+        }
+        if (delete && target.filter == null) {
+            dropExpiredPartitions(run, target, cutoffDate, archive, false);
+            if (run.timedOut()) {
+                return;
+            }
+        }
+        // Archive-only policies keep the rows, so they pick up after the newest row already archived
+        Object[] after = archive && !delete ? lastArchived(policy.getId(), null, null) : null;
+        processChunks(run, target, target.table, cutoffDate, archive, delete, after);
+    }
+
+    // Partitions lying wholly before the cutoff are dropped instead of deleted row by row; when the
+    // policy archives, their rows are copied out first
+    private void dropExpiredPartitions(Run run, Target target, LocalDateTime cutoffDate, boolean archive,
+                                       boolean onlyEmpty) {
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(PARTITIONS_SQL, target.table);
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("relname");
+            Matcher bound = PARTITION_BOUND.matcher(String.valueOf(partition.get("bound")));
+            if (!bound.find()) {
+                continue; // DEFAULT partition
+            }
+            LocalDateTime from = Timestamp.valueOf(bound.group(1)).toLocalDateTime();
+            LocalDateTime to = Timestamp.valueOf(bound.group(2)).toLocalDateTime();
+            if (to.isAfter(cutoffDate)) {
+                continue;
+            }
+            if (onlyEmpty && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + name + ")", Boolean.class))) {
+                continue;
+            }
+            if (archive) {
+                processChunks(run, target, name, to, true, false, lastArchived(run.policy.getId(), from, to));
+                if (run.timedOut()) {
+                    return;
+                }
+            }
+            // Dropping locks the parent table; give up rather than queue OLTP work behind the lock
+            transactionTemplate.executeWithoutResult(tx -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                jdbcTemplate.execute("DROP TABLE " + name);
+            });
+            run.partitionsDropped++;
+        }
+    }
+
+    // Moves rows to cold-archive segments one equipment and day at a time, oldest day first. Only
+    // days wholly before the cutoff are archived, so a segment's day is complete once written.
+    private void archiveSegments(Run run, Target target, LocalDateTime cutoffDate, boolean delete) {
+        String ts = target.timeColumn;
+        Timestamp cutoffDay = Timestamp.valueOf(cutoffDate.toLocalDate().atStartOfDay());
+        // Archive-only policies keep the rows, so they pick up at the last day archived: a run that
+        // timed out may have left some of its equipment without a segment
+        LocalDate lastDay = delete ? null : coldArchiveService.getLastArchivedDay(target.table);
+        Timestamp after = lastDay != null ? Timestamp.valueOf(lastDay.atStartOfDay()) : null;
+
+        while (!run.timedOut()) {
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(" + ts + ") FROM " + target.table +
+                    " WHERE " + ts + " >= COALESCE(CAST(? AS TIMESTAMP), '-infinity') AND " + ts + " < ?", Timestamp.class, after, cutoffDay);
+            if (oldest == null) {
+                return;
+            }
+            LocalDate day = oldest.toLocalDateTime().toLocalDate();
+            List<Long> equipmentIds = jdbcTemplate.queryForList("SELECT DISTINCT COALESCE(equipment_id, 0) FROM " +
+                    target.table + " WHERE " + ts + " >= ? AND " + ts + " < ?", Long.class,
+                    Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            if (!delete) {
+                equipmentIds.removeAll(coldArchiveService.getArchivedEquipment(target.table, day));
+            }
+
+            for (Long equipmentId : equipmentIds) {
+                long chunkStart = System.nanoTime();
+                List<Long> ids;
+                try {
+                    ids = coldArchiveService.archiveDay(target.table, ts, equipmentId, day, run.policy);
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to write archive segment for " + target.table + " equipment " +
+                            equipmentId + " on " + day + ": " + e.getMessage(), e);
+                }
+                run.rows += ids.size();
+                run.archived += ids.size();
+                if (delete) {
+                    // The day's bounds let a partitioned table prune to the one partition holding it
+                    Timestamp dayStart = Timestamp.valueOf(day.atStartOfDay());
+                    Timestamp dayEnd = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+                    for (int i = 0; i < ids.size(); i += chunkSize) {
+                        Long[] chunk = ids.subList(i, Math.min(ids.size(), i + chunkSize)).toArray(new Long[0]);
+                        // Rows the delete would cascade to are archived in the same transaction
+                        transactionTemplate.executeWithoutResult(tx -> {
+                            if (target.child != null) {
+                                run.archived += archiveChildren(run, target.child, chunk);
+                            }
+                            jdbcTemplate.update("DELETE FROM " + target.table + " WHERE id = ANY(?) AND " + ts +
+                                    " >= ? AND " + ts + " < ?", ps -> {
+                                ps.setArray(1, ps.getConnection().createArrayOf("bigint", chunk));
+                                ps.setTimestamp(2, dayStart);
+                                ps.setTimestamp(3, dayEnd);
+                            });
+                        });
+                    }
+                }
+                if (!pause(chunkStart) || run.timedOut()) {
+                    return;
+                }
+            }
+            after = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        }
+    }
+
+    // Copies the child rows of the given parents to archived_data; returns how many were copied
+    private int archiveChildren(Run run, Child child, Long[] parentIds) {
+        return jdbcTemplate.update("INSERT INTO archived_data (entity_type, entity_id, archived_data, " +
+                "original_created_at, retention_policy_id) SELECT ?, c.id, to_jsonb(c), c." + child.timeColumn +
+                ", ? FROM " + child.table + " c WHERE c." + child.parentColumn + " = ANY(?)", ps -> {
+            ps.setString(1, child.entityType);
+            ps.setLong(2, run.policy.getId());
+            ps.setArray(3, ps.getConnection().createArrayOf("bigint", parentIds));
+        });
+    }
+
+    // Works through rows older than the cutoff in (timestamp, id) order, one chunk per statement
+    private void processChunks(Run run, Target target, String table, LocalDateTime cutoffDate,
+                               boolean archive, boolean delete, Object[] after) {
+        String sql = chunkSql(target, table, archive, delete);
+        Timestamp lastTimestamp = after != null ? (Timestamp) after[0] : null;
+        long lastId = after != null ? (Long) after[1] : 0L;
+
+        while (!run.timedOut()) {
+            long chunkStart = System.nanoTime();
+            List<Object> params = new ArrayList<>(Arrays.asList(lastTimestamp, lastId, Timestamp.valueOf(cutoffDate), chunkSize));
+            if (archive) {
+                params.add(target.entityType);
+                params.add(run.policy.getId());
+            }
+            List<Object[]> results = jdbcTemplate.query(sql, (rs, rowNum) -> new Object[] {
+                    rs.getLong("processed"), rs.getLong("selected"), rs.getTimestamp("last_ts"), rs.getLong("last_id")
+            }, params.toArray());
+            if (results.isEmpty()) {
+                return;
+            }
+
+            Object[] result = results.get(0);
+            run.rows += (Long) result[0];
+            if (archive) {
+                run.archived += (Long) result[0];
+            }
+            lastTimestamp = (Timestamp) result[2];
+            lastId = (Long) result[3];
+            if ((Long) result[1] < chunkSize) {
+                return;
+            }
+
+            if (!pause(chunkStart)) {
+                return;
+            }
+        }
+    }
+
+    // Rest at least as long as the chunk took, so retention never holds more than half a connection
+    private boolean pause(long chunkStart) {
+        long elapsedMs = (System.nanoTime() - chunkStart) / 1_000_000;
+        try {
+            Thread.sleep(Math.max(pauseMs, elapsedMs));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String chunkSql(Target target, String table, boolean archive, boolean delete) {
+        String ts = target.timeColumn;
+        StringBuilder sql = new StringBuilder("WITH batch AS (SELECT * FROM ").append(table)
+                .append(" WHERE (").append(ts).append(", id) > (COALESCE(CAST(? AS TIMESTAMP), '-infinity'), ?) AND ")
+                .append(ts).append(" < ?");
+        if (target.filter != null) {
+            sql.append(" AND ").append(target.filter);
         }
+        sql.append(" ORDER BY ").append(ts).append(", id LIMIT ?)");
+
+        String source = "batch";
+        if (delete) {
+            // The batch's time span lets a partitioned table prune partitions when the delete starts
+            sql.append(", done AS (DELETE FROM ").append(table).append(" WHERE id IN (SELECT id FROM batch) AND ")
+                    .append(ts).append(" BETWEEN (SELECT MIN(").append(ts).append(") FROM batch) AND (SELECT MAX(")
+                    .append(ts).append(") FROM batch) RETURNING *)");
+            source = "done";
+        }
+        if (archive) {
+            sql.append(", archived AS (INSERT INTO archived_data (entity_type, entity_id, archived_data, original_created_at, retention_policy_id) ")
+                    .append("SELECT ?, r.id, to_jsonb(r), r.").append(ts).append(", ? FROM ").append(source).append(" r)");
+        }
+        sql.append(" SELECT (SELECT COUNT(*) FROM ").append(source).append(") AS processed, ")
+                .append("(SELECT COUNT(*) FROM batch) AS selected, b.").append(ts).append(" AS last_ts, b.id AS last_id ")
+                .append("FROM batch b ORDER BY b.").append(ts).append(" DESC, b.id DESC LIMIT 1");
+        return sql.toString();
+    }
+
+    // (original_created_at, entity_id) of the newest row the policy has archived, optionally within a range
+    private Object[] lastArchived(Long policyId, LocalDateTime from, LocalDateTime to) {
+        String sql = "SELECT original_created_at, entity_id FROM archived_data WHERE retention_policy_id = ?" +
+                (from != null ? " AND original_created_at >= ? AND original_created_at < ?" : "") +
+                " ORDER BY original_created_at DESC, entity_id DESC LIMIT 1";
+        Object[] params = from != null
+                ? new Object[] {policyId, Timestamp.valueOf(from), Timestamp.valueOf(to)}
+                : new Object[] {policyId};
+        List<Object[]> rows = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Object[] {rs.getTimestamp(1), rs.getLong(2)}, params);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private static String normalize(String entityType) {
+        return entityType == null ? "" : entityType.replace("_", "").toLowerCase();
     }
 
     public Integer getRetentionDays(String entityType) {
         DataRetentionPolicy policy = getPolicyByEntityType(entityType);
         return policy != null ? policy.getRetentionDays() : null;
     }
+
+    private static void target(String entityType, String table, String timeColumn, String filter) {
+        TARGETS.put(normalize(entityType), new Target(entityType, table, timeColumn, filter, false, null));
+    }
+
+    // Archived to cold-archive segments per equipment and day instead of archived_data
+    private static void segmented(String entityType, String table, String timeColumn) {
+        segmented(entityType, table, timeColumn, null);
+    }
+
+    private static void segmented(String entityType, String table, String timeColumn, Child child) {
+        TARGETS.put(normalize(entityType), new Target(entityType, table, timeColumn, null, true, child));
+    }
+
+    private static class Target {
+        final String entityType;
+        final String table;
+        final String timeColumn;
+        // Only rows matching this are expired (e.g. resolved alerts); null means all of them
+        final String filter;
+        final boolean segmented;
+        // Rows removed with the target's by ON DELETE CASCADE; null when there are none
+        final Child child;
+
+        Target(String entityType, String table, String timeColumn, String filter, boolean segmented, Child child) {
+            this.entityType = entityType;
+            this.table = table;
+            this.timeColumn = timeColumn;
+            this.filter = filter;
+            this.segmented = segmented;
+            this.child = child;
+        }
+    }
+
+    private static class Child {
+        final String entityType;
+        final String table;
+        final String parentColumn;
+        final String timeColumn;
+
+        Child(String entityType, String table, String parentColumn, String timeColumn) {
+            this.entityType = entityType;
+            this.table = table;
+            this.parentColumn = parentColumn;
+            this.timeColumn = timeColumn;
+        }
+    }
+
+    private static class Run {
+        final String id = UUID.randomUUID().toString();
+        final DataRetentionPolicy policy;
+        final LocalDateTime queuedAt = LocalDateTime.now();
+        volatile String status = "QUEUED";
+        volatile LocalDateTime started;
+        volatile long startNanos;
+        volatile long deadline;
+        volatile LocalDateTime finishedAt;
+        volatile long durationMs;
+        volatile String error;
+        // Only the retention thread writes these
+        volatile long rows;
+        volatile long archived;
+        volatile int partitionsDropped;
+
+        Run(DataRetentionPolicy policy) {
+            this.policy = policy;
+        }
+
+        void begin(long maxRunMinutes) {
+            started = LocalDateTime.now();
+            startNanos = System.nanoTime();
+            deadline = startNanos + maxRunMinutes * 60_000_000_000L;
+            status = "RUNNING";
+        }
+
+        boolean timedOut() {
+            return System.nanoTime() > deadline || Thread.currentThread().isInterrupted();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("runId", id);
+            map.put("policyId", policy.getId());
+            map.put("entityType", policy.getEntityType());
+            map.put("status", status);
+            map.put("queuedAt", queuedAt);
+            map.put("startedAt", started);
+            map.put("finishedAt", finishedAt);
+            map.put("durationMs", finishedAt != null ? durationMs : null);
+            map.put("rows", rows);
+            map.put("rowsArchived", archived);
+            map.put("partitionsDropped", partitionsDropped);
+            map.put("error", error);
+            return map;
+        }
+    }
 }
@@ -13,18 +13,37 @@ public class DowntimeEventService {
     @Autowired
     private DowntimeEventRepository downtimeEventRepository;
 
+    @Autowired
+    private StreamingOeeService streamingOeeService;
+
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
     public List<DowntimeEvent> getDowntimeByEquipmentId(Long equipmentId) {
         return downtimeEventRepository.findByEquipmentIdOrderByStartTimeDesc(equipmentId);
     }
 
     public DowntimeEvent recordDowntime(DowntimeEvent event) {
-        return downtimeEventRepository.save(event);
+        DowntimeEvent saved = downtimeEventRepository.save(event);
+        streamingOeeService.recordDowntime(saved);
+        invalidateEquipment(saved);
+        return saved;
     }
 
     public DowntimeEvent endDowntime(Long id) {
         DowntimeEvent event = downtimeEventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Downtime event not found"));
         event.setEndTime(LocalDateTime.now());
-        return downtimeEventRepository.save(event);
+        DowntimeEvent saved = downtimeEventRepository.save(event);
+        streamingOeeService.recordDowntime(saved);
+        invalidateEquipment(saved);
+        return saved;
+    }
+
+    // Downtime usually comes with a status change made elsewhere; reload the equipment on next read
+    private void invalidateEquipment(DowntimeEvent event) {
+        if (event.getEquipment() != null) {
+            equipmentStateCache.invalidateEquipment(event.getEquipment().getId());
+        }
     }
 }
@@ -18,13 +18,20 @@ public class EmailNotificationService {
     @Value("${mes.notification.email.enabled:false}")
     private Boolean emailEnabled;
 
-    public void sendAlertEmail(String to, String subject, String body) {
-        if (!emailEnabled || mailSender == null) {
+    public boolean isEnabled() {
+        return emailEnabled && mailSender != null;
+    }
+
+    /**
+     * Returns true when the message was handed to the mail server.
+     */
+    public boolean sendAlertEmail(String to, String subject, String body) {
+        if (!isEnabled()) {
             System.out.println("Email notification disabled or not configured");
             System.out.println("Would send email to: " + to);
             System.out.println("Subject: " + subject);
             System.out.println("Body: " + body);
-            return;
+            return false;
         }
 
         try {
@@ -36,14 +43,23 @@ public class EmailNotificationService {
             
             mailSender.send(message);
             System.out.println("Email sent successfully to: " + to);
+            return true;
         } catch (Exception e) {
             System.err.println("Failed to send email: " + e.getMessage());
+            return false;
         }
     }
 
     public void sendCriticalAlert(String to, String equipmentName, String alertMessage) {
-        String subject = "[CRITICAL] Equipment Alert - " + equipmentName;
-        String body = String.format(
+        sendAlertEmail(to, criticalAlertSubject(equipmentName), criticalAlertBody(equipmentName, alertMessage));
+    }
+
+    public String criticalAlertSubject(String equipmentName) {
+        return "[CRITICAL] Equipment Alert - " + equipmentName;
+    }
+
+    public String criticalAlertBody(String equipmentName, String alertMessage) {
+        return String.format(
             "CRITICAL ALERT\n\n" +
             "Equipment: %s\n" +
             "Alert: %s\n" +
@@ -54,7 +70,5 @@ public class EmailNotificationService {
             alertMessage,
             java.time.LocalDateTime.now()
         );
-        
-        sendAlertEmail(to, subject, body);
     }
 }
@@ -0,0 +1,238 @@
+package com.mes.service;
+
+import com.mes.dto.AuditRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+
+/**
+ * Records committed inserts, updates and deletes of JPA entities to the audit trail, with the
+ * changed fields as old/new values, plus one change_history row per field for updates.
+ * Runs after commit, so rolled-back work is never audited. Bulk JPQL/SQL updates do not go
+ * through Hibernate events and are not captured.
+ */
+@Component
+public class EntityAuditListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private static final String MASK = "***";
+    private static final Object SKIP = new Object();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AuditWriter auditWriter;
+
+    @Value("${mes.audit.capture.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mes.audit.capture.excluded-entities:}")
+    private Set<String> excludedEntities;
+
+    // Any field whose name contains one of these fragments (case-insensitive) is masked
+    @Value("${mes.audit.capture.masked-fields:secret,password,token,key,credential}")
+    private Set<String> maskedFields;
+
+    @Value("${mes.audit.capture.ignored-fields:createdAt,updatedAt}")
+    private Set<String> ignoredFields;
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return enabled && !excludedEntities.contains(persister.getMappedClass().getSimpleName());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Map<String, Object> newValues = values(event.getPersister(), event.getState());
+        submitAudit(event.getPersister(), event.getId(), "CREATE", null, newValues);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        EntityPersister persister = event.getPersister();
+        Object[] oldState = event.getOldState();
+        Object[] state = event.getState();
+        if (oldState == null) {
+            // No snapshot to diff against (e.g. an update without a prior load); record the new state
+            submitAudit(persister, event.getId(), "UPDATE", null, values(persister, state));
+            return;
+        }
+
+        String[] names = persister.getPropertyNames();
+        Map<String, Object> oldValues = new LinkedHashMap<>();
+        Map<String, Object> newValues = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (ignoredFields.contains(names[i])) {
+                continue;
+            }
+            Object before = toAuditValue(persister, oldState[i]);
+            Object after = toAuditValue(persister, state[i]);
+            if (before == SKIP || after == SKIP || Objects.deepEquals(before, after)) {
+                continue;
+            }
+            boolean masked = isMasked(names[i]);
+            oldValues.put(names[i], masked ? MASK : before);
+            newValues.put(names[i], masked ? MASK : after);
+        }
+        if (newValues.isEmpty()) {
+            return;
+        }
+
+        Long entityId = toLong(event.getId());
+        submitAudit(persister, event.getId(), "UPDATE", oldValues, newValues);
+        if (entityId == null) {
+            return;
+        }
+        String entityName = entityName(persister, state);
+        for (Map.Entry<String, Object> change : newValues.entrySet()) {
+            AuditRecord record = new AuditRecord(AuditRecord.Kind.CHANGE);
+            record.setEntityType(persister.getMappedClass().getSimpleName());
+            record.setEntityId(entityId);
+            record.setEntityName(entityName);
+            record.setFieldName(change.getKey());
+            record.setOldValue(asText(oldValues.get(change.getKey())));
+            record.setNewValue(asText(change.getValue()));
+            auditWriter.submit(record);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Map<String, Object> oldValues = values(event.getPersister(), event.getDeletedState());
+        submitAudit(event.getPersister(), event.getId(), "DELETE", oldValues, null);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    private void submitAudit(EntityPersister persister, Object id, String action,
+                             Map<String, Object> oldValues, Map<String, Object> newValues) {
+        Long entityId = toLong(id);
+        if (entityId == null) {
+            return;
+        }
+        AuditRecord record = new AuditRecord(AuditRecord.Kind.AUDIT);
+        record.setEntityType(persister.getMappedClass().getSimpleName());
+        record.setEntityId(entityId);
+        record.setAction(action);
+        record.setOldValues(oldValues);
+        record.setNewValues(newValues);
+        record.setChangesSummary(AuditWriter.summarizeChanges(oldValues, newValues));
+        auditWriter.submit(record);
+    }
+
+    private Map<String, Object> values(EntityPersister persister, Object[] state) {
+        if (state == null) {
+            return null;
+        }
+        String[] names = persister.getPropertyNames();
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (ignoredFields.contains(names[i])) {
+                continue;
+            }
+            Object value = toAuditValue(persister, state[i]);
+            if (value != SKIP && value != null) {
+                values.put(names[i], isMasked(names[i]) ? MASK : value);
+            }
+        }
+        return values;
+    }
+
+    private boolean isMasked(String field) {
+        String name = field.toLowerCase(Locale.ROOT);
+        for (String fragment : maskedFields) {
+            if (!fragment.isBlank() && name.contains(fragment.trim().toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Plain JSON-friendly value; associations become their id, lazy collections are skipped
+    private Object toAuditValue(EntityPersister persister, Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof TemporalAccessor) {
+            return value.toString();
+        }
+        if (value instanceof PersistentCollection || value instanceof byte[]) {
+            return SKIP;
+        }
+        if (value instanceof HibernateProxy) {
+            return ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+        }
+        if (value.getClass().isAnnotationPresent(Entity.class)) {
+            return persister.getFactory().getPersistenceUnitUtil().getIdentifier(value);
+        }
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        if (value instanceof Map || value instanceof Collection) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    private static String entityName(EntityPersister persister, Object[] state) {
+        String[] names = persister.getPropertyNames();
+        String fallback = null;
+        for (int i = 0; i < names.length; i++) {
+            if (!(state[i] instanceof String)) {
+                continue;
+            }
+            if (names[i].equals("name")) {
+                return (String) state[i];
+            }
+            if (fallback == null && (names[i].endsWith("Name") || names[i].endsWith("Number") || names[i].equals("code"))) {
+                fallback = (String) state[i];
+            }
+        }
+        return fallback;
+    }
+
+    private static String asText(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static Long toLong(Object id) {
+        return id instanceof Number ? ((Number) id).longValue() : null;
+    }
+}
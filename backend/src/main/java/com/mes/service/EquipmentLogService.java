@@ -5,6 +5,7 @@ import com.mes.repository.EquipmentLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -13,16 +14,32 @@ public class EquipmentLogService {
     @Autowired
     private EquipmentLogRepository equipmentLogRepository;
 
+    @Autowired
+    private TelemetryLastValueCache lastValueCache;
+
     public List<EquipmentLog> getLogsByEquipmentId(Long equipmentId) {
         return equipmentLogRepository.findByEquipmentIdOrderByTimestampDesc(equipmentId);
     }
 
     public Optional<EquipmentLog> getLatestLog(Long equipmentId) {
-        List<EquipmentLog> logs = equipmentLogRepository.findByEquipmentIdOrderByTimestampDesc(equipmentId);
-        return logs.isEmpty() ? Optional.empty() : Optional.of(logs.get(0));
+        return lastValueCache.getLatest(equipmentId);
+    }
+
+    public List<EquipmentLog> getRecentLogs(Long equipmentId, int limit) {
+        return lastValueCache.getRecent(equipmentId, limit);
+    }
+
+    public List<EquipmentLog> getLatestLogs() {
+        return lastValueCache.getAllLatest();
+    }
+
+    public Map<String, Object> getLastValueStats() {
+        return lastValueCache.getStats();
     }
 
     public EquipmentLog createLog(EquipmentLog log) {
-        return equipmentLogRepository.save(log);
+        EquipmentLog saved = equipmentLogRepository.save(log);
+        lastValueCache.recordAfterCommit(List.of(saved));
+        return saved;
     }
 }
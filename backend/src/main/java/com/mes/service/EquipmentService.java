@@ -6,6 +6,8 @@ import com.mes.model.EquipmentStatus;
 import com.mes.repository.EquipmentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -16,6 +18,12 @@ public class EquipmentService {
     @Autowired
     private EquipmentRepository equipmentRepository;
 
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
+    @Autowired
+    private TelemetryLastValueCache lastValueCache;
+
     public List<Equipment> getAllEquipment() {
         return equipmentRepository.findAll();
     }
@@ -25,7 +33,9 @@ public class EquipmentService {
     }
 
     public Equipment createEquipment(Equipment equipment) {
-        return equipmentRepository.save(equipment);
+        Equipment saved = equipmentRepository.save(equipment);
+        cacheAfterCommit(saved);
+        return saved;
     }
 
     public Equipment updateEquipment(Long id, Equipment equipmentDetails) {
@@ -37,18 +47,48 @@ public class EquipmentService {
         equipment.setLocation(equipmentDetails.getLocation());
         equipment.setStatus(equipmentDetails.getStatus());
 
-        return equipmentRepository.save(equipment);
+        Equipment saved = equipmentRepository.save(equipment);
+        cacheAfterCommit(saved);
+        return saved;
+    }
+
+    public Equipment updateStatus(Long id, EquipmentStatus status) {
+        Equipment equipment = equipmentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Equipment not found"));
+        if (equipment.getStatus() == status) {
+            return equipment;
+        }
+        equipment.setStatus(status);
+        Equipment saved = equipmentRepository.save(equipment);
+        cacheAfterCommit(saved);
+        return saved;
+    }
+
+    // Inside a caller's transaction (e.g. queued ingestion) only cache what commits
+    private void cacheAfterCommit(Equipment saved) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    equipmentStateCache.putEquipment(saved);
+                }
+            });
+        } else {
+            equipmentStateCache.putEquipment(saved);
+        }
     }
 
     public void deleteEquipment(Long id) {
         equipmentRepository.deleteById(id);
+        equipmentStateCache.removeEquipment(id);
+        lastValueCache.removeEquipment(id);
     }
 
     public OeeDto calculateOee(Long equipmentId) {
         // In a real system, this would query EquipmentLog, DowntimeEvent, and
         // QualityCheck
         // For MVP, we will simulate or return static data based on status
-        Equipment equipment = equipmentRepository.findById(equipmentId).orElse(null);
+        Equipment equipment = equipmentStateCache.getEquipment(equipmentId).orElse(null);
 
         OeeDto oee = new OeeDto();
         oee.setEquipmentId(equipmentId);
@@ -0,0 +1,295 @@
+package com.mes.service;
+
+import com.mes.model.Equipment;
+import com.mes.model.EquipmentStatus;
+import com.mes.model.ProductionOrder;
+import com.mes.model.ProductionOrderStatus;
+import com.mes.repository.EquipmentRepository;
+import com.mes.repository.ProductionOrderRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Write-through cache of equipment and in-progress production orders.
+ *
+ * EquipmentService, ProductionOrderService and DowntimeEventService push their writes
+ * here, so the realtime broadcasts and dashboard read current state without querying
+ * the database. A periodic resync from the database corrects anything written behind
+ * the services' backs and reports how much drift it found. Per-status equipment counts
+ * are adjusted on every write, so the dashboard reads them without scanning the cache.
+ */
+@Service
+public class EquipmentStateCache {
+
+    @Autowired
+    private EquipmentRepository equipmentRepository;
+
+    @Autowired
+    private ProductionOrderRepository productionOrderRepository;
+
+    private final Map<Long, CachedEntry<Equipment>> equipment = new ConcurrentHashMap<>();
+    private final Map<Long, CachedEntry<ProductionOrder>> activeOrders = new ConcurrentHashMap<>();
+    // Equipment whose cached copy must be reloaded before it is served again
+    private final Set<Long> invalidated = ConcurrentHashMap.newKeySet();
+    private final Map<EquipmentStatus, AtomicLong> statusCounts = new EnumMap<>(EquipmentStatus.class);
+    // Bumped after every change to statusCounts
+    private final AtomicLong statusVersion = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder driftCorrections = new LongAdder();
+    private volatile LocalDateTime lastResyncAt;
+    private volatile int lastResyncDrift;
+
+    public EquipmentStateCache() {
+        for (EquipmentStatus status : EquipmentStatus.values()) {
+            statusCounts.put(status, new AtomicLong());
+        }
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        try {
+            resync();
+        } catch (Exception e) {
+            System.err.println("Failed to warm equipment state cache: " + e.getMessage());
+        }
+    }
+
+    // ===== Reads =====
+
+    public List<Equipment> getAllEquipment() {
+        reloadInvalidated();
+        List<Equipment> result = new ArrayList<>(equipment.size());
+        for (CachedEntry<Equipment> entry : equipment.values()) {
+            result.add(entry.value);
+        }
+        hits.add(result.size());
+        result.sort(Comparator.comparing(Equipment::getId));
+        return result;
+    }
+
+    public Optional<Equipment> getEquipment(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        CachedEntry<Equipment> entry = invalidated.contains(id) ? null : equipment.get(id);
+        if (entry != null) {
+            hits.increment();
+            return Optional.of(entry.value);
+        }
+        misses.increment();
+        invalidated.remove(id);
+        Optional<Equipment> loaded = equipmentRepository.findById(id);
+        loaded.ifPresentOrElse(this::storeEquipment, () -> evictEquipment(id));
+        return loaded;
+    }
+
+    /**
+     * Cached equipment per status, including statuses with none.
+     */
+    public Map<EquipmentStatus, Long> getStatusCounts() {
+        Map<EquipmentStatus, Long> counts = new EnumMap<>(EquipmentStatus.class);
+        statusCounts.forEach((status, count) -> counts.put(status, count.get()));
+        return counts;
+    }
+
+    /**
+     * Changes whenever a status count changes; read it before the counts to tell whether
+     * anything built from them is out of date.
+     */
+    public long getStatusVersion() {
+        return statusVersion.get();
+    }
+
+    public List<ProductionOrder> getActiveOrders() {
+        List<ProductionOrder> result = new ArrayList<>(activeOrders.size());
+        for (CachedEntry<ProductionOrder> entry : activeOrders.values()) {
+            result.add(entry.value);
+        }
+        hits.add(result.size());
+        result.sort(Comparator.comparing(ProductionOrder::getId));
+        return result;
+    }
+
+    // ===== Write-through =====
+
+    public void putEquipment(Equipment saved) {
+        if (saved == null || saved.getId() == null) {
+            return;
+        }
+        storeEquipment(saved);
+        invalidated.remove(saved.getId());
+        writes.increment();
+    }
+
+    public void removeEquipment(Long id) {
+        evictEquipment(id);
+        invalidated.remove(id);
+        activeOrders.values().removeIf(entry -> entry.value.getEquipment() != null
+                && id.equals(entry.value.getEquipment().getId()));
+        writes.increment();
+    }
+
+    /**
+     * Mark an equipment entry stale; it is reloaded from the database on its next read.
+     */
+    public void invalidateEquipment(Long id) {
+        if (id != null && equipment.containsKey(id)) {
+            invalidated.add(id);
+            invalidations.increment();
+        }
+    }
+
+    public void putOrder(ProductionOrder saved) {
+        if (saved == null || saved.getId() == null) {
+            return;
+        }
+        if (saved.getStatus() == ProductionOrderStatus.IN_PROGRESS) {
+            activeOrders.put(saved.getId(), new CachedEntry<>(saved));
+        } else {
+            activeOrders.remove(saved.getId());
+        }
+        writes.increment();
+    }
+
+    // ===== Resync & metrics =====
+
+    @Scheduled(fixedDelayString = "${mes.state-cache.resync-interval-ms:60000}",
+               initialDelayString = "${mes.state-cache.resync-interval-ms:60000}")
+    public void resync() {
+        int drift = 0;
+
+        Map<Long, Equipment> freshEquipment = new HashMap<>();
+        for (Equipment e : equipmentRepository.findAll()) {
+            freshEquipment.put(e.getId(), e);
+        }
+        drift += reconcile(equipment, freshEquipment, (a, b) -> Objects.equals(a.getUpdatedAt(), b.getUpdatedAt())
+                && a.getStatus() == b.getStatus(), this::storeEquipment, this::evictEquipment);
+        invalidated.clear();
+
+        Map<Long, ProductionOrder> freshOrders = new HashMap<>();
+        for (ProductionOrder o : productionOrderRepository.findByStatus(ProductionOrderStatus.IN_PROGRESS)) {
+            freshOrders.put(o.getId(), o);
+        }
+        drift += reconcile(activeOrders, freshOrders, (a, b) -> Objects.equals(a.getUpdatedAt(), b.getUpdatedAt())
+                && Objects.equals(a.getProducedQuantity(), b.getProducedQuantity()),
+                o -> activeOrders.put(o.getId(), new CachedEntry<>(o)), activeOrders::remove);
+
+        resyncs.increment();
+        driftCorrections.add(drift);
+        lastResyncDrift = drift;
+        lastResyncAt = LocalDateTime.now();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("equipmentEntries", equipment.size());
+        stats.put("activeOrderEntries", activeOrders.size());
+        stats.put("statusCounts", getStatusCounts());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 1.0);
+        stats.put("writes", writes.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("pendingInvalidations", invalidated.size());
+        stats.put("resyncs", resyncs.sum());
+        stats.put("driftCorrections", driftCorrections.sum());
+        stats.put("lastResyncDrift", lastResyncDrift);
+        stats.put("lastResyncAt", lastResyncAt);
+        stats.put("secondsSinceResync", lastResyncAt != null ? ChronoUnit.SECONDS.between(lastResyncAt, now) : null);
+        stats.put("oldestEntrySeconds", oldestEntrySeconds(now));
+        return stats;
+    }
+
+    private void reloadInvalidated() {
+        for (Long id : new ArrayList<>(invalidated)) {
+            getEquipment(id);
+        }
+    }
+
+    private <T> int reconcile(Map<Long, CachedEntry<T>> cache, Map<Long, T> fresh,
+                              BiPredicate<T, T> unchanged, Consumer<T> store, Consumer<Long> evict) {
+        int drift = 0;
+        for (Map.Entry<Long, T> entry : fresh.entrySet()) {
+            CachedEntry<T> cached = cache.get(entry.getKey());
+            if (cached == null || !unchanged.test(cached.value, entry.getValue())) {
+                drift++;
+            }
+            store.accept(entry.getValue());
+        }
+        for (Long id : new ArrayList<>(cache.keySet())) {
+            if (!fresh.containsKey(id)) {
+                evict.accept(id);
+                drift++;
+            }
+        }
+        return drift;
+    }
+
+    private void storeEquipment(Equipment value) {
+        CachedEntry<Equipment> previous = equipment.put(value.getId(), new CachedEntry<>(value));
+        countStatusChange(previous != null ? previous.value.getStatus() : null, value.getStatus());
+    }
+
+    private void evictEquipment(Long id) {
+        CachedEntry<Equipment> previous = equipment.remove(id);
+        if (previous != null) {
+            countStatusChange(previous.value.getStatus(), null);
+        }
+    }
+
+    private void countStatusChange(EquipmentStatus from, EquipmentStatus to) {
+        if (from == to) {
+            return;
+        }
+        if (from != null) {
+            statusCounts.get(from).decrementAndGet();
+        }
+        if (to != null) {
+            statusCounts.get(to).incrementAndGet();
+        }
+        statusVersion.incrementAndGet();
+    }
+
+    private Long oldestEntrySeconds(LocalDateTime now) {
+        LocalDateTime oldest = null;
+        for (CachedEntry<Equipment> entry : equipment.values()) {
+            if (oldest == null || entry.loadedAt.isBefore(oldest)) {
+                oldest = entry.loadedAt;
+            }
+        }
+        for (CachedEntry<ProductionOrder> entry : activeOrders.values()) {
+            if (oldest == null || entry.loadedAt.isBefore(oldest)) {
+                oldest = entry.loadedAt;
+            }
+        }
+        return oldest != null ? ChronoUnit.SECONDS.between(oldest, now) : null;
+    }
+
+    private static class CachedEntry<T> {
+        private final T value;
+        private final LocalDateTime loadedAt = LocalDateTime.now();
+
+        private CachedEntry(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.mes.service;
+
+import com.mes.config.WebSocketConfig;
+import com.mes.dto.EquipmentStatusBatch;
+import com.mes.dto.EquipmentStatusUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batched, delta-compressed equipment status fan-out.
+ *
+ * Each tick becomes at most one frame per destination: /topic/equipment-status/batch for
+ * the whole plant and /topic/equipment-status/location/{location} per location. A frame
+ * only carries the fields that changed since the previous frame, except every Nth tick,
+ * which is a full keyframe. Frames carry a sequence and the sequence of the previous frame
+ * on the same destination (baseSequence). A client that sees a baseSequence it did not
+ * apply, or that has just subscribed, subscribes to /app/equipment-status/snapshot (or
+ * /app/equipment-status/snapshot/location/{location}) to get a keyframe immediately.
+ *
+ * Frames for destinations without subscribers are computed but never serialized or sent.
+ * With an external broker, subscriptions on other nodes are invisible here, so every frame
+ * is sent. Only the publishing node runs ticks; the other nodes follow the plant topic through
+ * mirror() so they can answer snapshot requests from their own clients.
+ */
+@Service
+public class EquipmentStatusBroadcaster {
+
+    public static final String PLANT_TOPIC = "/topic/equipment-status/batch";
+    public static final String LOCATION_TOPIC_PREFIX = "/topic/equipment-status/location/";
+    public static final String UNASSIGNED_LOCATION = "unassigned";
+
+    private static final String[] TRACKED_FIELDS =
+            {"equipmentName", "location", "status", "temperature", "vibration", "outputCount"};
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
+    @Value("${mes.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${mes.websocket.equipment-status.keyframe-interval-ticks:12}")
+    private int keyframeIntervalTicks;
+
+    // Numeric changes smaller than this are not sent until the next keyframe
+    @Value("${mes.websocket.equipment-status.deadband:0.1}")
+    private double deadband;
+
+    // Last values sent to clients, per equipment
+    private final Map<Long, Map<String, Object>> published = new HashMap<>();
+    // Sequence of the last frame that changed each destination's state
+    private final Map<String, Long> lastSequence = new HashMap<>();
+    private long sequence;
+
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> subscriberCounts = new ConcurrentHashMap<>();
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong keyframes = new AtomicLong();
+    private final AtomicLong deltaFrames = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+    private final AtomicLong fieldsSent = new AtomicLong();
+    private final AtomicLong fieldsSuppressed = new AtomicLong();
+    private final AtomicLong mirroredFrames = new AtomicLong();
+    private final AtomicLong mirrorGaps = new AtomicLong();
+
+    public synchronized void publish(List<EquipmentStatusUpdate> updates) {
+        sequence++;
+        ticks.incrementAndGet();
+        boolean keyframe = keyframeIntervalTicks <= 1 || sequence % keyframeIntervalTicks == 1;
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Long, Map<String, Object>> current = new LinkedHashMap<>();
+        Map<Long, Map<String, Object>> deltas = new LinkedHashMap<>();
+        // equipment id -> location it was published under before this tick, for moves and removals
+        Map<Long, String> previousLocation = new HashMap<>();
+
+        for (EquipmentStatusUpdate update : updates) {
+            Map<String, Object> record = toRecord(update);
+            Map<String, Object> previous = published.get(update.getEquipmentId());
+            if (previous == null) {
+                deltas.put(update.getEquipmentId(), record);
+                current.put(update.getEquipmentId(), record);
+                continue;
+            }
+            previousLocation.put(update.getEquipmentId(), (String) previous.get("location"));
+
+            Map<String, Object> delta = new LinkedHashMap<>();
+            Map<String, Object> merged = new LinkedHashMap<>(previous);
+            for (String field : TRACKED_FIELDS) {
+                Object oldValue = previous.get(field);
+                Object newValue = record.get(field);
+                if (changed(oldValue, newValue) || keyframe) {
+                    merged.put(field, newValue);
+                    if (changed(oldValue, newValue)) {
+                        delta.put(field, newValue);
+                    }
+                } else if (!Objects.equals(oldValue, newValue)) {
+                    fieldsSuppressed.incrementAndGet();
+                }
+            }
+            if (!delta.isEmpty()) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("equipmentId", update.getEquipmentId());
+                entry.putAll(delta);
+                deltas.put(update.getEquipmentId(), entry);
+            }
+            current.put(update.getEquipmentId(), merged);
+        }
+
+        Map<Long, String> removed = new LinkedHashMap<>();
+        for (Map.Entry<Long, Map<String, Object>> entry : published.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                removed.put(entry.getKey(), (String) entry.getValue().get("location"));
+            }
+        }
+
+        published.clear();
+        published.putAll(current);
+
+        List<Map<String, Object>> plantChanges = keyframe ? new ArrayList<>(current.values()) : new ArrayList<>(deltas.values());
+        publishScope(PLANT_TOPIC, keyframe, "plant", now, plantChanges, new ArrayList<>(removed.keySet()));
+
+        // Every location that has, had or is watched for equipment keeps its sequence chain current
+        Set<String> locations = new TreeSet<>();
+        for (Map<String, Object> record : current.values()) {
+            locations.add((String) record.get("location"));
+        }
+        locations.addAll(previousLocation.values());
+        locations.addAll(removed.values());
+        for (String destination : subscriberCounts.keySet()) {
+            if (destination.startsWith(LOCATION_TOPIC_PREFIX)) {
+                locations.add(destination.substring(LOCATION_TOPIC_PREFIX.length()));
+            }
+        }
+
+        for (String location : locations) {
+            List<Map<String, Object>> changes = new ArrayList<>();
+            List<Long> gone = new ArrayList<>();
+
+            for (Map.Entry<Long, Map<String, Object>> entry : current.entrySet()) {
+                Long id = entry.getKey();
+                boolean here = location.equals(entry.getValue().get("location"));
+                boolean wasHere = location.equals(previousLocation.get(id));
+                if (here && (keyframe || !wasHere)) {
+                    // Keyframes and equipment that just moved here get the full record
+                    changes.add(entry.getValue());
+                } else if (here && deltas.containsKey(id)) {
+                    changes.add(deltas.get(id));
+                } else if (!here && wasHere) {
+                    gone.add(id);
+                }
+            }
+            for (Map.Entry<Long, String> entry : removed.entrySet()) {
+                if (location.equals(entry.getValue())) {
+                    gone.add(entry.getKey());
+                }
+            }
+            publishScope(LOCATION_TOPIC_PREFIX + location, keyframe, location, now, changes, gone);
+        }
+    }
+
+    /**
+     * Apply a plant frame published by another node, keeping the same state and per-destination
+     * sequence chains as the publisher. A gap leaves the mirror approximate until the next keyframe.
+     */
+    public synchronized void mirror(EquipmentStatusBatch frame) {
+        mirroredFrames.incrementAndGet();
+        boolean keyframe = "KEYFRAME".equals(frame.getType());
+        if (keyframe) {
+            published.clear();
+        } else if (!Objects.equals(frame.getBaseSequence(), lastSequence.get(PLANT_TOPIC))) {
+            mirrorGaps.incrementAndGet();
+        }
+
+        Set<String> touched = new HashSet<>();
+        for (Map<String, Object> change : frame.getEquipment()) {
+            Long id = ((Number) change.get("equipmentId")).longValue();
+            Map<String, Object> previous = published.get(id);
+            Map<String, Object> merged = previous != null ? new LinkedHashMap<>(previous) : seedRecord(id);
+            merged.putAll(change);
+            merged.put("equipmentId", id);
+            if (previous != null && !keyframe) {
+                touched.add((String) previous.get("location"));
+            }
+            touched.add((String) merged.get("location"));
+            published.put(id, merged);
+        }
+        for (Long id : frame.getRemoved()) {
+            Map<String, Object> previous = published.remove(id);
+            if (previous != null) {
+                touched.add((String) previous.get("location"));
+            }
+        }
+
+        sequence = frame.getSequence();
+        lastSequence.put(PLANT_TOPIC, sequence);
+        if (keyframe) {
+            lastSequence.keySet().removeIf(destination -> destination.startsWith(LOCATION_TOPIC_PREFIX));
+        }
+        for (String location : touched) {
+            if (location != null) {
+                lastSequence.put(LOCATION_TOPIC_PREFIX + location, sequence);
+            }
+        }
+    }
+
+    /**
+     * Full keyframe for the plant (location null) or one location, for newly subscribed clients.
+     */
+    public synchronized EquipmentStatusBatch snapshot(String location) {
+        String slug = location != null ? slugify(location) : null;
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (Map<String, Object> record : published.values()) {
+            if (slug == null || slug.equals(record.get("location"))) {
+                records.add(record);
+            }
+        }
+        String destination = slug != null ? LOCATION_TOPIC_PREFIX + slug : PLANT_TOPIC;
+        snapshots.incrementAndGet();
+        return new EquipmentStatusBatch("KEYFRAME", lastSequence.getOrDefault(destination, 0L), null,
+                slug != null ? slug : "plant", LocalDateTime.now(), records, List.of());
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ticks", ticks.get());
+        stats.put("keyframes", keyframes.get());
+        stats.put("deltaFrames", deltaFrames.get());
+        stats.put("snapshots", snapshots.get());
+        stats.put("skippedFrames", skippedFrames.get());
+        stats.put("fieldsSent", fieldsSent.get());
+        stats.put("fieldsSuppressed", fieldsSuppressed.get());
+        stats.put("sessions", sessionSubscriptions.size());
+        stats.put("subscriptions", new TreeMap<>(subscriberCounts));
+        stats.put("mirroredFrames", mirroredFrames.get());
+        stats.put("mirrorGaps", mirrorGaps.get());
+        stats.put("sequence", sequence);
+        stats.put("brokerMode", brokerMode);
+        stats.put("keyframeIntervalTicks", keyframeIntervalTicks);
+        stats.put("deadband", deadband);
+        return stats;
+    }
+
+    public static String slugify(String location) {
+        if (location == null || location.isBlank()) {
+            return UNASSIGNED_LOCATION;
+        }
+        String slug = location.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-");
+        slug = slug.replaceAll("(^-+|-+$)", "");
+        return slug.isEmpty() ? UNASSIGNED_LOCATION : slug;
+    }
+
+    // ===== Subscription tracking =====
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (accessor.getSessionId() == null || destination == null || !isBroadcastDestination(destination)) {
+            return;
+        }
+        sessionSubscriptions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), destination);
+        subscriberCounts.merge(destination, 1, Integer::sum);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null
+                ? sessionSubscriptions.get(accessor.getSessionId()) : null;
+        if (subscriptions != null) {
+            release(subscriptions.remove(accessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(String destination) {
+        if (destination != null) {
+            subscriberCounts.computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private boolean isBroadcastDestination(String destination) {
+        return PLANT_TOPIC.equals(destination) || destination.startsWith(LOCATION_TOPIC_PREFIX);
+    }
+
+    private boolean hasSubscribers(String destination) {
+        if (WebSocketConfig.isRelayMode(brokerMode)) {
+            return true;
+        }
+        return subscriberCounts.getOrDefault(destination, 0) > 0;
+    }
+
+    /**
+     * Advance the destination's sequence chain if anything changed in its scope, and send
+     * the frame if anyone is subscribed. Ticks without changes leave the chain untouched,
+     * so a client that applied the last frame can still apply the next one.
+     */
+    private void publishScope(String destination, boolean keyframe, String scope, LocalDateTime now,
+                              List<Map<String, Object>> changes, List<Long> removed) {
+        if (!keyframe && changes.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Long baseSequence = keyframe ? null : lastSequence.getOrDefault(destination, 0L);
+        lastSequence.put(destination, sequence);
+        if (!hasSubscribers(destination)) {
+            skippedFrames.incrementAndGet();
+            return;
+        }
+
+        for (Map<String, Object> change : changes) {
+            fieldsSent.addAndGet(change.size() - 1);
+        }
+        (keyframe ? keyframes : deltaFrames).incrementAndGet();
+        messagingTemplate.convertAndSend(destination, new EquipmentStatusBatch(
+                keyframe ? "KEYFRAME" : "DELTA", sequence, baseSequence, scope, now, changes, removed));
+    }
+
+    private boolean changed(Object oldValue, Object newValue) {
+        if (oldValue instanceof Number && newValue instanceof Number) {
+            return Math.abs(((Number) oldValue).doubleValue() - ((Number) newValue).doubleValue()) >= deadband
+                    && !oldValue.equals(newValue);
+        }
+        return !Objects.equals(oldValue, newValue);
+    }
+
+    // Base record for equipment first seen in a delta, before this node has mirrored a keyframe
+    private Map<String, Object> seedRecord(Long id) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        equipmentStateCache.getEquipment(id).ifPresent(equipment -> {
+            record.put("equipmentName", equipment.getName());
+            record.put("location", slugify(equipment.getLocation()));
+            record.put("status", equipment.getStatus().name());
+        });
+        return record;
+    }
+
+    private Map<String, Object> toRecord(EquipmentStatusUpdate update) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("equipmentId", update.getEquipmentId());
+        record.put("equipmentName", update.getEquipmentName());
+        record.put("location", slugify(update.getLocation()));
+        record.put("status", update.getStatus());
+        record.put("temperature", update.getTemperature());
+        record.put("vibration", update.getVibration());
+        record.put("outputCount", update.getOutputCount());
+        return record;
+    }
+}
@@ -0,0 +1,118 @@
+package com.mes.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mes.config.WebSocketConfig;
+import com.mes.dto.EquipmentStatusBatch;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.lang.reflect.Type;
+
+/**
+ * Keeps EquipmentStatusBroadcaster in step with the publishing node when an external broker
+ * is used. Nodes with mes.realtime.publisher.enabled=false subscribe to the plant topic over a
+ * plain STOMP connection to the broker and feed every frame into the local broadcaster.
+ */
+@Service
+public class EquipmentStatusReplicator {
+
+    @Autowired
+    private EquipmentStatusBroadcaster equipmentStatusBroadcaster;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${mes.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${mes.realtime.publisher.enabled:true}")
+    private boolean publisherEnabled;
+
+    @Value("${mes.websocket.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${mes.websocket.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Value("${mes.websocket.broker.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${mes.websocket.broker.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${mes.websocket.broker.virtual-host:}")
+    private String virtualHost;
+
+    private ReactorNettyTcpStompClient stompClient;
+    private volatile StompSession session;
+    private volatile boolean connecting;
+
+    // Connects on the first run and reconnects whenever the broker connection has dropped
+    @Scheduled(fixedDelayString = "${mes.websocket.broker.reconnect-interval-ms:5000}")
+    public void ensureConnected() {
+        if (publisherEnabled || !WebSocketConfig.isRelayMode(brokerMode) || connecting
+                || (session != null && session.isConnected())) {
+            return;
+        }
+        if (stompClient == null) {
+            stompClient = new ReactorNettyTcpStompClient(relayHost, relayPort);
+            MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+            converter.setObjectMapper(objectMapper);
+            stompClient.setMessageConverter(converter);
+        }
+
+        StompHeaders headers = new StompHeaders();
+        headers.setLogin(systemLogin);
+        headers.setPasscode(systemPasscode);
+        if (!virtualHost.isBlank()) {
+            headers.setHost(virtualHost);
+        }
+
+        connecting = true;
+        stompClient.connectAsync(headers, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession connected, StompHeaders connectedHeaders) {
+                connected.subscribe(EquipmentStatusBroadcaster.PLANT_TOPIC, new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders frameHeaders) {
+                        return EquipmentStatusBatch.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders frameHeaders, Object payload) {
+                        equipmentStatusBroadcaster.mirror((EquipmentStatusBatch) payload);
+                    }
+                });
+                session = connected;
+            }
+
+            @Override
+            public void handleTransportError(StompSession failed, Throwable exception) {
+                System.err.println("Equipment status replication connection lost: " + exception.getMessage());
+            }
+        }).whenComplete((connected, error) -> {
+            connecting = false;
+            if (error != null) {
+                System.err.println("Failed to connect equipment status replication to broker: " + error.getMessage());
+            }
+        });
+    }
+
+    public boolean isConnected() {
+        return session != null && session.isConnected();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (session != null && session.isConnected()) {
+            session.disconnect();
+        }
+        if (stompClient != null) {
+            stompClient.shutdown();
+        }
+    }
+}
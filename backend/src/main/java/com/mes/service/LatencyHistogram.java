@@ -0,0 +1,96 @@
+package com.mes.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram, in milliseconds unless other bounds and a unit are
+ * given. Recording is lock-free; percentiles are reported as the upper bound of the
+ * bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    private static final long[] DEFAULT_BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private final long[] bounds;
+    private final String unit;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        this("Ms", DEFAULT_BOUNDS_MS);
+    }
+
+    /**
+     * @param unit suffix for the reported keys, e.g. "Ns" gives avgNs, p99Ns
+     * @param bounds ascending bucket upper bounds in that unit
+     */
+    public LatencyHistogram(String unit, long... bounds) {
+        this.unit = unit;
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long latency) {
+        long value = Math.max(0, latency);
+        int index = 0;
+        while (index < bounds.length && value > bounds[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Map<String, Object> toMap() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        Map<String, Object> bucketMap = new LinkedHashMap<>();
+        for (int i = 0; i < bounds.length; i++) {
+            bucketMap.put("le" + bounds[i], counts[i]);
+        }
+        bucketMap.put("inf", counts[bounds.length]);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("avg" + unit, total > 0 ? (double) sum.sum() / total : 0.0);
+        result.put("max" + unit, max.get());
+        result.put("p50" + unit, percentile(counts, total, 0.50));
+        result.put("p95" + unit, percentile(counts, total, 0.95));
+        result.put("p99" + unit, percentile(counts, total, 0.99));
+        result.put("buckets", bucketMap);
+        return result;
+    }
+
+    private Long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < bounds.length ? Math.min(bounds[i], max.get()) : max.get();
+            }
+        }
+        return max.get();
+    }
+}
@@ -4,6 +4,7 @@ import com.mes.dto.*;
 import com.mes.model.*;
 import com.mes.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
@@ -100,6 +101,19 @@ public class MaintenanceService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Keyset-paginated tasks, latest scheduled first, scheduled in [from, to). Filters are optional.
+     */
+    public KeysetPage<MaintenanceTaskDto> getTaskPage(LocalDateTime from, LocalDateTime to, String status,
+                                                      String priority, Long equipmentId, Long assignedToId,
+                                                      String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        Object[] position = KeysetPage.startAfter(cursor, to);
+        List<MaintenanceTask> items = taskRepository.findPage((LocalDateTime) position[0], (Long) position[1],
+                KeysetPage.since(from), status, priority, equipmentId, assignedToId, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, MaintenanceTask::getScheduledDate, MaintenanceTask::getId, this::convertTaskToDto);
+    }
+
     public MaintenanceTaskDto getTaskById(Long id) {
         MaintenanceTask task = taskRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Task not found"));
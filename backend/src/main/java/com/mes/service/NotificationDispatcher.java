@@ -0,0 +1,446 @@
+package com.mes.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers notifications off the request path, with one bounded worker pool per channel.
+ *
+ * Inbox notifications are inserted set-based in the caller's transaction; their WebSocket
+ * pushes are queued only after it commits and sent in chunks by the web pool. Emails are
+ * coalesced per recipient and sent as one digest per flush interval by the email pool.
+ * Every delivery attempt is recorded in notification_delivery_log in batches. Work that
+ * does not fit a channel's queue is dropped, counted and logged as FAILED.
+ */
+@Service
+public class NotificationDispatcher {
+
+    public static final String CHANNEL_WEB = "WEB";
+    public static final String CHANNEL_EMAIL = "EMAIL";
+
+    // Inbox rows for every enabled user (optionally of one role), returned with the username to push to
+    private static final String FAN_OUT_SQL =
+            "WITH inserted AS (" +
+            "  INSERT INTO user_notifications (user_id, notification_type, title, message, severity, " +
+            "                                  source_type, source_id, is_read, is_archived, created_at) " +
+            "  SELECT u.id, CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS TEXT), CAST(? AS VARCHAR), " +
+            "         CAST(? AS VARCHAR), CAST(? AS BIGINT), false, false, ? FROM users u " +
+            "  WHERE COALESCE(u.enabled, true) AND (CAST(? AS VARCHAR) IS NULL OR u.role = ?) " +
+            "  RETURNING id, user_id, created_at" +
+            ") SELECT i.id, i.user_id, u.username, i.created_at FROM inserted i JOIN users u ON u.id = i.user_id";
+
+    private static final String INSERT_DELIVERY_SQL =
+            "INSERT INTO notification_delivery_log (notification_id, delivery_method, delivery_status, " +
+            "recipient, error_message, sent_at, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private EmailNotificationService emailService;
+
+    @Autowired
+    private NotificationStateCache stateCache;
+
+    @Value("${mes.notification.dispatch.web.threads:2}")
+    private int webThreads;
+
+    @Value("${mes.notification.dispatch.web.queue-capacity:1000}")
+    private int webQueueCapacity;
+
+    // Users pushed per web task
+    @Value("${mes.notification.dispatch.web.chunk-size:200}")
+    private int webChunkSize;
+
+    @Value("${mes.notification.dispatch.email.threads:1}")
+    private int emailThreads;
+
+    @Value("${mes.notification.dispatch.email.queue-capacity:200}")
+    private int emailQueueCapacity;
+
+    // Emails waiting for the next digest, across all recipients
+    @Value("${mes.notification.dispatch.email.max-pending:1000}")
+    private int maxPendingEmails;
+
+    private ThreadPoolExecutor webPool;
+    private ThreadPoolExecutor emailPool;
+
+    private final Map<String, List<PendingEmail>> pendingEmails = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingEmailCount = new AtomicInteger();
+
+    private final LongAdder inboxCreated = new LongAdder();
+    private final LongAdder webSent = new LongAdder();
+    private final LongAdder webFailed = new LongAdder();
+    private final LongAdder webRejected = new LongAdder();
+    private final LongAdder muted = new LongAdder();
+    private final LongAdder counterPushes = new LongAdder();
+    private final LongAdder emailsQueued = new LongAdder();
+    private final LongAdder emailsCoalesced = new LongAdder();
+    private final LongAdder digestsSent = new LongAdder();
+    private final LongAdder emailFailed = new LongAdder();
+    private final LongAdder emailRejected = new LongAdder();
+    private final LongAdder deliveryLogFailures = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        webPool = newPool("notify-web-", webThreads, webQueueCapacity);
+        emailPool = newPool("notify-email-", emailThreads, emailQueueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushEmailDigests();
+        webPool.shutdown();
+        emailPool.shutdown();
+        try {
+            webPool.awaitTermination(5, TimeUnit.SECONDS);
+            emailPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===== In-app + WebSocket =====
+
+    /**
+     * Insert one inbox notification per enabled user, or per user of role when it is set, in
+     * the caller's transaction, and push them over WebSocket once it commits. Returns the
+     * number of notifications created.
+     */
+    public int fanOut(String role, String type, String title, String message, String severity,
+                      String sourceType, Long sourceId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebTarget> targets = jdbcTemplate.query(FAN_OUT_SQL,
+                (rs, rowNum) -> new WebTarget(rs.getLong(2), rs.getLong(1), rs.getString(3),
+                        rs.getTimestamp(4).toLocalDateTime()),
+                type, title, message, severity, sourceType, sourceId, Timestamp.valueOf(now), role, role);
+        inboxCreated.add(targets.size());
+
+        Map<String, Object> template = new HashMap<>();
+        template.put("title", title);
+        template.put("message", message);
+        template.put("type", type);
+        template.put("severity", severity);
+        afterCommit(() -> {
+            for (WebTarget target : targets) {
+                stateCache.adjustUnread(target.userId, 1);
+            }
+            queueWebPush(targets, template);
+        });
+        return targets.size();
+    }
+
+    /**
+     * Push a single saved inbox notification once the surrounding transaction commits.
+     */
+    public void pushAfterCommit(Long userId, Long notificationId, String username, boolean unread,
+                                Map<String, Object> payload) {
+        WebTarget target = new WebTarget(userId, notificationId, username, null);
+        afterCommit(() -> {
+            if (unread) {
+                stateCache.adjustUnread(userId, 1);
+            }
+            queueWebPush(List.of(target), payload);
+        });
+    }
+
+    /**
+     * Tell the user's clients their new unread count, so they need not poll for it.
+     */
+    public void pushUnreadCount(String username, long unreadCount) {
+        if (username == null) {
+            return;
+        }
+        try {
+            webPool.execute(() -> {
+                try {
+                    webSocketService.sendToUser(username, "/queue/notifications", unreadCountPayload(unreadCount));
+                    counterPushes.increment();
+                } catch (Exception e) {
+                    webFailed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            webRejected.increment();
+        }
+    }
+
+    private static Map<String, Object> unreadCountPayload(long unreadCount) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("event", "UNREAD_COUNT");
+        payload.put("unreadCount", unreadCount);
+        return payload;
+    }
+
+    private void queueWebPush(List<WebTarget> targets, Map<String, Object> template) {
+        int chunkSize = Math.max(1, webChunkSize);
+        for (int from = 0; from < targets.size(); from += chunkSize) {
+            List<WebTarget> chunk = targets.subList(from, Math.min(targets.size(), from + chunkSize));
+            try {
+                webPool.execute(() -> pushChunk(chunk, template));
+            } catch (RejectedExecutionException e) {
+                webRejected.add(chunk.size());
+                recordWebDeliveries(chunk, "FAILED", "Dispatch queue full", null);
+            }
+        }
+    }
+
+    private void pushChunk(List<WebTarget> chunk, Map<String, Object> template) {
+        if (!webSocketService.isBrokerAvailable()) {
+            webFailed.add(chunk.size());
+            recordWebDeliveries(chunk, "FAILED", "Message broker unavailable", null);
+            return;
+        }
+
+        LocalDateTime sentAt = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(chunk.size());
+        String type = (String) template.get("type");
+        String severity = (String) template.get("severity");
+        for (WebTarget target : chunk) {
+            Long unreadCount = stateCache.peekUnreadCount(target.userId);
+            if (!stateCache.shouldSend(target.userId, type, severity)) {
+                // Muted by the user's preferences; the inbox row and count still change
+                muted.increment();
+                if (unreadCount != null) {
+                    try {
+                        webSocketService.sendToUser(target.username, "/queue/notifications", unreadCountPayload(unreadCount));
+                        counterPushes.increment();
+                    } catch (Exception e) {
+                        webFailed.increment();
+                    }
+                }
+                continue;
+            }
+            Map<String, Object> payload = new HashMap<>(template);
+            payload.put("id", target.notificationId);
+            if (target.createdAt != null) {
+                payload.put("createdAt", target.createdAt);
+            }
+            if (unreadCount != null) {
+                payload.put("unreadCount", unreadCount);
+            }
+            String status = "SENT";
+            String error = null;
+            try {
+                webSocketService.sendToUser(target.username, "/queue/notifications", payload);
+                webSent.increment();
+            } catch (Exception e) {
+                status = "FAILED";
+                error = e.getMessage();
+                webFailed.increment();
+            }
+            rows.add(deliveryRow(target.notificationId, CHANNEL_WEB, status, target.username, error,
+                    "SENT".equals(status) ? sentAt : null));
+        }
+        insertDeliveries(rows);
+    }
+
+    private void recordWebDeliveries(List<WebTarget> targets, String status, String error, LocalDateTime sentAt) {
+        List<Object[]> rows = new ArrayList<>(targets.size());
+        for (WebTarget target : targets) {
+            rows.add(deliveryRow(target.notificationId, CHANNEL_WEB, status, target.username, error, sentAt));
+        }
+        insertDeliveries(rows);
+    }
+
+    // ===== Email digests =====
+
+    /**
+     * Queue an email; everything queued for a recipient within one flush interval is sent as
+     * a single digest.
+     */
+    public void queueEmail(String recipient, String subject, String body, Long notificationId) {
+        if (recipient == null || recipient.isBlank()) {
+            return;
+        }
+        if (pendingEmailCount.incrementAndGet() > maxPendingEmails) {
+            pendingEmailCount.decrementAndGet();
+            emailRejected.increment();
+            insertDeliveries(Collections.singletonList(deliveryRow(notificationId, CHANNEL_EMAIL, "FAILED", recipient,
+                    "Email digest queue full", null)));
+            return;
+        }
+        pendingEmails.compute(recipient, (key, list) -> {
+            List<PendingEmail> emails = list != null ? list : new ArrayList<>();
+            emails.add(new PendingEmail(subject, body, notificationId));
+            return emails;
+        });
+        emailsQueued.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${mes.notification.dispatch.email.digest-interval-ms:30000}")
+    public void flushEmailDigests() {
+        for (String recipient : new ArrayList<>(pendingEmails.keySet())) {
+            List<PendingEmail> emails = pendingEmails.remove(recipient);
+            if (emails == null || emails.isEmpty()) {
+                continue;
+            }
+            pendingEmailCount.addAndGet(-emails.size());
+            try {
+                emailPool.execute(() -> sendDigest(recipient, emails));
+            } catch (RejectedExecutionException e) {
+                emailRejected.add(emails.size());
+                recordEmailDeliveries(recipient, emails, "FAILED", "Dispatch queue full", null);
+            }
+        }
+    }
+
+    private void sendDigest(String recipient, List<PendingEmail> emails) {
+        String subject;
+        String body;
+        if (emails.size() == 1) {
+            subject = emails.get(0).subject;
+            body = emails.get(0).body;
+        } else {
+            subject = "[MES] " + emails.size() + " notifications";
+            StringBuilder digest = new StringBuilder();
+            for (PendingEmail email : emails) {
+                digest.append(email.subject).append("\n\n").append(email.body).append("\n\n----------\n\n");
+            }
+            body = digest.toString();
+            emailsCoalesced.add(emails.size() - 1);
+        }
+
+        if (emailService.sendAlertEmail(recipient, subject, body)) {
+            digestsSent.increment();
+            recordEmailDeliveries(recipient, emails, "SENT", null, LocalDateTime.now());
+        } else {
+            emailFailed.add(emails.size());
+            recordEmailDeliveries(recipient, emails, "FAILED",
+                    emailService.isEnabled() ? "Mail server rejected the message" : "Email delivery is not configured", null);
+        }
+    }
+
+    private void recordEmailDeliveries(String recipient, List<PendingEmail> emails, String status, String error,
+                                       LocalDateTime sentAt) {
+        List<Object[]> rows = new ArrayList<>(emails.size());
+        for (PendingEmail email : emails) {
+            rows.add(deliveryRow(email.notificationId, CHANNEL_EMAIL, status, recipient, error, sentAt));
+        }
+        insertDeliveries(rows);
+    }
+
+    /**
+     * Queue a critical-alert email once the surrounding transaction commits, so an alert
+     * that is rolled back sends nothing.
+     */
+    public void queueCriticalAlert(String recipient, String equipmentName, String alertMessage) {
+        afterCommit(() -> queueEmail(recipient, emailService.criticalAlertSubject(equipmentName),
+                emailService.criticalAlertBody(equipmentName, alertMessage), null));
+    }
+
+    // ===== Delivery log & metrics =====
+
+    private Object[] deliveryRow(Long notificationId, String method, String status, String recipient,
+                                 String error, LocalDateTime sentAt) {
+        return new Object[] {notificationId, method, status, recipient, error,
+                sentAt != null ? Timestamp.valueOf(sentAt) : null, Timestamp.valueOf(LocalDateTime.now())};
+    }
+
+    private void insertDeliveries(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_DELIVERY_SQL, rows);
+        } catch (Exception e) {
+            // The notification itself went out; only its record is lost
+            deliveryLogFailures.add(rows.size());
+            System.err.println("Failed to record " + rows.size() + " notification deliveries: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> web = new LinkedHashMap<>();
+        web.put("queuedTasks", webPool.getQueue().size());
+        web.put("activeWorkers", webPool.getActiveCount());
+        web.put("sent", webSent.sum());
+        web.put("failed", webFailed.sum());
+        web.put("rejected", webRejected.sum());
+        web.put("mutedByPreference", muted.sum());
+        web.put("unreadCountPushes", counterPushes.sum());
+
+        Map<String, Object> email = new LinkedHashMap<>();
+        email.put("pendingEmails", pendingEmailCount.get());
+        email.put("pendingRecipients", pendingEmails.size());
+        email.put("queuedTasks", emailPool.getQueue().size());
+        email.put("queued", emailsQueued.sum());
+        email.put("coalesced", emailsCoalesced.sum());
+        email.put("digestsSent", digestsSent.sum());
+        email.put("failed", emailFailed.sum());
+        email.put("rejected", emailRejected.sum());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inboxCreated", inboxCreated.sum());
+        stats.put("web", web);
+        stats.put("email", email);
+        stats.put("deliveryLogFailures", deliveryLogFailures.sum());
+        return stats;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(String prefix, int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static class WebTarget {
+        private final Long userId;
+        private final Long notificationId;
+        private final String username;
+        private final LocalDateTime createdAt;
+
+        private WebTarget(Long userId, Long notificationId, String username, LocalDateTime createdAt) {
+            this.userId = userId;
+            this.notificationId = notificationId;
+            this.username = username;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static class PendingEmail {
+        private final String subject;
+        private final String body;
+        private final Long notificationId;
+
+        private PendingEmail(String subject, String body, Long notificationId) {
+            this.subject = subject;
+            this.body = body;
+            this.notificationId = notificationId;
+        }
+    }
+}
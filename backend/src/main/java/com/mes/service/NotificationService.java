@@ -5,6 +5,8 @@ import com.mes.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -21,7 +23,13 @@ public class NotificationService {
     private UserRepository userRepository;
 
     @Autowired
-    private WebSocketService webSocketService;
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private NotificationDeliveryLogRepository deliveryLogRepository;
+
+    @Autowired
+    private NotificationStateCache stateCache;
 
     // User Notifications (Inbox)
     public List<UserNotification> getUserNotifications(Long userId) {
@@ -33,7 +41,7 @@ public class NotificationService {
     }
 
     public Long getUnreadCount(Long userId) {
-        return notificationRepository.countUnreadByUser(userId);
+        return stateCache.getUnreadCount(userId);
     }
 
     public List<UserNotification> getNotificationsByType(Long userId, String type) {
@@ -44,7 +52,7 @@ public class NotificationService {
     public UserNotification createNotification(UserNotification notification) {
         UserNotification saved = notificationRepository.save(notification);
         
-        // Send real-time notification via WebSocket
+        // Send real-time notification via WebSocket once the notification is committed
         if (notification.getUser() != null) {
             sendRealtimeNotification(saved);
         }
@@ -56,53 +64,79 @@ public class NotificationService {
     public UserNotification markAsRead(Long notificationId) {
         UserNotification notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
+        boolean wasUnread = isUnread(notification);
         notification.setIsRead(true);
         notification.setReadAt(LocalDateTime.now());
-        return notificationRepository.save(notification);
+        UserNotification saved = notificationRepository.save(notification);
+        if (wasUnread) {
+            unreadChangedAfterCommit(saved.getUser(), -1);
+        }
+        return saved;
     }
 
     @Transactional
     public void markAllAsRead(Long userId) {
-        List<UserNotification> unread = notificationRepository.findUnreadByUser(userId);
-        for (UserNotification notification : unread) {
-            notification.setIsRead(true);
-            notification.setReadAt(LocalDateTime.now());
+        if (notificationRepository.markAllReadByUser(userId, LocalDateTime.now()) == 0) {
+            return;
         }
-        notificationRepository.saveAll(unread);
+        String username = userRepository.findById(userId).map(User::getUsername).orElse(null);
+        afterCommit(() -> {
+            stateCache.setUnread(userId, 0);
+            notificationDispatcher.pushUnreadCount(username, 0);
+        });
     }
 
     @Transactional
     public UserNotification archiveNotification(Long notificationId) {
         UserNotification notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
+        boolean wasUnread = isUnread(notification);
         notification.setIsArchived(true);
-        return notificationRepository.save(notification);
+        UserNotification saved = notificationRepository.save(notification);
+        if (wasUnread) {
+            unreadChangedAfterCommit(saved.getUser(), -1);
+        }
+        return saved;
     }
 
     @Transactional
     public void deleteNotification(Long notificationId) {
-        notificationRepository.deleteById(notificationId);
+        notificationRepository.findById(notificationId).ifPresent(notification -> {
+            notificationRepository.delete(notification);
+            if (isUnread(notification)) {
+                unreadChangedAfterCommit(notification.getUser(), -1);
+            }
+        });
     }
 
     @Transactional
     public void cleanupExpiredNotifications() {
         List<UserNotification> expired = notificationRepository.findExpiredNotifications(LocalDateTime.now());
         notificationRepository.deleteAll(expired);
+        if (!expired.isEmpty()) {
+            afterCommit(stateCache::invalidateAllCounters);
+        }
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return stateCache.getStats();
     }
 
     // Notification Preferences
     public List<NotificationPreference> getUserPreferences(Long userId) {
-        return preferenceRepository.findByUserId(userId);
+        return stateCache.getPreferences(userId);
     }
 
     public NotificationPreference getPreferenceByType(Long userId, String type) {
-        return preferenceRepository.findByUserIdAndNotificationType(userId, type)
-                .orElse(null);
+        return stateCache.getPreference(userId, type);
     }
 
     @Transactional
     public NotificationPreference savePreference(NotificationPreference preference) {
-        return preferenceRepository.save(preference);
+        NotificationPreference saved = preferenceRepository.save(preference);
+        Long userId = saved.getUser() != null ? saved.getUser().getId() : null;
+        afterCommit(() -> stateCache.invalidatePreferences(userId));
+        return saved;
     }
 
     @Transactional
@@ -118,85 +152,87 @@ public class NotificationService {
         preference.setQuietHoursStart(preferenceDetails.getQuietHoursStart());
         preference.setQuietHoursEnd(preferenceDetails.getQuietHoursEnd());
         
-        return preferenceRepository.save(preference);
+        NotificationPreference saved = preferenceRepository.save(preference);
+        Long userId = saved.getUser() != null ? saved.getUser().getId() : null;
+        afterCommit(() -> stateCache.invalidatePreferences(userId));
+        return saved;
     }
 
     // Broadcast Notifications
     @Transactional
-    public void broadcastToAllUsers(String title, String message, String type, String severity) {
-        List<User> users = userRepository.findAll();
-        for (User user : users) {
-            UserNotification notification = new UserNotification();
-            notification.setUser(user);
-            notification.setTitle(title);
-            notification.setMessage(message);
-            notification.setNotificationType(type);
-            notification.setSeverity(severity);
-            createNotification(notification);
-        }
+    public int broadcastToAllUsers(String title, String message, String type, String severity) {
+        return notificationDispatcher.fanOut(null, type, title, message, severity, null, null);
     }
 
     @Transactional
-    public void notifyUsersByRole(String role, String title, String message, String type, String severity) {
-        List<User> users = userRepository.findByRole(Role.valueOf(role));
-        for (User user : users) {
-            UserNotification notification = new UserNotification();
-            notification.setUser(user);
-            notification.setTitle(title);
-            notification.setMessage(message);
-            notification.setNotificationType(type);
-            notification.setSeverity(severity);
-            createNotification(notification);
+    public int notifyUsersByRole(String role, String title, String message, String type, String severity) {
+        return notificationDispatcher.fanOut(Role.valueOf(role).name(), type, title, message, severity, null, null);
+    }
+
+    public Map<String, Object> getDispatchStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(notificationDispatcher.getStats());
+        Map<String, Long> deliveries = new TreeMap<>();
+        for (Object[] row : deliveryLogRepository.countByMethodAndStatus()) {
+            deliveries.put(row[0] + "_" + row[1], (Long) row[2]);
         }
+        stats.put("deliveryLog", deliveries);
+        return stats;
+    }
+
+    public List<NotificationDeliveryLog> getRecentDeliveries() {
+        return deliveryLogRepository.findTop100ByOrderByCreatedAtDesc();
     }
 
     // Helper Methods
     private void sendRealtimeNotification(UserNotification notification) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("id", notification.getId());
-            payload.put("title", notification.getTitle());
-            payload.put("message", notification.getMessage());
-            payload.put("type", notification.getNotificationType());
-            payload.put("severity", notification.getSeverity());
-            payload.put("createdAt", notification.getCreatedAt());
-            
-            webSocketService.sendToUser(
-                notification.getUser().getUsername(),
-                "/queue/notifications",
-                payload
-            );
-        } catch (Exception e) {
-            // Log error but don't fail the notification creation
-            System.err.println("Failed to send real-time notification: " + e.getMessage());
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", notification.getId());
+        payload.put("title", notification.getTitle());
+        payload.put("message", notification.getMessage());
+        payload.put("type", notification.getNotificationType());
+        payload.put("severity", notification.getSeverity());
+        payload.put("createdAt", notification.getCreatedAt());
+
+        String username = notification.getUser().getUsername();
+        if (username == null) {
+            // Created from a bare {"user": {"id": ...}} reference
+            username = userRepository.findById(notification.getUser().getId()).map(User::getUsername).orElse(null);
         }
+        notificationDispatcher.pushAfterCommit(notification.getUser().getId(), notification.getId(), username,
+            isUnread(notification), payload);
     }
 
     public boolean shouldSendNotification(Long userId, String notificationType, String severity) {
-        NotificationPreference pref = getPreferenceByType(userId, notificationType);
-        if (pref == null) {
-            return true; // Default to sending if no preference set
-        }
-
-        // Check if notification is enabled
-        if (!pref.getWebEnabled()) {
-            return false;
-        }
+        return stateCache.shouldSend(userId, notificationType, severity);
+    }
 
-        // Check severity level
-        int minSeverityLevel = getSeverityLevel(pref.getMinSeverity());
-        int notificationSeverityLevel = getSeverityLevel(severity);
-        
-        return notificationSeverityLevel >= minSeverityLevel;
+    private static boolean isUnread(UserNotification notification) {
+        return !Boolean.TRUE.equals(notification.getIsRead()) && !Boolean.TRUE.equals(notification.getIsArchived());
     }
 
-    private int getSeverityLevel(String severity) {
-        switch (severity) {
-            case "CRITICAL": return 4;
-            case "ERROR": return 3;
-            case "WARNING": return 2;
-            case "INFO": return 1;
-            default: return 0;
+    // Move the cached counter and tell the user's clients once the change is committed
+    private void unreadChangedAfterCommit(User user, long delta) {
+        if (user == null) {
+            return;
+        }
+        Long userId = user.getId();
+        String username = user.getUsername();
+        afterCommit(() -> {
+            Long count = stateCache.adjustUnread(userId, delta);
+            notificationDispatcher.pushUnreadCount(username, count != null ? count : stateCache.getUnreadCount(userId));
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
     }
 }
@@ -0,0 +1,248 @@
+package com.mes.service;
+
+import com.mes.model.NotificationPreference;
+import com.mes.repository.NotificationPreferenceRepository;
+import com.mes.repository.UserNotificationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user unread counters and notification preferences.
+ *
+ * Counters are loaded with one count query on first use and then moved by the
+ * notification writes (after they commit) instead of being recounted on every poll.
+ * Writes that bypass NotificationService are picked up when an entry reaches its TTL.
+ * Preferences are loaded per user in one query and dropped whenever they are saved.
+ *
+ * A value loaded from the database is only installed when no change for that user was
+ * applied while it was being read, and never over a live entry, so a load racing a commit
+ * cannot overwrite the commit's adjustment. Changes are tracked per user stripe.
+ */
+@Service
+public class NotificationStateCache {
+
+    private static final int VERSION_STRIPES = 64;
+
+    @Autowired
+    private UserNotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationPreferenceRepository preferenceRepository;
+
+    @Value("${mes.notification.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final Map<Long, Counter> unread = new ConcurrentHashMap<>();
+    private final Map<Long, CachedPreferences> preferences = new ConcurrentHashMap<>();
+    // Bumped by every change, per user stripe; a load started before a change is not cached
+    private final AtomicLongArray unreadVersions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLongArray preferenceVersions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final LongAdder counterHits = new LongAdder();
+    private final LongAdder counterLoads = new LongAdder();
+    private final LongAdder preferenceHits = new LongAdder();
+    private final LongAdder preferenceLoads = new LongAdder();
+
+    // ===== Unread counters =====
+
+    public long getUnreadCount(Long userId) {
+        Counter counter = unread.get(userId);
+        if (counter != null && !counter.isExpired()) {
+            counterHits.increment();
+            return counter.get();
+        }
+        return load(userId);
+    }
+
+    /**
+     * Cached count, or null when the user has no live entry. Never queries.
+     */
+    public Long peekUnreadCount(Long userId) {
+        Counter counter = unread.get(userId);
+        return counter != null && !counter.isExpired() ? counter.get() : null;
+    }
+
+    /**
+     * Apply a committed change to the user's unread count. Users without a live entry are
+     * left alone, since their next read loads a count that already includes the change.
+     * Returns the new count, or null when it is not cached.
+     */
+    public Long adjustUnread(Long userId, long delta) {
+        unreadVersions.incrementAndGet(stripe(userId));
+        Counter counter = unread.get(userId);
+        if (counter != null && !counter.isExpired()) {
+            return counter.add(delta);
+        }
+        return null;
+    }
+
+    public void setUnread(Long userId, long count) {
+        unreadVersions.incrementAndGet(stripe(userId));
+        unread.put(userId, newCounter(count));
+    }
+
+    /**
+     * Drop every counter; used after bulk writes that touch arbitrary users.
+     */
+    public void invalidateAllCounters() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            unreadVersions.incrementAndGet(i);
+        }
+        unread.clear();
+    }
+
+    private long load(Long userId) {
+        counterLoads.increment();
+        long version = unreadVersions.get(stripe(userId));
+        Long count = notificationRepository.countUnreadByUser(userId);
+        long value = count != null ? count : 0;
+        Counter installed = unread.compute(userId, (id, current) -> {
+            if (current != null && !current.isExpired()) {
+                return current;
+            }
+            return unreadVersions.get(stripe(userId)) == version ? newCounter(value) : current;
+        });
+        return installed != null && !installed.isExpired() ? installed.get() : value;
+    }
+
+    private Counter newCounter(long count) {
+        return new Counter(count, System.nanoTime() + ttlSeconds * 1_000_000_000L);
+    }
+
+    // ===== Preferences =====
+
+    public List<NotificationPreference> getPreferences(Long userId) {
+        return new ArrayList<>(preferencesOf(userId).values());
+    }
+
+    public NotificationPreference getPreference(Long userId, String type) {
+        return preferencesOf(userId).get(type);
+    }
+
+    /**
+     * Whether a realtime notification of this type and severity should reach the user. Users
+     * without a preference for the type receive everything.
+     */
+    public boolean shouldSend(Long userId, String type, String severity) {
+        if (userId == null) {
+            return true;
+        }
+        NotificationPreference pref = getPreference(userId, type);
+        if (pref == null) {
+            return true;
+        }
+        if (!Boolean.TRUE.equals(pref.getWebEnabled())) {
+            return false;
+        }
+        return severityLevel(severity) >= severityLevel(pref.getMinSeverity());
+    }
+
+    /**
+     * Drop the user's preferences (everyone's when userId is null). Call after the write commits.
+     */
+    public void invalidatePreferences(Long userId) {
+        if (userId == null) {
+            for (int i = 0; i < VERSION_STRIPES; i++) {
+                preferenceVersions.incrementAndGet(i);
+            }
+            preferences.clear();
+            return;
+        }
+        preferenceVersions.incrementAndGet(stripe(userId));
+        preferences.remove(userId);
+    }
+
+    private Map<String, NotificationPreference> preferencesOf(Long userId) {
+        CachedPreferences cached = preferences.get(userId);
+        if (cached != null && System.nanoTime() - cached.expiresAtNanos < 0) {
+            preferenceHits.increment();
+            return cached.byType;
+        }
+        preferenceLoads.increment();
+        long version = preferenceVersions.get(stripe(userId));
+        Map<String, NotificationPreference> byType = new LinkedHashMap<>();
+        for (NotificationPreference pref : preferenceRepository.findByUserId(userId)) {
+            byType.put(pref.getNotificationType(), pref);
+        }
+        CachedPreferences loaded = new CachedPreferences(Collections.unmodifiableMap(byType),
+                System.nanoTime() + ttlSeconds * 1_000_000_000L);
+        // A save committed while this was reading may not be in it; serve it once but do not cache it
+        preferences.compute(userId, (id, current) ->
+                preferenceVersions.get(stripe(userId)) == version ? loaded : current);
+        return byType;
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (VERSION_STRIPES - 1);
+    }
+
+    private static int severityLevel(String severity) {
+        if (severity == null) {
+            return 0;
+        }
+        switch (severity) {
+            case "CRITICAL": return 4;
+            case "ERROR": return 3;
+            case "WARNING": return 2;
+            case "INFO": return 1;
+            default: return 0;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hits = counterHits.sum();
+        long loads = counterLoads.sum();
+        long prefHits = preferenceHits.sum();
+        long prefLoads = preferenceLoads.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("counterEntries", unread.size());
+        stats.put("counterHits", hits);
+        stats.put("counterLoads", loads);
+        stats.put("counterHitRatio", hits + loads > 0 ? (double) hits / (hits + loads) : 1.0);
+        stats.put("preferenceEntries", preferences.size());
+        stats.put("preferenceHits", prefHits);
+        stats.put("preferenceLoads", prefLoads);
+        stats.put("preferenceHitRatio", prefHits + prefLoads > 0 ? (double) prefHits / (prefHits + prefLoads) : 1.0);
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+
+    private static class Counter {
+        private long value;
+        private final long expiresAtNanos;
+
+        private Counter(long value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private synchronized long get() {
+            return value;
+        }
+
+        private synchronized long add(long delta) {
+            value = Math.max(0, value + delta);
+            return value;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos >= 0;
+        }
+    }
+
+    private static class CachedPreferences {
+        private final Map<String, NotificationPreference> byType;
+        private final long expiresAtNanos;
+
+        private CachedPreferences(Map<String, NotificationPreference> byType, long expiresAtNanos) {
+            this.byType = byType;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -38,14 +39,66 @@ public class OeeService {
     @Autowired
     private QualityCheckRepository qualityCheckRepository;
 
+    @Autowired
+    private StreamingOeeService streamingOeeService;
+
     /**
      * Calculate real-time OEE for equipment
      */
     @Transactional
     public OeeCalculation calculateRealTimeOee(Long equipmentId, LocalDateTime start, LocalDateTime end) {
+        return oeeCalculationRepository.save(buildCalculation(equipmentId, start, end));
+    }
+
+    /**
+     * OEE for a window without persisting it. Windows inside the streaming engine's
+     * retention are answered from memory; older ones are recomputed from history.
+     */
+    public OeeCalculation buildCalculation(Long equipmentId, LocalDateTime start, LocalDateTime end) {
         Equipment equipment = equipmentRepository.findById(equipmentId)
                 .orElseThrow(() -> new RuntimeException("Equipment not found"));
 
+        if (streamingOeeService.covers(start, end)) {
+            OeeCalculation calculation = streamingOeeService.calculate(equipment, start, end);
+            Optional<OeeTarget> target = oeeTargetRepository
+                    .findActiveTargetForEquipment(equipmentId, LocalDate.now());
+            BigDecimal targetOee = target.map(OeeTarget::getTargetOee).orElse(null);
+            calculation.setTargetOeePercentage(targetOee);
+            calculation.setVarianceFromTarget(targetOee != null
+                    ? calculation.getOeePercentage().subtract(targetOee) : null);
+            return calculation;
+        }
+
+        return recomputeFromHistory(equipment, start, end);
+    }
+
+    /**
+     * OEE over a sliding window ending now, e.g. the last hour or the last 24 hours
+     */
+    public OeeCalculation getSlidingOee(Long equipmentId, Duration window) {
+        LocalDateTime now = LocalDateTime.now();
+        return buildCalculation(equipmentId, now.minus(window), now);
+    }
+
+    /**
+     * OEE for the current occurrence of a shift so far, handling shifts that cross midnight
+     */
+    public OeeCalculation getCurrentShiftOee(Long equipmentId, Shift shift) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = LocalDate.now().atTime(shift.getStartTime());
+        if (start.isAfter(now)) {
+            start = start.minusDays(1);
+        }
+        LocalDateTime end = start.toLocalDate().atTime(shift.getEndTime());
+        if (!end.isAfter(start)) {
+            end = end.plusDays(1);
+        }
+        return buildCalculation(equipmentId, start, end.isAfter(now) ? now : end);
+    }
+
+    private OeeCalculation recomputeFromHistory(Equipment equipment, LocalDateTime start, LocalDateTime end) {
+        Long equipmentId = equipment.getId();
+
         // Calculate time components
         long plannedMinutes = ChronoUnit.MINUTES.between(start, end);
         BigDecimal plannedProductionTime = BigDecimal.valueOf(plannedMinutes);
@@ -157,7 +210,7 @@ public class OeeService {
         calculation.setVarianceFromTarget(variance);
         calculation.setCalculationType("REAL_TIME");
 
-        return oeeCalculationRepository.save(calculation);
+        return calculation;
     }
 
     /**
@@ -168,8 +221,8 @@ public class OeeService {
                 .findByEquipmentAndPeriod(equipmentId, start, end);
 
         if (calculations.isEmpty()) {
-            // Calculate if no data exists
-            OeeCalculation calc = calculateRealTimeOee(equipmentId, start, end);
+            // Calculate on the fly if no data exists; read paths never persist
+            OeeCalculation calc = buildCalculation(equipmentId, start, end);
             calculations = List.of(calc);
         }
 
@@ -280,7 +333,8 @@ public class OeeService {
         return oeeTrendRepository.save(trend);
     }
 
-    private String determineTrendDirection(List<OeeCalculation> calculations) {
+    // Package-private so the JMH suite (src/jmh/java) can measure the trend math directly
+    String determineTrendDirection(List<OeeCalculation> calculations) {
         if (calculations.size() < 2) {
             return "STABLE";
         }
@@ -311,7 +365,7 @@ public class OeeService {
         }
     }
 
-    private BigDecimal calculateTrendPercentage(List<OeeCalculation> calculations) {
+    BigDecimal calculateTrendPercentage(List<OeeCalculation> calculations) {
         if (calculations.size() < 2) {
             return BigDecimal.ZERO;
         }
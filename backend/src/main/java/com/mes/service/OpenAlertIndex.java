@@ -0,0 +1,371 @@
+package com.mes.service;
+
+import com.mes.model.AlertHistory;
+import com.mes.model.AlertRule;
+import com.mes.repository.AlertHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of open rule alerts, keyed by equipment and rule type.
+ *
+ * AlertService consults it before raising an alert: a repeat of an open alert only bumps
+ * its occurrence counter and last-seen time, which are written back in batches. Each key
+ * also records when its condition starts and stops holding; too many changes within the
+ * flap window mark it flapping, which keeps the alert open and mutes its notifications
+ * until it settles. The index is rebuilt from the open rows of alert_history on startup
+ * and is local to each node. Callers synchronize on a Track while they use it.
+ */
+@Service
+public class OpenAlertIndex {
+
+    @Autowired
+    private AlertHistoryRepository alertHistoryRepository;
+
+    @Value("${mes.alerts.flap.window-seconds:600}")
+    private long flapWindowSeconds;
+
+    @Value("${mes.alerts.flap.threshold:6}")
+    private int flapThreshold;
+
+    private final Map<Long, Map<String, Track>> tracks = new ConcurrentHashMap<>();
+    private final Map<Long, Track> byAlertId = new ConcurrentHashMap<>();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder repeats = new LongAdder();
+    private final LongAdder escalations = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder mutedNotifications = new LongAdder();
+    private final LongAdder flapStarts = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private volatile LocalDateTime lastFlushAt;
+
+    @PostConstruct
+    public void warmUp() {
+        try {
+            // Oldest first, so the newest open row of a key is the one indexed
+            for (AlertHistory alert : alertHistoryRepository.findOpenRuleAlerts()) {
+                Track track = track(alert.getEquipment().getId(), alert.getAlertType());
+                synchronized (track) {
+                    if (track.alertId != null) {
+                        byAlertId.remove(track.alertId);
+                    }
+                    track.restore(alert);
+                    byAlertId.put(alert.getId(), track);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to rebuild open alert index: " + e.getMessage());
+        }
+    }
+
+    public Track track(Long equipmentId, String alertType) {
+        return tracks.computeIfAbsent(equipmentId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(alertType, type -> new Track(equipmentId, type));
+    }
+
+    /**
+     * Tracks of the equipment that currently hold an open alert.
+     */
+    public List<Track> openTracks(Long equipmentId) {
+        Map<String, Track> byType = tracks.get(equipmentId);
+        if (byType == null) {
+            return List.of();
+        }
+        List<Track> open = null;
+        for (Track track : byType.values()) {
+            if (track.alertId != null) {
+                if (open == null) {
+                    open = new ArrayList<>(byType.size());
+                }
+                open.add(track);
+            }
+        }
+        return open != null ? open : List.of();
+    }
+
+    /**
+     * Drop an alert resolved outside the index, so the next occurrence opens a new one.
+     */
+    public void forget(Long alertId) {
+        Track track = byAlertId.remove(alertId);
+        if (track != null) {
+            synchronized (track) {
+                if (alertId.equals(track.alertId)) {
+                    track.close();
+                }
+            }
+        }
+    }
+
+    public void notificationMuted() {
+        mutedNotifications.increment();
+    }
+
+    /**
+     * Write back occurrence counters and flapping flags that changed since the last flush.
+     */
+    @Scheduled(fixedDelayString = "${mes.alerts.dedup.flush-interval-ms:10000}")
+    public void flush() {
+        for (Map<String, Track> byType : tracks.values()) {
+            // Keys are bounded by equipment x rule type, so closed tracks are kept for reuse
+            for (Track track : byType.values()) {
+                Long alertId;
+                int occurrences;
+                LocalDateTime lastSeen;
+                boolean flapping;
+                synchronized (track) {
+                    if (track.alertId == null) {
+                        continue;
+                    }
+                    flapping = track.isFlapping();
+                    if (track.occurrences == track.persistedOccurrences && flapping == track.persistedFlapping) {
+                        continue;
+                    }
+                    alertId = track.alertId;
+                    occurrences = track.occurrences;
+                    lastSeen = track.lastSeenAt;
+                }
+                try {
+                    alertHistoryRepository.updateOccurrences(alertId, occurrences, lastSeen, flapping);
+                    synchronized (track) {
+                        if (alertId.equals(track.alertId)) {
+                            track.persistedOccurrences = occurrences;
+                            track.persistedFlapping = flapping;
+                        }
+                    }
+                    flushedRows.increment();
+                } catch (Exception e) {
+                    System.err.println("Failed to update occurrences of alert " + alertId + ": " + e.getMessage());
+                }
+            }
+        }
+        lastFlushAt = LocalDateTime.now();
+    }
+
+    public Map<String, Object> getStats() {
+        int open = 0;
+        int flapping = 0;
+        int pendingRows = 0;
+        for (Map<String, Track> byType : tracks.values()) {
+            for (Track track : byType.values()) {
+                synchronized (track) {
+                    if (track.alertId != null) {
+                        open++;
+                        if (track.occurrences != track.persistedOccurrences) {
+                            pendingRows++;
+                        }
+                    }
+                    if (track.isFlapping()) {
+                        flapping++;
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("openAlerts", open);
+        stats.put("flapping", flapping);
+        stats.put("opened", opened.sum());
+        stats.put("repeatsSuppressed", repeats.sum());
+        stats.put("escalations", escalations.sum());
+        stats.put("resolved", resolved.sum());
+        stats.put("mutedNotifications", mutedNotifications.sum());
+        stats.put("flapStarts", flapStarts.sum());
+        stats.put("pendingCounterRows", pendingRows);
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("lastFlushAt", lastFlushAt);
+        return stats;
+    }
+
+    /**
+     * State of one (equipment, rule type) key.
+     */
+    public class Track {
+        private final Long equipmentId;
+        private final String alertType;
+
+        private Long alertId;
+        // Rule that fired most recently; its condition decides when the alert clears
+        private AlertRule rule;
+        private String severity;
+        private LocalDateTime lastSeenAt;
+        private int occurrences;
+        private int persistedOccurrences;
+        private boolean persistedFlapping;
+
+        private boolean conditionActive;
+        private int clearStreak;
+        private final ArrayDeque<LocalDateTime> changes = new ArrayDeque<>();
+        private boolean flapping;
+
+        private Track(Long equipmentId, String alertType) {
+            this.equipmentId = equipmentId;
+            this.alertType = alertType;
+        }
+
+        public Long getEquipmentId() {
+            return equipmentId;
+        }
+
+        public String getAlertType() {
+            return alertType;
+        }
+
+        public Long getAlertId() {
+            return alertId;
+        }
+
+        public AlertRule getRule() {
+            return rule;
+        }
+
+        public String getSeverity() {
+            return severity;
+        }
+
+        public int getOccurrences() {
+            return occurrences;
+        }
+
+        public LocalDateTime getLastSeenAt() {
+            return lastSeenAt;
+        }
+
+        public boolean isOpen() {
+            return alertId != null;
+        }
+
+        /**
+         * True when the open alert was last seen more than windowSeconds before the sample.
+         */
+        public boolean isStale(LocalDateTime sampleAt, long windowSeconds) {
+            return lastSeenAt != null && lastSeenAt.plusSeconds(windowSeconds).isBefore(sampleAt);
+        }
+
+        public void opened(Long alertId, AlertRule rule, LocalDateTime at) {
+            this.alertId = alertId;
+            this.rule = rule;
+            this.severity = rule.getSeverity();
+            this.lastSeenAt = at;
+            this.occurrences = 1;
+            this.persistedOccurrences = 1;
+            this.persistedFlapping = false;
+            this.conditionActive = true;
+            byAlertId.put(alertId, this);
+            opened.increment();
+        }
+
+        public void repeated(AlertRule rule, LocalDateTime at) {
+            this.rule = rule;
+            occurrences++;
+            if (lastSeenAt == null || at.isAfter(lastSeenAt)) {
+                lastSeenAt = at;
+            }
+            repeats.increment();
+        }
+
+        public void escalated(AlertRule rule, LocalDateTime at) {
+            repeated(rule, at);
+            severity = rule.getSeverity();
+            escalations.increment();
+        }
+
+        public void resolved() {
+            if (alertId != null) {
+                byAlertId.remove(alertId);
+            }
+            close();
+            resolved.increment();
+        }
+
+        /**
+         * The condition holds for this sample.
+         */
+        public void conditionFired() {
+            clearStreak = 0;
+            if (!conditionActive) {
+                conditionActive = true;
+                recordChange();
+            }
+        }
+
+        /**
+         * The condition no longer holds, but the value is still inside the deadband.
+         */
+        public void conditionHeld() {
+            clearStreak = 0;
+        }
+
+        /**
+         * The sample is past the deadband. Returns the number of consecutive clear samples.
+         */
+        public int conditionCleared() {
+            if (conditionActive) {
+                conditionActive = false;
+                recordChange();
+            }
+            return ++clearStreak;
+        }
+
+        /**
+         * Flapping starts at flapThreshold changes within the window and ends once the
+         * changes in the window drop to half of that.
+         */
+        public boolean isFlapping() {
+            trimChanges();
+            if (flapping && changes.size() <= flapThreshold / 2) {
+                flapping = false;
+            }
+            return flapping;
+        }
+
+        private void recordChange() {
+            changes.addLast(LocalDateTime.now());
+            trimChanges();
+            if (!flapping && changes.size() >= flapThreshold) {
+                flapping = true;
+                flapStarts.increment();
+            }
+        }
+
+        private void trimChanges() {
+            LocalDateTime cutoff = LocalDateTime.now().minusSeconds(flapWindowSeconds);
+            while (!changes.isEmpty() && changes.peekFirst().isBefore(cutoff)) {
+                changes.pollFirst();
+            }
+        }
+
+        private void restore(AlertHistory alert) {
+            alertId = alert.getId();
+            rule = alert.getAlertRule();
+            severity = alert.getSeverity();
+            lastSeenAt = alert.getLastSeenAt() != null ? alert.getLastSeenAt() : alert.getTriggeredAt();
+            occurrences = alert.getOccurrenceCount() != null ? alert.getOccurrenceCount() : 1;
+            persistedOccurrences = occurrences;
+            flapping = Boolean.TRUE.equals(alert.getFlapping());
+            persistedFlapping = flapping;
+            conditionActive = true;
+            clearStreak = 0;
+        }
+
+        private void close() {
+            alertId = null;
+            rule = null;
+            severity = null;
+            lastSeenAt = null;
+            occurrences = 0;
+            persistedOccurrences = 0;
+            persistedFlapping = false;
+            conditionActive = false;
+            clearStreak = 0;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.mes.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps monthly range partitions created ahead of time for the partitioned tables, so rows
+ * never pile up in a table's DEFAULT partition. Creating a partition that already exists is a
+ * no-op, so every node can run this.
+ *
+ * A table partitioned in place (equipment_log, V27) starts with all its old rows in the DEFAULT
+ * partition, capped by a "<default>_split" check. Each run moves the oldest closed month below the
+ * cap into its own partition, one month per transaction; months past the cap get partitions as usual.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound, c.reltuples::BIGINT AS estimated_rows " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ? ORDER BY c.relname";
+
+    private static final String SPLIT_CHECKS_SQL =
+            "SELECT conname, convalidated, pg_get_constraintdef(oid) AS definition FROM pg_constraint " +
+            "WHERE conrelid = to_regclass(?) AND conname IN (?, ?)";
+
+    private static final String SPLIT_LOCK_SQL = "SELECT pg_try_advisory_xact_lock(hashtext('partition-split:' || ?))";
+
+    private static final Pattern SPLIT_BOUND = Pattern.compile("'([^']+)'");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // table:timestamp column
+    @Value("${mes.partitions.monthly-tables:audit_trail:timestamp,user_activity_log:timestamp,equipment_log:timestamp}")
+    private String[] monthlyTables;
+
+    @Value("${mes.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${mes.partitions.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+
+    private TransactionTemplate transactionTemplate;
+    private volatile LocalDate lastRun;
+    private volatile int lastCreated;
+    // Tables splitting their DEFAULT partition, once the cap is validated, with the first month past it
+    private final Map<String, LocalDate> splits = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${mes.partitions.cron:0 15 1 * * *}")
+    public void ensurePartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        int created = 0;
+        for (String spec : monthlyTables) {
+            String[] parts = spec.trim().split(":");
+            LocalDate splitBefore;
+            try {
+                splitBefore = splitDefault(parts[0], parts[1]);
+            } catch (Exception e) {
+                System.err.println("Failed to split the DEFAULT partition of " + parts[0] + ": " + e.getMessage());
+                if (!splits.containsKey(parts[0])) {
+                    continue; // Not validated yet: attaching would scan the DEFAULT partition
+                }
+                splitBefore = splits.get(parts[0]);
+            }
+            for (int i = 0; i <= monthsAhead; i++) {
+                if (splitBefore != null && month.plusMonths(i).isBefore(splitBefore)) {
+                    continue; // Still in the DEFAULT partition; moved out once the month is over
+                }
+                try {
+                    Boolean added = jdbcTemplate.queryForObject("SELECT create_monthly_partition(?, ?, ?)",
+                            Boolean.class, parts[0], parts[1], Date.valueOf(month.plusMonths(i)));
+                    if (Boolean.TRUE.equals(added)) {
+                        created++;
+                    }
+                } catch (Exception e) {
+                    System.err.println("Failed to create " + month.plusMonths(i) + " partition of " + parts[0] + ": " + e.getMessage());
+                }
+            }
+        }
+        lastRun = LocalDate.now();
+        lastCreated = created;
+        if (created > 0) {
+            System.out.println("Created " + created + " monthly partitions");
+        }
+    }
+
+    /**
+     * Advance the split of a table's DEFAULT partition by at most one month. Returns the first
+     * month past the cap, or null once the table has no split in progress.
+     */
+    private LocalDate splitDefault(String table, String column) {
+        String defaultPart = table + "_default";
+        String check = defaultPart + "_split";
+        String next = check + "_next";
+        Map<String, Map<String, Object>> checks = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(SPLIT_CHECKS_SQL, defaultPart, check, next)) {
+            checks.put((String) row.get("conname"), row);
+        }
+        if (!checks.containsKey(check)) {
+            splits.remove(table);
+            return null;
+        }
+        List<LocalDate> bounds = bounds(checks.get(check));
+        LocalDate from = bounds.size() > 1 ? bounds.get(0) : null;
+        LocalDate before = bounds.get(bounds.size() - 1);
+
+        if (!Boolean.TRUE.equals(checks.get(check).get("convalidated"))) {
+            // Reads the whole partition, but does not block writes to it
+            boolean validated = Boolean.TRUE.equals(transactionTemplate.execute(tx -> {
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(SPLIT_LOCK_SQL, Boolean.class, table))) {
+                    return false;
+                }
+                jdbcTemplate.execute("ALTER TABLE " + defaultPart + " VALIDATE CONSTRAINT " + check);
+                return true;
+            }));
+            if (!validated) {
+                throw new IllegalStateException("another node is validating " + check);
+            }
+        }
+        splits.put(table, before);
+
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        LocalDate month = from;
+        if (month == null) {
+            Timestamp oldest = jdbcTemplate.queryForObject(
+                    "SELECT MIN(" + column + ") FROM " + defaultPart, Timestamp.class);
+            if (oldest == null) {
+                if (before.isAfter(currentMonth)) {
+                    return before;
+                }
+                // Empty below the cap and its months are over: the check has done its job
+                inSplitTransaction(table, () -> jdbcTemplate.execute("ALTER TABLE " + defaultPart + " DROP CONSTRAINT " + check));
+                splits.remove(table);
+                return null;
+            }
+            month = oldest.toLocalDateTime().toLocalDate().withDayOfMonth(1);
+        }
+        LocalDate end = month.plusMonths(1);
+        if (end.isAfter(currentMonth)) {
+            return before; // Still open
+        }
+        boolean last = !end.isBefore(before);
+        String part = table + "_p" + String.format("%04d%02d", month.getYear(), month.getMonthValue());
+
+        if (!last && !checks.containsKey(next)) {
+            // Late rows for the month are refused from here on, so the move below gets them all
+            inSplitTransaction(table, () -> jdbcTemplate.execute("ALTER TABLE " + defaultPart + " ADD CONSTRAINT " + next +
+                    " CHECK (" + column + " >= '" + end + "'::timestamp AND " + column + " < '" + before + "'::timestamp) NOT VALID"));
+        }
+
+        // Move and attach in one transaction, so readers see the month's rows in one place or the other
+        LocalDate first = month;
+        long start = System.currentTimeMillis();
+        inSplitTransaction(table, () -> {
+            jdbcTemplate.execute("CREATE TABLE " + part + " (LIKE " + table + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            // Lets the attach below skip scanning the new partition
+            jdbcTemplate.execute("ALTER TABLE " + part + " ALTER COLUMN " + column + " SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE " + part + " ADD CONSTRAINT " + part + "_range CHECK (" + column +
+                    " >= '" + first + "'::timestamp AND " + column + " < '" + end + "'::timestamp)");
+            jdbcTemplate.execute("WITH moved AS (DELETE FROM " + defaultPart + " WHERE " + column + " >= '" + first +
+                    "'::timestamp AND " + column + " < '" + end + "'::timestamp RETURNING *) INSERT INTO " + part +
+                    " SELECT * FROM moved");
+            if (last) {
+                jdbcTemplate.execute("ALTER TABLE " + defaultPart + " DROP CONSTRAINT " + check);
+            } else {
+                // Again a full read that does not block writes; it lets the attach skip scanning the DEFAULT partition
+                jdbcTemplate.execute("ALTER TABLE " + defaultPart + " VALIDATE CONSTRAINT " + next);
+                jdbcTemplate.execute("ALTER TABLE " + defaultPart + " DROP CONSTRAINT " + check);
+                jdbcTemplate.execute("ALTER TABLE " + defaultPart + " RENAME CONSTRAINT " + next + " TO " + check);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + part +
+                    " FOR VALUES FROM ('" + first + "') TO ('" + end + "')");
+        });
+        System.out.println("Moved " + first + " of " + table + " out of its DEFAULT partition in " +
+                (System.currentTimeMillis() - start) + "ms");
+        if (last) {
+            splits.remove(table);
+            return null;
+        }
+        return before;
+    }
+
+    // DDL on the DEFAULT partition waits at most lock-timeout-ms for its lock instead of queuing
+    // writes behind it; a run that cannot get the lock, or finds another node splitting, tries again next time
+    private void inSplitTransaction(String table, Runnable work) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(SPLIT_LOCK_SQL, Boolean.class, table))) {
+                throw new IllegalStateException("another node is splitting " + table);
+            }
+            jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+            work.run();
+        });
+    }
+
+    // "CHECK (ts < 'b')" or "CHECK (ts >= 'a' AND ts < 'b')", as month starts in order
+    private static List<LocalDate> bounds(Map<String, Object> check) {
+        List<LocalDate> bounds = new ArrayList<>();
+        Matcher matcher = SPLIT_BOUND.matcher(String.valueOf(check.get("definition")));
+        while (matcher.find()) {
+            bounds.add(Timestamp.valueOf(matcher.group(1)).toLocalDateTime().toLocalDate());
+        }
+        if (bounds.isEmpty()) {
+            throw new IllegalStateException("unexpected split check " + check.get("definition"));
+        }
+        return bounds;
+    }
+
+    public Map<String, Object> getPartitions() {
+        Map<String, Object> tables = new LinkedHashMap<>();
+        for (String spec : monthlyTables) {
+            String table = spec.trim().split(":")[0];
+            tables.put(table, jdbcTemplate.query(PARTITIONS_SQL, (rs, n) -> {
+                Map<String, Object> partition = new LinkedHashMap<>();
+                partition.put("name", rs.getString("relname"));
+                partition.put("bound", rs.getString("bound"));
+                partition.put("estimatedRows", Math.max(0, rs.getLong("estimated_rows")));
+                return partition;
+            }, table));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("monthsAhead", monthsAhead);
+        result.put("lastRun", lastRun);
+        result.put("lastCreated", lastCreated);
+        result.put("splits", new TreeMap<>(splits));
+        result.put("tables", tables);
+        return result;
+    }
+}
@@ -4,6 +4,7 @@ import com.mes.model.PasswordResetToken;
 import com.mes.model.User;
 import com.mes.repository.PasswordResetTokenRepository;
 import com.mes.repository.UserRepository;
+import com.mes.security.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -28,6 +29,9 @@ public class PasswordResetService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     public String createPasswordResetToken(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
@@ -66,6 +70,7 @@ public class PasswordResetService {
         User user = resetToken.getUser();
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        principalCache.invalidate(user.getUsername());
 
         resetToken.setUsed(true);
         tokenRepository.save(resetToken);
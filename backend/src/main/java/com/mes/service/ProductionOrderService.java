@@ -1,10 +1,15 @@
 package com.mes.service;
 
+import com.mes.dto.KeysetPage;
 import com.mes.model.ProductionOrder;
 import com.mes.model.ProductionOrderStatus;
 import com.mes.repository.ProductionOrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,16 +19,34 @@ public class ProductionOrderService {
     @Autowired
     private ProductionOrderRepository productionOrderRepository;
 
+    @Autowired
+    private StreamingOeeService streamingOeeService;
+
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
     public List<ProductionOrder> getAllOrders() {
         return productionOrderRepository.findAll();
     }
 
+    /**
+     * Keyset-paginated orders, newest first, created in [from, to). Filters are optional.
+     */
+    public KeysetPage<ProductionOrder> getOrderPage(LocalDateTime from, LocalDateTime to, ProductionOrderStatus status,
+                                                    Long equipmentId, String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        Object[] position = KeysetPage.startAfter(cursor, to);
+        List<ProductionOrder> items = productionOrderRepository.findPage((LocalDateTime) position[0], (Long) position[1],
+                KeysetPage.since(from), status, equipmentId, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, ProductionOrder::getCreatedAt, ProductionOrder::getId);
+    }
+
     public Optional<ProductionOrder> getOrderById(Long id) {
         return productionOrderRepository.findById(id);
     }
 
     public ProductionOrder createOrder(ProductionOrder order) {
-        return productionOrderRepository.save(order);
+        return saveAndCache(order);
     }
 
     public ProductionOrder updateOrder(Long id, ProductionOrder orderDetails) {
@@ -42,7 +65,7 @@ public class ProductionOrderService {
             order.setEndTime(java.time.LocalDateTime.now());
         }
 
-        return productionOrderRepository.save(order);
+        return saveAndCache(order);
     }
 
     public ProductionOrder startOrder(Long id) {
@@ -50,7 +73,7 @@ public class ProductionOrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         order.setStatus(ProductionOrderStatus.IN_PROGRESS);
         order.setStartTime(java.time.LocalDateTime.now());
-        return productionOrderRepository.save(order);
+        return saveAndCache(order);
     }
 
     public ProductionOrder completeOrder(Long id) {
@@ -58,20 +81,54 @@ public class ProductionOrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         order.setStatus(ProductionOrderStatus.COMPLETED);
         order.setEndTime(java.time.LocalDateTime.now());
-        return productionOrderRepository.save(order);
+        return saveAndCache(order);
     }
 
     public ProductionOrder cancelOrder(Long id) {
         ProductionOrder order = productionOrderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         order.setStatus(ProductionOrderStatus.CANCELLED);
-        return productionOrderRepository.save(order);
+        return saveAndCache(order);
     }
 
     public ProductionOrder updateProducedQuantity(Long id, Integer quantity) {
         ProductionOrder order = productionOrderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
+        int previous = order.getProducedQuantity() != null ? order.getProducedQuantity() : 0;
         order.setProducedQuantity(quantity);
-        return productionOrderRepository.save(order);
+        ProductionOrder saved = saveAndCache(order);
+        if (saved.getEquipment() != null && quantity != null) {
+            Long equipmentId = saved.getEquipment().getId();
+            LocalDateTime producedAt = LocalDateTime.now();
+            Runnable record = () -> streamingOeeService.recordProduction(equipmentId, quantity - previous, producedAt);
+            // Inside a caller's transaction (e.g. queued ingestion) only count production that commits
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        record.run();
+                    }
+                });
+            } else {
+                record.run();
+            }
+        }
+        return saved;
+    }
+
+    private ProductionOrder saveAndCache(ProductionOrder order) {
+        ProductionOrder saved = productionOrderRepository.save(order);
+        // A rolled-back caller transaction must not leave the order in the cache
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    equipmentStateCache.putOrder(saved);
+                }
+            });
+        } else {
+            equipmentStateCache.putOrder(saved);
+        }
+        return saved;
     }
 }
@@ -1,6 +1,7 @@
 package com.mes.service;
 
 import com.mes.model.QualityCheck;
+import com.mes.repository.ProductionOrderRepository;
 import com.mes.repository.QualityCheckRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -12,11 +13,23 @@ public class QualityCheckService {
     @Autowired
     private QualityCheckRepository qualityCheckRepository;
 
+    @Autowired
+    private ProductionOrderRepository productionOrderRepository;
+
+    @Autowired
+    private StreamingOeeService streamingOeeService;
+
     public List<QualityCheck> getChecksByOrderId(Long orderId) {
         return qualityCheckRepository.findByProductionOrderId(orderId);
     }
 
     public QualityCheck recordCheck(QualityCheck check) {
-        return qualityCheckRepository.save(check);
+        QualityCheck saved = qualityCheckRepository.save(check);
+        if (saved.getProductionOrder() != null && saved.getProductionOrder().getId() != null) {
+            productionOrderRepository.findById(saved.getProductionOrder().getId())
+                    .filter(order -> order.getEquipment() != null)
+                    .ifPresent(order -> streamingOeeService.recordQualityCheck(order.getEquipment().getId(), saved));
+        }
+        return saved;
     }
 }
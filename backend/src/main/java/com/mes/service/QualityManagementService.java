@@ -1,8 +1,10 @@
 package com.mes.service;
 
+import com.mes.dto.KeysetPage;
 import com.mes.model.*;
 import com.mes.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
@@ -152,6 +154,18 @@ public class QualityManagementService {
         return defectRecordRepository.findAll();
     }
 
+    /**
+     * Keyset-paginated defects, newest first, detected in [from, to). Filters are optional.
+     */
+    public KeysetPage<DefectRecord> getDefectPage(LocalDateTime from, LocalDateTime to, String status, Long equipmentId,
+                                                  Long orderId, Long categoryId, String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        Object[] position = KeysetPage.startAfter(cursor, to);
+        List<DefectRecord> items = defectRecordRepository.findPage((LocalDateTime) position[0], (Long) position[1],
+                KeysetPage.since(from), status, equipmentId, orderId, categoryId, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, DefectRecord::getDetectedAt, DefectRecord::getId);
+    }
+
     public DefectRecord getDefectById(Long id) {
         return defectRecordRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Defect record not found"));
@@ -0,0 +1,268 @@
+package com.mes.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request admission for this node.
+ *
+ * Token buckets limit each API key (per minute and per hour, as set on the key) and each
+ * ingest source system. Independently of the buckets, requests are shed by priority class
+ * when too many are in flight: reports and analytics go first, then dashboards and the rest
+ * of the API, and telemetry ingest only once the node is completely full.
+ */
+@Service
+public class RateLimiter {
+
+    public enum Priority { CRITICAL, NORMAL, LOW }
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long HOUR_NANOS = TimeUnit.HOURS.toNanos(1);
+    // A flood of new sources while the map is full sweeps inline at most this often
+    private static final long INLINE_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${mes.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mes.ratelimit.source.per-minute:600}")
+    private int sourcePerMinute;
+
+    @Value("${mes.ratelimit.source.max-tracked:10000}")
+    private int maxTrackedSources;
+
+    @Value("${mes.ratelimit.shed.max-concurrent:180}")
+    private int maxConcurrent;
+
+    @Value("${mes.ratelimit.shed.normal-percent:85}")
+    private int normalPercent;
+
+    @Value("${mes.ratelimit.shed.low-percent:60}")
+    private int lowPercent;
+
+    @Value("${mes.ratelimit.shed.retry-after-seconds:2}")
+    private long shedRetryAfterSeconds;
+
+    @Value("${mes.ratelimit.shed.critical-paths:/api/data-ingestion/ingest,/api/equipment-logs,/api/equipment-logs/bulk,/api/auth/**}")
+    private String[] criticalPaths;
+
+    @Value("${mes.ratelimit.shed.low-paths:/api/reports/**,/api/analytics/**,/api/compliance/**,/api/audit/**,/api/change-history/**,/api/user-activity/**}")
+    private String[] lowPaths;
+
+    private final Map<Long, KeyBuckets> keyBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> sourceBuckets = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastInlineSweepNanos = new AtomicLong(System.nanoTime() - INLINE_SWEEP_INTERVAL_NANOS);
+
+    private final LongAdder keyAllowed = new LongAdder();
+    private final LongAdder keyLimited = new LongAdder();
+    private final LongAdder sourceAllowed = new LongAdder();
+    private final LongAdder sourceLimited = new LongAdder();
+    private final Map<Priority, LongAdder> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, LongAdder> shed = new EnumMap<>(Priority.class);
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public RateLimiter() {
+        for (Priority priority : Priority.values()) {
+            admitted.put(priority, new LongAdder());
+            shed.put(priority, new LongAdder());
+        }
+    }
+
+    // ===== Token buckets =====
+
+    /**
+     * Take a token for an API key. Returns 0 when allowed, otherwise the seconds to wait.
+     * Keys without limits are not limited.
+     */
+    public long tryAcquireKey(Long keyId, Integer perMinute, Integer perHour) {
+        if (!enabled || keyId == null) {
+            return 0;
+        }
+        KeyBuckets buckets = keyBuckets.computeIfAbsent(keyId, id -> new KeyBuckets(perMinute, perHour));
+        if (!buckets.matches(perMinute, perHour)) {
+            // The key's limits were changed; concurrent requests all end up on the one replacement
+            buckets = keyBuckets.compute(keyId, (id, current) -> current != null && current.matches(perMinute, perHour)
+                    ? current : new KeyBuckets(perMinute, perHour));
+        }
+        long waitNanos = buckets.tryAcquire();
+        if (waitNanos > 0) {
+            keyLimited.increment();
+            return toRetryAfterSeconds(waitNanos);
+        }
+        keyAllowed.increment();
+        return 0;
+    }
+
+    /**
+     * Take a token for an ingest source system. Returns 0 when allowed, otherwise the seconds to wait.
+     */
+    public long tryAcquireSource(String sourceSystem) {
+        if (!enabled || sourceSystem == null || sourcePerMinute <= 0) {
+            return 0;
+        }
+        TokenBucket bucket = sourceBuckets.get(sourceSystem);
+        if (bucket == null) {
+            if (sourceBuckets.size() >= maxTrackedSources) {
+                sweepSourcesIfDue();
+            }
+            bucket = sourceBuckets.computeIfAbsent(sourceSystem, s -> new TokenBucket(sourcePerMinute, MINUTE_NANOS));
+        }
+        long waitNanos = bucket.tryAcquire();
+        if (waitNanos > 0) {
+            sourceLimited.increment();
+            return toRetryAfterSeconds(waitNanos);
+        }
+        sourceAllowed.increment();
+        return 0;
+    }
+
+    // Full buckets hold no state worth keeping
+    @Scheduled(fixedDelayString = "${mes.ratelimit.sweep-interval-ms:300000}")
+    public void sweepIdleBuckets() {
+        sourceBuckets.values().removeIf(TokenBucket::isFull);
+        keyBuckets.values().removeIf(KeyBuckets::isFull);
+    }
+
+    // The sweep is O(n); when nothing is idle, re-running it for every new source only burns CPU
+    private void sweepSourcesIfDue() {
+        long now = System.nanoTime();
+        long last = lastInlineSweepNanos.get();
+        if (now - last >= INLINE_SWEEP_INTERVAL_NANOS && lastInlineSweepNanos.compareAndSet(last, now)) {
+            sourceBuckets.values().removeIf(TokenBucket::isFull);
+        }
+    }
+
+    // ===== Load shedding =====
+
+    public Priority classify(String path) {
+        for (String pattern : criticalPaths) {
+            if (PATH_MATCHER.match(pattern.trim(), path)) {
+                return Priority.CRITICAL;
+            }
+        }
+        for (String pattern : lowPaths) {
+            if (PATH_MATCHER.match(pattern.trim(), path)) {
+                return Priority.LOW;
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Admit a request of the given class. Every admitted request must be paired with {@link #release()}.
+     */
+    public boolean tryAdmit(Priority priority) {
+        if (!enabled) {
+            return true;
+        }
+        int current = inFlight.incrementAndGet();
+        if (current > limitFor(priority)) {
+            inFlight.decrementAndGet();
+            shed.get(priority).increment();
+            return false;
+        }
+        admitted.get(priority).increment();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        return true;
+    }
+
+    public void release() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public long getShedRetryAfterSeconds() {
+        return shedRetryAfterSeconds;
+    }
+
+    private int limitFor(Priority priority) {
+        switch (priority) {
+            case CRITICAL: return maxConcurrent;
+            case NORMAL: return Math.max(1, maxConcurrent * normalPercent / 100);
+            default: return Math.max(1, maxConcurrent * lowPercent / 100);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> buckets = new LinkedHashMap<>();
+        buckets.put("trackedKeys", keyBuckets.size());
+        buckets.put("keyAllowed", keyAllowed.sum());
+        buckets.put("keyLimited", keyLimited.sum());
+        buckets.put("trackedSources", sourceBuckets.size());
+        buckets.put("sourcePerMinute", sourcePerMinute);
+        buckets.put("sourceAllowed", sourceAllowed.sum());
+        buckets.put("sourceLimited", sourceLimited.sum());
+
+        Map<String, Object> shedding = new LinkedHashMap<>();
+        shedding.put("inFlight", inFlight.get());
+        shedding.put("peakInFlight", peakInFlight.get());
+        shedding.put("maxConcurrent", maxConcurrent);
+        Map<String, Object> classes = new LinkedHashMap<>();
+        for (Priority priority : Priority.values()) {
+            Map<String, Object> perClass = new LinkedHashMap<>();
+            perClass.put("limit", limitFor(priority));
+            perClass.put("admitted", admitted.get(priority).sum());
+            perClass.put("shed", shed.get(priority).sum());
+            classes.put(priority.name(), perClass);
+        }
+        shedding.put("classes", classes);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("buckets", buckets);
+        stats.put("shedding", shedding);
+        return stats;
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private static class KeyBuckets {
+        private final Integer perMinute;
+        private final Integer perHour;
+        private final TokenBucket minute;
+        private final TokenBucket hour;
+
+        private KeyBuckets(Integer perMinute, Integer perHour) {
+            this.perMinute = perMinute;
+            this.perHour = perHour;
+            this.minute = perMinute != null && perMinute > 0 ? new TokenBucket(perMinute, MINUTE_NANOS) : null;
+            this.hour = perHour != null && perHour > 0 ? new TokenBucket(perHour, HOUR_NANOS) : null;
+        }
+
+        private boolean matches(Integer perMinute, Integer perHour) {
+            return Objects.equals(this.perMinute, perMinute) && Objects.equals(this.perHour, perHour);
+        }
+
+        // A request the minute bucket rejects gets its hourly token back, so short bursts
+        // cannot drain the hourly quota
+        private long tryAcquire() {
+            if (hour != null) {
+                long wait = hour.tryAcquire();
+                if (wait > 0) {
+                    return wait;
+                }
+            }
+            long wait = minute != null ? minute.tryAcquire() : 0;
+            if (wait > 0 && hour != null) {
+                hour.refund();
+            }
+            return wait;
+        }
+
+        private boolean isFull() {
+            return (minute == null || minute.isFull()) && (hour == null || hour.isFull());
+        }
+    }
+}
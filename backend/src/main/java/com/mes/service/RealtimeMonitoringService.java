@@ -1,17 +1,16 @@
 package com.mes.service;
 
-import com.mes.dto.AlertNotification;
 import com.mes.dto.EquipmentStatusUpdate;
 import com.mes.dto.ProductionMetricsUpdate;
 import com.mes.model.Equipment;
 import com.mes.model.EquipmentStatus;
 import com.mes.model.ProductionOrder;
-import com.mes.repository.EquipmentRepository;
-import com.mes.repository.ProductionOrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -22,65 +21,68 @@ public class RealtimeMonitoringService {
     private WebSocketService webSocketService;
 
     @Autowired
-    private EquipmentRepository equipmentRepository;
+    private EquipmentStateCache equipmentStateCache;
 
-    @Autowired
-    private ProductionOrderRepository productionOrderRepository;
-
-    @Autowired
-    private AlertService alertService;
+    // With a shared broker exactly one node should publish, or clients receive every update once per node
+    @Value("${mes.realtime.publisher.enabled:true}")
+    private boolean publisherEnabled;
 
     private Random random = new Random();
 
     // Simulate equipment status updates every 5 seconds
     @Scheduled(fixedRate = 5000)
     public void broadcastEquipmentStatus() {
-        List<Equipment> equipmentList = equipmentRepository.findAll();
+        if (!publisherEnabled) {
+            return;
+        }
+        List<Equipment> equipmentList = equipmentStateCache.getAllEquipment();
+        List<EquipmentStatusUpdate> updates = new ArrayList<>(equipmentList.size());
         
         for (Equipment equipment : equipmentList) {
             EquipmentStatusUpdate update = new EquipmentStatusUpdate(
                 equipment.getId(),
                 equipment.getName(),
+                equipment.getLocation(),
                 equipment.getStatus().name(),
                 generateTemperature(equipment.getStatus()),
                 generateVibration(equipment.getStatus()),
                 generateOutputCount(equipment.getStatus()),
                 LocalDateTime.now()
             );
-            
-            webSocketService.sendEquipmentStatusUpdate(update);
-            
-            // Check for alerts
-            checkForAlerts(equipment, update);
+            // Simulated readings are only broadcast; alert rules see stored telemetry only
+            updates.add(update);
         }
+
+        webSocketService.sendEquipmentStatusUpdates(updates);
     }
 
     // Simulate production metrics updates every 10 seconds
     @Scheduled(fixedRate = 10000)
     public void broadcastProductionMetrics() {
-        List<ProductionOrder> orders = productionOrderRepository.findAll();
+        if (!publisherEnabled) {
+            return;
+        }
+        List<ProductionOrder> orders = equipmentStateCache.getActiveOrders();
         
         for (ProductionOrder order : orders) {
-            if (order.getStatus().name().equals("IN_PROGRESS")) {
-                // Simulate production progress
-                int currentProduced = order.getProducedQuantity() != null ? order.getProducedQuantity() : 0;
-                int target = order.getTargetQuantity();
+            // Simulate production progress
+            int currentProduced = order.getProducedQuantity() != null ? order.getProducedQuantity() : 0;
+            int target = order.getTargetQuantity();
+            
+            if (currentProduced < target) {
+                int increment = random.nextInt(5) + 1;
+                int newProduced = Math.min(currentProduced + increment, target);
+                
+                ProductionMetricsUpdate update = new ProductionMetricsUpdate(
+                    order.getId(),
+                    order.getOrderNumber(),
+                    newProduced,
+                    target,
+                    (double) newProduced / target * 100,
+                    order.getStatus().name()
+                );
                 
-                if (currentProduced < target) {
-                    int increment = random.nextInt(5) + 1;
-                    int newProduced = Math.min(currentProduced + increment, target);
-                    
-                    ProductionMetricsUpdate update = new ProductionMetricsUpdate(
-                        order.getId(),
-                        order.getOrderNumber(),
-                        newProduced,
-                        target,
-                        (double) newProduced / target * 100,
-                        order.getStatus().name()
-                    );
-                    
-                    webSocketService.sendProductionMetricsUpdate(update);
-                }
+                webSocketService.sendProductionMetricsUpdate(update);
             }
         }
     }
@@ -88,55 +90,15 @@ public class RealtimeMonitoringService {
     // Broadcast dashboard updates every 15 seconds
     @Scheduled(fixedRate = 15000)
     public void broadcastDashboardUpdate() {
+        if (!publisherEnabled) {
+            return;
+        }
         webSocketService.sendDashboardUpdate(new Object() {
             public final String type = "refresh";
             public final LocalDateTime timestamp = LocalDateTime.now();
         });
     }
 
-    private void checkForAlerts(Equipment equipment, EquipmentStatusUpdate update) {
-        // Check temperature threshold
-        if (update.getTemperature() != null && update.getTemperature() > 85.0) {
-            AlertNotification alert = new AlertNotification(
-                "WARNING",
-                "High Temperature Alert",
-                String.format("Equipment %s temperature is %.1f°C (threshold: 85°C)", 
-                    equipment.getName(), update.getTemperature()),
-                equipment.getId(),
-                equipment.getName(),
-                LocalDateTime.now()
-            );
-            alertService.createAlert(alert);
-        }
-
-        // Check vibration threshold
-        if (update.getVibration() != null && update.getVibration() > 8.0) {
-            AlertNotification alert = new AlertNotification(
-                "WARNING",
-                "High Vibration Alert",
-                String.format("Equipment %s vibration is %.1f mm/s (threshold: 8.0 mm/s)", 
-                    equipment.getName(), update.getVibration()),
-                equipment.getId(),
-                equipment.getName(),
-                LocalDateTime.now()
-            );
-            alertService.createAlert(alert);
-        }
-
-        // Check equipment down status
-        if (equipment.getStatus() == EquipmentStatus.DOWN) {
-            AlertNotification alert = new AlertNotification(
-                "ERROR",
-                "Equipment Down",
-                String.format("Equipment %s is currently down", equipment.getName()),
-                equipment.getId(),
-                equipment.getName(),
-                LocalDateTime.now()
-            );
-            alertService.createAlert(alert);
-        }
-    }
-
     private Double generateTemperature(EquipmentStatus status) {
         switch (status) {
             case RUNNING:
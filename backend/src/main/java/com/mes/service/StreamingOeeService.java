@@ -0,0 +1,648 @@
+package com.mes.service;
+
+import com.mes.model.*;
+import com.mes.repository.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental OEE engine.
+ *
+ * Downtime, production and quality events recorded on this node are added to per-equipment,
+ * per-minute accumulators as they happen, and to a pending delta per checkpoint interval.
+ * Each checkpoint merges the pending deltas into the shared oee_calculation rows (calculation
+ * type STREAMING, or STREAMING_OPEN for the interval in progress) by adding them to what is
+ * stored, under a Postgres advisory lock, so several nodes can checkpoint without overwriting
+ * each other and the table stays the source of truth. The node then reloads the rows changed
+ * since its previous checkpoint, which brings in what the other nodes recorded; a reloaded row
+ * is spread evenly over the minutes of its interval.
+ *
+ * Once rows written by another node show up, windows ending after the point up to which every
+ * node has merged are not answered from memory (see covers()). Deltas still pending when a
+ * node crashes are lost; a normal shutdown merges them.
+ */
+@Service
+public class StreamingOeeService {
+
+    public static final String CALCULATION_TYPE = "STREAMING";
+    // The interval still in progress; promoted to STREAMING once closed
+    public static final String OPEN_CALCULATION_TYPE = "STREAMING_OPEN";
+
+    private static final double DEFAULT_IDEAL_CYCLE_SECONDS = 60.0;
+    private static final String CHECKPOINT_LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('oee_stream_checkpoint'))";
+    // Other nodes count as active while their rows are this many checkpoint periods old or newer
+    private static final int OTHER_NODE_TIMEOUT_CHECKPOINTS = 5;
+
+    @Autowired
+    private OeeCalculationRepository oeeCalculationRepository;
+
+    @Autowired
+    private OeeTargetRepository oeeTargetRepository;
+
+    @Autowired
+    private EquipmentRepository equipmentRepository;
+
+    @Autowired
+    private DowntimeEventRepository downtimeEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${mes.oee.stream.retention-hours:48}")
+    private int retentionHours;
+
+    @Value("${mes.oee.stream.checkpoint-minutes:15}")
+    private int checkpointMinutes;
+
+    @Value("${mes.oee.stream.checkpoint-interval-ms:60000}")
+    private long checkpointIntervalMs;
+
+    private final Map<Long, OeeAccumulator> accumulators = new ConcurrentHashMap<>();
+    private final Map<Long, OpenDowntime> openDowntime = new ConcurrentHashMap<>();
+    // Deltas recorded here and not merged yet, per equipment and interval start; guarded by itself
+    private final Map<Long, Map<LocalDateTime, WindowTotals>> pending = new HashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private String nodeId;
+
+    // Earliest instant the accumulators can answer for
+    private volatile LocalDateTime coverageStart;
+    // Start of the oldest interval that gets a row for every equipment at the next checkpoint
+    private volatile LocalDateTime pendingCheckpointStart;
+    // When rows were last reloaded from the table
+    private volatile LocalDateTime lastReloadAt;
+    // When a row last written by another node was last merged into
+    private volatile LocalDateTime otherNodeSeenAt;
+
+    private volatile LocalDateTime lastCheckpointAt;
+    private volatile int lastCheckpointRows;
+
+    @PostConstruct
+    public void recover() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            nodeId = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            nodeId = "node";
+        }
+        LocalDateTime now = LocalDateTime.now();
+        coverageStart = now;
+        pendingCheckpointStart = intervalStart(now);
+        lastReloadAt = now;
+
+        try {
+            LocalDateTime since = now.minusHours(retentionHours);
+            List<OeeCalculation> checkpoints = new ArrayList<>(
+                    oeeCalculationRepository.findByTypeSince(CALCULATION_TYPE, since));
+            checkpoints.addAll(oeeCalculationRepository.findByTypeSince(OPEN_CALCULATION_TYPE, since));
+            for (OeeCalculation checkpoint : checkpoints) {
+                restore(checkpoint);
+                if (checkpoint.getCalculationPeriodStart().isBefore(coverageStart)) {
+                    coverageStart = checkpoint.getCalculationPeriodStart();
+                }
+            }
+            reloadOpenDowntime();
+        } catch (Exception e) {
+            System.err.println("Failed to recover OEE accumulators: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            System.err.println("Failed to write final OEE checkpoint: " + e.getMessage());
+        }
+    }
+
+    // ===== Event intake =====
+
+    public void recordDowntime(DowntimeEvent event) {
+        if (event.getEquipment() == null || event.getStartTime() == null) {
+            return;
+        }
+        Long equipmentId = event.getEquipment().getId();
+        if (event.getEndTime() == null) {
+            openDowntime.put(event.getId(), new OpenDowntime(equipmentId, event.getStartTime()));
+            return;
+        }
+        openDowntime.remove(event.getId());
+        accumulator(equipmentId).addDowntime(event.getStartTime(), event.getEndTime());
+
+        // Split over the checkpoint intervals the downtime covers
+        LocalDateTime floor = LocalDateTime.now().minusHours(retentionHours);
+        LocalDateTime from = event.getStartTime().isBefore(floor) ? floor : event.getStartTime();
+        while (from.isBefore(event.getEndTime())) {
+            LocalDateTime next = intervalStart(from).plusMinutes(checkpointMinutes);
+            LocalDateTime to = next.isBefore(event.getEndTime()) ? next : event.getEndTime();
+            WindowTotals delta = new WindowTotals();
+            delta.downSeconds = Duration.between(from, to).getSeconds();
+            addPending(equipmentId, from, delta);
+            from = to;
+        }
+    }
+
+    public void recordProduction(Long equipmentId, int delta, LocalDateTime at) {
+        if (equipmentId == null || delta == 0) {
+            return;
+        }
+        accumulator(equipmentId).addProduced(at, delta);
+        WindowTotals totals = new WindowTotals();
+        totals.produced = delta;
+        addPending(equipmentId, at, totals);
+    }
+
+    public void recordQualityCheck(Long equipmentId, QualityCheck check) {
+        LocalDateTime at = check.getCheckTime() != null ? check.getCheckTime() : LocalDateTime.now();
+        if (equipmentId == null) {
+            return;
+        }
+        int passed = check.getPassedCount() != null ? check.getPassedCount() : 0;
+        int rejected = check.getRejectedCount() != null ? check.getRejectedCount() : 0;
+        accumulator(equipmentId).addQuality(at, passed, rejected);
+        WindowTotals totals = new WindowTotals();
+        totals.good = passed;
+        totals.rejected = rejected;
+        addPending(equipmentId, at, totals);
+    }
+
+    // ===== Queries =====
+
+    /**
+     * Whether [start, end) can be answered from memory. With other nodes writing, only up to
+     * the point their events have been merged and reloaded here.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime floor = now.minusHours(retentionHours);
+        if (start.isBefore(coverageStart) || start.isBefore(floor) || !start.isBefore(end)) {
+            return false;
+        }
+        return !otherNodesActive(now) || !end.isAfter(mergedUntil());
+    }
+
+    /**
+     * OEE for an arbitrary window, computed from the accumulators. The result is not persisted.
+     */
+    public OeeCalculation calculate(Equipment equipment, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime effectiveEnd = end.isAfter(now) ? now : end;
+        WindowTotals totals = totals(equipment.getId(), start, effectiveEnd, now);
+        double plannedSeconds = Math.max(0, Duration.between(start, effectiveEnd).getSeconds());
+        return toCalculation(equipment, start, effectiveEnd, plannedSeconds, totals);
+    }
+
+    public Map<String, Object> getStats() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("trackedEquipment", accumulators.size());
+        stats.put("openDowntimeEvents", openDowntime.size());
+        synchronized (pending) {
+            stats.put("pendingIntervals", pending.values().stream().mapToInt(Map::size).sum());
+        }
+        stats.put("coverageStart", coverageStart);
+        stats.put("otherNodesActive", otherNodesActive(now));
+        stats.put("mergedUntil", mergedUntil());
+        stats.put("retentionHours", retentionHours);
+        stats.put("checkpointMinutes", checkpointMinutes);
+        stats.put("pendingCheckpointStart", pendingCheckpointStart);
+        stats.put("lastCheckpointAt", lastCheckpointAt);
+        stats.put("lastCheckpointRows", lastCheckpointRows);
+        return stats;
+    }
+
+    // ===== Checkpointing =====
+
+    /**
+     * Merge this node's pending deltas into the checkpoint rows, making sure every equipment
+     * has a row for each interval since the previous checkpoint, then reload the rows any node
+     * changed since. The interval in progress is kept as a STREAMING_OPEN row, which the OEE
+     * report queries ignore, until it closes.
+     */
+    @Scheduled(fixedDelayString = "${mes.oee.stream.checkpoint-interval-ms:60000}")
+    public synchronized void checkpoint() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime currentInterval = intervalStart(now);
+        Map<Long, Map<LocalDateTime, WindowTotals>> deltas = drainPending();
+        Integer rows;
+        try {
+            rows = transactionTemplate.execute(status -> merge(deltas, now, currentInterval));
+        } catch (RuntimeException e) {
+            // Nothing was merged; keep the deltas for the next attempt
+            returnPending(deltas);
+            throw e;
+        }
+
+        LocalDateTime reloadFrom = lastReloadAt.minus(Duration.ofMillis(checkpointIntervalMs));
+        lastReloadAt = LocalDateTime.now();
+        for (OeeCalculation checkpoint : oeeCalculationRepository.findByTypesChangedSince(
+                List.of(CALCULATION_TYPE, OPEN_CALCULATION_TYPE), reloadFrom, now.minusHours(retentionHours))) {
+            restore(checkpoint);
+        }
+        reloadOpenDowntime();
+
+        pendingCheckpointStart = currentInterval;
+        lastCheckpointAt = now;
+        lastCheckpointRows = rows != null ? rows : 0;
+        evictExpired(now);
+    }
+
+    // ===== Internals =====
+
+    private int merge(Map<Long, Map<LocalDateTime, WindowTotals>> deltas, LocalDateTime now,
+                      LocalDateTime currentInterval) {
+        // One node at a time, so every read-add-write below starts from the previous node's result
+        jdbcTemplate.queryForList(CHECKPOINT_LOCK_SQL);
+
+        int rows = 0;
+        for (Equipment equipment : equipmentRepository.findAll()) {
+            Map<LocalDateTime, WindowTotals> equipmentDeltas = deltas.getOrDefault(equipment.getId(), Map.of());
+            Set<LocalDateTime> intervals = new TreeSet<>(equipmentDeltas.keySet());
+            for (LocalDateTime intervalStart = pendingCheckpointStart; !intervalStart.isAfter(currentInterval);
+                 intervalStart = intervalStart.plusMinutes(checkpointMinutes)) {
+                intervals.add(intervalStart);
+            }
+            for (LocalDateTime intervalStart : intervals) {
+                mergeInterval(equipment, intervalStart, equipmentDeltas.get(intervalStart), now);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private void mergeInterval(Equipment equipment, LocalDateTime intervalStart, WindowTotals delta,
+                               LocalDateTime now) {
+        LocalDateTime intervalEnd = intervalStart.plusMinutes(checkpointMinutes);
+        LocalDateTime periodEnd = intervalEnd.isAfter(now) ? now : intervalEnd;
+        OeeCalculation existing = findCheckpoint(equipment.getId(), intervalStart);
+        WindowTotals totals = existing != null ? storedTotals(existing) : new WindowTotals();
+        if (delta != null) {
+            totals.add(delta);
+        }
+        if (existing != null && existing.getCalculatedAt() != null && !nodeId.equals(existing.getCalculatedBy())
+                && existing.getCalculatedAt().isAfter(now.minus(Duration.ofMillis(2 * checkpointIntervalMs)))) {
+            otherNodeSeenAt = now;
+        }
+
+        double plannedSeconds = Math.max(0, Duration.between(intervalStart, periodEnd).getSeconds());
+        OeeCalculation calculation = toCalculation(equipment, intervalStart, periodEnd, plannedSeconds, totals);
+        if (existing != null) {
+            calculation.setId(existing.getId());
+        }
+        calculation.setCalculatedAt(LocalDateTime.now());
+        applyTarget(calculation, equipment.getId());
+        calculation.setCalculationType(intervalEnd.isAfter(now) ? OPEN_CALCULATION_TYPE : CALCULATION_TYPE);
+        calculation.setCalculatedBy(nodeId);
+        oeeCalculationRepository.save(calculation);
+    }
+
+    private OeeCalculation findCheckpoint(Long equipmentId, LocalDateTime intervalStart) {
+        OeeCalculation existing = oeeCalculationRepository
+                .findFirstByEquipmentIdAndCalculationTypeAndCalculationPeriodStart(
+                        equipmentId, OPEN_CALCULATION_TYPE, intervalStart);
+        if (existing != null) {
+            return existing;
+        }
+        return oeeCalculationRepository.findFirstByEquipmentIdAndCalculationTypeAndCalculationPeriodStart(
+                equipmentId, CALCULATION_TYPE, intervalStart);
+    }
+
+    // Replace the interval's minutes with the stored row plus whatever this node has not merged yet
+    private void restore(OeeCalculation checkpoint) {
+        Long equipmentId = checkpoint.getEquipment().getId();
+        LocalDateTime intervalStart = checkpoint.getCalculationPeriodStart();
+        WindowTotals totals = storedTotals(checkpoint);
+        synchronized (pending) {
+            Map<LocalDateTime, WindowTotals> perInterval = pending.get(equipmentId);
+            WindowTotals unmerged = perInterval != null ? perInterval.get(intervalStart) : null;
+            if (unmerged != null) {
+                totals.add(unmerged);
+            }
+        }
+        accumulator(equipmentId).replace(intervalStart, intervalStart.plusMinutes(checkpointMinutes),
+                checkpoint.getCalculationPeriodEnd(), totals);
+    }
+
+    private static WindowTotals storedTotals(OeeCalculation checkpoint) {
+        WindowTotals totals = new WindowTotals();
+        if (checkpoint.getDowntime() != null) {
+            totals.downSeconds = checkpoint.getDowntime().doubleValue() * 60;
+        }
+        totals.produced = checkpoint.getTotalPiecesProduced() != null ? checkpoint.getTotalPiecesProduced() : 0;
+        int rejectedPieces = checkpoint.getRejectedPieces() != null ? checkpoint.getRejectedPieces() : 0;
+        // Windows without inspections store produced as good; only count real inspections
+        if (rejectedPieces > 0 || !Objects.equals(checkpoint.getGoodPieces(), checkpoint.getTotalPiecesProduced())) {
+            totals.good = checkpoint.getGoodPieces() != null ? checkpoint.getGoodPieces() : 0;
+            totals.rejected = rejectedPieces;
+        }
+        return totals;
+    }
+
+    // Open downtime from every node; events closed elsewhere drop out here
+    private void reloadOpenDowntime() {
+        Map<Long, OpenDowntime> current = new HashMap<>();
+        for (DowntimeEvent event : downtimeEventRepository.findByEndTimeIsNull()) {
+            if (event.getEquipment() != null) {
+                current.put(event.getId(), new OpenDowntime(event.getEquipment().getId(), event.getStartTime()));
+            }
+        }
+        openDowntime.keySet().retainAll(current.keySet());
+        openDowntime.putAll(current);
+    }
+
+    private void addPending(Long equipmentId, LocalDateTime at, WindowTotals delta) {
+        if (at.isBefore(LocalDateTime.now().minusHours(retentionHours))) {
+            return;
+        }
+        synchronized (pending) {
+            pending.computeIfAbsent(equipmentId, id -> new HashMap<>())
+                    .computeIfAbsent(intervalStart(at), interval -> new WindowTotals())
+                    .add(delta);
+        }
+    }
+
+    private Map<Long, Map<LocalDateTime, WindowTotals>> drainPending() {
+        synchronized (pending) {
+            Map<Long, Map<LocalDateTime, WindowTotals>> drained = new HashMap<>(pending);
+            pending.clear();
+            return drained;
+        }
+    }
+
+    private void returnPending(Map<Long, Map<LocalDateTime, WindowTotals>> deltas) {
+        synchronized (pending) {
+            deltas.forEach((equipmentId, perInterval) -> perInterval.forEach((interval, delta) ->
+                    pending.computeIfAbsent(equipmentId, id -> new HashMap<>())
+                            .computeIfAbsent(interval, i -> new WindowTotals())
+                            .add(delta)));
+        }
+    }
+
+    private boolean otherNodesActive(LocalDateTime now) {
+        LocalDateTime seen = otherNodeSeenAt;
+        return seen != null
+                && seen.isAfter(now.minus(Duration.ofMillis(OTHER_NODE_TIMEOUT_CHECKPOINTS * checkpointIntervalMs)));
+    }
+
+    // Every node has merged its events up to about one checkpoint period before the last reload
+    private LocalDateTime mergedUntil() {
+        return lastReloadAt.minus(Duration.ofMillis(checkpointIntervalMs));
+    }
+
+    private WindowTotals totals(Long equipmentId, LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        OeeAccumulator accumulator = accumulators.get(equipmentId);
+        WindowTotals totals = accumulator != null ? accumulator.sum(start, end) : new WindowTotals();
+
+        // Open downtime is not in the buckets yet; count its overlap with the window up to now
+        LocalDateTime to = end.isAfter(now) ? now : end;
+        for (OpenDowntime open : openDowntime.values()) {
+            if (!open.equipmentId.equals(equipmentId)) {
+                continue;
+            }
+            LocalDateTime overlapStart = open.start.isAfter(start) ? open.start : start;
+            if (overlapStart.isBefore(to)) {
+                totals.downSeconds += Duration.between(overlapStart, to).getSeconds();
+            }
+        }
+        return totals;
+    }
+
+    private OeeCalculation toCalculation(Equipment equipment, LocalDateTime start, LocalDateTime end,
+                                         double plannedSeconds, WindowTotals totals) {
+        double downSeconds = Math.min(totals.downSeconds, plannedSeconds);
+        double operatingSeconds = plannedSeconds - downSeconds;
+        double idealCycleSeconds = equipment.getIdealCycleTime() != null && equipment.getIdealCycleTime().signum() > 0
+                ? equipment.getIdealCycleTime().doubleValue()
+                : DEFAULT_IDEAL_CYCLE_SECONDS;
+        int idealQuantity = (int) Math.floor(operatingSeconds / idealCycleSeconds);
+
+        double availability = plannedSeconds > 0 ? operatingSeconds / plannedSeconds * 100 : 0;
+        double performance = idealQuantity > 0 ? (double) totals.produced / idealQuantity * 100 : 0;
+        long inspected = totals.good + totals.rejected;
+        double quality = inspected > 0 ? (double) totals.good / inspected * 100 : 100;
+        // Cap performance at 100% for OEE calculation (can show >100% separately)
+        double oee = availability * Math.min(performance, 100) * quality / 10000;
+
+        OeeCalculation calculation = new OeeCalculation();
+        calculation.setEquipment(equipment);
+        calculation.setCalculationPeriodStart(start);
+        calculation.setCalculationPeriodEnd(end);
+        calculation.setPlannedProductionTime(minutes(plannedSeconds));
+        calculation.setDowntime(minutes(downSeconds));
+        calculation.setOperatingTime(minutes(operatingSeconds));
+        calculation.setAvailabilityPercentage(percentage(availability));
+        calculation.setIdealCycleTime(BigDecimal.valueOf(idealCycleSeconds));
+        calculation.setTotalPiecesProduced((int) totals.produced);
+        calculation.setIdealProductionQuantity(idealQuantity);
+        calculation.setPerformancePercentage(percentage(Math.min(performance, 999.99)));
+        calculation.setGoodPieces(inspected > 0 ? (int) totals.good : (int) totals.produced);
+        calculation.setRejectedPieces((int) totals.rejected);
+        calculation.setQualityPercentage(percentage(quality));
+        calculation.setOeePercentage(percentage(oee));
+        calculation.setCalculationType("REAL_TIME");
+        return calculation;
+    }
+
+    private void applyTarget(OeeCalculation calculation, Long equipmentId) {
+        Optional<OeeTarget> target = oeeTargetRepository.findActiveTargetForEquipment(equipmentId, LocalDate.now());
+        BigDecimal targetOee = target.map(OeeTarget::getTargetOee).orElse(null);
+        calculation.setTargetOeePercentage(targetOee);
+        calculation.setVarianceFromTarget(targetOee != null ? calculation.getOeePercentage().subtract(targetOee) : null);
+    }
+
+    private void evictExpired(LocalDateTime now) {
+        LocalDateTime floor = now.minusHours(retentionHours);
+        if (coverageStart.isBefore(floor)) {
+            coverageStart = floor;
+        }
+    }
+
+    private OeeAccumulator accumulator(Long equipmentId) {
+        return accumulators.computeIfAbsent(equipmentId, id -> new OeeAccumulator(retentionHours * 60));
+    }
+
+    private LocalDateTime intervalStart(LocalDateTime time) {
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        long minutes = ChronoUnit.MINUTES.between(hour, time);
+        return hour.plusMinutes(minutes - minutes % checkpointMinutes);
+    }
+
+    private static BigDecimal minutes(double seconds) {
+        return BigDecimal.valueOf(seconds / 60.0).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal percentage(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Minute index on the local clock; only ever compared with other LocalDateTime values
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static class OpenDowntime {
+        private final Long equipmentId;
+        private final LocalDateTime start;
+
+        private OpenDowntime(Long equipmentId, LocalDateTime start) {
+            this.equipmentId = equipmentId;
+            this.start = start;
+        }
+    }
+
+    private static class WindowTotals {
+        private double downSeconds;
+        private long produced;
+        private long good;
+        private long rejected;
+
+        private void add(WindowTotals other) {
+            downSeconds += other.downSeconds;
+            produced += other.produced;
+            good += other.good;
+            rejected += other.rejected;
+        }
+    }
+
+    /**
+     * Ring of per-minute buckets. A slot is reused once its minute falls out of retention,
+     * so every update is O(1) and memory is fixed per equipment.
+     */
+    private static class OeeAccumulator {
+        private final int capacity;
+        private final long[] minute;
+        private final double[] downSeconds;
+        private final long[] produced;
+        private final long[] good;
+        private final long[] rejected;
+
+        private OeeAccumulator(int capacity) {
+            this.capacity = capacity;
+            this.minute = new long[capacity];
+            this.downSeconds = new double[capacity];
+            this.produced = new long[capacity];
+            this.good = new long[capacity];
+            this.rejected = new long[capacity];
+            Arrays.fill(minute, Long.MIN_VALUE);
+        }
+
+        synchronized void addProduced(LocalDateTime at, int delta) {
+            int slot = slot(epochMinute(at));
+            if (slot >= 0) {
+                produced[slot] += delta;
+            }
+        }
+
+        synchronized void addQuality(LocalDateTime at, int passed, int failed) {
+            int slot = slot(epochMinute(at));
+            if (slot >= 0) {
+                good[slot] += passed;
+                rejected[slot] += failed;
+            }
+        }
+
+        // Spread [start, end) over the minutes it covers
+        synchronized void addDowntime(LocalDateTime start, LocalDateTime end) {
+            if (!start.isBefore(end)) {
+                return;
+            }
+            long fromSecond = start.toEpochSecond(ZoneOffset.UTC);
+            long endSecond = end.toEpochSecond(ZoneOffset.UTC);
+            long newest = epochMinute(LocalDateTime.now());
+            // Minutes older than the ring can hold are dropped
+            fromSecond = Math.max(fromSecond, (newest - capacity + 1) * 60);
+            while (fromSecond < endSecond) {
+                long m = fromSecond / 60;
+                long next = Math.min(endSecond, (m + 1) * 60);
+                int slot = slot(m);
+                if (slot >= 0) {
+                    downSeconds[slot] += next - fromSecond;
+                }
+                fromSecond = next;
+            }
+        }
+
+        // Replace the minutes of [start, end) with totals spread evenly over [start, spreadEnd)
+        synchronized void replace(LocalDateTime start, LocalDateTime end, LocalDateTime spreadEnd, WindowTotals totals) {
+            long first = epochMinute(start);
+            long last = epochMinute(end);
+            long spreadLast = Math.max(first + 1, Math.min(last, epochMinute(spreadEnd.minusNanos(1)) + 1));
+            long parts = spreadLast - first;
+            for (long m = first; m < last; m++) {
+                int slot = slot(m);
+                if (slot < 0) {
+                    continue;
+                }
+                long index = m - first;
+                boolean spread = m < spreadLast;
+                downSeconds[slot] = spread ? totals.downSeconds / parts : 0;
+                produced[slot] = spread ? share(totals.produced, parts, index) : 0;
+                good[slot] = spread ? share(totals.good, parts, index) : 0;
+                rejected[slot] = spread ? share(totals.rejected, parts, index) : 0;
+            }
+        }
+
+        synchronized WindowTotals sum(LocalDateTime start, LocalDateTime end) {
+            WindowTotals totals = new WindowTotals();
+            long first = epochMinute(start);
+            long last = epochMinute(end.minusNanos(1));
+            long newest = epochMinute(LocalDateTime.now());
+            first = Math.max(first, newest - capacity + 1);
+            for (long m = first; m <= last; m++) {
+                int slot = (int) Math.floorMod(m, (long) capacity);
+                if (minute[slot] != m) {
+                    continue;
+                }
+                totals.downSeconds += downSeconds[slot];
+                totals.produced += produced[slot];
+                totals.good += good[slot];
+                totals.rejected += rejected[slot];
+            }
+            return totals;
+        }
+
+        // Even split of a count; the first (total mod parts) minutes get one more
+        private static long share(long total, long parts, long index) {
+            return Math.floorDiv(total, parts) + (index < Math.floorMod(total, parts) ? 1 : 0);
+        }
+
+        // Slot for a minute, clearing it if it still holds an older minute; -1 if out of range
+        private int slot(long m) {
+            long newest = epochMinute(LocalDateTime.now());
+            if (m <= newest - capacity || m > newest + 1) {
+                return -1;
+            }
+            int slot = (int) Math.floorMod(m, (long) capacity);
+            if (minute[slot] != m) {
+                minute[slot] = m;
+                downSeconds[slot] = 0;
+                produced[slot] = 0;
+                good[slot] = 0;
+                rejected[slot] = 0;
+            }
+            return slot;
+        }
+    }
+}
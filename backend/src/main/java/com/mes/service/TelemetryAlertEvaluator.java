@@ -0,0 +1,112 @@
+package com.mes.service;
+
+import com.mes.model.EquipmentStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs alert rule evaluation for committed telemetry off the ingest threads.
+ *
+ * Each equipment is pinned to one single-threaded lane, so its readings are evaluated in
+ * the order they were recorded and its alert tracks see a consistent sequence. AlertService
+ * writes every raise, escalation and resolution in its own transaction. A reading that does
+ * not fit its lane's queue is dropped and counted rather than blocking ingest.
+ */
+@Service
+public class TelemetryAlertEvaluator {
+
+    @Autowired
+    private AlertService alertService;
+
+    @Value("${mes.alerts.evaluation.threads:2}")
+    private int threads;
+
+    // Readings waiting per lane
+    @Value("${mes.alerts.evaluation.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor[] lanes;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        lanes = new ThreadPoolExecutor[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "alert-eval-" + (i + 1);
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                lane.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue one committed reading for evaluation against the alert rules.
+     */
+    public void submit(Long equipmentId, String equipmentName, EquipmentStatus status, Double temperature,
+                       Double vibration, Integer outputCount, LocalDateTime timestamp) {
+        if (equipmentId == null) {
+            return;
+        }
+        try {
+            lanes[Math.floorMod(equipmentId.hashCode(), lanes.length)].execute(() -> {
+                try {
+                    alertService.evaluateTelemetry(equipmentId, equipmentName, status, temperature, vibration,
+                            outputCount, timestamp);
+                    evaluated.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                    System.err.println("Failed to evaluate alert rules for equipment " + equipmentId + ": "
+                            + e.getMessage());
+                }
+            });
+            submitted.increment();
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lanes", lanes.length);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", queued);
+        stats.put("submitted", submitted.sum());
+        stats.put("evaluated", evaluated.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+}
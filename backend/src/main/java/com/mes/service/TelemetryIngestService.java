@@ -0,0 +1,260 @@
+package com.mes.service;
+
+import com.mes.dto.IngestResult;
+import com.mes.dto.TelemetrySample;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk telemetry ingest for equipment_log.
+ *
+ * Samples are accepted into a bounded in-memory buffer and written by a single
+ * background flusher using multi-row INSERT statements, so the request path never
+ * waits on Postgres. Buffer space for all valid samples of a request is reserved up
+ * front, so a request is either buffered completely or, when the buffer is full, not at
+ * all; the caller backs off and resends the whole batch without creating duplicates.
+ * Invalid samples are rejected by their index in the request.
+ */
+@Service
+public class TelemetryIngestService {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO equipment_log (equipment_id, status, output_count, temperature, vibration, timestamp) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 6;
+    // Keeps each statement well below the 32767 bind parameter limit of the Postgres protocol
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TelemetryLastValueCache lastValueCache;
+
+    @Value("${mes.telemetry.ingest.buffer-capacity:50000}")
+    private int bufferCapacity;
+
+    @Value("${mes.telemetry.ingest.flush-size:1000}")
+    private int flushSize;
+
+    @Value("${mes.telemetry.ingest.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<TelemetrySample> buffer;
+    // One permit per free buffer slot; taken before samples are offered, returned once they are written
+    private Semaphore freeSlots;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder flushedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile LocalDateTime lastFlushAt;
+    private volatile int lastFlushRows;
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        freeSlots = new Semaphore(bufferCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "telemetry-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Largest number of samples a single request can have buffered.
+     */
+    public int getMaxBatchSize() {
+        return bufferCapacity;
+    }
+
+    public IngestResult ingest(List<TelemetrySample> samples) {
+        List<TelemetrySample> valid = new ArrayList<>(samples.size());
+        List<Integer> rejectedIndexes = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i++) {
+            TelemetrySample sample = samples.get(i);
+            if (sample == null || sample.getEquipmentId() == null) {
+                rejectedIndexes.add(i);
+                continue;
+            }
+            if (sample.getTimestamp() == null) {
+                sample.setTimestamp(LocalDateTime.now());
+            }
+            valid.add(sample);
+        }
+        rejectedCount.add(rejectedIndexes.size());
+
+        if (!freeSlots.tryAcquire(valid.size())) {
+            droppedCount.add(valid.size());
+            return new IngestResult(samples.size(), 0, rejectedIndexes.size(), valid.size(), rejectedIndexes);
+        }
+        // Cannot fail: the permits guarantee the space
+        buffer.addAll(valid);
+        acceptedCount.add(valid.size());
+        return new IngestResult(samples.size(), valid.size(), rejectedIndexes.size(), 0, rejectedIndexes);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", acceptedCount.sum());
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("dropped", droppedCount.sum());
+        stats.put("flushed", flushedCount.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("buffered", buffer.size());
+        stats.put("reserved", bufferCapacity - freeSlots.availablePermits());
+        stats.put("bufferCapacity", bufferCapacity);
+        stats.put("flushSize", flushSize);
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("flushes", flushes.get());
+        stats.put("lastFlushAt", lastFlushAt);
+        stats.put("lastFlushRows", lastFlushRows);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    private void flushLoop() {
+        List<TelemetrySample> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                TelemetrySample first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                writeBatch(batch);
+            } catch (Exception e) {
+                System.err.println("Telemetry flush failed: " + e.getMessage());
+            } finally {
+                freeSlots.release(batch.size());
+                batch.clear();
+            }
+        }
+
+        // Drain whatever is left so a graceful shutdown does not lose accepted samples
+        while (!buffer.isEmpty()) {
+            buffer.drainTo(batch, flushSize);
+            writeBatch(batch);
+            freeSlots.release(batch.size());
+            batch.clear();
+        }
+    }
+
+    // Wait for up to one flush interval for the batch to fill before writing it
+    private void fillBatch(List<TelemetrySample> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < flushSize) {
+            buffer.drainTo(batch, flushSize - batch.size());
+            if (batch.size() >= flushSize) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            TelemetrySample next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<TelemetrySample> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        int written = 0;
+
+        for (int from = 0; from < batch.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<TelemetrySample> chunk = batch.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, batch.size()));
+            try {
+                insertRows(chunk);
+                written += chunk.size();
+            } catch (Exception e) {
+                // One bad row (e.g. unknown equipment id) fails the whole statement, so isolate it
+                written += insertRowByRow(chunk);
+            }
+        }
+
+        flushedCount.add(written);
+        flushes.incrementAndGet();
+        lastFlushAt = LocalDateTime.now();
+        lastFlushRows = written;
+        lastFlushMillis = System.currentTimeMillis() - startTime;
+    }
+
+    private int insertRowByRow(List<TelemetrySample> chunk) {
+        int written = 0;
+        for (TelemetrySample sample : chunk) {
+            try {
+                insertRows(List.of(sample));
+                written++;
+            } catch (Exception e) {
+                failedCount.increment();
+                System.err.println("Failed to write telemetry sample for equipment " +
+                                   sample.getEquipmentId() + ": " + e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private void insertRows(List<TelemetrySample> rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (ROW_PLACEHOLDER.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[rows.size() * COLUMNS];
+
+        int i = 0;
+        for (TelemetrySample sample : rows) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+            args[i++] = sample.getEquipmentId();
+            args[i++] = sample.getStatus() != null ? sample.getStatus().name() : null;
+            args[i++] = sample.getOutputCount();
+            args[i++] = sample.getTemperature();
+            args[i++] = sample.getVibration();
+            args[i++] = Timestamp.valueOf(sample.getTimestamp());
+        }
+
+        jdbcTemplate.update(sql.toString(), args);
+        for (TelemetrySample sample : rows) {
+            lastValueCache.record(sample);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.mes.service;
+
+import com.mes.dto.TelemetrySample;
+import com.mes.model.Equipment;
+import com.mes.model.EquipmentLog;
+import com.mes.repository.EquipmentLogRepository;
+import com.mes.repository.EquipmentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Last-value store for equipment telemetry.
+ *
+ * Every equipment_log write path records here, so the latest reading and a short recent
+ * window per machine are served from memory. The latest reading is published through a
+ * volatile field and read without locking or allocation; the window is a small ring kept
+ * in timestamp order so late samples land in the right place. Cached logs are shared
+ * and must be treated as read-only. Each recorded reading is also queued for evaluation
+ * against the alert rules, unless it is older than the latest reading already cached: a late
+ * sample must not fire or clear an alert that a newer one decided.
+ *
+ * The cache is per node and only sees the readings this node stores. A periodic resync reloads
+ * the window of any machine with newer readings in the database, so with several replicas
+ * the cache trails the other nodes by up to the resync interval.
+ */
+@Service
+public class TelemetryLastValueCache {
+
+    @Autowired
+    private EquipmentLogRepository equipmentLogRepository;
+
+    @Autowired
+    private EquipmentRepository equipmentRepository;
+
+    @Autowired
+    private EquipmentStateCache equipmentStateCache;
+
+    @Autowired
+    private TelemetryAlertEvaluator telemetryAlertEvaluator;
+
+    @Value("${mes.telemetry.last-value.window-size:60}")
+    private int windowSize;
+
+    @Value("${mes.telemetry.last-value.resync-interval-ms:30000}")
+    private long resyncIntervalMs;
+
+    private final Map<Long, Series> series = new ConcurrentHashMap<>();
+    // Until the warm-up succeeds a missing entry does not mean "no telemetry"
+    private volatile boolean warmedUp;
+    private volatile LocalDateTime warmedUpAt;
+    private volatile LocalDateTime resyncedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder lateWrites = new LongAdder();
+    private final LongAdder resyncReloads = new LongAdder();
+
+    @PostConstruct
+    public void warmUp() {
+        try {
+            for (Equipment equipment : equipmentRepository.findAll()) {
+                loadFromDatabase(equipment.getId());
+            }
+            warmedUp = true;
+            warmedUpAt = LocalDateTime.now();
+        } catch (Exception e) {
+            System.err.println("Failed to warm telemetry last-value cache: " + e.getMessage());
+        }
+    }
+
+    // ===== Reads =====
+
+    public Optional<EquipmentLog> getLatest(Long equipmentId) {
+        Series s = series.get(equipmentId);
+        if (s != null) {
+            hits.increment();
+            return Optional.ofNullable(s.latest);
+        }
+        if (warmedUp) {
+            hits.increment();
+            return Optional.empty();
+        }
+        misses.increment();
+        s = loadFromDatabase(equipmentId);
+        return s != null ? Optional.ofNullable(s.latest) : Optional.empty();
+    }
+
+    /**
+     * Up to limit of the most recent readings, newest first.
+     */
+    public List<EquipmentLog> getRecent(Long equipmentId, int limit) {
+        Series s = series.get(equipmentId);
+        if (s == null && !warmedUp) {
+            misses.increment();
+            s = loadFromDatabase(equipmentId);
+        } else {
+            hits.increment();
+        }
+        return s != null ? s.newestFirst(limit) : List.of();
+    }
+
+    public List<EquipmentLog> getAllLatest() {
+        List<EquipmentLog> result = new ArrayList<>(series.size());
+        for (Series s : series.values()) {
+            EquipmentLog latest = s.latest;
+            if (latest != null) {
+                result.add(latest);
+            }
+        }
+        hits.add(result.size());
+        result.sort(Comparator.comparing(log -> log.getEquipment().getId()));
+        return result;
+    }
+
+    // ===== Writes =====
+
+    public void record(EquipmentLog log) {
+        if (log == null || log.getEquipment() == null || log.getEquipment().getId() == null
+                || log.getTimestamp() == null) {
+            return;
+        }
+        Long equipmentId = log.getEquipment().getId();
+        if (log.getEquipment().getName() == null) {
+            // Saved from a bare {"equipment": {"id": ...}} reference; cache a copy with the full equipment
+            log = copyOf(log, equipmentStateCache.getEquipment(equipmentId).orElse(log.getEquipment()));
+        }
+        Series s = series.computeIfAbsent(equipmentId, id -> new Series(windowSize));
+        boolean inOrder = s.add(log);
+        writes.increment();
+        if (!inOrder) {
+            lateWrites.increment();
+            return;
+        }
+
+        // Every stored reading passes through here, so this is where the alert rules see the stream
+        telemetryAlertEvaluator.submit(equipmentId, log.getEquipment().getName(), log.getStatus(),
+                log.getTemperature(), log.getVibration(), log.getOutputCount(), log.getTimestamp());
+    }
+
+    public void record(TelemetrySample sample) {
+        if (sample == null || sample.getEquipmentId() == null) {
+            return;
+        }
+        EquipmentLog log = new EquipmentLog();
+        log.setEquipment(equipmentStateCache.getEquipment(sample.getEquipmentId())
+                .orElseGet(() -> reference(sample.getEquipmentId())));
+        log.setStatus(sample.getStatus());
+        log.setOutputCount(sample.getOutputCount());
+        log.setTemperature(sample.getTemperature());
+        log.setVibration(sample.getVibration());
+        log.setTimestamp(sample.getTimestamp());
+        record(log);
+    }
+
+    /**
+     * Record once the surrounding transaction commits, or immediately outside a transaction.
+     */
+    public void recordAfterCommit(List<EquipmentLog> logs) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    logs.forEach(TelemetryLastValueCache.this::record);
+                }
+            });
+        } else {
+            logs.forEach(this::record);
+        }
+    }
+
+    public void removeEquipment(Long equipmentId) {
+        series.remove(equipmentId);
+    }
+
+    /**
+     * Reload the window of every machine whose newest stored reading is newer than the cached one,
+     * i.e. readings another node wrote. Readings are not re-evaluated: the node that stored them did that.
+     */
+    @Scheduled(fixedDelayString = "${mes.telemetry.last-value.resync-interval-ms:30000}",
+               initialDelayString = "${mes.telemetry.last-value.resync-interval-ms:30000}")
+    public void resync() {
+        LocalDateTime started = LocalDateTime.now();
+        LocalDateTime since = (resyncedAt != null ? resyncedAt : started).minus(Duration.ofMillis(resyncIntervalMs));
+        try {
+            for (Object[] row : equipmentLogRepository.findLatestTimestampsSince(since)) {
+                Long equipmentId = ((Number) row[0]).longValue();
+                LocalDateTime newest = (LocalDateTime) row[1];
+                Series s = series.get(equipmentId);
+                EquipmentLog latest = s != null ? s.latest : null;
+                if (latest == null || latest.getTimestamp().isBefore(newest)) {
+                    reload(equipmentId);
+                }
+            }
+            resyncedAt = started;
+        } catch (Exception e) {
+            System.err.println("Failed to resync telemetry last-value cache: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int buffered = 0;
+        for (Series s : series.values()) {
+            buffered += s.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("equipmentEntries", series.size());
+        stats.put("bufferedReadings", buffered);
+        stats.put("windowSize", windowSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 1.0);
+        stats.put("writes", writes.sum());
+        stats.put("lateWrites", lateWrites.sum());
+        stats.put("resyncReloads", resyncReloads.sum());
+        stats.put("resyncedAt", resyncedAt);
+        stats.put("warmedUp", warmedUp);
+        stats.put("warmedUpAt", warmedUpAt);
+        return stats;
+    }
+
+    private Series loadFromDatabase(Long equipmentId) {
+        List<EquipmentLog> recent = equipmentLogRepository.findByEquipmentIdOrderByTimestampDesc(
+                equipmentId, PageRequest.of(0, windowSize));
+        if (recent.isEmpty()) {
+            return null;
+        }
+        Series s = series.computeIfAbsent(equipmentId, id -> new Series(windowSize));
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            s.add(recent.get(i));
+        }
+        return s;
+    }
+
+    private void reload(Long equipmentId) {
+        List<EquipmentLog> recent = equipmentLogRepository.findByEquipmentIdOrderByTimestampDesc(
+                equipmentId, PageRequest.of(0, windowSize));
+        if (recent.isEmpty()) {
+            return;
+        }
+        series.computeIfAbsent(equipmentId, id -> new Series(windowSize)).replace(recent);
+        resyncReloads.increment();
+    }
+
+    private EquipmentLog copyOf(EquipmentLog source, Equipment equipment) {
+        EquipmentLog copy = new EquipmentLog();
+        copy.setId(source.getId());
+        copy.setEquipment(equipment);
+        copy.setStatus(source.getStatus());
+        copy.setOutputCount(source.getOutputCount());
+        copy.setTemperature(source.getTemperature());
+        copy.setVibration(source.getVibration());
+        copy.setTimestamp(source.getTimestamp());
+        return copy;
+    }
+
+    private Equipment reference(Long equipmentId) {
+        Equipment equipment = new Equipment();
+        equipment.setId(equipmentId);
+        return equipment;
+    }
+
+    /**
+     * Fixed-size ring of readings in timestamp order, oldest at head.
+     */
+    private static class Series {
+        private final EquipmentLog[] ring;
+        private int head;
+        private int size;
+        private volatile EquipmentLog latest;
+
+        private Series(int capacity) {
+            ring = new EquipmentLog[Math.max(1, capacity)];
+        }
+
+        /**
+         * Returns false when the reading arrived out of order.
+         */
+        private synchronized boolean add(EquipmentLog log) {
+            int capacity = ring.length;
+            LocalDateTime timestamp = log.getTimestamp();
+
+            // Common case: newer than everything buffered
+            if (size == 0 || !timestamp.isBefore(ring[(head + size - 1) % capacity].getTimestamp())) {
+                if (size == capacity) {
+                    ring[head] = log;
+                    head = (head + 1) % capacity;
+                } else {
+                    ring[(head + size) % capacity] = log;
+                    size++;
+                }
+                latest = log;
+                return true;
+            }
+
+            // Late sample: older than the whole full window is dropped, otherwise inserted in place
+            if (size == capacity && timestamp.isBefore(ring[head].getTimestamp())) {
+                return false;
+            }
+            if (size == capacity) {
+                head = (head + 1) % capacity;
+                size--;
+            }
+            int position = size;
+            while (position > 0 && timestamp.isBefore(ring[(head + position - 1) % capacity].getTimestamp())) {
+                ring[(head + position) % capacity] = ring[(head + position - 1) % capacity];
+                position--;
+            }
+            ring[(head + position) % capacity] = log;
+            size++;
+            return false;
+        }
+
+        /**
+         * Swap in the stored readings (newest first), keeping any cached ones newer than them.
+         * Readers of latest see the old or the new value, never a partial window.
+         */
+        private synchronized void replace(List<EquipmentLog> stored) {
+            Series fresh = new Series(ring.length);
+            for (int i = stored.size() - 1; i >= 0; i--) {
+                if (stored.get(i).getTimestamp() != null) {
+                    fresh.add(stored.get(i));
+                }
+            }
+            if (fresh.latest == null) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                EquipmentLog log = ring[(head + i) % ring.length];
+                if (log.getTimestamp().isAfter(fresh.latest.getTimestamp())) {
+                    fresh.add(log);
+                }
+            }
+            System.arraycopy(fresh.ring, 0, ring, 0, ring.length);
+            head = fresh.head;
+            size = fresh.size;
+            latest = fresh.latest;
+        }
+
+        private synchronized List<EquipmentLog> newestFirst(int limit) {
+            int count = Math.min(Math.max(limit, 0), size);
+            List<EquipmentLog> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(ring[(head + size - 1 - i) % ring.length]);
+            }
+            return result;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.mes.service;
+
+import com.mes.dto.StatusDurationSummary;
+import com.mes.model.RollupResolution;
+import com.mes.model.TelemetryRollup;
+import com.mes.repository.EquipmentLogRepository;
+import com.mes.repository.TelemetryRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Maintains MINUTE, HOUR and DAY telemetry rollups from equipment_log.
+ *
+ * Every run recomputes the closed minutes since the last run (plus a lateness margin
+ * for late samples), then the hours and days those minutes belong to. Range queries
+ * read from the coarsest resolution that still satisfies the requested step.
+ */
+@Service
+public class TelemetryRollupService {
+
+    @Autowired
+    private TelemetryRollupRepository rollupRepository;
+
+    @Autowired
+    private EquipmentLogRepository equipmentLogRepository;
+
+    @Value("${mes.telemetry.rollup.lateness-minutes:5}")
+    private long latenessMinutes;
+
+    @Value("${mes.telemetry.rollup.max-span-hours:24}")
+    private long maxSpanHours;
+
+    @Value("${mes.telemetry.rollup.max-sample-gap-seconds:300}")
+    private double maxSampleGapSeconds;
+
+    // End (exclusive) of the last minute range that was rolled up
+    private volatile LocalDateTime watermark;
+
+    @Scheduled(fixedDelayString = "${mes.telemetry.rollup.interval-ms:60000}")
+    @Transactional
+    public void refreshRollups() {
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime start = resolveStart();
+        if (start == null || !start.isBefore(end)) {
+            return;
+        }
+
+        // Bound a single run so a large backfill progresses in steps instead of one huge statement
+        LocalDateTime maxEnd = start.plusHours(maxSpanHours);
+        if (end.isAfter(maxEnd)) {
+            end = maxEnd;
+        }
+
+        rollupRange(start, end);
+        watermark = end;
+    }
+
+    /**
+     * Recompute all rollups covering [start, end). Safe to re-run for any range.
+     */
+    @Transactional
+    public void rollupRange(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime minuteStart = start.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime minuteEnd = ceil(end, ChronoUnit.MINUTES);
+        rollupRepository.rollupMinutes(minuteStart, minuteEnd, maxSampleGapSeconds);
+
+        LocalDateTime hourStart = minuteStart.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime hourEnd = ceil(minuteEnd, ChronoUnit.HOURS);
+        rollupRepository.rollupBuckets(RollupResolution.MINUTE.name(), RollupResolution.HOUR.name(),
+                "hour", hourStart, hourEnd);
+
+        LocalDateTime dayStart = hourStart.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime dayEnd = ceil(hourEnd, ChronoUnit.DAYS);
+        rollupRepository.rollupBuckets(RollupResolution.HOUR.name(), RollupResolution.DAY.name(),
+                "day", dayStart, dayEnd);
+    }
+
+    public List<TelemetryRollup> getRollups(Long equipmentId, LocalDateTime start, LocalDateTime end,
+                                            RollupResolution resolution) {
+        return rollupRepository.findRollups(equipmentId, resolution,
+                start.truncatedTo(toChronoUnit(resolution)), end);
+    }
+
+    public List<TelemetryRollup> getRollups(Long equipmentId, LocalDateTime start, LocalDateTime end,
+                                            Duration step) {
+        return getRollups(equipmentId, start, end, RollupResolution.coarsestFor(step));
+    }
+
+    /**
+     * Status durations per equipment over [start, end), at minute precision. The range is
+     * split so whole days are read from DAY buckets, whole hours from HOUR buckets and
+     * only the ragged edges from MINUTE buckets.
+     */
+    public Map<Long, StatusDurationSummary> getStatusDurations(LocalDateTime start, LocalDateTime end) {
+        Map<Long, StatusDurationSummary> totals = new HashMap<>();
+        LocalDateTime from = ceil(start, ChronoUnit.MINUTES);
+        LocalDateTime to = end.truncatedTo(ChronoUnit.MINUTES);
+        if (!from.isBefore(to)) {
+            return totals;
+        }
+
+        LocalDateTime dayFrom = ceil(from, ChronoUnit.DAYS);
+        LocalDateTime dayTo = to.truncatedTo(ChronoUnit.DAYS);
+        if (dayFrom.isBefore(dayTo)) {
+            addDurations(totals, RollupResolution.DAY, dayFrom, dayTo);
+            addHourAndMinuteDurations(totals, from, dayFrom);
+            addHourAndMinuteDurations(totals, dayTo, to);
+        } else {
+            addHourAndMinuteDurations(totals, from, to);
+        }
+        return totals;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("watermark", watermark);
+        status.put("latenessMinutes", latenessMinutes);
+        status.put("maxSpanHours", maxSpanHours);
+        status.put("maxSampleGapSeconds", maxSampleGapSeconds);
+        return status;
+    }
+
+    private void addHourAndMinuteDurations(Map<Long, StatusDurationSummary> totals,
+                                           LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        LocalDateTime hourFrom = ceil(from, ChronoUnit.HOURS);
+        LocalDateTime hourTo = to.truncatedTo(ChronoUnit.HOURS);
+        if (hourFrom.isBefore(hourTo)) {
+            addDurations(totals, RollupResolution.HOUR, hourFrom, hourTo);
+            addDurations(totals, RollupResolution.MINUTE, from, hourFrom);
+            addDurations(totals, RollupResolution.MINUTE, hourTo, to);
+        } else {
+            addDurations(totals, RollupResolution.MINUTE, from, to);
+        }
+    }
+
+    private void addDurations(Map<Long, StatusDurationSummary> totals, RollupResolution resolution,
+                              LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        for (StatusDurationSummary summary : rollupRepository.sumStatusDurations(resolution, from, to)) {
+            totals.merge(summary.getEquipmentId(), summary, (existing, added) -> {
+                existing.add(added);
+                return existing;
+            });
+        }
+    }
+
+    private LocalDateTime resolveStart() {
+        LocalDateTime lastEnd = watermark;
+        if (lastEnd == null) {
+            LocalDateTime latestBucket = rollupRepository.findLatestBucketStart(RollupResolution.MINUTE);
+            lastEnd = latestBucket != null ? latestBucket.plusMinutes(1) : equipmentLogRepository.findEarliestTimestamp();
+            if (lastEnd == null) {
+                return null;
+            }
+        }
+        return lastEnd.minusMinutes(latenessMinutes).truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+        return truncated.equals(time) ? time : truncated.plus(1, unit);
+    }
+
+    private static ChronoUnit toChronoUnit(RollupResolution resolution) {
+        switch (resolution) {
+            case DAY:
+                return ChronoUnit.DAYS;
+            case HOUR:
+                return ChronoUnit.HOURS;
+            default:
+                return ChronoUnit.MINUTES;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mes.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding up to {@code capacity} tokens, refilled at
+ * {@code capacity / period}. The whole state is the time at which the bucket will be full
+ * again (the GCRA form of a token bucket), so acquiring is a single CAS on one long.
+ */
+public class TokenBucket {
+
+    private final long capacity;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos;
+
+    public TokenBucket(long capacity, long periodNanos) {
+        this.capacity = Math.max(1, capacity);
+        this.intervalNanos = Math.max(1, periodNanos / this.capacity);
+        this.burstNanos = intervalNanos * this.capacity;
+        this.fullAtNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Take one token. Returns 0 when granted, otherwise the nanoseconds until one is available.
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = fullAtNanos.get();
+            long start = fullAt - now < 0 ? now : fullAt;
+            long next = start + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Return a token taken by {@link #tryAcquire()} that ended up unused. Never fills the
+     * bucket beyond its capacity.
+     */
+    public void refund() {
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = fullAtNanos.get();
+            if (fullAt - now <= 0) {
+                return;
+            }
+            long previous = fullAt - intervalNanos;
+            if (fullAtNanos.compareAndSet(fullAt, previous - now < 0 ? now : previous)) {
+                return;
+            }
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Whether the bucket has refilled completely, i.e. nothing would be lost by dropping it.
+     */
+    public boolean isFull() {
+        return fullAtNanos.get() - System.nanoTime() <= 0;
+    }
+}
@@ -1,12 +1,17 @@
 package com.mes.service;
 
+import com.mes.dto.AuditRecord;
+import com.mes.dto.KeysetPage;
 import com.mes.model.User;
 import com.mes.model.UserActivityLog;
 import com.mes.repository.UserActivityLogRepository;
-import jakarta.servlet.http.HttpServletRequest;
+import com.mes.security.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.authentication.event.AbstractAuthenticationFailureEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -18,43 +23,45 @@ public class UserActivityService {
     @Autowired
     private UserActivityLogRepository activityLogRepository;
 
-    @Autowired(required = false)
-    private HttpServletRequest request;
-
-    @Transactional
-    public UserActivityLog logActivity(String username, String activityType, String description) {
-        UserActivityLog log = new UserActivityLog();
-        log.setUsername(username);
-        log.setActivityType(activityType);
-        log.setActivityDescription(description);
-        log.setTimestamp(LocalDateTime.now());
-        log.setStatus("SUCCESS");
-        
-        if (request != null) {
-            log.setIpAddress(getClientIpAddress());
-            log.setUserAgent(request.getHeader("User-Agent"));
-            log.setSessionId(request.getSession(false) != null ? request.getSession().getId() : null);
-        }
-        
-        return activityLogRepository.save(log);
+    @Autowired
+    private AuditWriter auditWriter;
+
+    /**
+     * Queue an activity entry; it is written asynchronously by AuditWriter.
+     */
+    public void logActivity(String username, String activityType, String description) {
+        auditWriter.submit(activityRecord(username, activityType, description));
+    }
+
+    public void logActivity(User user, String activityType, String description,
+                            String resourceType, Long resourceId) {
+        AuditRecord record = activityRecord(user.getUsername(), activityType, description);
+        record.setUserId(user.getId());
+        record.setEntityType(resourceType);
+        record.setEntityId(resourceId);
+        auditWriter.submit(record);
+    }
+
+    public void logFailedActivity(String username, String activityType, String description, String errorMessage) {
+        AuditRecord record = activityRecord(username, activityType, description);
+        record.setStatus("FAILED");
+        record.setErrorMessage(errorMessage);
+        auditWriter.submit(record);
     }
 
-    @Transactional
-    public UserActivityLog logActivity(User user, String activityType, String description, 
-                                       String resourceType, Long resourceId) {
-        UserActivityLog log = logActivity(user.getUsername(), activityType, description);
-        log.setUser(user);
-        log.setResourceType(resourceType);
-        log.setResourceId(resourceId);
-        return activityLogRepository.save(log);
+    @EventListener
+    public void onLoginSuccess(AuthenticationSuccessEvent event) {
+        AuditRecord record = activityRecord(event.getAuthentication().getName(), "LOGIN", "Signed in");
+        if (event.getAuthentication().getPrincipal() instanceof UserDetailsImpl) {
+            record.setUserId(((UserDetailsImpl) event.getAuthentication().getPrincipal()).getId());
+        }
+        auditWriter.submit(record);
     }
 
-    @Transactional
-    public UserActivityLog logFailedActivity(String username, String activityType, String description, String errorMessage) {
-        UserActivityLog log = logActivity(username, activityType, description);
-        log.setStatus("FAILED");
-        log.setErrorMessage(errorMessage);
-        return activityLogRepository.save(log);
+    @EventListener
+    public void onLoginFailure(AbstractAuthenticationFailureEvent event) {
+        logFailedActivity(event.getAuthentication().getName(), "LOGIN", "Sign-in failed",
+                event.getException().getMessage());
     }
 
     public List<UserActivityLog> getUserActivities(Long userId) {
@@ -73,6 +80,28 @@ public class UserActivityService {
         return activityLogRepository.findByTimestampBetween(start, end);
     }
 
+    /**
+     * Keyset-paginated activity entries in [start, end], newest first. Filters are optional.
+     */
+    public KeysetPage<UserActivityLog> getActivityPage(LocalDateTime start, LocalDateTime end, String activityType,
+                                                       String username, String cursor, int limit) {
+        int size = KeysetPage.clampLimit(limit);
+        LocalDateTime beforeTs = end;
+        Long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            Object[] position = KeysetPage.decodeCursor(cursor);
+            beforeTs = (LocalDateTime) position[0];
+            beforeId = (Long) position[1];
+        }
+        List<UserActivityLog> items = activityLogRepository.findPage(start, end, beforeTs, beforeId,
+                activityType, username, PageRequest.of(0, size));
+        return KeysetPage.of(items, size, UserActivityLog::getTimestamp, UserActivityLog::getId);
+    }
+
+    public long countActivitiesByDateRange(LocalDateTime start, LocalDateTime end) {
+        return activityLogRepository.countByDateRange(start, end);
+    }
+
     public List<UserActivityLog> getRecentFailures(LocalDateTime since) {
         return activityLogRepository.findRecentFailures(since);
     }
@@ -86,19 +115,12 @@ public class UserActivityService {
         return summary;
     }
 
-    private String getClientIpAddress() {
-        if (request == null) return null;
-        
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-        
-        return request.getRemoteAddr();
+    private static AuditRecord activityRecord(String username, String activityType, String description) {
+        AuditRecord record = new AuditRecord(AuditRecord.Kind.ACTIVITY);
+        record.setUsername(username);
+        record.setActivityType(activityType);
+        record.setDescription(description);
+        record.setStatus("SUCCESS");
+        return record;
     }
 }
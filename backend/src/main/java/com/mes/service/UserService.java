@@ -6,10 +6,12 @@ import com.mes.dto.UserDto;
 import com.mes.model.Role;
 import com.mes.model.User;
 import com.mes.repository.UserRepository;
+import com.mes.security.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,6 +23,9 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     public List<UserDto> getAllUsers() {
         return userRepository.findAll().stream()
                 .map(this::convertToDto)
@@ -77,14 +82,16 @@ public class UserService {
         }
 
         User updatedUser = userRepository.save(user);
+        // Role and enabled flag take effect on the next request instead of after the cache TTL
+        principalCache.invalidate(updatedUser.getUsername());
         return convertToDto(updatedUser);
     }
 
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new RuntimeException("User not found");
-        }
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("User not found"));
         userRepository.deleteById(id);
+        principalCache.invalidate(user.getUsername());
     }
 
     public void changePassword(Long userId, String currentPassword, String newPassword) {
@@ -97,6 +104,11 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        principalCache.invalidate(user.getUsername());
+    }
+
+    public Map<String, Object> getPrincipalCacheStats() {
+        return principalCache.getStats();
     }
 
     public User findByUsername(String username) {
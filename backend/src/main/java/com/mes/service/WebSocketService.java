@@ -4,9 +4,14 @@ import com.mes.dto.AlertNotification;
 import com.mes.dto.EquipmentStatusUpdate;
 import com.mes.dto.ProductionMetricsUpdate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.BrokerAvailabilityEvent;
 import org.springframework.stereotype.Service;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class WebSocketService {
@@ -14,23 +19,89 @@ public class WebSocketService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private EquipmentStatusBroadcaster equipmentStatusBroadcaster;
+
+    // per-equipment: one frame per equipment on /topic/equipment-status (legacy clients)
+    // batched: delta-compressed frames via EquipmentStatusBroadcaster
+    // both: send both while clients migrate
+    @Value("${mes.websocket.equipment-status.mode:per-equipment}")
+    private String equipmentStatusMode;
+
+    // False until the broker (or the relay's system session) is up, and whenever the relay loses it
+    private volatile boolean brokerAvailable;
+    private final LongAdder droppedWhileUnavailable = new LongAdder();
+
+    @EventListener
+    public void onBrokerAvailability(BrokerAvailabilityEvent event) {
+        brokerAvailable = event.isBrokerAvailable();
+        if (!brokerAvailable) {
+            System.err.println("WebSocket message broker unavailable; realtime updates are dropped until it reconnects");
+        }
+    }
+
+    public boolean isBrokerAvailable() {
+        return brokerAvailable;
+    }
+
+    public long getDroppedWhileUnavailable() {
+        return droppedWhileUnavailable.sum();
+    }
+
     public void sendEquipmentStatusUpdate(EquipmentStatusUpdate update) {
+        if (dropIfBrokerUnavailable()) {
+            return;
+        }
         messagingTemplate.convertAndSend("/topic/equipment-status", update);
     }
 
+    public void sendEquipmentStatusUpdates(List<EquipmentStatusUpdate> updates) {
+        if (dropIfBrokerUnavailable()) {
+            return;
+        }
+        if (!"batched".equalsIgnoreCase(equipmentStatusMode)) {
+            for (EquipmentStatusUpdate update : updates) {
+                sendEquipmentStatusUpdate(update);
+            }
+        }
+        if (!"per-equipment".equalsIgnoreCase(equipmentStatusMode)) {
+            equipmentStatusBroadcaster.publish(updates);
+        }
+    }
+
     public void sendProductionMetricsUpdate(ProductionMetricsUpdate update) {
+        if (dropIfBrokerUnavailable()) {
+            return;
+        }
         messagingTemplate.convertAndSend("/topic/production-metrics", update);
     }
 
     public void sendAlert(AlertNotification alert) {
+        if (dropIfBrokerUnavailable()) {
+            return;
+        }
         messagingTemplate.convertAndSend("/topic/alerts", alert);
     }
 
     public void sendDashboardUpdate(Object data) {
+        if (dropIfBrokerUnavailable()) {
+            return;
+        }
         messagingTemplate.convertAndSend("/topic/dashboard", data);
     }
 
     public void sendToUser(String username, String destination, Map<String, Object> payload) {
+        if (dropIfBrokerUnavailable()) {
+            return;
+        }
         messagingTemplate.convertAndSendToUser(username, destination, payload);
     }
+
+    private boolean dropIfBrokerUnavailable() {
+        if (brokerAvailable) {
+            return false;
+        }
+        droppedWhileUnavailable.increment();
+        return true;
+    }
 }
@@ -0,0 +1,538 @@
+package com.mes.service;
+
+import com.mes.model.WebhookConfig;
+import com.mes.model.WebhookDeliveryLog;
+import com.mes.repository.WebhookConfigRepository;
+import com.mes.repository.WebhookDeliveryLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers queued webhook_delivery_log rows without blocking request or scheduler threads.
+ *
+ * Due deliveries are claimed with FOR UPDATE SKIP LOCKED and sent through a shared,
+ * connection-pooling HttpClient. Each endpoint (webhook config) gets a concurrency limit,
+ * a token-bucket rate limit and a circuit breaker; a delivery that cannot go out right
+ * now is put back with a short delay without spending an attempt. Failed attempts are
+ * retried with jittered exponential backoff (or the receiver's Retry-After) until the
+ * webhook's maxRetries is exhausted. Limits and breakers are tracked per node.
+ */
+@Service
+public class WebhookDispatcher {
+
+    // At most endpoint.max-concurrency rows per active webhook per pass, so one busy endpoint
+    // neither starves the others nor gets claimed only to be put straight back
+    private static final String CLAIM_SQL =
+            "UPDATE webhook_delivery_log SET delivery_status = 'SENDING', claimed_at = ? " +
+            "WHERE id IN (SELECT id FROM webhook_delivery_log WHERE id IN (" +
+            "SELECT due.id FROM webhook_config w CROSS JOIN LATERAL (" +
+            "SELECT d.id FROM webhook_delivery_log d WHERE d.webhook_config_id = w.id " +
+            "AND d.delivery_status IN ('PENDING', 'RETRYING') AND (d.next_attempt_at IS NULL OR d.next_attempt_at <= ?) " +
+            "ORDER BY d.next_attempt_at NULLS FIRST LIMIT ?) due " +
+            "WHERE w.is_active = TRUE AND w.id <> ALL (CAST(? AS BIGINT[]))) " +
+            "AND delivery_status IN ('PENDING', 'RETRYING') " +
+            "ORDER BY next_attempt_at NULLS FIRST LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id";
+
+    private static final int MAX_STORED_BODY = 4000;
+
+    @Autowired
+    private WebhookDeliveryLogRepository deliveryRepository;
+
+    @Autowired
+    private WebhookConfigRepository webhookConfigRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${mes.webhook.dispatch-threads:4}")
+    private int dispatchThreads;
+
+    @Value("${mes.webhook.max-in-flight:200}")
+    private int maxInFlight;
+
+    @Value("${mes.webhook.endpoint.max-concurrency:4}")
+    private int endpointMaxConcurrency;
+
+    @Value("${mes.webhook.endpoint.rate-per-second:20}")
+    private double endpointRatePerSecond;
+
+    @Value("${mes.webhook.endpoint.burst:20}")
+    private double endpointBurst;
+
+    @Value("${mes.webhook.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${mes.webhook.breaker.open-seconds:30}")
+    private long breakerOpenSeconds;
+
+    @Value("${mes.webhook.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${mes.webhook.max-timeout-seconds:60}")
+    private long maxTimeoutSeconds;
+
+    @Value("${mes.webhook.busy-retry-ms:250}")
+    private long busyRetryMs;
+
+    @Value("${mes.webhook.backoff-base-ms:2000}")
+    private long backoffBaseMs;
+
+    @Value("${mes.webhook.backoff-max-ms:600000}")
+    private long backoffMaxMs;
+
+    @Value("${mes.webhook.stuck-timeout-minutes:5}")
+    private long stuckTimeoutMinutes;
+
+    private ExecutorService executor;
+    private HttpClient httpClient;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Long, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-dispatch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Deliveries still in flight stay SENDING and are picked up again by the reaper
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue one delivery; it is sent by the next dispatch pass on any node.
+     */
+    public WebhookDeliveryLog enqueue(WebhookConfig webhook, String eventType, String payload) {
+        WebhookDeliveryLog delivery = new WebhookDeliveryLog();
+        delivery.setWebhookConfig(webhook);
+        delivery.setEventType(eventType);
+        delivery.setPayload(payload);
+        delivery.setDeliveryStatus("PENDING");
+        delivery.setAttemptNumber(1);
+        delivery.setNextAttemptAt(LocalDateTime.now());
+        queued.increment();
+        return deliveryRepository.save(delivery);
+    }
+
+    /**
+     * Send once on the calling thread, bypassing the queue, limits and retries. Used by the
+     * webhook test endpoint so the caller sees the receiver's answer.
+     */
+    public WebhookDeliveryLog sendNow(WebhookConfig webhook, String eventType, String payload) {
+        WebhookDeliveryLog delivery = new WebhookDeliveryLog();
+        delivery.setWebhookConfig(webhook);
+        delivery.setEventType(eventType);
+        delivery.setPayload(payload);
+        delivery.setDeliveryStatus("SENDING");
+        delivery.setAttemptNumber(1);
+        delivery.setClaimedAt(LocalDateTime.now());
+        delivery = deliveryRepository.save(delivery);
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = null;
+        Throwable error = null;
+        try {
+            response = httpClient.send(buildRequest(webhook, payload), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } catch (Exception e) {
+            error = e;
+        }
+        complete(delivery, endpointFor(webhook), start, response, error, false);
+        return deliveryRepository.findById(delivery.getId()).orElse(delivery);
+    }
+
+    public void forget(Long webhookId) {
+        endpoints.remove(webhookId);
+    }
+
+    // ===== Dispatch =====
+
+    @Scheduled(fixedDelayString = "${mes.webhook.poll-interval-ms:500}")
+    public void dispatchDue() {
+        int capacity = maxInFlight - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Leave rows of saturated or broken endpoints unclaimed instead of claiming and deferring them
+        StringJoiner blocked = new StringJoiner(",", "{", "}");
+        long nowMillis = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints.values()) {
+            if (endpoint.isBlocked(nowMillis)) {
+                blocked.add(endpoint.webhookId.toString());
+            }
+        }
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM_SQL, Long.class,
+                Timestamp.valueOf(now), Timestamp.valueOf(now), endpointMaxConcurrency, blocked.toString(), capacity);
+        if (ids.isEmpty()) {
+            return;
+        }
+        claimed.add(ids.size());
+        for (WebhookDeliveryLog delivery : deliveryRepository.findAllById(ids)) {
+            try {
+                dispatch(delivery);
+            } catch (Exception e) {
+                System.err.println("Failed to dispatch webhook delivery " + delivery.getId() + ": " + e.getMessage());
+                deliveryRepository.defer(delivery.getId(), queuedStatus(delivery),
+                        LocalDateTime.now().plus(backoff(delivery.getAttemptNumber())));
+            }
+        }
+    }
+
+    private void dispatch(WebhookDeliveryLog delivery) {
+        WebhookConfig webhook = delivery.getWebhookConfig();
+        Endpoint endpoint = endpointFor(webhook);
+        if (!Boolean.TRUE.equals(webhook.getIsActive())) {
+            finish(delivery, endpoint, "FAILED", null, null, "Webhook is inactive", null, null);
+            return;
+        }
+
+        long waitMillis = endpoint.tryAcquire(System.currentTimeMillis());
+        if (waitMillis > 0) {
+            deferred.increment();
+            endpoint.deferred.increment();
+            deliveryRepository.defer(delivery.getId(), queuedStatus(delivery),
+                    LocalDateTime.now().plusNanos(waitMillis * 1_000_000L));
+            return;
+        }
+
+        HttpRequest request;
+        try {
+            request = buildRequest(webhook, delivery.getPayload());
+        } catch (IllegalArgumentException e) {
+            endpoint.release(true, System.currentTimeMillis());
+            finish(delivery, endpoint, "FAILED", null, null, "Invalid webhook request: " + e.getMessage(), null, null);
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    try {
+                        complete(delivery, endpoint, start, response, error, true);
+                    } catch (Exception e) {
+                        System.err.println("Failed to record webhook delivery " + delivery.getId() + ": " + e.getMessage());
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+    }
+
+    private void complete(WebhookDeliveryLog delivery, Endpoint endpoint, long startNanos,
+                          HttpResponse<String> response, Throwable error, boolean allowRetry) {
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000L;
+        latency.record(durationMs);
+        endpoint.latency.record(durationMs);
+
+        Integer statusCode = response != null ? response.statusCode() : null;
+        String body = response != null ? truncate(response.body()) : null;
+        boolean success = statusCode != null && statusCode >= 200 && statusCode < 300;
+        // Receiver-side rejections (bad auth, bad payload) are not the endpoint being down
+        boolean endpointHealthy = success || (statusCode != null && statusCode < 500
+                && statusCode != 408 && statusCode != 429);
+        if (allowRetry) {
+            endpoint.release(endpointHealthy, System.currentTimeMillis());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (success) {
+            webhookConfigRepository.recordSuccess(endpoint.webhookId, now);
+            finish(delivery, endpoint, "SUCCESS", statusCode, body, null, durationMs, null);
+            return;
+        }
+
+        webhookConfigRepository.recordFailure(endpoint.webhookId, now);
+        String message = error != null ? describe(error) : "HTTP " + statusCode;
+        WebhookConfig webhook = delivery.getWebhookConfig();
+        boolean retryable = !endpointHealthy || error != null;
+        int attempt = delivery.getAttemptNumber() != null ? delivery.getAttemptNumber() : 1;
+        int maxRetries = webhook.getMaxRetries() != null ? webhook.getMaxRetries() : 0;
+        if (allowRetry && retryable && Boolean.TRUE.equals(webhook.getRetryOnFailure()) && attempt <= maxRetries) {
+            Duration wait = backoff(attempt);
+            Duration retryAfter = retryAfter(response);
+            if (retryAfter != null && retryAfter.compareTo(wait) > 0) {
+                wait = retryAfter;
+            }
+            finish(delivery, endpoint, "RETRYING", statusCode, body, message, durationMs, now.plus(wait));
+        } else {
+            finish(delivery, endpoint, "FAILED", statusCode, body, message, durationMs, null);
+        }
+    }
+
+    private void finish(WebhookDeliveryLog delivery, Endpoint endpoint, String status, Integer statusCode,
+                        String body, String errorMessage, Long durationMs, LocalDateTime nextAttemptAt) {
+        int attempt = delivery.getAttemptNumber() != null ? delivery.getAttemptNumber() : 1;
+        boolean retrying = "RETRYING".equals(status);
+        deliveryRepository.complete(delivery.getId(), status, statusCode, body, errorMessage, durationMs,
+                retrying ? attempt + 1 : attempt, nextAttemptAt,
+                "SUCCESS".equals(status) ? LocalDateTime.now() : null);
+
+        switch (status) {
+            case "SUCCESS":
+                delivered.increment();
+                endpoint.delivered.increment();
+                break;
+            case "RETRYING":
+                retried.increment();
+                endpoint.retried.increment();
+                break;
+            default:
+                failed.increment();
+                endpoint.failed.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mes.webhook.reaper-interval-ms:60000}")
+    public void reapStuckDeliveries() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = deliveryRepository.releaseStuck(now.minusMinutes(stuckTimeoutMinutes), now);
+        if (released > 0) {
+            reaped.add(released);
+            System.err.println("Returned " + released + " stuck webhook deliveries to the queue");
+        }
+    }
+
+    // ===== Metrics =====
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> backlog = new LinkedHashMap<>();
+        for (Object[] row : deliveryRepository.countQueuedByStatus()) {
+            backlog.put((String) row[0], row[1]);
+        }
+
+        List<Map<String, Object>> endpointStats = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            endpointStats.add(endpoint.toMap());
+        }
+        endpointStats.sort(Comparator.comparing(m -> (Long) m.get("webhookId")));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.get());
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("queued", queued.sum());
+        stats.put("claimed", claimed.sum());
+        stats.put("deferred", deferred.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        stats.put("reaped", reaped.sum());
+        stats.put("backlog", backlog);
+        stats.put("latency", latency.toMap());
+        stats.put("endpoints", endpointStats);
+        return stats;
+    }
+
+    // ===== Helpers =====
+
+    private HttpRequest buildRequest(WebhookConfig webhook, String payload) {
+        long timeoutSeconds = webhook.getTimeoutSeconds() != null && webhook.getTimeoutSeconds() > 0
+                ? Math.min(webhook.getTimeoutSeconds(), maxTimeoutSeconds) : maxTimeoutSeconds;
+        String method = webhook.getHttpMethod() != null ? webhook.getHttpMethod().toUpperCase() : "POST";
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(webhook.getWebhookUrl()))
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .header("Content-Type", webhook.getContentType() != null ? webhook.getContentType() : "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(payload != null ? payload : ""));
+        if (webhook.getHeaders() != null) {
+            webhook.getHeaders().forEach(builder::header);
+        }
+        if (webhook.getWebhookSecret() != null) {
+            builder.header("X-Webhook-Secret", webhook.getWebhookSecret());
+        }
+        return builder.build();
+    }
+
+    private Endpoint endpointFor(WebhookConfig webhook) {
+        Endpoint endpoint = endpoints.computeIfAbsent(webhook.getId(), Endpoint::new);
+        endpoint.name = webhook.getWebhookName();
+        return endpoint;
+    }
+
+    private String queuedStatus(WebhookDeliveryLog delivery) {
+        return delivery.getAttemptNumber() != null && delivery.getAttemptNumber() > 1 ? "RETRYING" : "PENDING";
+    }
+
+    private Duration backoff(Integer attempt) {
+        int exponent = Math.min(Math.max(attempt != null ? attempt : 1, 1) - 1, 20);
+        long capped = Math.min(backoffBaseMs << exponent, backoffMaxMs);
+        // Equal jitter: at least half the delay, so retries from one outage spread out but still wait
+        long jittered = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        return Duration.ofMillis(jittered);
+    }
+
+    private Duration retryAfter(HttpResponse<String> response) {
+        if (response == null) {
+            return null;
+        }
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return null;
+        }
+        try {
+            long seconds = Long.parseLong(header.get().trim());
+            return Duration.ofMillis(Math.min(seconds * 1000L, backoffMaxMs));
+        } catch (NumberFormatException e) {
+            // HTTP-date form is not worth parsing here; fall back to our own backoff
+            return null;
+        }
+    }
+
+    private String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpTimeoutException) {
+            return "Timed out: " + cause.getMessage();
+        }
+        return cause.getClass().getSimpleName() + (cause.getMessage() != null ? ": " + cause.getMessage() : "");
+    }
+
+    private static String truncate(String body) {
+        return body != null && body.length() > MAX_STORED_BODY ? body.substring(0, MAX_STORED_BODY) : body;
+    }
+
+    private enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Per-webhook limits and breaker. All state changes happen under the instance lock;
+     * they are a handful of field updates per request.
+     */
+    private class Endpoint {
+        private final Long webhookId;
+        private volatile String name;
+
+        private int active;
+        private double tokens = endpointBurst;
+        private long lastRefillMillis = System.currentTimeMillis();
+
+        private BreakerState state = BreakerState.CLOSED;
+        private int consecutiveFailures;
+        private long openUntilMillis;
+        private long breakerOpens;
+
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder deferred = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Endpoint(Long webhookId) {
+            this.webhookId = webhookId;
+        }
+
+        /**
+         * Take a send slot. Returns 0 when the request may go out, otherwise how long to wait.
+         */
+        private synchronized long tryAcquire(long nowMillis) {
+            if (state == BreakerState.OPEN) {
+                if (nowMillis < openUntilMillis) {
+                    return openUntilMillis - nowMillis;
+                }
+                state = BreakerState.HALF_OPEN;
+            }
+            // Half-open lets a single trial request through
+            if (state == BreakerState.HALF_OPEN && active > 0) {
+                return busyRetryMs;
+            }
+            if (active >= endpointMaxConcurrency) {
+                return busyRetryMs;
+            }
+
+            refill(nowMillis);
+            if (tokens < 1.0) {
+                return Math.max(1, (long) Math.ceil((1.0 - tokens) * 1000.0 / endpointRatePerSecond));
+            }
+            tokens -= 1.0;
+            active++;
+            return 0;
+        }
+
+        private synchronized boolean isBlocked(long nowMillis) {
+            if (state == BreakerState.OPEN) {
+                return nowMillis < openUntilMillis;
+            }
+            refill(nowMillis);
+            return tokens < 1.0 || active >= (state == BreakerState.HALF_OPEN ? 1 : endpointMaxConcurrency);
+        }
+
+        private void refill(long nowMillis) {
+            tokens = Math.min(endpointBurst, tokens + (nowMillis - lastRefillMillis) * endpointRatePerSecond / 1000.0);
+            lastRefillMillis = nowMillis;
+        }
+
+        private synchronized void release(boolean healthy, long nowMillis) {
+            active = Math.max(0, active - 1);
+            if (healthy) {
+                consecutiveFailures = 0;
+                state = BreakerState.CLOSED;
+                return;
+            }
+            consecutiveFailures++;
+            if (state == BreakerState.HALF_OPEN || consecutiveFailures >= breakerFailureThreshold) {
+                if (state != BreakerState.OPEN) {
+                    breakerOpens++;
+                }
+                state = BreakerState.OPEN;
+                openUntilMillis = nowMillis + breakerOpenSeconds * 1000L;
+            }
+        }
+
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("webhookId", webhookId);
+            map.put("webhookName", name);
+            map.put("breakerState", state.name());
+            map.put("consecutiveFailures", consecutiveFailures);
+            map.put("breakerOpens", breakerOpens);
+            map.put("openForMs", state == BreakerState.OPEN
+                    ? Math.max(0, openUntilMillis - System.currentTimeMillis()) : 0);
+            map.put("active", active);
+            map.put("availableTokens", Math.floor(tokens));
+            map.put("delivered", delivered.sum());
+            map.put("retried", retried.sum());
+            map.put("failed", failed.sum());
+            map.put("deferred", deferred.sum());
+            map.put("latency", latency.toMap());
+            return map;
+        }
+    }
+}
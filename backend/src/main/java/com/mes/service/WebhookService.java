@@ -1,14 +1,17 @@
 package com.mes.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mes.model.User;
 import com.mes.model.WebhookConfig;
+import com.mes.model.WebhookDeliveryLog;
 import com.mes.repository.WebhookConfigRepository;
+import com.mes.repository.WebhookDeliveryLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -19,7 +22,13 @@ public class WebhookService {
     private WebhookConfigRepository webhookConfigRepository;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private WebhookDeliveryLogRepository deliveryLogRepository;
+
+    @Autowired
+    private WebhookDispatcher webhookDispatcher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @Transactional
     public WebhookConfig createWebhook(WebhookConfig webhook, User createdBy) {
@@ -66,82 +75,24 @@ public class WebhookService {
     @Transactional
     public void deleteWebhook(Long id) {
         webhookConfigRepository.deleteById(id);
+        webhookDispatcher.forget(id);
     }
 
-    // Trigger webhook
+    // Trigger webhook: one queued delivery per active webhook, sent by WebhookDispatcher
     @Transactional
-    public boolean triggerWebhook(String eventType, Map<String, Object> payload) {
+    public List<WebhookDeliveryLog> triggerWebhook(String eventType, Map<String, Object> payload) {
         List<WebhookConfig> webhooks = getWebhooksByEventType(eventType);
-        
-        boolean allSuccess = true;
-        for (WebhookConfig webhook : webhooks) {
-            boolean success = sendWebhook(webhook, payload);
-            if (!success) {
-                allSuccess = false;
-            }
-        }
-        
-        return allSuccess;
-    }
-
-    @Transactional
-    public boolean sendWebhook(WebhookConfig webhook, Map<String, Object> payload) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            // Add custom headers
-            if (webhook.getHeaders() != null) {
-                webhook.getHeaders().forEach(headers::add);
-            }
-            
-            // Add webhook secret as header if present
-            if (webhook.getWebhookSecret() != null) {
-                headers.add("X-Webhook-Secret", webhook.getWebhookSecret());
-            }
-            
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
-            
-            long startTime = System.currentTimeMillis();
-            ResponseEntity<String> response = restTemplate.exchange(
-                webhook.getWebhookUrl(),
-                HttpMethod.valueOf(webhook.getHttpMethod()),
-                request,
-                String.class
-            );
-            long duration = System.currentTimeMillis() - startTime;
-            
-            webhook.setLastTriggered(LocalDateTime.now());
-            webhook.setSuccessCount(webhook.getSuccessCount() + 1);
-            webhookConfigRepository.save(webhook);
-            
-            return response.getStatusCode().is2xxSuccessful();
-            
-        } catch (Exception e) {
-            webhook.setFailureCount(webhook.getFailureCount() + 1);
-            webhookConfigRepository.save(webhook);
-            
-            // Retry if configured
-            if (webhook.getRetryOnFailure() && webhook.getFailureCount() < webhook.getMaxRetries()) {
-                return retryWebhook(webhook, payload);
-            }
-            
-            return false;
-        }
-    }
+        String body = serialize(payload);
 
-    private boolean retryWebhook(WebhookConfig webhook, Map<String, Object> payload) {
-        try {
-            Thread.sleep(1000); // Wait 1 second before retry
-            return sendWebhook(webhook, payload);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return false;
+        List<WebhookDeliveryLog> deliveries = new ArrayList<>();
+        for (WebhookConfig webhook : webhooks) {
+            deliveries.add(webhookDispatcher.enqueue(webhook, eventType, body));
         }
+        return deliveries;
     }
 
     // Test webhook
-    public boolean testWebhook(Long id) {
+    public WebhookDeliveryLog testWebhook(Long id) {
         WebhookConfig webhook = getWebhookById(id);
         Map<String, Object> testPayload = Map.of(
             "test", true,
@@ -149,6 +100,22 @@ public class WebhookService {
             "message", "This is a test webhook"
         );
         
-        return sendWebhook(webhook, testPayload);
+        return webhookDispatcher.sendNow(webhook, "TEST", serialize(testPayload));
+    }
+
+    public List<WebhookDeliveryLog> getRecentDeliveries(Long webhookId) {
+        return deliveryLogRepository.findTop50ByWebhookConfigIdOrderByCreatedAtDesc(webhookId);
+    }
+
+    public Map<String, Object> getDeliveryStats() {
+        return webhookDispatcher.getStats();
+    }
+
+    private String serialize(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload != null ? payload : Map.of());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Webhook payload is not serializable: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,4 @@
+-- Let Hibernate allocate equipment_log ids in blocks of 50 (pooled optimizer) instead of
+-- IDENTITY, so inserts can be JDBC-batched. Plain INSERTs relying on the column default
+-- still draw from the same sequence and can never collide with a Hibernate block.
+ALTER SEQUENCE equipment_log_id_seq INCREMENT BY 50;
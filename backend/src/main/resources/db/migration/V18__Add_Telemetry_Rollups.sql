@@ -0,0 +1,47 @@
+-- Time-bucketed telemetry rollups (MINUTE, HOUR, DAY) maintained from equipment_log
+CREATE TABLE equipment_telemetry_rollup (
+    id BIGSERIAL PRIMARY KEY,
+    equipment_id BIGINT NOT NULL REFERENCES equipment(id) ON DELETE CASCADE,
+    resolution VARCHAR(10) NOT NULL, -- MINUTE, HOUR, DAY
+    bucket_start TIMESTAMP NOT NULL,
+    sample_count BIGINT NOT NULL DEFAULT 0,
+
+    -- Temperature
+    temperature_min DOUBLE PRECISION,
+    temperature_max DOUBLE PRECISION,
+    temperature_sum DOUBLE PRECISION,
+    temperature_count BIGINT DEFAULT 0,
+
+    -- Vibration
+    vibration_min DOUBLE PRECISION,
+    vibration_max DOUBLE PRECISION,
+    vibration_sum DOUBLE PRECISION,
+    vibration_count BIGINT DEFAULT 0,
+
+    -- Output
+    output_min INTEGER,
+    output_max INTEGER,
+    output_sum BIGINT,
+    output_count BIGINT DEFAULT 0,
+
+    -- Last reading in the bucket
+    last_status VARCHAR(20),
+    last_temperature DOUBLE PRECISION,
+    last_vibration DOUBLE PRECISION,
+    last_output_count INTEGER,
+    last_timestamp TIMESTAMP,
+
+    -- Status durations (seconds)
+    running_seconds DOUBLE PRECISION DEFAULT 0,
+    idle_seconds DOUBLE PRECISION DEFAULT 0,
+    down_seconds DOUBLE PRECISION DEFAULT 0,
+    maintenance_seconds DOUBLE PRECISION DEFAULT 0,
+
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT uk_telemetry_rollup_bucket UNIQUE (equipment_id, resolution, bucket_start)
+);
+
+-- Indexes
+CREATE INDEX idx_telemetry_rollup_resolution_bucket ON equipment_telemetry_rollup(resolution, bucket_start);
+CREATE INDEX idx_log_timestamp ON equipment_log(timestamp);
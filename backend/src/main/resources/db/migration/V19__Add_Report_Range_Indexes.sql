@@ -0,0 +1,4 @@
+-- Range predicates used by the analytics report aggregations
+CREATE INDEX IF NOT EXISTS idx_po_created_at ON production_order(created_at);
+CREATE INDEX IF NOT EXISTS idx_downtime_start_time ON downtime_event(start_time);
+CREATE INDEX IF NOT EXISTS idx_quality_check_time ON quality_check(check_time);
@@ -0,0 +1,10 @@
+-- Claim/backoff bookkeeping for the data ingestion worker pool
+ALTER TABLE data_ingestion_queue ADD COLUMN next_attempt_at TIMESTAMP;
+ALTER TABLE data_ingestion_queue ADD COLUMN claimed_at TIMESTAMP;
+ALTER TABLE data_ingestion_queue ADD COLUMN claimed_by VARCHAR(100);
+
+-- Workers claim claimable rows in priority order; the reaper scans PROCESSING rows by claim time
+CREATE INDEX idx_data_ingestion_claimable ON data_ingestion_queue(priority DESC, created_at)
+    WHERE status IN ('PENDING', 'FAILED');
+CREATE INDEX idx_data_ingestion_processing ON data_ingestion_queue(claimed_at)
+    WHERE status = 'PROCESSING';
@@ -0,0 +1,10 @@
+-- webhook_delivery_log doubles as the outbound delivery queue
+ALTER TABLE webhook_delivery_log ADD COLUMN next_attempt_at TIMESTAMP;
+ALTER TABLE webhook_delivery_log ADD COLUMN claimed_at TIMESTAMP;
+ALTER TABLE webhook_delivery_log ADD COLUMN duration_ms BIGINT;
+
+-- Due deliveries are claimed per webhook, a few at a time
+CREATE INDEX idx_webhook_delivery_due ON webhook_delivery_log(webhook_config_id, next_attempt_at NULLS FIRST)
+    WHERE delivery_status IN ('PENDING', 'RETRYING');
+CREATE INDEX idx_webhook_delivery_sending ON webhook_delivery_log(claimed_at)
+    WHERE delivery_status = 'SENDING';
@@ -0,0 +1,15 @@
+-- The realtime thresholds used to be hard-coded; seed them as rules so they can be tuned or disabled
+INSERT INTO alert_rules (rule_name, rule_type, severity, condition_field, condition_operator, condition_value,
+                         notification_email, notification_websocket)
+SELECT 'High Temperature', 'HIGH_TEMPERATURE', 'MEDIUM', 'temperature', 'GT', 85.0, false, true
+WHERE NOT EXISTS (SELECT 1 FROM alert_rules WHERE rule_type = 'HIGH_TEMPERATURE');
+
+INSERT INTO alert_rules (rule_name, rule_type, severity, condition_field, condition_operator, condition_value,
+                         notification_email, notification_websocket)
+SELECT 'High Vibration', 'HIGH_VIBRATION', 'MEDIUM', 'vibration', 'GT', 8.0, false, true
+WHERE NOT EXISTS (SELECT 1 FROM alert_rules WHERE rule_type = 'HIGH_VIBRATION');
+
+INSERT INTO alert_rules (rule_name, rule_type, severity, condition_field, condition_operator, condition_value,
+                         notification_email, notification_websocket)
+SELECT 'Equipment Down', 'EQUIPMENT_DOWN', 'HIGH', 'status', 'EQ', NULL, true, true
+WHERE NOT EXISTS (SELECT 1 FROM alert_rules WHERE rule_type = 'EQUIPMENT_DOWN');
@@ -0,0 +1,9 @@
+-- Repeats of an open alert update its counter instead of inserting a new row
+ALTER TABLE alert_history ADD COLUMN occurrence_count INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE alert_history ADD COLUMN last_seen_at TIMESTAMP;
+ALTER TABLE alert_history ADD COLUMN flapping BOOLEAN NOT NULL DEFAULT false;
+
+UPDATE alert_history SET last_seen_at = triggered_at;
+
+-- Open alerts are looked up by equipment and rule type when the index is rebuilt
+CREATE INDEX idx_alert_history_open ON alert_history (equipment_id, alert_type) WHERE resolved = false;
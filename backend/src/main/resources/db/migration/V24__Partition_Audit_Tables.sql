@@ -0,0 +1,129 @@
+-- Range-partition audit_trail and user_activity_log by month on their timestamp.
+-- Partitions are named <table>_pYYYYMM; a DEFAULT partition catches rows outside the
+-- months created so far. The application keeps partitions created ahead of time
+-- through create_monthly_partition().
+
+-- Create the month's partition of a table partitioned by range on a timestamp column.
+-- Rows for that month already sitting in the DEFAULT partition are moved into it.
+CREATE OR REPLACE FUNCTION create_monthly_partition(parent TEXT, ts_column TEXT, month_start DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    from_ts DATE := date_trunc('month', month_start)::DATE;
+    to_ts DATE := (date_trunc('month', month_start) + INTERVAL '1 month')::DATE;
+    part TEXT := parent || '_p' || to_char(from_ts, 'YYYYMM');
+    default_part TEXT := parent || '_default';
+BEGIN
+    IF to_regclass(part) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part, parent);
+    IF to_regclass(default_part) IS NOT NULL THEN
+        EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING *) INSERT INTO %I SELECT * FROM moved',
+                       default_part, ts_column, from_ts, ts_column, to_ts, part);
+    END IF;
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', parent, part, from_ts, to_ts);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ===== audit_trail =====
+ALTER TABLE audit_trail RENAME TO audit_trail_old;
+ALTER TABLE audit_trail_old RENAME CONSTRAINT audit_trail_pkey TO audit_trail_old_pkey;
+ALTER SEQUENCE audit_trail_id_seq OWNED BY NONE;
+DROP INDEX idx_audit_trail_entity, idx_audit_trail_user, idx_audit_trail_timestamp,
+    idx_audit_trail_action, idx_audit_trail_session;
+
+CREATE TABLE audit_trail (
+    id BIGINT NOT NULL DEFAULT nextval('audit_trail_id_seq'),
+    entity_type VARCHAR(100) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    action VARCHAR(50) NOT NULL,
+    user_id BIGINT REFERENCES users(id),
+    username VARCHAR(100) NOT NULL,
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    old_values JSONB,
+    new_values JSONB,
+    changes_summary TEXT,
+    session_id VARCHAR(255),
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+ALTER SEQUENCE audit_trail_id_seq OWNED BY audit_trail.id;
+CREATE TABLE audit_trail_default PARTITION OF audit_trail DEFAULT;
+
+-- Keyset pagination walks (timestamp, id) backwards, optionally within one entity type or user
+CREATE INDEX idx_audit_trail_ts_id ON audit_trail(timestamp, id);
+CREATE INDEX idx_audit_trail_type_ts ON audit_trail(entity_type, timestamp, id);
+CREATE INDEX idx_audit_trail_entity ON audit_trail(entity_type, entity_id);
+CREATE INDEX idx_audit_trail_user ON audit_trail(user_id);
+CREATE INDEX idx_audit_trail_action ON audit_trail(action);
+CREATE INDEX idx_audit_trail_session ON audit_trail(session_id);
+
+-- ===== user_activity_log =====
+ALTER TABLE user_activity_log RENAME TO user_activity_log_old;
+ALTER TABLE user_activity_log_old RENAME CONSTRAINT user_activity_log_pkey TO user_activity_log_old_pkey;
+ALTER SEQUENCE user_activity_log_id_seq OWNED BY NONE;
+DROP INDEX idx_user_activity_user, idx_user_activity_timestamp, idx_user_activity_type,
+    idx_user_activity_resource, idx_user_activity_session;
+
+CREATE TABLE user_activity_log (
+    id BIGINT NOT NULL DEFAULT nextval('user_activity_log_id_seq'),
+    user_id BIGINT REFERENCES users(id),
+    username VARCHAR(100) NOT NULL,
+    activity_type VARCHAR(50) NOT NULL,
+    activity_description TEXT,
+    resource_type VARCHAR(100),
+    resource_id BIGINT,
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    session_id VARCHAR(255),
+    duration_seconds INTEGER,
+    status VARCHAR(20) DEFAULT 'SUCCESS',
+    error_message TEXT,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+ALTER SEQUENCE user_activity_log_id_seq OWNED BY user_activity_log.id;
+CREATE TABLE user_activity_log_default PARTITION OF user_activity_log DEFAULT;
+
+CREATE INDEX idx_user_activity_ts_id ON user_activity_log(timestamp, id);
+CREATE INDEX idx_user_activity_type ON user_activity_log(activity_type, timestamp, id);
+CREATE INDEX idx_user_activity_user ON user_activity_log(user_id);
+CREATE INDEX idx_user_activity_resource ON user_activity_log(resource_type, resource_id);
+CREATE INDEX idx_user_activity_session ON user_activity_log(session_id);
+
+-- ===== Partitions for existing data and the next three months, then copy =====
+DO $$
+DECLARE
+    m DATE;
+    first_month DATE;
+BEGIN
+    SELECT date_trunc('month', LEAST(
+               COALESCE((SELECT MIN(timestamp) FROM audit_trail_old), now()),
+               COALESCE((SELECT MIN(timestamp) FROM user_activity_log_old), now())))::DATE
+      INTO first_month;
+    m := first_month;
+    WHILE m <= (date_trunc('month', now()) + INTERVAL '3 months')::DATE LOOP
+        PERFORM create_monthly_partition('audit_trail', 'timestamp', m);
+        PERFORM create_monthly_partition('user_activity_log', 'timestamp', m);
+        m := (m + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+INSERT INTO audit_trail (id, entity_type, entity_id, action, user_id, username, timestamp, ip_address,
+                         user_agent, old_values, new_values, changes_summary, session_id)
+SELECT id, entity_type, entity_id, action, user_id, username, COALESCE(timestamp, CURRENT_TIMESTAMP), ip_address,
+       user_agent, old_values, new_values, changes_summary, session_id
+FROM audit_trail_old;
+
+INSERT INTO user_activity_log (id, user_id, username, activity_type, activity_description, resource_type,
+                               resource_id, timestamp, ip_address, user_agent, session_id, duration_seconds,
+                               status, error_message)
+SELECT id, user_id, username, activity_type, activity_description, resource_type,
+       resource_id, COALESCE(timestamp, CURRENT_TIMESTAMP), ip_address, user_agent, session_id, duration_seconds,
+       status, error_message
+FROM user_activity_log_old;
+
+DROP TABLE audit_trail_old;
+DROP TABLE user_activity_log_old;
@@ -0,0 +1,14 @@
+-- Outcome of the last retention run of each policy. last_run_status is RUNNING while a node
+-- works through the policy, which keeps other nodes from running it at the same time.
+ALTER TABLE data_retention_policy
+    ADD COLUMN last_run_status VARCHAR(20),
+    ADD COLUMN last_run_started_at TIMESTAMP,
+    ADD COLUMN last_run_duration_ms BIGINT,
+    ADD COLUMN last_run_rows BIGINT,
+    ADD COLUMN last_run_rows_archived BIGINT,
+    ADD COLUMN last_run_partitions_dropped INTEGER,
+    ADD COLUMN last_run_rows_per_second DOUBLE PRECISION,
+    ADD COLUMN last_run_error TEXT;
+
+-- Archiving resumes after the newest row a policy has already archived
+CREATE INDEX idx_archived_data_policy_created ON archived_data(retention_policy_id, original_created_at, entity_id);
@@ -0,0 +1,21 @@
+-- Catalog of cold-archive segment files: one columnar file per table, equipment and day,
+-- kept on the local disk of the node that wrote it.
+CREATE TABLE archive_segment (
+    id BIGSERIAL PRIMARY KEY,
+    table_name VARCHAR(100) NOT NULL,
+    equipment_id BIGINT NOT NULL,
+    segment_day DATE NOT NULL,
+    time_column VARCHAR(100) NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    row_count INTEGER NOT NULL,
+    min_timestamp TIMESTAMP NOT NULL,
+    max_timestamp TIMESTAMP NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    retention_policy_id BIGINT REFERENCES data_retention_policy(id) ON DELETE SET NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_archive_segment UNIQUE (table_name, equipment_id, segment_day)
+);
+
+-- Range reads look segments up by table, equipment and time span
+CREATE INDEX idx_archive_segment_range ON archive_segment(table_name, equipment_id, max_timestamp, min_timestamp);
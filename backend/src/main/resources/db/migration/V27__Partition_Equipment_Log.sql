@@ -0,0 +1,45 @@
+-- Range-partition equipment_log by month on timestamp, like audit_trail and user_activity_log (V24).
+-- Expired months are then dropped whole by the retention job instead of deleted row by row, and
+-- inserts and vacuum only touch the current month's partition and indexes.
+--
+-- The existing rows are not copied: the table is attached as the DEFAULT partition, which only
+-- touches the catalog. A NOT VALID check caps it below the first month that gets a real
+-- partition. PartitionMaintenanceService validates the check, then moves closed months out of the
+-- DEFAULT partition one month per transaction, outside this migration.
+
+ALTER TABLE equipment_log RENAME TO equipment_log_default;
+ALTER TABLE equipment_log_default RENAME CONSTRAINT equipment_log_pkey TO equipment_log_default_pkey;
+ALTER INDEX idx_log_equipment_time RENAME TO equipment_log_default_equipment_id_timestamp_idx;
+ALTER INDEX idx_log_timestamp RENAME TO equipment_log_default_timestamp_idx;
+
+-- No primary key: it would have to include timestamp, and building it means scanning every row.
+-- Ids still come from the one sequence.
+CREATE TABLE equipment_log (
+    id BIGINT NOT NULL DEFAULT nextval('equipment_log_id_seq'),
+    equipment_id BIGINT REFERENCES equipment(id),
+    status VARCHAR(20),
+    output_count INTEGER,
+    temperature DOUBLE PRECISION,
+    vibration DOUBLE PRECISION,
+    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) PARTITION BY RANGE (timestamp);
+ALTER SEQUENCE equipment_log_id_seq OWNED BY equipment_log.id;
+
+-- Created while the table has no partitions, so attaching reuses the existing indexes
+CREATE INDEX idx_log_equipment_time ON equipment_log(equipment_id, timestamp);
+CREATE INDEX idx_log_timestamp ON equipment_log(timestamp);
+
+-- With no other partitions there is nothing to check the rows against
+ALTER TABLE equipment_log ATTACH PARTITION equipment_log_default DEFAULT;
+
+-- Monthly partitions start one month past the newest row (or now), which leaves that long to
+-- validate the check before a row could need a partition that does not exist yet
+DO $$
+DECLARE
+    split_before DATE;
+BEGIN
+    SELECT (date_trunc('month', GREATEST(now(), COALESCE((SELECT MAX(timestamp) FROM equipment_log_default), now())))
+            + INTERVAL '2 months')::DATE INTO split_before;
+    EXECUTE format('ALTER TABLE equipment_log_default ADD CONSTRAINT equipment_log_default_split '
+                   'CHECK (timestamp < %L::timestamp) NOT VALID', split_before);
+END $$;
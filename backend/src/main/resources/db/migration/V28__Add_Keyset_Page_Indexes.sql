@@ -0,0 +1,7 @@
+-- Composite indexes backing the keyset-paged listings: each page is an index range scan
+-- on (time column, id) that starts just past the cursor, however deep the page is.
+CREATE INDEX IF NOT EXISTS idx_alert_history_triggered_id ON alert_history(triggered_at, id);
+CREATE INDEX IF NOT EXISTS idx_production_order_created_id ON production_order(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_maintenance_tasks_scheduled_id ON maintenance_tasks(scheduled_date, id);
+CREATE INDEX IF NOT EXISTS idx_defect_records_detected_id ON defect_records(detected_at, id);
+CREATE INDEX IF NOT EXISTS idx_ingestion_queue_status_created_id ON data_ingestion_queue(status, created_at, id);